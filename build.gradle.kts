@@ -17,6 +17,14 @@ repositories {
     }
 }
 
+// benchmarks see everything the tests see, they only run through the benchmark task
+sourceSets {
+    create("benchmark") {
+        compileClasspath += sourceSets.test.get().output + sourceSets.test.get().compileClasspath
+        runtimeClasspath += output + compileClasspath + sourceSets.test.get().runtimeClasspath
+    }
+}
+
 dependencies {
     intellijPlatform {
         intellijIdeaCommunity("2022.3")
@@ -73,6 +81,18 @@ tasks {
         systemProperty("devpilot.env", "test")
     }
 
+    register<Test>("benchmark") {
+        description = "Runs the benchmarks, which print their numbers instead of asserting them."
+        group = "verification"
+        testClassesDirs = sourceSets["benchmark"].output.classesDirs
+        classpath = sourceSets["benchmark"].runtimeClasspath
+        shouldRunAfter(test)
+        outputs.upToDateWhen { false }
+        testLogging {
+            showStandardStreams = true
+        }
+    }
+
     checkstyle {
         configFile = rootProject.file("checkstyle.xml")
         maxWarnings = 0
@@ -0,0 +1,49 @@
+package com.zhongan.devpilot.actions.editor.inlay;
+
+import com.intellij.codeInsight.hints.InlayHintsSink;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.List;
+
+import org.mockito.Mockito;
+
+/**
+ * Time of a collector pass over a large generated Java file, the first pass computes every hint input and the
+ * following ones reuse them. Run with {@code gradle benchmark}, it is not part of the tests.
+ */
+public class ChatShortcutHintCollectorBenchmark extends BasePlatformTestCase {
+
+    private static final List<String> JAVA_ELEMENT_TYPES = List.of("METHOD", "CLASS");
+
+    private static final int PASSES = 20;
+
+    public void testLargeFilePasses() {
+        PsiFile file = myFixture.configureByText("Large.java", ChatShortcutHintCollectorTest.buildJavaFile(20, 100));
+        int elements = PsiTreeUtil.findChildrenOfType(file, PsiElement.class).size();
+        InlayHintsSink sink = Mockito.mock(InlayHintsSink.class);
+
+        long start = System.nanoTime();
+        runPass(file, sink);
+        long first = System.nanoTime() - start;
+        String firstPass = String.valueOf(ChatShortcutPresentationCache.getLastPass(myFixture.getEditor()));
+
+        start = System.nanoTime();
+        for (int i = 0; i < PASSES; i++) {
+            runPass(file, sink);
+        }
+        long next = (System.nanoTime() - start) / PASSES;
+        String lastPass = String.valueOf(ChatShortcutPresentationCache.getLastPass(myFixture.getEditor()));
+
+        System.out.println("Collector over " + elements + " elements, " + myFixture.getEditor().getDocument().getTextLength()
+                + " chars, first pass: " + first / 1000 + " us (" + firstPass + "), next passes: " + next / 1000
+                + " us (" + lastPass + ").");
+    }
+
+    private void runPass(PsiFile file, InlayHintsSink sink) {
+        var collector = new ChatShortcutHintCollector(myFixture.getEditor(), JAVA_ELEMENT_TYPES);
+        PsiTreeUtil.processElements(file, element -> collector.collect(element, myFixture.getEditor(), sink));
+    }
+}
@@ -0,0 +1,66 @@
+package com.zhongan.devpilot.gui.toolwindows.chat;
+
+import com.zhongan.devpilot.util.JsonUtils;
+import com.zhongan.devpilot.webview.model.HistoryActionModel;
+import com.zhongan.devpilot.webview.model.MessageModel;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Allocation of dispatching representative webview messages, binding the payload from the parsed tree against
+ * the former map + json round trip. Run with {@code gradle benchmark}, it is not part of the tests.
+ */
+public class JsCommandRegistryBenchmark {
+
+    private static final int WARM_UP_ROUNDS = 1000;
+
+    private static final int ROUNDS = 200;
+
+    private final JsCommandRegistry registry = new JsCommandRegistry()
+            .register("AppendToConversation", MessageModel.class, (command, payload) -> payload.getId() != null)
+            .register("SwitchSession", HistoryActionModel.class, (command, payload) -> payload.getSessionId() != null);
+
+    @Test
+    public void benchmarkAppendToConversation() {
+        measure(JsCommandRegistryTest.buildQuery("AppendToConversation", JsCommandRegistryTest.buildMessage(3)), MessageModel.class);
+    }
+
+    @Test
+    public void benchmarkSwitchSession() {
+        measure(JsCommandRegistryTest.buildQuery("SwitchSession", Map.of("sessionId", "session-1")), HistoryActionModel.class);
+    }
+
+    private void measure(String query, Class<?> payloadType) {
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            dispatchRoundTrip(query, payloadType);
+            registry.dispatch(query);
+        }
+
+        long roundTrip = measureAllocatedBytes(() -> dispatchRoundTrip(query, payloadType));
+        long tree = measureAllocatedBytes(() -> assertEquals(JsCommandRegistry.SUCCESS, registry.dispatch(query)));
+
+        System.out.println("Allocated bytes per " + payloadType.getSimpleName() + " query of " + query.length()
+                + " chars, map + round trip: " + roundTrip / ROUNDS + ", tree binding: " + tree / ROUNDS + ".");
+    }
+
+    private void dispatchRoundTrip(String query, Class<?> payloadType) {
+        Map<String, Object> callModel = JsonUtils.fromJson(query, Map.class);
+        assertNotNull(JsonUtils.fromJson(JsonUtils.toJson(callModel.get("payload")), payloadType));
+    }
+
+    private long measureAllocatedBytes(Runnable runnable) {
+        var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ROUNDS; i++) {
+            runnable.run();
+        }
+        return threadMXBean.getThreadAllocatedBytes(threadId) - before;
+    }
+}
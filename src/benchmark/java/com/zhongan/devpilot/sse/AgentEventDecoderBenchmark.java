@@ -0,0 +1,59 @@
+package com.zhongan.devpilot.sse;
+
+import com.zhongan.devpilot.sse.entity.AgentEvent;
+import com.zhongan.devpilot.sse.entity.PartialMessage;
+import com.zhongan.devpilot.util.JsonUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Allocation of decoding one streaming tick with a long history, the streaming decoder against decoding the
+ * envelope into a map and the message into a bean. Run with {@code gradle benchmark}, it is not part of the tests.
+ */
+public class AgentEventDecoderBenchmark {
+
+    private static final int WARM_UP_ROUNDS = 1000;
+
+    private static final int ROUNDS = 200;
+
+    @Test
+    public void benchmarkStreamingTickAllocation() {
+        String json = AgentEventDecoderTest.buildEvent(AgentEvent.PARTIAL_STREAMING_TAG, 200);
+
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            decodeTwice(json);
+            decodeOnce(json);
+        }
+
+        long twice = measureAllocatedBytes(() -> decodeTwice(json));
+        long once = measureAllocatedBytes(() -> decodeOnce(json));
+
+        System.out.println("Allocated bytes per streaming tick of " + json.length() + " chars, map + bean: "
+                + twice / ROUNDS + ", streaming decoder: " + once / ROUNDS + ".");
+    }
+
+    private void decodeTwice(String json) {
+        Map<String, String> eventMap = JsonUtils.fromJson(json, Map.class);
+        assertNotNull(JsonUtils.fromJson(eventMap.get("message"), PartialMessage.class));
+    }
+
+    private void decodeOnce(String json) {
+        AgentEvent event = AgentEventDecoder.INSTANCE.decode(json);
+        assertNotNull(AgentEventDecoder.INSTANCE.readPartialMessage(event, false));
+    }
+
+    private long measureAllocatedBytes(Runnable runnable) {
+        var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ROUNDS; i++) {
+            runnable.run();
+        }
+        return threadMXBean.getThreadAllocatedBytes(threadId) - before;
+    }
+}
@@ -4,6 +4,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
 import com.intellij.openapi.startup.StartupActivity;
+import com.zhongan.devpilot.agents.AgentSupervisor;
 import com.zhongan.devpilot.agents.AgentsRunner;
 import com.zhongan.devpilot.agents.BinaryManager;
 import com.zhongan.devpilot.session.ChatSessionManagerService;
@@ -13,56 +14,22 @@ import com.zhongan.devpilot.util.ProjectUtil;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jetbrains.annotations.NotNull;
 
 public class DevPilotApplicationStartupActivity implements StartupActivity.Background {
     private static final Logger LOG = Logger.getInstance(DevPilotApplicationStartupActivity.class);
 
-    private final ScheduledExecutorService agentStateMonitorScheduler = Executors.newSingleThreadScheduledExecutor();
-
     private final ScheduledExecutorService agentAutoUpgradeScheduler = Executors.newSingleThreadScheduledExecutor();
 
-    private final AtomicInteger restartFailCount = new AtomicInteger(0);
-
     public DevPilotApplicationStartupActivity() {
         setupAgentMonitoring();
     }
 
     private void setupAgentMonitoring() {
         LOG.warn("Setup agent monitoring.");
-        agentStateMonitorScheduler.scheduleAtFixedRate(
-                () -> {
-                    boolean ok = BinaryManager.INSTANCE.currentPortAvailable();
-                    if (!ok) {
-                        if (!BinaryManager.INSTANCE.shouldStartAgent()) {
-                            return;
-                        }
-
-                        if (!BinaryManager.INSTANCE.reStarting.compareAndSet(false, true) || AgentsRunner.initialRunning.get()) {
-                            LOG.info("Agent upgrading, skip monitor.");
-                            return;
-                        }
-
-                        try {
-                            boolean success = AgentsRunner.INSTANCE.runAsync(Boolean.FALSE).get(30, TimeUnit.SECONDS);
-                            if (success) {
-                                restartFailCount.set(0);
-                            } else {
-                                int count = restartFailCount.incrementAndGet();
-                                if (count > 3) {
-                                    LOG.error("Agent连续启动失败" + count + "次，可能存在严重问题");
-                                    Thread.sleep(10000);
-                                }
-                            }
-                        } catch (Exception e) {
-                            LOG.error("Restart agent failed.", e);
-                        } finally {
-                            BinaryManager.INSTANCE.reStarting.set(false);
-                        }
-                    }
-                }, 2 * 60, 20, TimeUnit.SECONDS);
+        // crashes and an unreachable agent are both restarted by the supervisor
+        AgentSupervisor.INSTANCE.startHealthCheck();
 
         agentAutoUpgradeScheduler.scheduleAtFixedRate(
                 () -> {
@@ -31,6 +31,7 @@ import com.zhongan.devpilot.constant.DefaultConst;
 import com.zhongan.devpilot.enums.EditorActionEnum;
 import com.zhongan.devpilot.gui.toolwindows.chat.DevPilotChatToolWindowService;
 import com.zhongan.devpilot.settings.state.ChatShortcutSettingState;
+import com.zhongan.devpilot.settings.state.LanguageSettingsState;
 import com.zhongan.devpilot.util.DevPilotMessageBundle;
 
 import java.awt.event.MouseEvent;
@@ -48,16 +49,19 @@ public class ChatShortcutHintCollector extends FactoryInlayHintsCollector {
 
     protected PresentationFactory factory;
 
-    private DevPilotChatToolWindowService service;
-
     private Editor editor;
 
+    // a collector lives for one pass over one file, so the file level facts are computed once
+    private Boolean sourceCode;
+
+    private final ChatShortcutPresentationCache presentationCache;
+
     public ChatShortcutHintCollector(@NotNull Editor editor, List<String> supportedElementsType) {
         super(editor);
         this.editor = editor;
         this.supportedElementTypes = supportedElementsType;
         this.factory = this.getFactory();
-        this.service = editor.getProject().getService(DevPilotChatToolWindowService.class);
+        this.presentationCache = ChatShortcutPresentationCache.startPass(editor, presentationStyle(editor));
     }
 
     @Override
@@ -67,46 +71,54 @@ public class ChatShortcutHintCollector extends FactoryInlayHintsCollector {
             return true;
         }
 
-        boolean isSourceCode = isSourceCode(psiElement, editor);
         var elementType = PsiUtilCore.getElementType(psiElement).toString();
+        if (!"CLASS".equals(elementType) && !supportedElementTypes.contains(elementType)) {
+            return true;
+        }
+
+        long start = System.nanoTime();
+        boolean isSourceCode = isSourceCode(psiElement);
 
         if ("CLASS".equals(elementType)) {
             if (isSourceCode) {
                 inlineRenderInlayPresentation(psiElement, editor, inlayHintsSink, Collections.singletonList(EditorActionEnum.GENERATE_TESTS));
             }
-            return true;
-        }
-
-        if (!isSourceCode && supportedElementTypes.contains(elementType)) {
+        } else if (!isSourceCode) {
             inlineRenderInlayPresentation(psiElement, editor, inlayHintsSink, Collections.singletonList(EditorActionEnum.EXPLAIN_CODE));
-            return true;
+        } else if (chatShortcutSetting.isInlineDisplay()) {
+            inlineRenderInlayPresentation(psiElement, editor, inlayHintsSink, buildInlayPresentationGroupData());
+        } else {
+            groupRenderPopupPresentation(inlayHintsSink, psiElement, editor);
         }
 
-        if (isSourceCode && supportedElementTypes.contains(elementType)) {
-            if (chatShortcutSetting.isInlineDisplay()) {
-                inlineRenderInlayPresentation(psiElement, editor, inlayHintsSink, buildInlayPresentationGroupData());
-            } else {
-                groupRenderPopupPresentation(inlayHintsSink, psiElement, editor);
-            }
-        }
+        presentationCache.record(System.nanoTime() - start);
         return true;
     }
 
     private InlayPresentation createInlayElement(Editor editor, PsiElement psiElement, List<EditorActionEnum> actions) {
         List<InlayPresentation> presentations = new ArrayList<>();
 
-        presentations.add(factory.textSpacePlaceholder(computeInitialWhitespace(editor, psiElement), false));
+        presentations.add(factory.textSpacePlaceholder(indent(editor, psiElement), false));
         presentations.add(factory.icon(DevPilotIcons.SYSTEM_ICON_INLAY));
 
+        List<String> labels = presentationCache.labels(actions, this::buildLabels);
         for (int i = 0, len = actions.size(); i < len; i++) {
-            String prefix = (i == 0) ? " " : StringUtils.EMPTY;
-            String postfix = (i == len - 1) ? StringUtils.EMPTY : " | ";
-            presentations.add(buildClickableInlayPresentation(prefix, postfix, actions.get(i), psiElement));
+            presentations.add(buildClickableInlayPresentation(labels.get(i), actions.get(i), psiElement));
         }
 
         return factory.seq(presentations.toArray(new InlayPresentation[0]));
     }
 
+    private List<String> buildLabels(List<EditorActionEnum> actions) {
+        List<String> labels = new ArrayList<>();
+        for (int i = 0, len = actions.size(); i < len; i++) {
+            String prefix = (i == 0) ? " " : StringUtils.EMPTY;
+            String postfix = (i == len - 1) ? StringUtils.EMPTY : " | ";
+            labels.add(prefix + DevPilotMessageBundle.get(actions.get(i).getInlayLabel()) + postfix);
+        }
+        return labels;
+    }
+
     private void inlineRenderInlayPresentation(PsiElement psiElement, @NotNull Editor editor, @NotNull InlayHintsSink inlayHintsSink, List<EditorActionEnum> actions) {
         inlayHintsSink.addBlockElement(getAnchorOffset(psiElement),
                 true,
@@ -116,18 +128,16 @@ public class ChatShortcutHintCollector extends FactoryInlayHintsCollector {
     }
 
     private void groupRenderPopupPresentation(InlayHintsSink inlayHintsSink, PsiElement psiElement, Editor editor) {
-        PresentationFactory factory = getFactory();
         Document document = editor.getDocument();
         int offset = getAnchorOffset(psiElement);
         int line = document.getLineNumber(offset);
         int startOffset = document.getLineStartOffset(line);
-        InlayPresentation finalPresentation = createPopupPresentation(factory, editor, psiElement, startOffset, offset);
+        InlayPresentation finalPresentation = createPopupPresentation(getFactory(), editor, psiElement);
         inlayHintsSink.addBlockElement(startOffset, true, true, 300, finalPresentation);
     }
 
-    private InlayPresentation createPopupPresentation(PresentationFactory factory, Editor editor,
-                                                      PsiElement psiElement, int startOffset, int offset) {
-        int gap = computeInitialWhitespace(editor, psiElement);
+    private InlayPresentation createPopupPresentation(PresentationFactory factory, Editor editor, PsiElement psiElement) {
+        int gap = indent(editor, psiElement);
         List<InlayPresentation> presentations = new SmartList<>();
         presentations.add(factory.textSpacePlaceholder(gap, true));
         presentations.add(factory.smallScaledIcon(DevPilotIcons.SYSTEM_ICON_INLAY));
@@ -156,6 +166,12 @@ public class ChatShortcutHintCollector extends FactoryInlayHintsCollector {
         popup.showInScreenCoordinates(editor.getComponent(), event.getLocationOnScreen());
     }
 
+    private static String presentationStyle(Editor editor) {
+        var scheme = editor.getColorsScheme();
+        return scheme.getName() + "/" + scheme.getEditorFontName() + "/" + scheme.getEditorFontSize()
+                + "/" + LanguageSettingsState.getInstance().getLanguageIndex();
+    }
+
     private List<EditorActionEnum> buildInlayPresentationGroupData() {
         List<EditorActionEnum> options = new ArrayList<>();
         options.add(EditorActionEnum.EXPLAIN_CODE);
@@ -166,24 +182,39 @@ public class ChatShortcutHintCollector extends FactoryInlayHintsCollector {
         return options;
     }
 
+    private boolean isSourceCode(PsiElement psiElement) {
+        if (sourceCode == null) {
+            sourceCode = isSourceCode(psiElement, editor);
+        }
+        return sourceCode;
+    }
+
     public static boolean isSourceCode(PsiElement psiElement, Editor editor) {
         Document document = editor.getDocument();
         VirtualFile virtualFile = PsiUtilCore.getVirtualFile(psiElement);
         if (virtualFile == null || !virtualFile.isWritable()) {
             return false;
         }
+        // checked without copying the document, a non blank file stops at its first character
+        if (StringUtils.isBlank(document.getImmutableCharSequence())) {
+            return false;
+        }
         FileIndexFacade indexFacade = FileIndexFacade.getInstance(psiElement.getProject());
         FileType fileType = FileTypeManager.getInstance().getFileTypeByFileName(virtualFile.getName());
-        return !fileType.isBinary() && !document.getText().trim().isEmpty() && (!indexFacade.isInLibrarySource(virtualFile) && !indexFacade.isInLibraryClasses(virtualFile));
+        return !fileType.isBinary() && (!indexFacade.isInLibrarySource(virtualFile) && !indexFacade.isInLibraryClasses(virtualFile));
     }
 
-    private InlayPresentation buildClickableInlayPresentation(String displayPrefixText, String displaySuffixText, EditorActionEnum actionEnum, PsiElement psiElement) {
-        return factory.seq(factory.referenceOnHover(factory.smallText(displayPrefixText + DevPilotMessageBundle.get(actionEnum.getInlayLabel()) + displaySuffixText), (mouseEvent, point) -> {
+    private InlayPresentation buildClickableInlayPresentation(String label, EditorActionEnum actionEnum, PsiElement psiElement) {
+        return factory.seq(factory.referenceOnHover(factory.smallText(label), (mouseEvent, point) -> {
             handleActionCallback(actionEnum, psiElement);
         }));
     }
 
     private void handleActionCallback(EditorActionEnum actionEnum, PsiElement psiElement) {
+        if (psiElement == null || !psiElement.isValid()) {
+            return;
+        }
+
         TextRange textRange = psiElement.getTextRange();
         editor.getSelectionModel().setSelection(textRange.getStartOffset(), textRange.getEndOffset());
 
@@ -193,6 +224,7 @@ public class ChatShortcutHintCollector extends FactoryInlayHintsCollector {
             });
         }
 
+        var service = editor.getProject().getService(DevPilotChatToolWindowService.class);
         service.handleActions(actionEnum, psiElement, DefaultConst.SMART_CHAT_TYPE);
     }
 
@@ -208,6 +240,10 @@ public class ChatShortcutHintCollector extends FactoryInlayHintsCollector {
         return anchorOffset;
     }
 
+    private int indent(Editor editor, PsiElement psiElement) {
+        return presentationCache.indent(psiElement, editor.getDocument(), () -> computeInitialWhitespace(editor, psiElement));
+    }
+
     private int computeInitialWhitespace(Editor editor, PsiElement psiElement) {
         int lineNum = editor.getDocument().getLineNumber(psiElement.getTextRange().getStartOffset());
         String textOnLine = editor.getDocument().getText(new TextRange(editor.getDocument().getLineStartOffset(lineNum),
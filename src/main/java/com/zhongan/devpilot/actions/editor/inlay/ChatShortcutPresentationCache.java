@@ -0,0 +1,216 @@
+package com.zhongan.devpilot.actions.editor.inlay;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiElement;
+import com.zhongan.devpilot.enums.EditorActionEnum;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Inputs of the chat shortcut hints of one editor, handed from one daemon pass to the next.
+ * <p>
+ * The platform asks for every hint again on each pass and owns the presentations it is given, so those are built
+ * fresh every pass. What goes into them is kept instead: the label texts, which only depend on the editor style
+ * and language, and the indent of every element. An indent is only computed again when the document changed
+ * between the start of the element's first line and its end since the previous pass. Indents are kept per
+ * element, so inserting a method leaves the entries of the other methods alone.
+ * <p>
+ * Every pass records its element count, computed and reused indents and collection time, a summary is logged
+ * every {@code REPORT_INTERVAL} passes.
+ */
+public class ChatShortcutPresentationCache {
+
+    private static final Logger LOG = Logger.getInstance(ChatShortcutPresentationCache.class);
+
+    private static final Key<ChatShortcutPresentationCache> CACHE_KEY = Key.create("DevPilot.chatShortcut.presentations");
+
+    private static final int REPORT_INTERVAL = 100;
+
+    private static final AtomicLong PASSES = new AtomicLong();
+
+    private static final AtomicLong PASS_NANOS = new AtomicLong();
+
+    private static final AtomicLong MAX_PASS_NANOS = new AtomicLong();
+
+    private final String style;
+
+    private final Map<List<EditorActionEnum>, List<String>> labels;
+
+    private final Map<PsiElement, Integer> previousIndents;
+
+    private final Map<PsiElement, Integer> indents = new HashMap<>();
+
+    // document range changed between the previous pass and this one, empty when start > end
+    private final int changedStart;
+
+    private final int changedEnd;
+
+    // document range changed since this pass, in current offsets
+    private int dirtyStart = Integer.MAX_VALUE;
+
+    private int dirtyEnd = -1;
+
+    private int elements;
+
+    private int computed;
+
+    private int reused;
+
+    private long collectNanos;
+
+    private ChatShortcutPresentationCache(String style, Map<List<EditorActionEnum>, List<String>> labels,
+                                          Map<PsiElement, Integer> previousIndents, int changedStart, int changedEnd) {
+        this.style = style;
+        this.labels = labels;
+        this.previousIndents = previousIndents;
+        this.changedStart = changedStart;
+        this.changedEnd = changedEnd;
+    }
+
+    /**
+     * Start a pass over the editor, taking over the inputs of the previous pass when the style did not change.
+     *
+     * @param style everything the hints depend on beside the document, such as font and language
+     */
+    public static ChatShortcutPresentationCache startPass(Editor editor, String style) {
+        ChatShortcutPresentationCache previous = editor.getUserData(CACHE_KEY);
+        ChatShortcutPresentationCache cache;
+        if (previous == null || !StringUtils.equals(previous.style, style)) {
+            cache = new ChatShortcutPresentationCache(style, new ConcurrentHashMap<>(), new HashMap<>(), 0, -1);
+        } else {
+            previous.report();
+            synchronized (previous) {
+                cache = new ChatShortcutPresentationCache(style, previous.labels, previous.indents,
+                        previous.dirtyStart, previous.dirtyEnd);
+            }
+        }
+        editor.putUserData(CACHE_KEY, cache);
+        return cache;
+    }
+
+    public static ChatShortcutPresentationCache getLastPass(Editor editor) {
+        return editor.getUserData(CACHE_KEY);
+    }
+
+    /**
+     * Track an edit of a document, called on the EDT for every change.
+     */
+    public static void documentChanged(DocumentEvent event) {
+        for (Editor editor : EditorFactory.getInstance().getEditors(event.getDocument())) {
+            ChatShortcutPresentationCache cache = editor.getUserData(CACHE_KEY);
+            if (cache != null) {
+                cache.changed(event.getOffset(), event.getOldLength(), event.getNewLength());
+            }
+        }
+    }
+
+    /**
+     * The document changed in a way that was not reported edit by edit, every indent is computed again.
+     */
+    public static void invalidate(Document document) {
+        for (Editor editor : EditorFactory.getInstance().getEditors(document)) {
+            ChatShortcutPresentationCache cache = editor.getUserData(CACHE_KEY);
+            if (cache != null) {
+                cache.changed(0, Integer.MAX_VALUE / 2, Integer.MAX_VALUE / 2);
+            }
+        }
+    }
+
+    /**
+     * Label texts of a list of actions, built once per style.
+     */
+    public List<String> labels(List<EditorActionEnum> actions, Function<List<EditorActionEnum>, List<String>> builder) {
+        return labels.computeIfAbsent(actions, builder);
+    }
+
+    /**
+     * Indent of the first line of an element, computed again only when that part of the document changed.
+     */
+    public synchronized int indent(PsiElement element, Document document, IntSupplier builder) {
+        TextRange range = element.getTextRange();
+        int lineStart = document.getLineStartOffset(document.getLineNumber(range.getStartOffset()));
+
+        Integer indent = previousIndents.remove(element);
+        if (indent == null || (changedStart <= range.getEndOffset() && changedEnd >= lineStart)) {
+            indent = builder.getAsInt();
+            computed++;
+        } else {
+            reused++;
+        }
+        indents.put(element, indent);
+        return indent;
+    }
+
+    public synchronized void record(long nanos) {
+        elements++;
+        collectNanos += nanos;
+    }
+
+    public synchronized int getElements() {
+        return elements;
+    }
+
+    public synchronized int getComputed() {
+        return computed;
+    }
+
+    public synchronized int getReused() {
+        return reused;
+    }
+
+    public synchronized long getCollectNanos() {
+        return collectNanos;
+    }
+
+    /**
+     * Merge an edit into the changed range, the range is kept in the offsets of the edited document.
+     */
+    private synchronized void changed(int offset, int oldLength, int newLength) {
+        int delta = newLength - oldLength;
+        if (dirtyStart <= dirtyEnd) {
+            if (dirtyStart > offset + oldLength) {
+                dirtyStart += delta;
+            }
+            if (dirtyEnd >= offset + oldLength) {
+                dirtyEnd += delta;
+            }
+        }
+        dirtyStart = Math.min(dirtyStart, offset);
+        dirtyEnd = Math.max(dirtyEnd, offset + newLength);
+    }
+
+    private void report() {
+        long nanos = getCollectNanos();
+        if (getElements() == 0) {
+            return;
+        }
+
+        long passes = PASSES.incrementAndGet();
+        long total = PASS_NANOS.addAndGet(nanos);
+        long max = MAX_PASS_NANOS.accumulateAndGet(nanos, Math::max);
+        if (passes % REPORT_INTERVAL == 0) {
+            LOG.info(String.format("Chat shortcut hint passes: %d, avg %d us, max %d us, last: %s.", passes,
+                    TimeUnit.NANOSECONDS.toMicros(total / passes), TimeUnit.NANOSECONDS.toMicros(max), this));
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return elements + " elements in " + collectNanos / 1000 + " us, " + computed + " indents computed, " + reused + " reused";
+    }
+}
@@ -0,0 +1,76 @@
+package com.zhongan.devpilot.actions.toolbar;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.ui.SimpleListCellRenderer;
+import com.zhongan.devpilot.gui.toolwindows.chat.DevPilotChatToolWindowService;
+import com.zhongan.devpilot.session.model.ChatSearchHit;
+import com.zhongan.devpilot.session.model.ChatSearchResult;
+import com.zhongan.devpilot.util.DevPilotMessageBundle;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+
+public class ToolbarSearchHistoryAction extends AnAction {
+    public ToolbarSearchHistoryAction() {
+        super(DevPilotMessageBundle.get("devpilot.toolbarSearchHistoryAction.text"),
+                DevPilotMessageBundle.get("devpilot.toolbarSearchHistoryAction.text"),
+                AllIcons.Actions.Search);
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.EDT;
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        var project = e.getProject();
+        if (project == null) {
+            return;
+        }
+
+        String query = Messages.showInputDialog(project, DevPilotMessageBundle.get("devpilot.searchHistory.prompt"),
+                DevPilotMessageBundle.get("devpilot.toolbarSearchHistoryAction.text"), AllIcons.Actions.Search);
+        if (StringUtils.isBlank(query)) {
+            return;
+        }
+
+        var service = project.getService(DevPilotChatToolWindowService.class);
+        // the first search loads the index from disk
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            ChatSearchResult result = service.searchHistory(query);
+            ApplicationManager.getApplication().invokeLater(() -> showHits(project, service, result), project.getDisposed());
+        });
+    }
+
+    private void showHits(Project project, DevPilotChatToolWindowService service, ChatSearchResult result) {
+        if (result.getHits().isEmpty()) {
+            Messages.showInfoMessage(project, DevPilotMessageBundle.get("devpilot.searchHistory.empty"),
+                    DevPilotMessageBundle.get("devpilot.toolbarSearchHistoryAction.text"));
+            return;
+        }
+
+        JBPopupFactory.getInstance().createPopupChooserBuilder(result.getHits())
+                .setTitle(DevPilotMessageBundle.get("devpilot.toolbarSearchHistoryAction.text") + ": " + result.getQuery())
+                .setRenderer(SimpleListCellRenderer.<ChatSearchHit>create("",
+                        hit -> StringUtils.defaultString(hit.getTitle()) + " - " + hit.getPreview()))
+                .setItemChosenCallback(hit -> {
+                    ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow("DevPilot");
+                    if (toolWindow != null) {
+                        toolWindow.show();
+                    }
+                    service.handleSwitchSession(hit.getSessionId());
+                })
+                .createPopup()
+                .showCenteredInCurrentWindow(project);
+    }
+}
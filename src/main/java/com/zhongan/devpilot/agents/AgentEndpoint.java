@@ -0,0 +1,47 @@
+package com.zhongan.devpilot.agents;
+
+/**
+ * Address of an agent process that reported itself ready to serve requests.
+ * <p>
+ * An external endpoint belongs to an agent this plugin found already running, it is not supervised and its pid
+ * may be unknown.
+ */
+public class AgentEndpoint {
+
+    private final int port;
+
+    private final long pid;
+
+    private final boolean external;
+
+    public AgentEndpoint(int port, long pid) {
+        this(port, pid, false);
+    }
+
+    private AgentEndpoint(int port, long pid, boolean external) {
+        this.port = port;
+        this.pid = pid;
+        this.external = external;
+    }
+
+    public static AgentEndpoint external(int port, Long pid) {
+        return new AgentEndpoint(port, pid == null ? -1 : pid, true);
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public long getPid() {
+        return pid;
+    }
+
+    public boolean isExternal() {
+        return external;
+    }
+
+    @Override
+    public String toString() {
+        return "AgentEndpoint{port=" + port + ", pid=" + pid + ", external=" + external + "}";
+    }
+}
@@ -0,0 +1,214 @@
+package com.zhongan.devpilot.agents;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.zhongan.devpilot.util.ProcessUtils;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Supervises the agent process started by {@link AgentsRunner} through its {@link ProcessHandle}, and is the only
+ * place that restarts the agent.
+ * <p>
+ * A crash is noticed as soon as the process exits, without polling or spawning {@code ps}. A periodic health check
+ * covers what an exit cannot report: an agent that never started, an external agent that went away, or one that
+ * stopped answering. Both restart through the same exponential backoff, which resets once the agent has stayed up
+ * for a while. Exits requested by the plugin itself are not treated as crashes.
+ */
+public class AgentSupervisor {
+    private static final Logger LOG = Logger.getInstance(AgentSupervisor.class);
+
+    public static final AgentSupervisor INSTANCE = new AgentSupervisor(Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "DevPilot-Agent-Supervisor");
+        thread.setDaemon(true);
+        return thread;
+    }), AgentSupervisor::startAgent);
+
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+
+    private static final long MAX_BACKOFF_MILLIS = 60000;
+
+    // an agent that stayed up this long is considered healthy again and resets the backoff
+    private static final long STABLE_UPTIME_MILLIS = 60000;
+
+    private static final long HEALTH_CHECK_DELAY_SECONDS = 2 * 60;
+
+    private static final long HEALTH_CHECK_INTERVAL_SECONDS = 20;
+
+    private final ScheduledExecutorService restartScheduler;
+
+    private final BooleanSupplier restartAction;
+
+    private final AtomicBoolean healthCheckStarted = new AtomicBoolean(false);
+
+    private final AtomicBoolean restartPending = new AtomicBoolean(false);
+
+    private final AtomicInteger restartCount = new AtomicInteger(0);
+
+    private final AtomicInteger crashCount = new AtomicInteger(0);
+
+    private volatile ProcessHandle supervised;
+
+    private volatile long startTime = System.currentTimeMillis();
+
+    private volatile long expectedExitPid = -1;
+
+    private volatile long currentBackoff = INITIAL_BACKOFF_MILLIS;
+
+    AgentSupervisor(ScheduledExecutorService restartScheduler, BooleanSupplier restartAction) {
+        this.restartScheduler = restartScheduler;
+        this.restartAction = restartAction;
+    }
+
+    public synchronized void attach(Process process, int port) {
+        ProcessHandle handle = process.toHandle();
+        this.supervised = handle;
+        this.startTime = System.currentTimeMillis();
+
+        LOG.info(String.format("Supervising agent pid: [%d], port: [%d], %s.", handle.pid(), port, getStatus()));
+        handle.onExit().thenAccept(this::onExit);
+    }
+
+    /**
+     * Start checking the agent periodically, an agent found unreachable is restarted like a crashed one.
+     */
+    public void startHealthCheck() {
+        if (healthCheckStarted.compareAndSet(false, true)) {
+            restartScheduler.scheduleWithFixedDelay(this::checkHealth,
+                    HEALTH_CHECK_DELAY_SECONDS, HEALTH_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Terminate the agent process on behalf of the plugin, the exit will not trigger a restart.
+     */
+    public void destroy(long pid) {
+        ProcessHandle current = supervised;
+        if (current != null && current.pid() == pid) {
+            expectedExitPid = pid;
+        }
+        ProcessUtils.killProcess(pid);
+    }
+
+    public boolean isAlive() {
+        ProcessHandle current = supervised;
+        return current != null && current.isAlive();
+    }
+
+    /**
+     * Whether the agent behind an endpoint is still running. An external agent is not supervised, its process is
+     * looked up by pid instead.
+     */
+    public boolean isAlive(AgentEndpoint endpoint) {
+        ProcessHandle current = supervised;
+        if (current != null && current.pid() == endpoint.getPid()) {
+            return current.isAlive();
+        }
+        return endpoint.isExternal() && endpoint.getPid() > 0 && ProcessUtils.isProcessAlive(endpoint.getPid());
+    }
+
+    public int getRestartCount() {
+        return restartCount.get();
+    }
+
+    public int getCrashCount() {
+        return crashCount.get();
+    }
+
+    void onExit(ProcessHandle handle) {
+        long uptime = System.currentTimeMillis() - startTime;
+        if (handle.pid() == expectedExitPid || supervised == null || supervised.pid() != handle.pid()) {
+            LOG.info(String.format("Agent pid: [%d] exited as requested after %d ms.", handle.pid(), uptime));
+            return;
+        }
+
+        crashCount.incrementAndGet();
+        resetBackoffIfStable(uptime);
+        scheduleRestart(String.format("Agent pid: [%d] exited unexpectedly after %d ms", handle.pid(), uptime));
+    }
+
+    /**
+     * Schedule a restart after the current backoff, which doubles for the next one. A restart already waiting to
+     * run is not scheduled twice.
+     *
+     * @return the delay of the restart, or -1 if one is already pending
+     */
+    long scheduleRestart(String reason) {
+        if (!restartPending.compareAndSet(false, true)) {
+            return -1;
+        }
+
+        long delay = currentBackoff;
+        currentBackoff = Math.min(currentBackoff * 2, MAX_BACKOFF_MILLIS);
+        LOG.warn(String.format("%s, restart in %d ms, %s.", reason, delay, getStatus()));
+        restartScheduler.schedule(this::restart, delay, TimeUnit.MILLISECONDS);
+        return delay;
+    }
+
+    /**
+     * The agent has been up since its last start for the given time, reset the backoff if that was long enough.
+     */
+    void resetBackoffIfStable(long uptime) {
+        if (uptime >= STABLE_UPTIME_MILLIS) {
+            currentBackoff = INITIAL_BACKOFF_MILLIS;
+        }
+    }
+
+    private void checkHealth() {
+        try {
+            if (restartPending.get() || !BinaryManager.INSTANCE.shouldStartAgent()) {
+                return;
+            }
+            if (BinaryManager.INSTANCE.currentPortAvailable()) {
+                resetBackoffIfStable(System.currentTimeMillis() - startTime);
+                return;
+            }
+            scheduleRestart("Agent is not reachable");
+        } catch (Exception e) {
+            LOG.warn("Error occurred while checking agent health.", e);
+        }
+    }
+
+    void restart() {
+        restartPending.set(false);
+        restartCount.incrementAndGet();
+        startTime = System.currentTimeMillis();
+        if (!restartAction.getAsBoolean()) {
+            scheduleRestart("Agent restart failed");
+        }
+    }
+
+    /**
+     * Start the agent again unless it is not needed anymore.
+     *
+     * @return false if the agent should run but could not be started
+     */
+    private static boolean startAgent() {
+        if (!BinaryManager.INSTANCE.shouldStartAgent() || BinaryManager.INSTANCE.currentPortAvailable()) {
+            return true;
+        }
+
+        // an upgrade or the first start is running, it reports back through attach or the next health check
+        if (!BinaryManager.INSTANCE.reStarting.compareAndSet(false, true) || AgentsRunner.initialRunning.get()) {
+            LOG.info("Agent is restarting, skip supervisor restart.");
+            return true;
+        }
+
+        try {
+            return Boolean.TRUE.equals(AgentsRunner.INSTANCE.runAsync(Boolean.TRUE).get(30, TimeUnit.SECONDS));
+        } catch (Exception e) {
+            LOG.warn("Supervisor failed to restart agent.", e);
+            return false;
+        } finally {
+            BinaryManager.INSTANCE.reStarting.set(false);
+        }
+    }
+
+    private String getStatus() {
+        return String.format("crash count: [%d], restart count: [%d]", crashCount.get(), restartCount.get());
+    }
+}
@@ -2,6 +2,7 @@ package com.zhongan.devpilot.agents;
 
 import com.intellij.execution.configurations.PathEnvironmentVariableUtil;
 import com.intellij.openapi.diagnostic.Logger;
+import com.zhongan.devpilot.util.OkhttpUtils;
 import com.zhongan.devpilot.util.ProcessUtils;
 
 import java.io.BufferedReader;
@@ -15,15 +16,21 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.math.NumberUtils;
 import org.jetbrains.annotations.NotNull;
 
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
 public class AgentsRunner {
     private static final Logger LOG = Logger.getInstance(AgentsRunner.class);
 
@@ -33,6 +40,20 @@ public class AgentsRunner {
 
     public static volatile AtomicBoolean initialRunning = new AtomicBoolean(false);
 
+    private static final String READY_LINE = "Server is listening on port";
+
+    private static final long READY_TIMEOUT_MILLIS = 20000;
+
+    private static final long HEALTH_POLL_INTERVAL_MILLIS = 50;
+
+    private final OkHttpClient healthProbeClient = OkhttpUtils.getClient().newBuilder()
+            .connectTimeout(200, TimeUnit.MILLISECONDS)
+            .readTimeout(500, TimeUnit.MILLISECONDS)
+            .build();
+
+    // pending from plugin start until the first agent is ready, so early callers wait instead of failing
+    private volatile CompletableFuture<AgentEndpoint> readiness = new CompletableFuture<>();
+
     private final List<AgentRefreshedObserver> refreshObservers = new ArrayList<>();
 
     public void addRefreshObserver(AgentRefreshedObserver observer) {
@@ -60,6 +81,7 @@ public class AgentsRunner {
                 File homeDir = BinaryManager.INSTANCE.getHomeDir();
                 if (homeDir == null) {
                     LOG.warn("Home dir is null, skip running DevPilot-Agents.");
+                    failReadiness("Home dir is null.");
                     return false;
                 }
 
@@ -67,6 +89,10 @@ public class AgentsRunner {
                     BinaryManager.AgentCheckResult checkRes = BinaryManager.INSTANCE.checkIfAgentRunning(homeDir);
                     if (checkRes.isRunning()) {
                         LOG.info("Skip running DevPilot-Agents for already running.");
+                        AgentEndpoint endpoint = AgentEndpoint.external(checkRes.getPort(), checkRes.getPid());
+                        if (!readiness.complete(endpoint)) {
+                            readiness = CompletableFuture.completedFuture(endpoint);
+                        }
                         triggerRefresh();
                         return true;
                     }
@@ -76,6 +102,7 @@ public class AgentsRunner {
                 boolean processRes = BinaryManager.INSTANCE.postProcessBeforeRunning(homeDir);
                 if (!processRes) {
                     LOG.info("Skip running DevPilot-Agents for failure of init binary.");
+                    failReadiness("Failed to init binary.");
                     return false;
                 }
                 boolean status = doRun(homeDir);
@@ -83,6 +110,11 @@ public class AgentsRunner {
                     triggerRefresh();
                 }
                 return status;
+            }).whenComplete((status, e) -> {
+                // a start that threw must not leave callers waiting on it
+                if (e != null) {
+                    failReadiness("Failed to run DevPilot-Agents: " + e.getMessage());
+                }
             });
         } finally {
             initialRunning.set(false);
@@ -93,6 +125,7 @@ public class AgentsRunner {
         if (homeDir == null) {
             return false;
         }
+        CompletableFuture<AgentEndpoint> ready = nextReadiness();
         try {
             int port = getAvailablePort();
             List<String> commands = createCommand(BinaryManager.INSTANCE.getBinaryPath(homeDir), port);
@@ -114,22 +147,23 @@ public class AgentsRunner {
             LOG.info("工作目录: " + homeDir.getAbsolutePath());
             LOG.info("环境变量PATH: " + env.get("PATH"));
 
+            long startTime = System.currentTimeMillis();
             Process process = builder.start();
+            long pid = process.pid();
 
             new Thread(() -> {
                 try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
                     String line;
                     while ((line = reader.readLine()) != null) {
                         LOG.info("Agent输出: " + line);
-                        if (StringUtils.contains(line, "Server is listening on port")) {
-                            LOG.warn("监听到Agent启动成功, 将触发刷新操作...");
-                            triggerRefresh();
+                        if (StringUtils.contains(line, READY_LINE)) {
+                            ready.complete(new AgentEndpoint(port, pid));
                         }
                     }
                 } catch (IOException e) {
                     LOG.warn("读取进程输出异常", e);
                 }
-            }).start();
+            }, "DevPilot-Agent-Stdout").start();
 
             new Thread(() -> {
                 try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
@@ -140,30 +174,105 @@ public class AgentsRunner {
                 } catch (IOException e) {
                     LOG.warn("读取进程错误输出异常", e);
                 }
-            }).start();
-
-            boolean aliveFlag = process.isAlive();
-            if (aliveFlag) {
-                try {
-                    Thread.sleep(2000);
-                    aliveFlag = process.isAlive();
-                    if (!aliveFlag) {
-                        LOG.warn("进程启动后立即退出，可能存在兼容性问题");
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+            }, "DevPilot-Agent-Stderr").start();
+
+            process.onExit().thenAccept(p -> {
+                IllegalStateException exited = new IllegalStateException("Agent exited with code " + p.exitValue() + ".");
+                ready.completeExceptionally(exited);
+                // later callers must not be handed the endpoint of a dead agent
+                if (readiness == ready) {
+                    readiness = CompletableFuture.failedFuture(exited);
                 }
-                long pid = NumberUtils.LONG_ZERO;
-                try {
-                    pid = process.pid();
-                } catch (Exception e) {
-                    LOG.warn("Error occurred while getting pid from process.", e);
+            });
+
+            // fallback for agents that do not print the ready line
+            ScheduledFuture<?> healthProbe = executorService.scheduleWithFixedDelay(() -> {
+                if (isHealthy(port)) {
+                    ready.complete(new AgentEndpoint(port, pid));
                 }
-                writeInfoFile(homeDir, ProcessUtils.findDevPilotAgentPidList(pid), port);
+            }, HEALTH_POLL_INTERVAL_MILLIS, HEALTH_POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+            try {
+                AgentEndpoint endpoint = ready.get(READY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                LOG.warn("Agent已就绪: " + endpoint + ", 耗时: " + (System.currentTimeMillis() - startTime) + "ms");
+            } catch (TimeoutException e) {
+                if (!process.isAlive()) {
+                    return false;
+                }
+                LOG.warn("Agent在" + READY_TIMEOUT_MILLIS + "ms内未就绪, 继续使用端口: " + port);
+                ready.completeExceptionally(e);
+            } catch (ExecutionException e) {
+                LOG.warn("进程启动后立即退出，可能存在兼容性问题: " + e.getCause().getMessage());
+                return false;
+            } finally {
+                healthProbe.cancel(false);
             }
-            return aliveFlag;
+
+            AgentSupervisor.INSTANCE.attach(process, port);
+            writeInfoFile(homeDir, ProcessUtils.findDevPilotAgentPidList(pid), port);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ready.completeExceptionally(e);
+            return false;
         } catch (Exception e) {
             LOG.warn("Failed to run DevPilot-Agents.", e);
+            ready.completeExceptionally(e);
+            return false;
+        }
+    }
+
+    /**
+     * Wait for the agent started by this plugin to become ready, including the first start after plugin start.
+     *
+     * @param timeoutMillis how long to wait when a start is in progress, 0 to only check
+     * @return the ready endpoint, or null if no agent is known to be ready within the timeout
+     */
+    public AgentEndpoint awaitEndpoint(long timeoutMillis) {
+        CompletableFuture<AgentEndpoint> current = readiness;
+        if (current.isDone() || timeoutMillis <= 0) {
+            return current.isDone() && !current.isCompletedExceptionally() ? current.getNow(null) : null;
+        }
+
+        try {
+            return current.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether an agent is being started and has neither become ready nor failed yet.
+     */
+    public boolean isStarting() {
+        return !readiness.isDone();
+    }
+
+    /**
+     * The future the next start completes. A pending one is kept, callers already waiting on it are handed the
+     * agent this start brings up.
+     */
+    private CompletableFuture<AgentEndpoint> nextReadiness() {
+        CompletableFuture<AgentEndpoint> current = readiness;
+        if (current.isDone()) {
+            current = new CompletableFuture<>();
+            readiness = current;
+        }
+        return current;
+    }
+
+    private void failReadiness(String reason) {
+        readiness.completeExceptionally(new IllegalStateException(reason));
+    }
+
+    private boolean isHealthy(int port) {
+        Request request = new Request.Builder().url("http://localhost:" + port + "/health").get().build();
+        try (Response response = healthProbeClient.newCall(request).execute()) {
+            return response.isSuccessful();
+        } catch (IOException e) {
             return false;
         }
     }
@@ -1,5 +1,7 @@
 package com.zhongan.devpilot.agents;
 
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
@@ -68,6 +70,9 @@ public class BinaryManager {
 
     private static final int BUFFER_SIZE = 8192;
 
+    // how long a request off the EDT waits for an agent that is still starting
+    private static final long AGENT_READY_WAIT_MILLIS = 5000;
+
     private static final String AARCH64 = "aarch64";
 
     private static final String ARCH_ = "_";
@@ -116,6 +121,11 @@ public class BinaryManager {
     }
 
     public boolean currentPortAvailable() {
+        // a start in progress is bounded by its own readiness deadline, restarting it meanwhile only delays it
+        if (AgentsRunner.INSTANCE.isStarting()) {
+            return true;
+        }
+
         Pair<Integer, Long> integerLongPair = retrieveAlivePort();
         if (integerLongPair == null) {
             return false;
@@ -356,6 +366,14 @@ public class BinaryManager {
     }
 
     public Pair<Integer, Long> retrieveAlivePort() {
+        // a start in progress is awaited instead of failing the request, but never on the EDT
+        Application application = ApplicationManager.getApplication();
+        boolean canWait = application != null && !application.isDispatchThread();
+        AgentEndpoint endpoint = AgentsRunner.INSTANCE.awaitEndpoint(canWait ? AGENT_READY_WAIT_MILLIS : 0);
+        if (endpoint != null && AgentSupervisor.INSTANCE.isAlive(endpoint)) {
+            return Pair.create(endpoint.getPort(), endpoint.getPid());
+        }
+
         File homeDir = getHomeDir();
         if (homeDir != null) {
             File infoFile = new File(homeDir, getIdeInfoPath());
@@ -419,7 +437,7 @@ public class BinaryManager {
     private void killProcessAndDeleteInfoFile(Long pid, boolean needDel) {
         if (pid > 0L && ProcessUtils.isProcessAlive(pid)) {
             LOG.info(String.format("Try to kill %d.", pid));
-            ProcessUtils.killProcess(pid);
+            AgentSupervisor.INSTANCE.destroy(pid);
         }
         if (needDel) {
             this.deleteInfoFile();
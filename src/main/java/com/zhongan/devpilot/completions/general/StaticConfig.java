@@ -3,6 +3,15 @@ package com.zhongan.devpilot.completions.general;
 public class StaticConfig {
     public static final int MAX_COMPLETIONS = 5;
 
+    // a streamed completion still running after this is cancelled, the candidates shown so far stay
+    public static final int STREAM_COMPLETION_TIMEOUT_MILLIS = 15000;
+
+    // chat completion waits this long for the local recall of related code, then goes on with what has arrived
+    public static final int RELATED_FILE_DEADLINE_MILLIS = 300;
+
+    // related code found for a region is reused for this long
+    public static final int RELATED_CODE_CACHE_TTL_MILLIS = 5 * 60 * 1000;
+
     // 100 KB
     public static final int DEFALUT_MAX_OFFSET = 100000;
 
@@ -15,6 +24,28 @@ public class StaticConfig {
     //2500
     public static final int SUFFIX_MAX_OFFSET = 2500;
 
+    // token budget of prefix, related code and suffix sent for a completion, the char windows above only bound the input
+    public static final int COMPLETION_CONTEXT_TOKENS = 6144;
+
+    // percent of the completion budget guaranteed to each part
+    public static final int PREFIX_TOKEN_SHARE = 65;
+
+    public static final int RELATED_TOKEN_SHARE = 25;
+
+    public static final int SUFFIX_TOKEN_SHARE = 10;
+
+    // tokens left for the answer when a chat request is fitted into GPT_35_TOKEN_MAX_LENGTH
+    public static final int CHAT_RESPONSE_RESERVED_TOKENS = 4096;
+
+    // percent of the chat budget guaranteed to related context, history gets the rest
+    public static final int CHAT_RELATED_TOKEN_SHARE = 40;
+
+    // chat history above this is compacted into a memory message plus the recent turns
+    public static final int HISTORY_COMPACTION_THRESHOLD_TOKENS = 8192;
+
+    // tokens kept from each turn folded into the memory message
+    public static final int COMPACTED_MESSAGE_TOKENS = 48;
+
     // 200 B
     public static final int MIN_OFFSET = 200;
 
@@ -39,6 +39,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import static com.zhongan.devpilot.completions.CompletionUtils.createSimpleDevpilotCompletion;
+import static com.zhongan.devpilot.completions.general.DependencyContainer.singletonOfInlineCompletionHandler;
 import static com.zhongan.devpilot.completions.inline.CompletionPreviewUtils.shouldRemoveSuffix;
 
 public class CompletionPreview implements Disposable {
@@ -113,15 +114,47 @@ public class CompletionPreview implements Disposable {
         }
     }
 
-/*  public void togglePreview(CompletionOrder order) {
-    int nextIndex = currentIndex + order.diff();
-    currentIndex = (completions.size() + nextIndex) % completions.size();
+    /**
+     * Show the next (step 1) or previous (step -1) candidate.
+     */
+    public DevPilotCompletion togglePreview(int step) {
+        if (completions.size() < 2) {
+            return getCurrentCompletion();
+        }
+        currentIndex = Math.floorMod(currentIndex + step, completions.size());
+        return rerender();
+    }
+
+    /**
+     * Replace the candidates while they are still streaming in. The candidate on screen stays selected, and the
+     * inlay is only rendered again when its text changed.
+     */
+    public DevPilotCompletion updateCompletions(List<DevPilotCompletion> updated) {
+        if (updated.isEmpty()) {
+            return getCurrentCompletion();
+        }
+
+        DevPilotCompletion shown = getCurrentCompletion();
+        int index = 0;
+        for (int i = 0; i < updated.size(); i++) {
+            if (updated.get(i).index == shown.index) {
+                index = i;
+                break;
+            }
+        }
+        completions = updated;
+        currentIndex = index;
 
-    Disposer.dispose(devPilotInlay);
-    devPilotInlay = DevPilotInlay.create(this);
+        DevPilotCompletion current = getCurrentCompletion();
+        if (current.index == shown.index && Objects.equals(current.getSuffix(), shown.getSuffix())) {
+            return current;
+        }
+        return rerender();
+    }
 
-    createPreview();
-  }*/
+    public int getCompletionCount() {
+        return completions.size();
+    }
 
     public DevPilotCompletion getCurrentCompletion() {
         return completions.get(currentIndex);
@@ -145,6 +178,12 @@ public class CompletionPreview implements Disposable {
         }
     }
 
+    private DevPilotCompletion rerender() {
+        Disposer.dispose(devPilotInlay);
+        devPilotInlay = DevPilotInlay.create(this);
+        return createPreview();
+    }
+
     public void dispose() {
         editor.putUserData(INLINE_COMPLETION_PREVIEW, null);
     }
@@ -205,6 +244,7 @@ public class CompletionPreview implements Disposable {
         });
 
         TelemetryUtils.completionAccept(completion.id, file, completion.getUnacceptedLines());
+        singletonOfInlineCompletionHandler().prefetchAfterAcceptance(editor);
     }
 
     public void applyPreviewByLine(@Nullable Caret caret) {
@@ -257,6 +297,10 @@ public class CompletionPreview implements Disposable {
             getAutoImportHandler(editor, fileAfterCompletion, startOffset, endOffset).invoke();
         });
         TelemetryUtils.completionAccept(completion.id, file, StringUtils.isEmpty(line) ? "EMPTY_LINE" : line);
+        if (completion.getLineStateItems().getIndex() >= completion.getLineStateItems().getLineStates().size()) {
+            // the last line is in, chain the next completion as if the whole suggestion had been accepted
+            singletonOfInlineCompletionHandler().prefetchAfterAcceptance(editor);
+        }
     }
 
     public void continuePreview() {
@@ -10,8 +10,11 @@ import com.intellij.openapi.editor.EditorKind;
 import com.intellij.openapi.editor.event.BulkAwareDocumentListener;
 import com.intellij.openapi.editor.event.DocumentEvent;
 import com.intellij.openapi.wm.IdeFocusManager;
+import com.zhongan.devpilot.actions.editor.inlay.ChatShortcutPresentationCache;
 import com.zhongan.devpilot.completions.general.EditorUtils;
+import com.zhongan.devpilot.completions.prediction.CompletionEdtTimer;
 import com.zhongan.devpilot.completions.prediction.DevPilotCompletion;
+import com.zhongan.devpilot.completions.sync.DocumentSyncManager;
 import com.zhongan.devpilot.settings.state.CompletionSettingsState;
 
 import java.awt.Component;
@@ -48,6 +51,12 @@ public class DevPilotDocumentListener implements BulkAwareDocumentListener {
 
     @Override
     public void documentChangedNonBulk(@NotNull DocumentEvent event) {
+        CompletionEdtTimer.measure(CompletionEdtTimer.Section.CHANGE, () -> handleChange(event));
+    }
+
+    private void handleChange(@NotNull DocumentEvent event) {
+        DocumentSyncManager.INSTANCE.documentChanged(event);
+        ChatShortcutPresentationCache.documentChanged(event);
         if (!CompletionSettingsState.getInstance().getEnable()) {
             return;
         }
@@ -91,6 +100,12 @@ public class DevPilotDocumentListener implements BulkAwareDocumentListener {
 
     }
 
+    @Override
+    public void bulkUpdateFinished(@NotNull Document document) {
+        DocumentSyncManager.INSTANCE.invalidate(document);
+        ChatShortcutPresentationCache.invalidate(document);
+    }
+
     private CompletionUtils.VerifyResult shouldIgnoreChange(
             DocumentEvent event, Editor editor, int offset, DevPilotCompletion lastShownCompletion) {
         Document document = event.getDocument();
@@ -5,23 +5,30 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.TextRange;
 import com.intellij.util.ObjectUtils;
 import com.zhongan.devpilot.completions.CompletionUtils;
 import com.zhongan.devpilot.completions.general.CompletionKind;
 import com.zhongan.devpilot.completions.general.SuggestionTrigger;
 import com.zhongan.devpilot.completions.general.Utils;
 import com.zhongan.devpilot.completions.inline.render.GraphicsUtils;
+import com.zhongan.devpilot.completions.prediction.CompletionEdtTimer;
 import com.zhongan.devpilot.completions.prediction.CompletionFacade;
+import com.zhongan.devpilot.completions.prediction.CompletionSnapshot;
 import com.zhongan.devpilot.completions.prediction.DevPilotCompletion;
 import com.zhongan.devpilot.completions.requests.AutocompleteResponse;
 import com.zhongan.devpilot.enums.CompletionTypeEnum;
 import com.zhongan.devpilot.listener.DevPilotLineIconListener;
+import com.zhongan.devpilot.settings.state.CompletionSettingsState;
 
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -30,6 +37,9 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class InlineCompletionHandler {
+    // type of the last requested completion, a prefetch after its acceptance asks for the same kind
+    private static final Key<String> LAST_COMPLETION_TYPE = Key.create("DEVPILOT_LAST_COMPLETION_TYPE");
+
     private final CompletionFacade completionFacade;
 
     private Future<?> lastDebounceRenderTask = null;
@@ -53,10 +63,12 @@ public class InlineCompletionHandler {
         String completionType,
         DevPilotLineIconListener.DevPilotGutterIconRenderer gutterIconRenderer) {
         Integer tabSize = GraphicsUtils.getTabSize(editor);
+        editor.putUserData(LAST_COMPLETION_TYPE, completionType);
 
         ObjectUtils.doIfNotNull(lastFetchInBackgroundTask, task -> task.cancel(false));
         ObjectUtils.doIfNotNull(lastFetchAndRenderTask, task -> task.cancel(false));
-        ObjectUtils.doIfNotNull(lastDebounceRenderTask, task -> task.cancel(false));
+        // interrupting a debounce task that is streaming cancels its stream
+        ObjectUtils.doIfNotNull(lastDebounceRenderTask, task -> task.cancel(true));
 
         List<DevPilotCompletion> cachedCompletions =
             InlineCompletionCache.INSTANCE.retrieveAdjustedCompletions(editor, userInput);
@@ -69,15 +81,80 @@ public class InlineCompletionHandler {
 
         ApplicationManager.getApplication()
             .invokeLater(
-                () ->
-                    renderNewCompletions(
+                () -> CompletionEdtTimer.measure(
+                    CompletionEdtTimer.Section.REQUEST,
+                    () -> renderNewCompletions(
                         editor,
                         tabSize,
-                        getCurrentEditorOffset(editor, userInput),
-                        editor.getDocument().getModificationStamp(),
+                        CompletionSnapshot.capture(editor, getCurrentEditorOffset(editor, userInput)),
                         completionAdjustment,
                         completionType,
-                        gutterIconRenderer));
+                        gutterIconRenderer)));
+    }
+
+    /**
+     * Speculatively fetch the completion for the caret position right after a suggestion was accepted, instead of
+     * waiting for the next document event and its debounce. The request keeps the type of the accepted completion.
+     * The result is stored in the inline cache as long as the line before the accepted position is unchanged, so
+     * typing along it is served from there, and it is shown at once unless another suggestion is already displayed.
+     */
+    public void prefetchAfterAcceptance(@NotNull Editor editor) {
+        if (!CompletionSettingsState.getInstance().getEnable() || editor.getCaretModel().getCaretCount() > 1) {
+            return;
+        }
+
+        CompletionSnapshot snapshot = CompletionSnapshot.capture(editor, editor.getCaretModel().getOffset());
+        Integer tabSize = GraphicsUtils.getTabSize(editor);
+        String completionType = ObjectUtils.notNull(
+            editor.getUserData(LAST_COMPLETION_TYPE), CompletionTypeEnum.INLINE.getType());
+
+        ObjectUtils.doIfNotNull(lastFetchInBackgroundTask, task -> task.cancel(false));
+        lastFetchInBackgroundTask =
+            Utils.executeThread(
+                () -> {
+                    // a single blocking candidate is enough for a guess, the stream is kept for real triggers
+                    List<DevPilotCompletion> completions = retrieveInlineCompletion(
+                        editor, snapshot, tabSize, new DefaultCompletionAdjustment(), completionType, null);
+                    if (completions.isEmpty()) {
+                        return;
+                    }
+                    int offset = snapshot.getOffset();
+                    String expectedPrefix = snapshot.getText(offset - snapshot.getCharacter(), offset);
+                    ApplicationManager.getApplication()
+                        .invokeLater(() -> CompletionEdtTimer.measure(
+                            CompletionEdtTimer.Section.RENDER,
+                            () -> storePrefetchedCompletions(editor, completions, offset, expectedPrefix)));
+                });
+    }
+
+    private void storePrefetchedCompletions(
+        @NotNull Editor editor,
+        List<DevPilotCompletion> completions,
+        int offset,
+        String expectedPrefix) {
+        if (editor.isDisposed()) {
+            return;
+        }
+
+        // the completions only apply while the line still leads to the accepted position
+        Document document = editor.getDocument();
+        int lineStart = offset - expectedPrefix.length();
+        int caret = editor.getCaretModel().getOffset();
+        if (offset > document.getTextLength() || caret < offset
+                || !expectedPrefix.equals(document.getText(new TextRange(lineStart, offset)))) {
+            return;
+        }
+        String typed = document.getText(new TextRange(offset, caret));
+        if (typed.contains("\n")) {
+            return;
+        }
+
+        InlineCompletionCache.store(editor, completions);
+        if (CompletionPreview.getInstance(editor) != null) {
+            return;
+        }
+        List<DevPilotCompletion> adjusted = InlineCompletionCache.INSTANCE.retrieveAdjustedCompletions(editor, typed);
+        showInlineCompletion(editor, adjusted, caret, (completion) -> afterCompletionShown(completion, editor));
     }
 
     private void renderCachedCompletions(
@@ -88,9 +165,10 @@ public class InlineCompletionHandler {
         @NotNull CompletionAdjustment completionAdjustment,
         String completionType) {
         showInlineCompletion(editor, cachedCompletions, offset, null);
+        CompletionSnapshot snapshot = CompletionSnapshot.capture(editor, offset);
         lastFetchInBackgroundTask =
             Utils.executeThread(
-                () -> retrieveInlineCompletion(editor, offset, tabSize, completionAdjustment, completionType, null));
+                () -> retrieveInlineCompletion(editor, snapshot, tabSize, completionAdjustment, completionType, null));
     }
 
     private int getCurrentEditorOffset(@NotNull Editor editor, @NotNull String userInput) {
@@ -101,8 +179,7 @@ public class InlineCompletionHandler {
     private void renderNewCompletions(
         @NotNull Editor editor,
         Integer tabSize,
-        int offset,
-        long modificationStamp,
+        @NotNull CompletionSnapshot snapshot,
         @NotNull CompletionAdjustment completionAdjustment,
         String completionType,
         DevPilotLineIconListener.DevPilotGutterIconRenderer gutterIconRenderer) {
@@ -115,7 +192,7 @@ public class InlineCompletionHandler {
                         debounceTimeMs = logAndGetEmptySuggestionsDebounceMillis();
                     }
                     refetchCompletionsAfterDebounce(
-                        editor, tabSize, offset, modificationStamp, completionAdjustment, debounceTimeMs, completionType, gutterIconRenderer);
+                        editor, tabSize, snapshot, completionAdjustment, debounceTimeMs, completionType, gutterIconRenderer);
                 });
     }
 
@@ -131,8 +208,7 @@ public class InlineCompletionHandler {
     private void refetchCompletionsAfterDebounce(
         @NotNull Editor editor,
         Integer tabSize,
-        int offset,
-        long modificationStamp,
+        @NotNull CompletionSnapshot snapshot,
         @NotNull CompletionAdjustment completionAdjustment,
         long debounceTime,
         String completionType,
@@ -142,15 +218,86 @@ public class InlineCompletionHandler {
                 () -> {
                     CompletionAdjustment cachedOnlyCompletionAdjustment =
                         completionAdjustment.withCachedOnly();
+                    if (!StringUtils.equalsIgnoreCase(CompletionTypeEnum.CHAT_COMPLETION.getType(), completionType)
+                            && streamInlineCompletion(
+                                editor, snapshot, tabSize, cachedOnlyCompletionAdjustment, completionType, gutterIconRenderer)) {
+                        return;
+                    }
                     List<DevPilotCompletion> completions =
-                        retrieveInlineCompletion(editor, offset, tabSize, cachedOnlyCompletionAdjustment, completionType, gutterIconRenderer);
+                        retrieveInlineCompletion(editor, snapshot, tabSize, cachedOnlyCompletionAdjustment, completionType, gutterIconRenderer);
                     rerenderCompletion(
-                        editor, completions, offset, modificationStamp, cachedOnlyCompletionAdjustment);
+                        editor, completions, snapshot.getOffset(), snapshot.getModificationStamp(), cachedOnlyCompletionAdjustment);
                 },
                 debounceTime,
                 TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Render the candidates while they stream in. Chunks that arrive while a render is pending only replace what
+     * that render will show, so the EDT handles at most one update at a time whatever the rate of the stream.
+     *
+     * @return false when no stream could be opened
+     */
+    private boolean streamInlineCompletion(
+        @NotNull Editor editor,
+        @NotNull CompletionSnapshot snapshot,
+        Integer tabSize,
+        @NotNull CompletionAdjustment completionAdjustment,
+        String completionType,
+        DevPilotLineIconListener.DevPilotGutterIconRenderer gutterIconRenderer) {
+        AtomicReference<List<DevPilotCompletion>> latest = new AtomicReference<>();
+        AtomicBoolean renderPending = new AtomicBoolean(false);
+        AtomicReference<CompletionPreview> shownPreview = new AtomicReference<>();
+        int offset = snapshot.getOffset();
+        long modificationStamp = snapshot.getModificationStamp();
+
+        return this.completionFacade.streamCompletions(
+            editor, snapshot, tabSize, completionAdjustment, completionType, gutterIconRenderer,
+            response -> {
+                List<DevPilotCompletion> completions = createCompletions(
+                    editor, response, editor.getDocument(), offset, completionAdjustment.getSuggestionTrigger());
+                if (completions.isEmpty()) {
+                    return;
+                }
+                latest.set(completions);
+                if (!renderPending.compareAndSet(false, true)) {
+                    return;
+                }
+
+                ApplicationManager.getApplication()
+                    .invokeLater(
+                        () -> {
+                            renderPending.set(false);
+                            if (shouldCancelRendering(editor, modificationStamp, offset)) {
+                                return;
+                            }
+                            CompletionEdtTimer.measure(
+                                CompletionEdtTimer.Section.RENDER,
+                                () -> updateInlineCompletion(editor, latest.get(), offset, shownPreview));
+                        });
+            });
+    }
+
+    private void updateInlineCompletion(
+        @NotNull Editor editor,
+        List<DevPilotCompletion> completions,
+        int offset,
+        AtomicReference<CompletionPreview> shownPreview) {
+        CompletionPreview preview = CompletionPreview.getInstance(editor);
+        if (preview != null && preview == shownPreview.get()) {
+            InlineCompletionCache.INSTANCE.store(editor, completions);
+            preview.updateCompletions(completions);
+            return;
+        }
+
+        showInlineCompletion(
+            editor,
+            completions,
+            offset,
+            (completion) -> afterCompletionShown(completion, editor));
+        shownPreview.set(CompletionPreview.getInstance(editor));
+    }
+
     private void rerenderCompletion(
         @NotNull Editor editor,
         List<DevPilotCompletion> completions,
@@ -166,11 +313,13 @@ public class InlineCompletionHandler {
 /*                            if (shouldRemovePopupCompletions(completionAdjustment)) {
                                 completions.removeIf(completion -> !completion.isSnippet());
                             }*/
-                    showInlineCompletion(
-                        editor,
-                        completions,
-                        offset,
-                        (completion) -> afterCompletionShown(completion, editor));
+                    CompletionEdtTimer.measure(
+                        CompletionEdtTimer.Section.RENDER,
+                        () -> showInlineCompletion(
+                            editor,
+                            completions,
+                            offset,
+                            (completion) -> afterCompletionShown(completion, editor)));
                 });
     }
 
@@ -187,13 +336,13 @@ public class InlineCompletionHandler {
 
     private List<DevPilotCompletion> retrieveInlineCompletion(
         @NotNull Editor editor,
-        int offset,
+        @NotNull CompletionSnapshot snapshot,
         Integer tabSize,
         @NotNull CompletionAdjustment completionAdjustment,
         String completionType,
         DevPilotLineIconListener.DevPilotGutterIconRenderer gutterIconRenderer) {
         AutocompleteResponse completionsResponse =
-            this.completionFacade.retrieveCompletions(editor, offset, tabSize, completionAdjustment, completionType, gutterIconRenderer);
+            this.completionFacade.retrieveCompletions(editor, snapshot, tabSize, completionAdjustment, completionType, gutterIconRenderer);
 
         if (completionsResponse == null || completionsResponse.results.length == 0) {
             return Collections.emptyList();
@@ -203,7 +352,7 @@ public class InlineCompletionHandler {
             editor,
             completionsResponse,
             editor.getDocument(),
-            offset,
+            snapshot.getOffset(),
             completionAdjustment.getSuggestionTrigger());
     }
 
@@ -0,0 +1,34 @@
+package com.zhongan.devpilot.completions.inline;
+
+import com.intellij.codeInsight.hint.HintManagerImpl.ActionToIgnore;
+import com.intellij.openapi.actionSystem.DataContext;
+import com.intellij.openapi.editor.Caret;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.actionSystem.EditorAction;
+import com.intellij.openapi.editor.actionSystem.EditorActionHandler;
+
+public class ShowNextDevPilotInlineCompletionAction extends EditorAction implements ActionToIgnore, InlineCompletionAction {
+
+    public static final String ACTION_ID = "ShowNextDevPilotInlineCompletionAction";
+
+    public ShowNextDevPilotInlineCompletionAction() {
+        super(new ShowNextInlineCompletionHandler());
+    }
+
+    private static class ShowNextInlineCompletionHandler extends EditorActionHandler {
+
+        @Override
+        protected void doExecute(Editor editor, Caret caret, DataContext dataContext) {
+            CompletionPreview preview = CompletionPreview.getInstance(editor);
+            if (preview != null) {
+                preview.togglePreview(1);
+            }
+        }
+
+        @Override
+        protected boolean isEnabledForCaret(Editor editor, Caret caret, DataContext dataContext) {
+            CompletionPreview preview = CompletionPreview.getInstance(editor);
+            return preview != null && preview.getCompletionCount() > 1;
+        }
+    }
+}
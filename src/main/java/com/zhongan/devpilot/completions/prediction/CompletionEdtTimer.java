@@ -0,0 +1,53 @@
+package com.zhongan.devpilot.completions.prediction;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time the completion pipeline spends on the EDT, per section, from the document event to the rendered suggestion.
+ * A summary of each section is logged every {@code REPORT_INTERVAL} runs.
+ */
+public final class CompletionEdtTimer {
+    private static final Logger LOG = Logger.getInstance(CompletionEdtTimer.class);
+
+    private static final int REPORT_INTERVAL = 100;
+
+    public enum Section {
+        // document listener: sync bookkeeping, trigger checks, cached suggestions
+        CHANGE,
+        // snapshot capture and scheduling of the request
+        REQUEST,
+        // showing or updating a fetched suggestion
+        RENDER;
+
+        private final AtomicLong runs = new AtomicLong();
+
+        private final AtomicLong nanos = new AtomicLong();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+    }
+
+    private CompletionEdtTimer() {
+    }
+
+    public static void measure(Section section, Runnable runnable) {
+        long start = System.nanoTime();
+        try {
+            runnable.run();
+        } finally {
+            record(section, System.nanoTime() - start);
+        }
+    }
+
+    public static void record(Section section, long nanos) {
+        long runs = section.runs.incrementAndGet();
+        long total = section.nanos.addAndGet(nanos);
+        long max = section.maxNanos.accumulateAndGet(nanos, Math::max);
+        if (runs % REPORT_INTERVAL == 0) {
+            LOG.info(String.format("Completion EDT time of %s over %d runs: avg %d us, max %d us.", section, runs,
+                    TimeUnit.NANOSECONDS.toMicros(total / runs), TimeUnit.NANOSECONDS.toMicros(max)));
+        }
+    }
+}
@@ -1,11 +1,9 @@
 package com.zhongan.devpilot.completions.prediction;
 
-import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
-import com.intellij.openapi.projectRoots.Sdk;
-import com.intellij.openapi.roots.ProjectRootManager;
-import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.io.FileUtilRt;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.ObjectUtils;
@@ -14,30 +12,48 @@ import com.zhongan.devpilot.completions.inline.CompletionAdjustment;
 import com.zhongan.devpilot.completions.requests.AutocompleteRequest;
 import com.zhongan.devpilot.completions.requests.AutocompleteResponse;
 import com.zhongan.devpilot.completions.requests.ResultEntry;
+import com.zhongan.devpilot.context.ContextAssembler;
+import com.zhongan.devpilot.context.ContextBudget;
 import com.zhongan.devpilot.enums.CompletionTypeEnum;
 import com.zhongan.devpilot.gui.toolwindows.chat.DevPilotChatToolWindowService;
 import com.zhongan.devpilot.integrations.llms.LlmProviderFactory;
+import com.zhongan.devpilot.integrations.llms.entity.CompletionRelatedCodeInfo;
 import com.zhongan.devpilot.integrations.llms.entity.DevPilotInstructCompletionRequest;
 import com.zhongan.devpilot.listener.DevPilotLineIconListener;
 import com.zhongan.devpilot.statusBar.DevPilotStatusBarBaseWidget;
 import com.zhongan.devpilot.statusBar.status.DevPilotStatusEnum;
+import com.zhongan.devpilot.util.GatewayRequestUtils;
 import com.zhongan.devpilot.util.LanguageUtil;
 import com.zhongan.devpilot.util.LoginUtils;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import okhttp3.sse.EventSource;
+
+import static com.zhongan.devpilot.completions.general.StaticConfig.COMPLETION_CONTEXT_TOKENS;
 import static com.zhongan.devpilot.completions.general.StaticConfig.MAX_COMPLETIONS;
 import static com.zhongan.devpilot.completions.general.StaticConfig.MAX_INSTRUCT_COMPLETION_TOKENS;
 import static com.zhongan.devpilot.completions.general.StaticConfig.PREFIX_MAX_OFFSET;
+import static com.zhongan.devpilot.completions.general.StaticConfig.PREFIX_TOKEN_SHARE;
+import static com.zhongan.devpilot.completions.general.StaticConfig.RELATED_TOKEN_SHARE;
+import static com.zhongan.devpilot.completions.general.StaticConfig.STREAM_COMPLETION_TIMEOUT_MILLIS;
 import static com.zhongan.devpilot.completions.general.StaticConfig.SUFFIX_MAX_OFFSET;
+import static com.zhongan.devpilot.completions.general.StaticConfig.SUFFIX_TOKEN_SHARE;
 
 public class CompletionFacade {
+    private static final Logger LOG = Logger.getInstance(CompletionFacade.class);
+
+    private static final String PREFIX_SECTION = "prefix";
+
+    private static final String RELATED_SECTION = "related";
+
+    private static final String SUFFIX_SECTION = "suffix";
 
     public CompletionFacade() {
     }
@@ -47,18 +63,19 @@ public class CompletionFacade {
         return ObjectUtils.doIfNotNull(file, VirtualFile::getPath);
     }
 
+    /**
+     * Blocking completion for the given snapshot, to be called off the EDT.
+     */
     @Nullable
     public AutocompleteResponse retrieveCompletions(
         @NotNull Editor editor,
-        int offset,
+        @NotNull CompletionSnapshot snapshot,
         @Nullable Integer tabSize,
         @Nullable CompletionAdjustment completionAdjustment,
         String completionType,
         DevPilotLineIconListener.DevPilotGutterIconRenderer gutterIconRenderer) {
         try {
-            String filename =
-                getFilename(FileDocumentManager.getInstance().getFile(editor.getDocument()));
-            return retrieveCompletions(editor, offset, filename, tabSize, completionAdjustment, completionType, gutterIconRenderer);
+            return doRetrieveCompletions(editor, snapshot, tabSize, completionAdjustment, completionType, gutterIconRenderer);
         } catch (Exception e) {
             DevPilotStatusBarBaseWidget.update(editor.getProject(), LoginUtils.isLogin() ? DevPilotStatusEnum.LoggedIn : DevPilotStatusEnum.NotLoggedIn);
             return null;
@@ -66,49 +83,129 @@ public class CompletionFacade {
     }
 
     @Nullable
-    private AutocompleteResponse retrieveCompletions(
+    private AutocompleteResponse doRetrieveCompletions(
         @NotNull Editor editor,
-        int offset,
-        @Nullable String filename,
+        @NotNull CompletionSnapshot snapshot,
         @Nullable Integer tabSize,
         @Nullable CompletionAdjustment completionAdjustment,
         String completionType,
         DevPilotLineIconListener.DevPilotGutterIconRenderer gutterIconRenderer) {
-        Document document = editor.getDocument();
+        DevPilotInstructCompletionRequest request =
+            buildInstructRequest(editor, snapshot, tabSize, completionAdjustment, completionType);
+        final var response = LlmProviderFactory.INSTANCE.getLlmProvider(editor.getProject()).instructCompletion(request);
+        finishCompletion(editor, gutterIconRenderer);
+        if (response == null) {
+            return null;
+        }
+
+        ResultEntry resultEntry = new ResultEntry();
+        resultEntry.id = response.getId();
+        resultEntry.newPrefix = response.getContent();
+        resultEntry.oldSuffix = "";
+        resultEntry.newSuffix = "";
+        return toAutocompleteResponse(new ResultEntry[] {resultEntry}, completionAdjustment);
+    }
+
+    /**
+     * Streaming variant of {@link #retrieveCompletions}. Up to MAX_COMPLETIONS candidates are requested and each
+     * time one of them grows, onUpdate receives all the candidates received so far, so the first suggestion can be
+     * shown long before the others are finished. Blocks until the stream ends, interrupting the calling thread
+     * cancels the stream.
+     *
+     * @return false when no stream could be opened or it ended without any candidate, for example on an error
+     *         response, the caller should fall back to {@link #retrieveCompletions}
+     */
+    public boolean streamCompletions(
+        @NotNull Editor editor,
+        @NotNull CompletionSnapshot snapshot,
+        @Nullable Integer tabSize,
+        @Nullable CompletionAdjustment completionAdjustment,
+        String completionType,
+        DevPilotLineIconListener.DevPilotGutterIconRenderer gutterIconRenderer,
+        @NotNull Consumer<AutocompleteResponse> onUpdate) {
+        CompletionStream stream = new CompletionStream(
+            resultEntries -> onUpdate.accept(toAutocompleteResponse(resultEntries, completionAdjustment)));
+        EventSource eventSource;
+        try {
+            DevPilotInstructCompletionRequest request =
+                buildInstructRequest(editor, snapshot, tabSize, completionAdjustment, completionType);
+            request.setN(MAX_COMPLETIONS);
+            eventSource = LlmProviderFactory.INSTANCE.getLlmProvider(editor.getProject()).instructCompletionStream(request, stream);
+        } catch (Exception e) {
+            LOG.warn("Start completion stream failed: " + e.getMessage());
+            eventSource = null;
+        }
 
+        if (eventSource == null) {
+            finishCompletion(editor, gutterIconRenderer);
+            return false;
+        }
+
+        try {
+            if (!stream.await(STREAM_COMPLETION_TIMEOUT_MILLIS)) {
+                eventSource.cancel();
+            }
+        } catch (InterruptedException e) {
+            // the completion is no longer wanted, no fallback either
+            eventSource.cancel();
+            Thread.currentThread().interrupt();
+            return true;
+        } finally {
+            finishCompletion(editor, gutterIconRenderer);
+        }
+        return stream.hasCandidates();
+    }
+
+    /**
+     * Background step of a completion: everything is derived from the snapshot, the editor is only carried along.
+     */
+    private DevPilotInstructCompletionRequest buildInstructRequest(
+        @NotNull Editor editor,
+        @NotNull CompletionSnapshot snapshot,
+        @Nullable Integer tabSize,
+        @Nullable CompletionAdjustment completionAdjustment,
+        String completionType) {
+        if (ApplicationManager.getApplication().isDispatchThread()) {
+            LOG.warn("Completion request built on the EDT, only the snapshot should be taken there.");
+        }
+
+        int offset = snapshot.getOffset();
+        String filename = snapshot.getFilename();
         int begin = Integer.max(0, offset - PREFIX_MAX_OFFSET);
-        int end = Integer.min(document.getTextLength(), offset + SUFFIX_MAX_OFFSET);
+        int end = Integer.min(snapshot.getTextLength(), offset + SUFFIX_MAX_OFFSET);
         AutocompleteRequest req = new AutocompleteRequest();
-        req.before = document.getText(new TextRange(begin, offset));
-        req.after = document.getText(new TextRange(offset, end));
+        req.before = snapshot.getText(begin, offset);
+        req.after = snapshot.getText(offset, end);
         req.filename = filename;
         req.maxResults = MAX_COMPLETIONS;
         req.regionIncludesBeginning = (begin == 0);
-        req.regionIncludesEnd = (end == document.getTextLength());
+        req.regionIncludesEnd = (end == snapshot.getTextLength());
         req.offset = offset;
-        req.line = document.getLineNumber(offset);
-        req.character = offset - document.getLineStartOffset(req.line);
+        req.line = snapshot.getLine();
+        req.character = snapshot.getCharacter();
         req.indentationSize = tabSize;
-        req.sdkPath = getSdkPath(editor);
+        req.sdkPath = "java".equals(snapshot.getExtension()) ? SdkPathCache.INSTANCE.get(snapshot.getProject()) : null;
 
         if (completionAdjustment != null) {
             completionAdjustment.adjustRequest(req);
         }
 
         DevPilotInstructCompletionRequest request = new DevPilotInstructCompletionRequest();
-        request.setPrompt(req.before);
-        request.setSuffix(req.after);
+        request.setDocumentLength(snapshot.getTextLength());
+        request.setDocumentHash(GatewayRequestUtils.contentHash(snapshot.getDocument(), snapshot.getModificationStamp(), snapshot.getText()));
+        request.setDocumentVersion(snapshot.getDocumentVersion());
         request.setMaxTokens(MAX_INSTRUCT_COMPLETION_TOKENS);
 
         DevPilotStatusBarBaseWidget.update(editor.getProject(), DevPilotStatusEnum.InCompletion);
 
+        List<CompletionRelatedCodeInfo> relatedFiles = null;
         // chat completion的话提前走需求整理
         if (CompletionTypeEnum.CHAT_COMPLETION.getType().equalsIgnoreCase(completionType)) {
             // code predict
             var project = editor.getProject();
             if (project != null && filename != null) {
                 var service = project.getService(DevPilotChatToolWindowService.class);
-                var doc = document.getText(new TextRange(begin, end));
+                var doc = snapshot.getText(begin, end);
                 var extension = FileUtilRt.getExtension(filename);
                 var language = LanguageUtil.getLanguageByExtension(extension);
                 var lan = DevPilotVersion.getDefaultLanguage();
@@ -116,16 +213,35 @@ public class CompletionFacade {
                     lan = language.getLanguageName().toLowerCase();
                 }
 
-                var relatedFiles = service.buildCompletionRelatedFile(filename, doc, offset, lan);
-
-                if (relatedFiles != null && !relatedFiles.isEmpty()) {
-                    request.setRelatedCodeInfos(relatedFiles);
-                }
+                relatedFiles = service.buildCompletionRelatedFile(filename, doc, offset, lan);
             }
         }
 
+        ContextBudget contextBudget = assembleContext(req, relatedFiles);
+        String prompt = contextBudget.getText(PREFIX_SECTION);
+        String suffix = contextBudget.getText(SUFFIX_SECTION);
+        request.setPrompt(prompt);
+        request.setSuffix(suffix);
+        // only the window travels to the agent, the hash tells it whether its copy of the rest is current. The
+        // window bounds are document offsets, they only hold while prompt and suffix are cut exactly around offset,
+        // otherwise the whole document is sent
+        if (StringUtils.endsWith(req.before, prompt) && StringUtils.startsWith(req.after, suffix)) {
+            request.setWindowStart(offset - StringUtils.length(prompt));
+        } else {
+            LOG.warn("Completion window does not match the document, send the whole document.");
+            request.setWindowStart(-1);
+        }
+        List<CompletionRelatedCodeInfo> relatedCodeInfos = new ArrayList<>();
+        for (ContextAssembler.Candidate candidate : contextBudget.getCandidates(RELATED_SECTION)) {
+            relatedCodeInfos.add(toRelatedCodeInfo(relatedFiles, candidate));
+        }
+        if (!relatedCodeInfos.isEmpty()) {
+            request.setRelatedCodeInfos(relatedCodeInfos);
+        }
+
         request.setOffset(offset);
         request.setEditor(editor);
+        request.setSnapshot(snapshot);
         if (!StringUtils.isEmpty(completionType)) {
             // chat completion场景默认是comment
             if (CompletionTypeEnum.CHAT_COMPLETION.getType().equalsIgnoreCase(completionType)) {
@@ -134,24 +250,20 @@ public class CompletionFacade {
                 request.setCompletionType(completionType);
             }
         }
-        final var response = LlmProviderFactory.INSTANCE.getLlmProvider(editor.getProject()).instructCompletion(request);
+        return request;
+    }
+
+    private void finishCompletion(Editor editor, DevPilotLineIconListener.DevPilotGutterIconRenderer gutterIconRenderer) {
         DevPilotStatusBarBaseWidget.update(editor.getProject(), LoginUtils.isLogin() ? DevPilotStatusEnum.LoggedIn : DevPilotStatusEnum.NotLoggedIn);
         if (gutterIconRenderer != null) {
             gutterIconRenderer.setLoading(false);
         }
-        if (response == null) {
-            return null;
-        }
+    }
 
+    private static AutocompleteResponse toAutocompleteResponse(ResultEntry[] resultEntries, @Nullable CompletionAdjustment completionAdjustment) {
         AutocompleteResponse autocompleteResponse = new AutocompleteResponse();
         autocompleteResponse.oldPrefix = "";
         autocompleteResponse.userMessage = new String[] {};
-        ResultEntry resultEntry = new ResultEntry();
-        resultEntry.id = response.getId();
-        resultEntry.newPrefix = response.getContent();
-        resultEntry.oldSuffix = "";
-        resultEntry.newSuffix = "";
-        ResultEntry[] resultEntries = new ResultEntry[] {resultEntry};
         autocompleteResponse.results = resultEntries;
 
         if (completionAdjustment != null) {
@@ -160,50 +272,6 @@ public class CompletionFacade {
         return autocompleteResponse;
     }
 
-    private String getSdkPath(Editor editor) {
-        if (editor == null) {
-            return null;
-        }
-
-        VirtualFile virtualFile = FileDocumentManager.getInstance().getFile(editor.getDocument());
-        if (virtualFile == null
-            || virtualFile.getExtension() == null
-            || !"java".equals(virtualFile.getExtension())) {
-            return null;
-        }
-
-        if (editor.getProject() == null) {
-            return null;
-        }
-
-        ProjectRootManager rootManager = ProjectRootManager.getInstance(editor.getProject());
-        if (rootManager == null) {
-            return null;
-        }
-
-        Sdk sdk = rootManager.getProjectSdk();
-        if (sdk == null) {
-            return null;
-        }
-
-        if (!sdk.getSdkType().isLocalSdk(sdk)) {
-            return null;
-        }
-
-        String homePath = sdk.getHomePath();
-
-        if (!isValidJavaHome(homePath)) {
-            return null;
-        }
-
-        return homePath;
-    }
-
-    private boolean isValidJavaHome(String homePath) {
-        Path path = Paths.get(homePath, "bin", "java");
-        return Files.exists(path);
-    }
-
 /*    private int determineTimeoutBy(@NotNull String before) {
         if (!suggestionsModeService.getSuggestionMode().isInlineEnabled()) {
             return COMPLETION_TIME_THRESHOLD;
@@ -227,4 +295,34 @@ public class CompletionFacade {
 
         return virtualFile.getExtension();
     }
+
+    private ContextBudget assembleContext(AutocompleteRequest req, List<CompletionRelatedCodeInfo> relatedFiles) {
+        List<ContextAssembler.Candidate> candidates = new ArrayList<>();
+        if (relatedFiles != null) {
+            for (int i = 0; i < relatedFiles.size(); i++) {
+                CompletionRelatedCodeInfo info = relatedFiles.get(i);
+                candidates.add(new ContextAssembler.Candidate(String.valueOf(i), info.getCode(), info.getScore(), true));
+            }
+        }
+
+        ContextBudget contextBudget = new ContextAssembler(COMPLETION_CONTEXT_TOKENS)
+                .text(PREFIX_SECTION, req.before, PREFIX_TOKEN_SHARE, ContextAssembler.Trim.KEEP_TAIL)
+                .candidates(RELATED_SECTION, candidates, RELATED_TOKEN_SHARE, false)
+                .text(SUFFIX_SECTION, req.after, SUFFIX_TOKEN_SHARE, ContextAssembler.Trim.KEEP_HEAD)
+                .assemble();
+        if (contextBudget.isTrimmed()) {
+            LOG.info("Completion context trimmed: " + contextBudget);
+        }
+        return contextBudget;
+    }
+
+    private CompletionRelatedCodeInfo toRelatedCodeInfo(List<CompletionRelatedCodeInfo> relatedFiles, ContextAssembler.Candidate candidate) {
+        CompletionRelatedCodeInfo origin = relatedFiles.get(Integer.parseInt(candidate.getId()));
+        CompletionRelatedCodeInfo info = new CompletionRelatedCodeInfo();
+        info.setScore(origin.getScore());
+        info.setFilePath(origin.getFilePath());
+        info.setCode(candidate.getText());
+        return info;
+    }
+
 }
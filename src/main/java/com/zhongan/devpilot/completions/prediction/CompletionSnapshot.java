@@ -0,0 +1,133 @@
+package com.zhongan.devpilot.completions.prediction;
+
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileTypes.LanguageFileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.zhongan.devpilot.completions.sync.DocumentSyncManager;
+import com.zhongan.devpilot.util.VirtualFileUtil;
+
+/**
+ * What a completion request needs from the editor, captured once on the EDT.
+ * <p>
+ * Capturing is cheap: the text is the immutable char sequence of the document, nothing is copied, and the file
+ * facts are plain lookups. The windows, the hash, the relative path and the SDK path are all derived from the
+ * snapshot on a background thread, so the request describes the document as it was when the completion was
+ * triggered, whatever happens to the document meanwhile.
+ */
+public class CompletionSnapshot {
+    private final Project project;
+
+    private final Document document;
+
+    private final VirtualFile virtualFile;
+
+    private final CharSequence text;
+
+    private final int offset;
+
+    private final int line;
+
+    private final int character;
+
+    private final long modificationStamp;
+
+    private final long documentVersion;
+
+    private final String languageId;
+
+    private volatile String relativePath;
+
+    private CompletionSnapshot(Editor editor, int offset) {
+        this.project = editor.getProject();
+        this.document = editor.getDocument();
+        this.virtualFile = FileDocumentManager.getInstance().getFile(document);
+        this.text = document.getImmutableCharSequence();
+        this.offset = Math.max(0, Math.min(offset, text.length()));
+        this.line = document.getLineNumber(this.offset);
+        this.character = this.offset - document.getLineStartOffset(line);
+        this.modificationStamp = document.getModificationStamp();
+        this.documentVersion = DocumentSyncManager.INSTANCE.currentVersion(document);
+        this.languageId = virtualFile != null && virtualFile.getFileType() instanceof LanguageFileType
+                ? ((LanguageFileType) virtualFile.getFileType()).getLanguage().getID() : null;
+    }
+
+    /**
+     * Take the snapshot, on the EDT when possible. Elsewhere it is taken in a read action.
+     */
+    public static CompletionSnapshot capture(Editor editor, int offset) {
+        Application application = ApplicationManager.getApplication();
+        if (!application.isDispatchThread()) {
+            return application.runReadAction((Computable<CompletionSnapshot>) () -> new CompletionSnapshot(editor, offset));
+        }
+        return new CompletionSnapshot(editor, offset);
+    }
+
+    public Project getProject() {
+        return project;
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+
+    public CharSequence getText() {
+        return text;
+    }
+
+    public String getText(int start, int end) {
+        return text.subSequence(start, end).toString();
+    }
+
+    public int getTextLength() {
+        return text.length();
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getCharacter() {
+        return character;
+    }
+
+    public long getModificationStamp() {
+        return modificationStamp;
+    }
+
+    public long getDocumentVersion() {
+        return documentVersion;
+    }
+
+    public String getLanguageId() {
+        return languageId;
+    }
+
+    public String getFilename() {
+        return CompletionFacade.getFilename(virtualFile);
+    }
+
+    public String getExtension() {
+        return virtualFile == null ? null : virtualFile.getExtension();
+    }
+
+    /**
+     * Path relative to the vcs or content root, resolved in a read action on first use.
+     */
+    public String getRelativePath() {
+        if (relativePath == null && project != null && virtualFile != null) {
+            relativePath = ApplicationManager.getApplication().runReadAction(
+                    (Computable<String>) () -> VirtualFileUtil.getRelativeFilePath(project, virtualFile));
+        }
+        return relativePath;
+    }
+}
@@ -0,0 +1,91 @@
+package com.zhongan.devpilot.completions.prediction;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.zhongan.devpilot.completions.requests.ResultEntry;
+import com.zhongan.devpilot.integrations.llms.InstructCompletionListener;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.StringUtils;
+
+import static com.zhongan.devpilot.completions.general.StaticConfig.MAX_COMPLETIONS;
+
+/**
+ * Collects the interleaved chunks of the streamed candidates, every update hands out a fresh snapshot so the
+ * renderer never sees a candidate change under it.
+ * <p>
+ * A stream that ends without any text, because it failed or because the agent had nothing to suggest, reports no
+ * candidates, so the caller can fall back to a plain request.
+ */
+class CompletionStream implements InstructCompletionListener {
+    private static final Logger LOG = Logger.getInstance(CompletionStream.class);
+
+    private final Map<Integer, StringBuilder> candidates = new TreeMap<>();
+
+    private final Map<Integer, String> ids = new HashMap<>();
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private final Consumer<ResultEntry[]> onUpdate;
+
+    private boolean received;
+
+    CompletionStream(Consumer<ResultEntry[]> onUpdate) {
+        this.onUpdate = onUpdate;
+    }
+
+    @Override
+    public void onCandidate(int index, String id, String delta, boolean finished) {
+        if (index < 0 || index >= MAX_COMPLETIONS || (StringUtils.isEmpty(delta) && !finished)) {
+            return;
+        }
+
+        ResultEntry[] snapshot;
+        synchronized (this) {
+            candidates.computeIfAbsent(index, k -> new StringBuilder()).append(StringUtils.defaultString(delta));
+            if (id != null) {
+                ids.put(index, id);
+            }
+            received |= StringUtils.isNotEmpty(delta);
+
+            snapshot = new ResultEntry[candidates.size()];
+            int i = 0;
+            for (Map.Entry<Integer, StringBuilder> candidate : candidates.entrySet()) {
+                ResultEntry resultEntry = new ResultEntry();
+                resultEntry.id = ids.get(candidate.getKey());
+                resultEntry.newPrefix = candidate.getValue().toString();
+                resultEntry.oldSuffix = "";
+                resultEntry.newSuffix = "";
+                snapshot[i++] = resultEntry;
+            }
+        }
+        onUpdate.accept(snapshot);
+    }
+
+    @Override
+    public void onComplete() {
+        done.countDown();
+    }
+
+    @Override
+    public void onFailure(String message) {
+        LOG.info("Completion stream ended: " + message);
+        done.countDown();
+    }
+
+    boolean await(long timeoutMillis) throws InterruptedException {
+        return done.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Whether any candidate text arrived, whatever way the stream ended.
+     */
+    synchronized boolean hasCandidates() {
+        return received;
+    }
+}
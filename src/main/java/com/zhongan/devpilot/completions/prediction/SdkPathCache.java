@@ -0,0 +1,62 @@
+package com.zhongan.devpilot.completions.prediction;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.projectRoots.Sdk;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Key;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Home path of the local java SDK of a project, sent with java completions.
+ * <p>
+ * Resolving it goes through the project roots and the file system, so it is done once per project and dropped
+ * when the roots change, see {@link com.zhongan.devpilot.listener.SdkPathRootsListener}.
+ */
+public class SdkPathCache {
+    public static final SdkPathCache INSTANCE = new SdkPathCache();
+
+    private static final Key<String> SDK_PATH = Key.create("DEVPILOT_COMPLETION_SDK_PATH");
+
+    // cached for projects without a usable sdk, so that they are not probed again
+    private static final String NO_SDK = "";
+
+    private SdkPathCache() {
+    }
+
+    public String get(Project project) {
+        if (project == null || project.isDisposed()) {
+            return null;
+        }
+
+        String sdkPath = project.getUserData(SDK_PATH);
+        if (sdkPath == null) {
+            sdkPath = StringUtils.defaultString(resolve(project), NO_SDK);
+            project.putUserData(SDK_PATH, sdkPath);
+        }
+        return StringUtils.isEmpty(sdkPath) ? null : sdkPath;
+    }
+
+    public void invalidate(Project project) {
+        project.putUserData(SDK_PATH, null);
+    }
+
+    private String resolve(Project project) {
+        Sdk sdk = ApplicationManager.getApplication().runReadAction(
+                (Computable<Sdk>) () -> ProjectRootManager.getInstance(project).getProjectSdk());
+        if (sdk == null || !sdk.getSdkType().isLocalSdk(sdk)) {
+            return null;
+        }
+
+        String homePath = sdk.getHomePath();
+        if (homePath == null || !Files.exists(Paths.get(homePath, "bin", "java"))) {
+            return null;
+        }
+        return homePath;
+    }
+}
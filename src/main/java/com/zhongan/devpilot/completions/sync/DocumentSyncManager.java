@@ -0,0 +1,324 @@
+package com.zhongan.devpilot.completions.sync;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Pair;
+import com.zhongan.devpilot.util.JsonUtils;
+import com.zhongan.devpilot.util.LoginUtils;
+import com.zhongan.devpilot.util.OkhttpUtils;
+import com.zhongan.devpilot.util.UserAgentUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import static com.zhongan.devpilot.constant.DefaultConst.AGENT_DOCUMENT_CHANGE;
+import static com.zhongan.devpilot.constant.DefaultConst.AGENT_DOCUMENT_CLOSE;
+import static com.zhongan.devpilot.constant.DefaultConst.AGENT_DOCUMENT_OPEN;
+import static com.zhongan.devpilot.constant.DefaultConst.REMOTE_RAG_DEFAULT_HOST;
+
+/**
+ * Keeps the agent's copy of the documents used for completion in sync, so that completion requests only carry
+ * the cursor position and the document version.
+ * <p>
+ * A document is opened on the agent with a full snapshot the first time it is completed. From then on the edits
+ * reported by {@link com.zhongan.devpilot.completions.inline.DevPilotDocumentListener} are queued with increasing
+ * versions and flushed as one didChange-style request right before the next completion. Any doubt about the
+ * agent's copy (bulk update, too many queued edits, agent restart, failed or rejected request) falls back to a new
+ * snapshot; agents without these endpoints disable the protocol and keep receiving windowed documents. Once no
+ * editor shows the document anymore it is closed on the agent, which drops its copy.
+ */
+public class DocumentSyncManager {
+    private static final Logger LOG = Logger.getInstance(DocumentSyncManager.class);
+
+    public static final DocumentSyncManager INSTANCE = new DocumentSyncManager();
+
+    private static final Key<SyncState> DOCUMENT_SYNC_STATE = Key.create("DEVPILOT_DOCUMENT_SYNC_STATE");
+
+    // beyond this a snapshot is cheaper than replaying the edits
+    private static final int MAX_PENDING_EDITS = 256;
+
+    private static final int MAX_PENDING_CHARS = 16 * 1024;
+
+    private static final int HTTP_NOT_FOUND = 404;
+
+    private static final int HTTP_CONFLICT = 409;
+
+    private volatile int unsupportedPort = -1;
+
+    private DocumentSyncManager() {
+    }
+
+    /**
+     * Record an edit of a document that has been opened on the agent, called on the EDT for every change.
+     */
+    public void documentChanged(@NotNull DocumentEvent event) {
+        SyncState state = event.getDocument().getUserData(DOCUMENT_SYNC_STATE);
+        if (state != null) {
+            state.record(event.getOffset(), event.getOldLength(), event.getNewFragment().toString());
+        }
+    }
+
+    /**
+     * The document changed in a way that was not reported edit by edit, the agent needs a new snapshot.
+     */
+    public void invalidate(Document document) {
+        SyncState state = document.getUserData(DOCUMENT_SYNC_STATE);
+        if (state != null) {
+            state.invalidate();
+        }
+    }
+
+    /**
+     * The document is not shown in any editor anymore, the agent can drop its copy. It is opened again with a new
+     * snapshot if it is completed later.
+     */
+    public void close(Document document) {
+        SyncState state = document.getUserData(DOCUMENT_SYNC_STATE);
+        if (state == null) {
+            return;
+        }
+        document.putUserData(DOCUMENT_SYNC_STATE, null);
+        state.invalidate();
+
+        int port = state.port;
+        String filePath = state.filePath;
+        if (port < 0 || port == unsupportedPort || filePath == null) {
+            return;
+        }
+
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            try {
+                post(port, AGENT_DOCUMENT_CLOSE, JsonUtils.toJson(Map.of("filePath", filePath)));
+            } catch (Exception e) {
+                LOG.info("Failed to close document " + filePath + " on agent: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Version the completion request should refer to, taken together with its cursor offset.
+     */
+    public long currentVersion(Document document) {
+        SyncState state = document.getUserData(DOCUMENT_SYNC_STATE);
+        return state == null ? 0 : state.getVersion();
+    }
+
+    /**
+     * Bring the agent's copy of the document up to the given version.
+     *
+     * @return whether the agent holds exactly that version, the caller must send the document otherwise
+     */
+    public boolean sync(int port, Document document, String filePath, long version) {
+        if (port == unsupportedPort || filePath == null) {
+            return false;
+        }
+
+        SyncState state = document.getUserData(DOCUMENT_SYNC_STATE);
+        if (state == null) {
+            state = document.putUserDataIfAbsent(DOCUMENT_SYNC_STATE, new SyncState());
+        }
+
+        synchronized (state) {
+            try {
+                if (state.needsSnapshot(port, filePath)) {
+                    return open(port, document, filePath, state) && state.syncedVersion == version;
+                }
+                if (version < state.syncedVersion) {
+                    // the agent is already ahead of this request
+                    return false;
+                }
+
+                List<TextEdit> edits = state.takeEdits(version);
+                if (edits.isEmpty()) {
+                    return state.syncedVersion == version;
+                }
+
+                int code = post(port, AGENT_DOCUMENT_CHANGE, changeBody(filePath, state.syncedVersion, version, edits));
+                if (code == HTTP_CONFLICT) {
+                    LOG.info("Agent rejected edits of " + filePath + " at version " + version + ", send a snapshot.");
+                    return open(port, document, filePath, state) && state.syncedVersion == version;
+                }
+                if (code != 200) {
+                    state.invalidate();
+                    return false;
+                }
+                state.syncedVersion = version;
+                return true;
+            } catch (Exception e) {
+                LOG.warn("Failed to sync document " + filePath + " with agent: " + e.getMessage());
+                state.invalidate();
+                return false;
+            }
+        }
+    }
+
+    private boolean open(int port, Document document, String filePath, SyncState state) throws Exception {
+        // edits are recorded inside the write action, so a read action sees the text and its version together
+        Pair<String, Long> snapshot = ApplicationManager.getApplication().runReadAction(
+                (Computable<Pair<String, Long>>) () -> state.startSnapshot(document));
+        String text = snapshot.first;
+        long version = snapshot.second;
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("filePath", filePath);
+        body.put("version", version);
+        body.put("text", text);
+        int code = post(port, AGENT_DOCUMENT_OPEN, JsonUtils.toJson(body));
+        if (code == HTTP_NOT_FOUND) {
+            LOG.info("Agent on port " + port + " does not support document sync, keep sending documents.");
+            unsupportedPort = port;
+            return false;
+        }
+        if (code != 200) {
+            state.invalidate();
+            return false;
+        }
+
+        state.port = port;
+        state.filePath = filePath;
+        state.syncedVersion = version;
+        return true;
+    }
+
+    private String changeBody(String filePath, long baseVersion, long version, List<TextEdit> edits) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("filePath", filePath);
+        body.put("baseVersion", baseVersion);
+        body.put("version", version);
+        body.put("edits", edits);
+        return JsonUtils.toJson(body);
+    }
+
+    private int post(int port, String path, String body) throws Exception {
+        var request = new Request.Builder()
+                .url(REMOTE_RAG_DEFAULT_HOST + port + path)
+                .header("User-Agent", UserAgentUtils.buildUserAgent())
+                .header("Auth-Type", LoginUtils.getLoginType())
+                .post(RequestBody.create(body, MediaType.parse("application/json")))
+                .build();
+        try (Response response = OkhttpUtils.getClient().newCall(request).execute()) {
+            return response.code();
+        }
+    }
+
+    public static class TextEdit {
+        private final long version;
+
+        private final int offset;
+
+        private final int oldLength;
+
+        private final String text;
+
+        TextEdit(long version, int offset, int oldLength, String text) {
+            this.version = version;
+            this.offset = offset;
+            this.oldLength = oldLength;
+            this.text = text;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getOldLength() {
+            return oldLength;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+
+    private static class SyncState {
+        // guards version and the queued edits, written on the EDT and drained by the completion thread
+        private final List<TextEdit> edits = new ArrayList<>();
+
+        private long version;
+
+        private int pendingChars;
+
+        private volatile boolean snapshotNeeded = true;
+
+        // below are only written while holding the state itself
+        private long syncedVersion = -1;
+
+        private volatile int port = -1;
+
+        private volatile String filePath;
+
+        void record(int offset, int oldLength, String text) {
+            synchronized (edits) {
+                version++;
+                if (snapshotNeeded) {
+                    return;
+                }
+                edits.add(new TextEdit(version, offset, oldLength, text));
+                pendingChars += text.length();
+                if (edits.size() > MAX_PENDING_EDITS || pendingChars > MAX_PENDING_CHARS) {
+                    invalidate();
+                }
+            }
+        }
+
+        /**
+         * Take the text for a new snapshot, edits made after it are queued again from now on.
+         */
+        Pair<String, Long> startSnapshot(Document document) {
+            synchronized (edits) {
+                edits.clear();
+                pendingChars = 0;
+                snapshotNeeded = false;
+                return Pair.create(document.getImmutableCharSequence().toString(), version);
+            }
+        }
+
+        void invalidate() {
+            synchronized (edits) {
+                snapshotNeeded = true;
+                edits.clear();
+                pendingChars = 0;
+            }
+        }
+
+        long getVersion() {
+            synchronized (edits) {
+                return version;
+            }
+        }
+
+        boolean needsSnapshot(int port, String filePath) {
+            // a restarted agent or a renamed file does not know the document anymore
+            return snapshotNeeded || this.port != port || !filePath.equals(this.filePath);
+        }
+
+        List<TextEdit> takeEdits(long upToVersion) {
+            synchronized (edits) {
+                List<TextEdit> taken = new ArrayList<>();
+                while (!edits.isEmpty() && edits.get(0).getVersion() <= upToVersion) {
+                    TextEdit edit = edits.remove(0);
+                    pendingChars -= edit.getText().length();
+                    taken.add(edit);
+                }
+                return taken;
+            }
+        }
+    }
+}
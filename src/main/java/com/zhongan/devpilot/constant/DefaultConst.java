@@ -51,6 +51,8 @@ public class DefaultConst {
 
     public static final String DEEP_THINKING_CANCEL_PATH = "/deepThinking/cancel";
 
+    public static final String DEEP_THINKING_SNAPSHOT_PATH = "/deepThinking/snapshot";
+
     public static final String EVENT_BUS_PATH = "/event";
 
     public static final String SSE_PATH = "/sse";
@@ -69,6 +71,12 @@ public class DefaultConst {
 
     public static final String AGENT_INSTRUCT_COMPLETION = "/instruct-completion";
 
+    public static final String AGENT_DOCUMENT_OPEN = "/document/open";
+
+    public static final String AGENT_DOCUMENT_CHANGE = "/document/change";
+
+    public static final String AGENT_DOCUMENT_CLOSE = "/document/close";
+
     public static final String FEEDBACK_URL = OFFICIAL_WEBSITE_URL + "/feedback";
 
     public static final String PROFILE_URL = OFFICIAL_WEBSITE_URL + "/profile";
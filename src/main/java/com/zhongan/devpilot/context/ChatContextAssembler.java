@@ -0,0 +1,148 @@
+package com.zhongan.devpilot.context;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.zhongan.devpilot.integrations.llms.entity.DevPilotMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.zhongan.devpilot.completions.general.StaticConfig.CHAT_RELATED_TOKEN_SHARE;
+import static com.zhongan.devpilot.completions.general.StaticConfig.CHAT_RESPONSE_RESERVED_TOKENS;
+import static com.zhongan.devpilot.constant.DefaultConst.GPT_35_TOKEN_MAX_LENGTH;
+
+/**
+ * Fits the messages of a chat request into the model context.
+ * <p>
+ * The last message is the current question and is always sent. Its related context blocks are ranked and trimmed
+ * within their share, and the history is kept from the most recent turn backwards as far as the budget allows,
+ * instead of sending everything and failing with "context length is too long".
+ */
+public class ChatContextAssembler {
+    private static final Logger LOG = Logger.getInstance(ChatContextAssembler.class);
+
+    public static final ChatContextAssembler INSTANCE = new ChatContextAssembler();
+
+    public static final String RELATED_CONTEXT = "relatedContext";
+
+    public static final String ADDITIONAL_RELATED_CONTEXT = "additionalRelatedContext";
+
+    private static final String CURRENT_SECTION = "current";
+
+    private static final String RELATED_SECTION = "related";
+
+    private static final String HISTORY_SECTION = "history";
+
+    // local recall is closer to the question than the remote one
+    private static final double RELATED_CONTEXT_SCORE = 1.0d;
+
+    private static final double ADDITIONAL_RELATED_CONTEXT_SCORE = 0.5d;
+
+    private ChatContextAssembler() {
+    }
+
+    public List<DevPilotMessage> fit(List<DevPilotMessage> messages) {
+        return fit(messages, -1);
+    }
+
+    /**
+     * @param messages    copied request messages, the last one being the current question; they are not modified
+     * @param knownTokens token total of the messages when already known, e.g. the running session total, or -1
+     * @return the messages to send
+     */
+    public List<DevPilotMessage> fit(List<DevPilotMessage> messages, int knownTokens) {
+        if (messages == null || messages.isEmpty()) {
+            return messages;
+        }
+
+        int budgetTokens = GPT_35_TOKEN_MAX_LENGTH - CHAT_RESPONSE_RESERVED_TOKENS;
+        if (knownTokens < 0) {
+            knownTokens = 0;
+            for (DevPilotMessage message : messages) {
+                knownTokens += MessageTokenCounter.INSTANCE.count(message);
+            }
+        }
+        if (knownTokens <= budgetTokens) {
+            return messages;
+        }
+
+        int last = messages.size() - 1;
+        DevPilotMessage current = messages.get(last);
+
+        List<ContextAssembler.Candidate> related = new ArrayList<>();
+        int currentTokens = MessageTokenCounter.INSTANCE.count(current.getContent());
+        if (current.getPromptData() != null) {
+            for (Map.Entry<String, String> entry : current.getPromptData().entrySet()) {
+                if (RELATED_CONTEXT.equals(entry.getKey())) {
+                    related.add(new ContextAssembler.Candidate(entry.getKey(), entry.getValue(), RELATED_CONTEXT_SCORE, true,
+                            MessageTokenCounter.INSTANCE.count(entry.getValue())));
+                } else if (ADDITIONAL_RELATED_CONTEXT.equals(entry.getKey())) {
+                    related.add(new ContextAssembler.Candidate(entry.getKey(), entry.getValue(), ADDITIONAL_RELATED_CONTEXT_SCORE, true,
+                            MessageTokenCounter.INSTANCE.count(entry.getValue())));
+                } else {
+                    currentTokens += MessageTokenCounter.INSTANCE.count(entry.getValue());
+                }
+            }
+        }
+
+        // a turn is a question with its replies, it is kept or dropped as a whole so that the cut always lands on a
+        // turn boundary; newer turns rank higher
+        List<ContextAssembler.Candidate> history = new ArrayList<>();
+        int turnStart = 0;
+        for (int i = 1; i <= last; i++) {
+            if (i == last || "user".equals(messages.get(i).getRole())) {
+                history.add(turn(messages, turnStart, i));
+                turnStart = i;
+            }
+        }
+
+        ContextBudget budget = new ContextAssembler(budgetTokens)
+                .fixed(CURRENT_SECTION, currentTokens)
+                .candidates(RELATED_SECTION, related, CHAT_RELATED_TOKEN_SHARE, false)
+                .candidates(HISTORY_SECTION, history, 100 - CHAT_RELATED_TOKEN_SHARE, true)
+                .assemble();
+
+        if (!budget.isTrimmed()) {
+            return messages;
+        }
+        LOG.info("Chat context trimmed: " + budget);
+
+        List<DevPilotMessage> result = new ArrayList<>();
+        for (ContextAssembler.Candidate candidate : budget.getCandidates(HISTORY_SECTION)) {
+            String[] range = candidate.getId().split("-");
+            result.addAll(messages.subList(Integer.parseInt(range[0]), Integer.parseInt(range[1])));
+        }
+        result.add(withRelatedContext(current, budget.getCandidates(RELATED_SECTION)));
+        return result;
+    }
+
+    private ContextAssembler.Candidate turn(List<DevPilotMessage> messages, int from, int to) {
+        int tokens = 0;
+        for (int i = from; i < to; i++) {
+            tokens += MessageTokenCounter.INSTANCE.count(messages.get(i));
+        }
+        return new ContextAssembler.Candidate(from + "-" + to, messages.get(from).getContent(), from, false, tokens);
+    }
+
+    private DevPilotMessage withRelatedContext(DevPilotMessage current, List<ContextAssembler.Candidate> kept) {
+        if (current.getPromptData() == null) {
+            return current;
+        }
+
+        Map<String, String> promptData = new HashMap<>(current.getPromptData());
+        promptData.remove(RELATED_CONTEXT);
+        promptData.remove(ADDITIONAL_RELATED_CONTEXT);
+        for (ContextAssembler.Candidate candidate : kept) {
+            promptData.put(candidate.getId(), candidate.getText());
+        }
+
+        DevPilotMessage copy = new DevPilotMessage();
+        copy.setId(current.getId());
+        copy.setRole(current.getRole());
+        copy.setCommandType(current.getCommandType());
+        copy.setContent(current.getContent());
+        copy.setPromptData(promptData);
+        return copy;
+    }
+}
@@ -0,0 +1,249 @@
+package com.zhongan.devpilot.context;
+
+import com.zhongan.devpilot.util.TokenUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fits the pieces of a prompt into a token budget.
+ * <p>
+ * Fixed sections are always kept and paid first. Every other section is guaranteed its share (in percent) of what
+ * remains, and the budget a section does not need is handed to the others in the order they were added. Text
+ * sections are trimmed at line boundaries from the side away from the cursor; candidate sections keep the best
+ * scored candidates that fit. The resulting {@link ContextBudget} holds the kept content and the breakdown.
+ */
+public class ContextAssembler {
+
+    public enum Trim {
+        // keep the beginning, e.g. the suffix after the cursor
+        KEEP_HEAD,
+        // keep the end, e.g. the prefix before the cursor
+        KEEP_TAIL
+    }
+
+    // a trimmed candidate shorter than this is not worth sending
+    private static final int MIN_TRIMMED_CANDIDATE_TOKENS = 64;
+
+    private final int budget;
+
+    private final Map<String, Section> sections = new LinkedHashMap<>();
+
+    public ContextAssembler(int budget) {
+        this.budget = budget;
+    }
+
+    public ContextAssembler fixed(String name, String text) {
+        Section section = new Section(name, 0);
+        section.text = text;
+        section.fixed = true;
+        sections.put(name, section);
+        return this;
+    }
+
+    /**
+     * Fixed content that is already counted, e.g. a message that is sent as it is.
+     */
+    public ContextAssembler fixed(String name, int tokens) {
+        Section section = new Section(name, 0);
+        section.fixed = true;
+        section.knownTokens = tokens;
+        sections.put(name, section);
+        return this;
+    }
+
+    public ContextAssembler text(String name, String text, int share, Trim trim) {
+        Section section = new Section(name, share);
+        section.text = text;
+        section.trim = trim;
+        sections.put(name, section);
+        return this;
+    }
+
+    /**
+     * @param contiguous stop at the first candidate that does not fit, for history where gaps make no sense
+     */
+    public ContextAssembler candidates(String name, List<Candidate> candidates, int share, boolean contiguous) {
+        Section section = new Section(name, share);
+        section.candidates = candidates == null ? new ArrayList<>() : candidates;
+        section.contiguous = contiguous;
+        sections.put(name, section);
+        return this;
+    }
+
+    public ContextBudget assemble() {
+        ContextBudget result = new ContextBudget(budget);
+
+        int remaining = budget;
+        for (Section section : sections.values()) {
+            section.requested = section.countRequested();
+            if (section.fixed) {
+                remaining -= section.requested;
+            }
+        }
+        int flexible = Math.max(remaining, 0);
+
+        // guaranteed shares first, then hand what is left over to the sections in order
+        for (Section section : sections.values()) {
+            if (!section.fixed) {
+                section.allocated = Math.min(section.requested, flexible * section.share / 100);
+                remaining -= section.allocated;
+            }
+        }
+        for (Section section : sections.values()) {
+            if (!section.fixed && remaining > 0) {
+                int extra = Math.min(section.requested - section.allocated, remaining);
+                section.allocated += extra;
+                remaining -= extra;
+            }
+        }
+
+        for (Section section : sections.values()) {
+            section.fill(result);
+        }
+        return result;
+    }
+
+    public static class Candidate {
+        private final String id;
+
+        private final String text;
+
+        private final double score;
+
+        private final boolean trimmable;
+
+        private int tokens = -1;
+
+        public Candidate(String id, String text, double score, boolean trimmable) {
+            this.id = id;
+            this.text = text;
+            this.score = score;
+            this.trimmable = trimmable;
+        }
+
+        public Candidate(String id, String text, double score, boolean trimmable, int tokens) {
+            this(id, text, score, trimmable);
+            this.tokens = tokens;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public boolean isTrimmable() {
+            return trimmable;
+        }
+
+        int getTokens() {
+            if (tokens < 0) {
+                tokens = TokenUtils.countTokens(text);
+            }
+            return tokens;
+        }
+    }
+
+    private static class Section {
+        private final String name;
+
+        private final int share;
+
+        private String text;
+
+        private Trim trim;
+
+        private boolean fixed;
+
+        private List<Candidate> candidates;
+
+        private boolean contiguous;
+
+        private int knownTokens = -1;
+
+        private int requested;
+
+        private int allocated;
+
+        Section(String name, int share) {
+            this.name = name;
+            this.share = share;
+        }
+
+        int countRequested() {
+            if (knownTokens >= 0) {
+                return knownTokens;
+            }
+            if (candidates == null) {
+                return TokenUtils.countTokens(text);
+            }
+            int total = 0;
+            for (Candidate candidate : candidates) {
+                total += candidate.getTokens();
+            }
+            return total;
+        }
+
+        void fill(ContextBudget result) {
+            if (fixed) {
+                result.putText(name, text, requested, requested);
+            } else if (candidates == null) {
+                fillText(result);
+            } else {
+                fillCandidates(result);
+            }
+        }
+
+        private void fillText(ContextBudget result) {
+            if (requested <= allocated) {
+                result.putText(name, text, requested, requested);
+                return;
+            }
+            String kept = trim == Trim.KEEP_HEAD
+                    ? TokenUtils.keepHeadTokens(text, allocated)
+                    : TokenUtils.keepTailTokens(text, allocated);
+            result.putText(name, kept, requested, TokenUtils.countTokens(kept));
+        }
+
+        private void fillCandidates(ContextBudget result) {
+            List<Candidate> ranked = new ArrayList<>(candidates);
+            ranked.sort(Comparator.comparingDouble(Candidate::getScore).reversed());
+
+            Map<Candidate, Candidate> kept = new LinkedHashMap<>();
+            int left = allocated;
+            for (Candidate candidate : ranked) {
+                if (candidate.getTokens() <= left) {
+                    kept.put(candidate, candidate);
+                    left -= candidate.getTokens();
+                } else if (candidate.isTrimmable() && left >= MIN_TRIMMED_CANDIDATE_TOKENS) {
+                    String trimmed = TokenUtils.keepHeadTokens(candidate.getText(), left);
+                    Candidate partial = new Candidate(candidate.getId(), trimmed, candidate.getScore(), true);
+                    kept.put(candidate, partial);
+                    left -= partial.getTokens();
+                } else if (contiguous) {
+                    break;
+                }
+            }
+
+            // keep the original order, rank only decides what survives
+            List<Candidate> selected = new ArrayList<>(kept.size());
+            for (Candidate candidate : candidates) {
+                Candidate value = kept.get(candidate);
+                if (value != null) {
+                    selected.add(value);
+                }
+            }
+            result.putCandidates(name, selected, requested, allocated - left, candidates.size() - selected.size());
+        }
+    }
+}
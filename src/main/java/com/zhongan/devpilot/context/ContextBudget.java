@@ -0,0 +1,108 @@
+package com.zhongan.devpilot.context;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of {@link ContextAssembler#assemble()}: the content kept for each section and how the budget was spent.
+ */
+public class ContextBudget {
+
+    private final int budget;
+
+    private final Map<String, String> texts = new LinkedHashMap<>();
+
+    private final Map<String, List<ContextAssembler.Candidate>> candidates = new LinkedHashMap<>();
+
+    private final Map<String, Usage> breakdown = new LinkedHashMap<>();
+
+    ContextBudget(int budget) {
+        this.budget = budget;
+    }
+
+    void putText(String name, String text, int requested, int used) {
+        texts.put(name, text);
+        breakdown.put(name, new Usage(requested, used, requested > used ? 1 : 0));
+    }
+
+    void putCandidates(String name, List<ContextAssembler.Candidate> selected, int requested, int used, int dropped) {
+        candidates.put(name, selected);
+        breakdown.put(name, new Usage(requested, used, dropped));
+    }
+
+    public String getText(String name) {
+        return texts.get(name);
+    }
+
+    public List<ContextAssembler.Candidate> getCandidates(String name) {
+        return candidates.getOrDefault(name, Collections.emptyList());
+    }
+
+    public Map<String, Usage> getBreakdown() {
+        return breakdown;
+    }
+
+    public int getBudget() {
+        return budget;
+    }
+
+    public int getUsed() {
+        int used = 0;
+        for (Usage usage : breakdown.values()) {
+            used += usage.getUsed();
+        }
+        return used;
+    }
+
+    public boolean isTrimmed() {
+        for (Usage usage : breakdown.values()) {
+            if (usage.getUsed() < usage.getRequested()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("ContextBudget{budget=").append(budget).append(", used=").append(getUsed());
+        for (Map.Entry<String, Usage> entry : breakdown.entrySet()) {
+            builder.append(", ").append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return builder.append('}').toString();
+    }
+
+    public static class Usage {
+        private final int requested;
+
+        private final int used;
+
+        // candidates left out, or 1 when a text section was trimmed
+        private final int dropped;
+
+        Usage(int requested, int used, int dropped) {
+            this.requested = requested;
+            this.used = used;
+            this.dropped = dropped;
+        }
+
+        public int getRequested() {
+            return requested;
+        }
+
+        public int getUsed() {
+            return used;
+        }
+
+        public int getDropped() {
+            return dropped;
+        }
+
+        @Override
+        public String toString() {
+            return used + "/" + requested + (dropped > 0 ? " (-" + dropped + ")" : "");
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.zhongan.devpilot.context;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.zhongan.devpilot.integrations.llms.entity.DevPilotMessage;
+import com.zhongan.devpilot.util.TokenUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+import static com.zhongan.devpilot.completions.general.StaticConfig.COMPACTED_MESSAGE_TOKENS;
+import static com.zhongan.devpilot.completions.general.StaticConfig.HISTORY_COMPACTION_THRESHOLD_TOKENS;
+import static com.zhongan.devpilot.constant.DefaultConst.CONVERSATION_WINDOW_LENGTH;
+
+/**
+ * Keeps the request history of long chat sessions bounded.
+ * <p>
+ * Once the history of a session goes over {@code HISTORY_COMPACTION_THRESHOLD_TOKENS}, the last
+ * {@code CONVERSATION_WINDOW_LENGTH} messages are kept verbatim and the older ones are folded into one memory message
+ * holding the beginning of each turn, with code blocks and prompt data left out. The related context blocks of the
+ * kept turns are stale as well and are dropped, except for the current question. The memory is built incrementally
+ * per session, so each call only folds the turns that left the window since the previous one.
+ * <p>
+ * The session itself is never modified, the compacted list shares the kept messages with it.
+ */
+public class HistoryCompactor {
+    private static final Logger LOG = Logger.getInstance(HistoryCompactor.class);
+
+    public static final HistoryCompactor INSTANCE = new HistoryCompactor();
+
+    private static final String MEMORY_HEADER = "Summary of the earlier conversation, code omitted:\n";
+
+    private static final Pattern CODE_BLOCK = Pattern.compile("```[\\s\\S]*?(```|$)");
+
+    private static final int MAX_TRACKED_SESSIONS = 64;
+
+    private static final int MAX_MEMORY_LINES = 64;
+
+    private final Map<String, Memory> memories = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Memory> eldest) {
+            return size() > MAX_TRACKED_SESSIONS;
+        }
+    };
+
+    private HistoryCompactor() {
+    }
+
+    /**
+     * @param sessionId     id of the session the history belongs to
+     * @param history       request history, the last message being the current question
+     * @param historyTokens token total of the history, see {@link MessageTokenCounter#sessionTotal}
+     * @return the history to send, the given list itself when no compaction is needed
+     */
+    public List<DevPilotMessage> compact(String sessionId, List<DevPilotMessage> history, int historyTokens) {
+        if (history == null || historyTokens <= HISTORY_COMPACTION_THRESHOLD_TOKENS || history.size() <= CONVERSATION_WINDOW_LENGTH) {
+            return history;
+        }
+
+        // the kept window starts with a question, a reply without it confuses the model
+        int keepFrom = history.size() - CONVERSATION_WINDOW_LENGTH;
+        while (keepFrom < history.size() - 1 && !"user".equals(history.get(keepFrom).getRole())) {
+            keepFrom++;
+        }
+
+        String memory;
+        synchronized (memories) {
+            memory = memories.computeIfAbsent(sessionId, id -> new Memory()).fold(history, keepFrom);
+        }
+
+        List<DevPilotMessage> compacted = new ArrayList<>(history.size() - keepFrom + 1);
+        compacted.add(memoryMessage(sessionId, memory));
+        for (int i = keepFrom; i < history.size(); i++) {
+            DevPilotMessage message = history.get(i);
+            compacted.add(i == history.size() - 1 ? message : withoutRelatedContext(message));
+        }
+
+        LOG.info(String.format("Compacted session %s: %d messages (%d tokens) folded into memory, %d kept.",
+                sessionId, keepFrom, historyTokens, compacted.size() - 1));
+        return compacted;
+    }
+
+    public void forgetSession(String sessionId) {
+        synchronized (memories) {
+            memories.remove(sessionId);
+        }
+    }
+
+    private DevPilotMessage memoryMessage(String sessionId, String memory) {
+        DevPilotMessage message = new DevPilotMessage();
+        message.setId(sessionId + "-memory");
+        message.setRole("system");
+        message.setContent(memory);
+        return message;
+    }
+
+    private DevPilotMessage withoutRelatedContext(DevPilotMessage message) {
+        Map<String, String> promptData = message.getPromptData();
+        if (promptData == null || (!promptData.containsKey(ChatContextAssembler.RELATED_CONTEXT)
+                && !promptData.containsKey(ChatContextAssembler.ADDITIONAL_RELATED_CONTEXT))) {
+            return message;
+        }
+
+        Map<String, String> trimmed = new HashMap<>(promptData);
+        trimmed.remove(ChatContextAssembler.RELATED_CONTEXT);
+        trimmed.remove(ChatContextAssembler.ADDITIONAL_RELATED_CONTEXT);
+
+        DevPilotMessage copy = new DevPilotMessage();
+        copy.setId(message.getId());
+        copy.setRole(message.getRole());
+        copy.setCommandType(message.getCommandType());
+        copy.setContent(message.getContent());
+        copy.setPromptData(trimmed);
+        return copy;
+    }
+
+    static String elide(DevPilotMessage message) {
+        String content = StringUtils.defaultString(message.getContent());
+        if (StringUtils.isBlank(content) && message.getPromptData() != null) {
+            // prompt messages only carry the selected code and the like
+            content = "(" + StringUtils.defaultString(message.getCommandType(), "prompt") + ")";
+        }
+        content = CODE_BLOCK.matcher(content).replaceAll("[code]");
+        content = StringUtils.normalizeSpace(content);
+        String head = TokenUtils.keepHeadTokens(content, COMPACTED_MESSAGE_TOKENS);
+        return head.length() < content.length() ? head + "..." : head;
+    }
+
+    private static class Memory {
+        // only the latest folded turns are remembered, the memory must stay small itself
+        private final Deque<String> lines = new ArrayDeque<>();
+
+        private int folded;
+
+        private String lastFoldedId;
+
+        String fold(List<DevPilotMessage> history, int foldTo) {
+            boolean continues = folded > 0 && folded <= foldTo
+                    && StringUtils.equals(lastFoldedId, history.get(folded - 1).getId());
+            if (!continues) {
+                lines.clear();
+                folded = 0;
+            }
+
+            for (int i = Math.max(folded, foldTo - MAX_MEMORY_LINES); i < foldTo; i++) {
+                DevPilotMessage message = history.get(i);
+                lines.addLast("- " + message.getRole() + ": " + elide(message) + "\n");
+                if (lines.size() > MAX_MEMORY_LINES) {
+                    lines.removeFirst();
+                }
+            }
+            folded = foldTo;
+            lastFoldedId = foldTo > 0 ? history.get(foldTo - 1).getId() : null;
+            return MEMORY_HEADER + String.join("", lines);
+        }
+    }
+}
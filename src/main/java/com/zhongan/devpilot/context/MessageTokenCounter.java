@@ -0,0 +1,190 @@
+package com.zhongan.devpilot.context;
+
+import com.zhongan.devpilot.integrations.llms.entity.DevPilotMessage;
+import com.zhongan.devpilot.util.TokenUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Token counts of chat messages, cached so that budget checks only encode text that was never seen before.
+ * <p>
+ * Counts are cached by content (length and SHA-256 digest), which covers the copies made for every request and the
+ * promptData values repeated across turns. Streamed answers are recorded from their {@link StreamingTokenCounter}
+ * and never encoded again. The running total of a session only looks at the messages added since the last call.
+ */
+public class MessageTokenCounter {
+
+    public static final MessageTokenCounter INSTANCE = new MessageTokenCounter();
+
+    private static final int MAX_CACHED_CONTENTS = 8192;
+
+    private static final int MAX_TRACKED_SESSIONS = 64;
+
+    private final Map<ContentKey, Integer> contentTokens = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ContentKey, Integer> eldest) {
+            return size() > MAX_CACHED_CONTENTS;
+        }
+    };
+
+    private final Map<String, RunningTotal> sessionTotals = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RunningTotal> eldest) {
+            return size() > MAX_TRACKED_SESSIONS;
+        }
+    };
+
+    private MessageTokenCounter() {
+    }
+
+    /**
+     * Tokens of the content and prompt data of the message.
+     */
+    public int count(DevPilotMessage message) {
+        int tokens = count(message.getContent());
+        if (message.getPromptData() != null) {
+            for (String value : message.getPromptData().values()) {
+                tokens += count(value);
+            }
+        }
+        return tokens;
+    }
+
+    public int count(String content) {
+        if (StringUtils.isEmpty(content)) {
+            return 0;
+        }
+
+        ContentKey key = new ContentKey(content);
+        synchronized (contentTokens) {
+            Integer cached = contentTokens.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        int tokens = TokenUtils.countTokens(content);
+        synchronized (contentTokens) {
+            contentTokens.put(key, tokens);
+        }
+        return tokens;
+    }
+
+    /**
+     * Remember the count of a text that was measured while it was produced.
+     */
+    public void record(String content, int tokens) {
+        if (StringUtils.isEmpty(content)) {
+            return;
+        }
+        synchronized (contentTokens) {
+            contentTokens.put(new ContentKey(content), tokens);
+        }
+    }
+
+    /**
+     * Running token total of the request history of a session.
+     * <p>
+     * The history normally only grows, so only the messages appended since the previous call are counted, plus the
+     * last known one which may still receive prompt data. Anything else (deleted or cleared messages) starts over.
+     */
+    public int sessionTotal(String sessionId, List<DevPilotMessage> history) {
+        if (sessionId == null || history == null) {
+            return 0;
+        }
+
+        synchronized (sessionTotals) {
+            RunningTotal total = sessionTotals.computeIfAbsent(sessionId, id -> new RunningTotal());
+            if (!total.isPrefixOf(history)) {
+                total.reset();
+            }
+
+            // recount the last counted message, then add the new ones
+            int from = Math.max(total.counted - 1, 0);
+            int settled = total.counted == 0 ? 0 : total.settledTokens;
+            for (int i = from; i < history.size() - 1; i++) {
+                settled += count(history.get(i));
+            }
+
+            total.counted = history.size();
+            total.settledTokens = settled;
+            total.lastId = history.isEmpty() ? null : history.get(history.size() - 1).getId();
+            return history.isEmpty() ? settled : settled + count(history.get(history.size() - 1));
+        }
+    }
+
+    public void forgetSession(String sessionId) {
+        synchronized (sessionTotals) {
+            sessionTotals.remove(sessionId);
+        }
+    }
+
+    private static class RunningTotal {
+        // messages seen by the last call
+        private int counted;
+
+        // tokens of all counted messages but the last one
+        private int settledTokens;
+
+        private String lastId;
+
+        boolean isPrefixOf(List<DevPilotMessage> history) {
+            return counted == 0
+                    || (history.size() >= counted && StringUtils.equals(lastId, history.get(counted - 1).getId()));
+        }
+
+        void reset() {
+            counted = 0;
+            settledTokens = 0;
+            lastId = null;
+        }
+    }
+
+    private static class ContentKey {
+        private final int length;
+
+        // a strong digest, colliding contents must not share a count and the text itself is not retained
+        private final byte[] digest;
+
+        private final int hash;
+
+        ContentKey(String content) {
+            this.length = content.length();
+            this.digest = sha256(content);
+            this.hash = Arrays.hashCode(digest);
+        }
+
+        private static byte[] sha256(String content) {
+            try {
+                return MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ContentKey)) {
+                return false;
+            }
+            ContentKey that = (ContentKey) o;
+            return length == that.length && Arrays.equals(digest, that.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.zhongan.devpilot.context;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.zhongan.devpilot.agents.BinaryManager;
+import com.zhongan.devpilot.embedding.RecallHitResolver;
+import com.zhongan.devpilot.embedding.entity.request.EmbeddingQueryRequest;
+import com.zhongan.devpilot.embedding.entity.request.EmbeddingQueryResponse;
+import com.zhongan.devpilot.gui.toolwindows.chat.DevPilotChatToolWindowService;
+import com.zhongan.devpilot.integrations.llms.LlmProviderFactory;
+import com.zhongan.devpilot.integrations.llms.entity.CompletionRelatedCodeInfo;
+import com.zhongan.devpilot.integrations.llms.entity.DevPilotCodePrediction;
+import com.zhongan.devpilot.provider.file.FileAnalyzeProviderFactory;
+import com.zhongan.devpilot.util.GatewayRequestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import static com.zhongan.devpilot.completions.general.StaticConfig.RELATED_CODE_CACHE_TTL_MILLIS;
+import static com.zhongan.devpilot.completions.general.StaticConfig.RELATED_FILE_DEADLINE_MILLIS;
+
+/**
+ * Related code of a chat completion: the code prediction of the region, then the local index recall and the
+ * embedding recall of that prediction, the two recalls running side by side.
+ * <p>
+ * The caller waits for the remote prediction, then at most RELATED_FILE_DEADLINE_MILLIS for the local recalls and
+ * goes on with whatever has arrived. Recalls still running are not cancelled, their results are kept per
+ * (file, region hash) for RELATED_CODE_CACHE_TTL_MILLIS, so triggering again on the same region gets them at once.
+ * Failed, unpredicted and empty retrievals are dropped from the cache to be retried.
+ */
+public class RelatedCodeRetriever {
+    private static final Logger LOG = Logger.getInstance(RelatedCodeRetriever.class);
+
+    private static final int MAX_CACHED_REGIONS = 32;
+
+    private final Project project;
+
+    private final Executor executor = AppExecutorUtil.getAppExecutorService();
+
+    private final Map<String, Retrieval> retrievals = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Retrieval> eldest) {
+            return size() > MAX_CACHED_REGIONS;
+        }
+    };
+
+    public RelatedCodeRetriever(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * @return the related code that arrived before the deadline, local index hits first, or null when the region
+     *         could not be predicted in time
+     */
+    public List<CompletionRelatedCodeInfo> retrieve(String filePath, String document, int position, String language) {
+        String key = filePath + ":" + position + ":" + GatewayRequestUtils.contentHash(document);
+
+        Retrieval retrieval;
+        synchronized (retrievals) {
+            retrieval = retrievals.get(key);
+            if (retrieval == null || retrieval.isExpired()) {
+                retrieval = start(key, filePath, document, position, language);
+                retrievals.put(key, retrieval);
+            }
+        }
+
+        // the remote prediction is bounded by its own request timeout, the deadline is for the local recalls only
+        DevPilotCodePrediction prediction = await(retrieval.prediction, Long.MAX_VALUE, "code prediction");
+        if (prediction == null) {
+            return null;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RELATED_FILE_DEADLINE_MILLIS);
+        List<CompletionRelatedCodeInfo> result = new ArrayList<>();
+        // 本地索引和本地向量库一起返回
+        List<CompletionRelatedCodeInfo> local = await(retrieval.localRecall, deadline, "local recall");
+        if (local != null) {
+            result.addAll(local);
+        }
+        List<CompletionRelatedCodeInfo> embedding = await(retrieval.embeddingRecall, deadline, "embedding recall");
+        if (embedding != null) {
+            result.addAll(embedding);
+        }
+        return result;
+    }
+
+    private Retrieval start(String key, String filePath, String document, int position, String language) {
+        CompletableFuture<DevPilotCodePrediction> prediction = CompletableFuture.supplyAsync(
+                () -> project.getService(DevPilotChatToolWindowService.class)
+                        .completionCodePredict(filePath, document, position, language), executor);
+        Retrieval retrieval = new Retrieval(
+                prediction,
+                prediction.thenApplyAsync(predict -> localRecall(predict, language), executor),
+                prediction.thenApplyAsync(this::embeddingRecall, executor));
+
+        CompletableFuture.allOf(retrieval.localRecall, retrieval.embeddingRecall).whenComplete((ignored, e) -> {
+            if (e != null) {
+                LOG.warn("Related code retrieval failed: " + e.getMessage());
+            }
+            if (e != null || retrieval.isEmpty()) {
+                synchronized (retrievals) {
+                    retrievals.remove(key, retrieval);
+                }
+            }
+        });
+        return retrieval;
+    }
+
+    private List<CompletionRelatedCodeInfo> localRecall(DevPilotCodePrediction predict, String language) {
+        if (predict == null) {
+            return Collections.emptyList();
+        }
+
+        // 本地索引召回
+        List<CompletionRelatedCodeInfo> result = new ArrayList<>();
+        ApplicationManager.getApplication().runReadAction(() -> {
+            var list = FileAnalyzeProviderFactory.getProvider(language).callLocalRag(project, predict);
+            for (var element : list) {
+                var info = new CompletionRelatedCodeInfo();
+                info.setScore(1.0d);
+                info.setFilePath(element.getContainingFile().getName());
+                info.setCode(element.getText());
+                result.add(info);
+            }
+        });
+        return result;
+    }
+
+    private List<CompletionRelatedCodeInfo> embeddingRecall(DevPilotCodePrediction predict) {
+        if (predict == null || StringUtils.isEmpty(predict.getComments())) {
+            return Collections.emptyList();
+        }
+
+        // 本地向量库召回
+        var embeddingRequest = new EmbeddingQueryRequest();
+        embeddingRequest.setProjectName(project.getBasePath());
+        embeddingRequest.setHomeDir(BinaryManager.INSTANCE.getHomeDir().getAbsolutePath());
+        embeddingRequest.setContent(predict.getComments());
+
+        var embeddingResponse = LlmProviderFactory.INSTANCE.getLlmProvider(project).embeddingQuery(embeddingRequest);
+        if (embeddingResponse == null) {
+            return Collections.emptyList();
+        }
+
+        List<CompletionRelatedCodeInfo> result = new ArrayList<>();
+        var resolver = new RecallHitResolver(project);
+        for (EmbeddingQueryResponse.HitData hitData : embeddingResponse.getHitsData()) {
+            var code = resolver.resolve(hitData);
+            if (code == null) {
+                continue;
+            }
+            var info = new CompletionRelatedCodeInfo();
+            info.setScore(Double.parseDouble(hitData.getScore()));
+            info.setFilePath(hitData.getFilePath());
+            info.setCode(code);
+            result.add(info);
+        }
+        return result;
+    }
+
+    private <T> T await(CompletableFuture<T> future, long deadline, String stage) {
+        try {
+            if (deadline == Long.MAX_VALUE) {
+                return future.get();
+            }
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            LOG.info("Skip " + stage + ", not ready before the deadline.");
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static class Retrieval {
+        private final CompletableFuture<DevPilotCodePrediction> prediction;
+
+        private final CompletableFuture<List<CompletionRelatedCodeInfo>> localRecall;
+
+        private final CompletableFuture<List<CompletionRelatedCodeInfo>> embeddingRecall;
+
+        private final long startedNanos = System.nanoTime();
+
+        Retrieval(CompletableFuture<DevPilotCodePrediction> prediction,
+                  CompletableFuture<List<CompletionRelatedCodeInfo>> localRecall,
+                  CompletableFuture<List<CompletionRelatedCodeInfo>> embeddingRecall) {
+            this.prediction = prediction;
+            this.localRecall = localRecall;
+            this.embeddingRecall = embeddingRecall;
+        }
+
+        boolean isExpired() {
+            // the code base moves on, a recall of the same region may find other code by now
+            return System.nanoTime() - startedNanos > TimeUnit.MILLISECONDS.toNanos(RELATED_CODE_CACHE_TTL_MILLIS);
+        }
+
+        /**
+         * Whether the completed retrieval found nothing worth keeping.
+         */
+        boolean isEmpty() {
+            List<CompletionRelatedCodeInfo> none = Collections.emptyList();
+            return prediction.getNow(null) == null
+                    || (localRecall.getNow(none).isEmpty() && embeddingRecall.getNow(none).isEmpty());
+        }
+    }
+}
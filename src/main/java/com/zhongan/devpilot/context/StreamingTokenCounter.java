@@ -0,0 +1,42 @@
+package com.zhongan.devpilot.context;
+
+import com.zhongan.devpilot.util.TokenUtils;
+
+/**
+ * Counts the tokens of a text that arrives in chunks, encoding each part only once.
+ * <p>
+ * The tokenizer never merges across a line break followed by a non whitespace character, so the text before such a
+ * boundary can be counted once and for all. Only the current line is recounted when more text arrives.
+ */
+public class StreamingTokenCounter {
+
+    private final StringBuilder pending = new StringBuilder();
+
+    private int settledTokens;
+
+    public void append(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return;
+        }
+
+        int searchFrom = Math.max(pending.length(), 1);
+        pending.append(chunk);
+
+        int boundary = -1;
+        for (int i = pending.length() - 1; i >= searchFrom; i--) {
+            if (pending.charAt(i - 1) == '\n' && !Character.isWhitespace(pending.charAt(i))) {
+                boundary = i;
+                break;
+            }
+        }
+
+        if (boundary > 0) {
+            settledTokens += TokenUtils.countTokens(pending.substring(0, boundary));
+            pending.delete(0, boundary);
+        }
+    }
+
+    public int getTokens() {
+        return settledTokens + TokenUtils.countTokens(pending.toString());
+    }
+}
@@ -0,0 +1,107 @@
+package com.zhongan.devpilot.embedding;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.zhongan.devpilot.embedding.entity.request.EmbeddingQueryResponse;
+import com.zhongan.devpilot.util.MD5Utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Reads the code blocks of embedding recall hits, for the duration of one request.
+ * <p>
+ * Each file is loaded once however many hits it has: through the immutable text of its document when the
+ * document is loaded and saved, otherwise through {@link LoadTextUtil}, without building PSI or copying the
+ * whole file into a string. Only the blocks themselves are copied. A file whose content no longer matches the
+ * hash it was indexed with is skipped, its offsets would point at the wrong code.
+ */
+public class RecallHitResolver {
+    private static final Logger LOG = Logger.getInstance(RecallHitResolver.class);
+
+    private final Project project;
+
+    // per file path, null when the file is missing or stale
+    private final Map<String, CharSequence> texts = new HashMap<>();
+
+    public RecallHitResolver(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * @return the code of every hit that could be read, in the order of the hits
+     */
+    public List<String> resolveAll(Collection<EmbeddingQueryResponse.HitData> hits) {
+        List<String> result = new ArrayList<>();
+        if (hits == null) {
+            return result;
+        }
+
+        for (EmbeddingQueryResponse.HitData hit : hits) {
+            String code = resolve(hit);
+            if (code != null) {
+                result.add(code);
+            }
+        }
+        return result;
+    }
+
+    public String resolve(EmbeddingQueryResponse.HitData hit) {
+        return resolve(hit.getFilePath(), hit.getFileHash(), hit.getStartOffset(), hit.getEndOffset());
+    }
+
+    /**
+     * @param fileHash md5 of the file when it was indexed, not checked when empty
+     */
+    public String resolve(String filePath, String fileHash, int startOffset, int endOffset) {
+        if (filePath == null) {
+            return null;
+        }
+
+        CharSequence text = texts.computeIfAbsent(filePath + File.pathSeparator + StringUtils.defaultString(fileHash),
+                k -> load(filePath, fileHash));
+        if (text == null || startOffset < 0 || startOffset > endOffset || endOffset > text.length()) {
+            return null;
+        }
+        return text.subSequence(startOffset, endOffset).toString();
+    }
+
+    private CharSequence load(String filePath, String fileHash) {
+        // change path to absolute path
+        String path = project.getBasePath() + File.separator + filePath;
+        VirtualFile virtualFile = LocalFileSystem.getInstance().findFileByPath(path);
+        if (virtualFile == null || virtualFile.isDirectory()) {
+            return null;
+        }
+
+        try {
+            // the hash is remembered per VFS stamp, an unchanged file is not read again to check it
+            if (StringUtils.isNotEmpty(fileHash) && !fileHash.equals(MD5Utils.calculateMD5(virtualFile))) {
+                LOG.info("Skip recall hits of " + filePath + ", the file changed since it was indexed.");
+                return null;
+            }
+
+            FileDocumentManager fileDocumentManager = FileDocumentManager.getInstance();
+            Document document = fileDocumentManager.getCachedDocument(virtualFile);
+            if (document != null && !fileDocumentManager.isDocumentUnsaved(document)) {
+                return document.getImmutableCharSequence();
+            }
+            // unsaved edits are not indexed yet, read what is on disk
+            return LoadTextUtil.loadText(virtualFile);
+        } catch (Exception e) {
+            LOG.warn("Read recall hits of " + filePath + " failed: " + e.getMessage());
+            return null;
+        }
+    }
+}
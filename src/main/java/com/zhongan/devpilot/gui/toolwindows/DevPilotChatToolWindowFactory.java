@@ -11,6 +11,7 @@ import com.zhongan.devpilot.actions.toolbar.ToolbarHistorySessionAction;
 import com.zhongan.devpilot.actions.toolbar.ToolbarMcpConfigurationAction;
 import com.zhongan.devpilot.actions.toolbar.ToolbarNewSessionAction;
 import com.zhongan.devpilot.actions.toolbar.ToolbarReloadWebViewAction;
+import com.zhongan.devpilot.actions.toolbar.ToolbarSearchHistoryAction;
 import com.zhongan.devpilot.actions.toolbar.ToolbarUserProfileAction;
 import com.zhongan.devpilot.cli.CliService;
 import com.zhongan.devpilot.cli.claudecode.ClaudeTerminalService;
@@ -42,9 +43,9 @@ public class DevPilotChatToolWindowFactory implements ToolWindowFactory {
 
             CliService cliService = ClaudeTerminalService.INSTANCE;
             if (cliService.isCliAvailable()) {
-                toolWindow.setTitleActions(List.of(new ToolbarClaudeCodeAction(), new ToolbarReloadWebViewAction(), new ToolbarMcpConfigurationAction(), new ToolbarNewSessionAction(), new ToolbarHistorySessionAction(), new ToolbarFeedbackAction(), new ToolbarUserProfileAction()));
+                toolWindow.setTitleActions(List.of(new ToolbarClaudeCodeAction(), new ToolbarReloadWebViewAction(), new ToolbarMcpConfigurationAction(), new ToolbarNewSessionAction(), new ToolbarHistorySessionAction(), new ToolbarSearchHistoryAction(), new ToolbarFeedbackAction(), new ToolbarUserProfileAction()));
             } else {
-                toolWindow.setTitleActions(List.of(new ToolbarReloadWebViewAction(), new ToolbarMcpConfigurationAction(), new ToolbarNewSessionAction(), new ToolbarHistorySessionAction(), new ToolbarFeedbackAction(), new ToolbarUserProfileAction()));
+                toolWindow.setTitleActions(List.of(new ToolbarReloadWebViewAction(), new ToolbarMcpConfigurationAction(), new ToolbarNewSessionAction(), new ToolbarHistorySessionAction(), new ToolbarSearchHistoryAction(), new ToolbarFeedbackAction(), new ToolbarUserProfileAction()));
             }
         }
     }
@@ -2,6 +2,7 @@ package com.zhongan.devpilot.gui.toolwindows.chat;
 
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.project.Project;
@@ -18,6 +19,7 @@ import com.zhongan.devpilot.constant.DefaultConst;
 import com.zhongan.devpilot.enums.ChatActionTypeEnum;
 import com.zhongan.devpilot.enums.EditorActionEnum;
 import com.zhongan.devpilot.session.ChatSessionManagerService;
+import com.zhongan.devpilot.session.model.ChatSession;
 import com.zhongan.devpilot.settings.state.DevPilotLlmSettingsState;
 import com.zhongan.devpilot.settings.state.LanguageSettingsState;
 import com.zhongan.devpilot.util.ConfigChangeUtils;
@@ -29,9 +31,13 @@ import com.zhongan.devpilot.util.NewFileUtils;
 import com.zhongan.devpilot.util.PromptDataMapUtils;
 import com.zhongan.devpilot.util.TelemetryUtils;
 import com.zhongan.devpilot.webview.DevPilotCustomHandlerFactory;
+import com.zhongan.devpilot.webview.WebviewAssetCache;
+import com.zhongan.devpilot.webview.model.AgentApprovalModel;
 import com.zhongan.devpilot.webview.model.CodeActionModel;
 import com.zhongan.devpilot.webview.model.CodeReferenceModel;
-import com.zhongan.devpilot.webview.model.JsCallModel;
+import com.zhongan.devpilot.webview.model.HistoryActionModel;
+import com.zhongan.devpilot.webview.model.LoadMessagesModel;
+import com.zhongan.devpilot.webview.model.McpServerChangedModel;
 import com.zhongan.devpilot.webview.model.MessageModel;
 import com.zhongan.devpilot.webview.model.ShowMessageModel;
 
@@ -60,8 +66,12 @@ import static com.zhongan.devpilot.constant.PlaceholderConst.ANSWER_LANGUAGE;
 import static com.zhongan.devpilot.constant.PlaceholderConst.LANGUAGE;
 
 public class DevPilotChatToolWindow {
+    private static final Logger LOG = Logger.getInstance(DevPilotChatToolWindow.class);
+
     private JBCefBrowser jbCefBrowser;
 
+    private volatile long loadStartNanos;
+
     private final Project project;
 
     private static final Map<String, EditorActionEnum> codeActionMap = new ConcurrentHashMap<>();
@@ -84,6 +94,10 @@ public class DevPilotChatToolWindow {
     }
 
     private void load() {
+        loadStartNanos = System.nanoTime();
+        // read the bundle while the browser is being created
+        ApplicationManager.getApplication().executeOnPooledThread(() -> WebviewAssetCache.INSTANCE.get("index.html"));
+
         JBCefBrowser browser;
         try {
             boolean isOffScreenRendering = true;
@@ -119,12 +133,8 @@ public class DevPilotChatToolWindow {
         historyRendered.set(false);
     }
 
-    private JBCefJSQuery.Response handleChatAction(DevPilotChatToolWindowService service, String commandType, Object payload) {
-        var messageModel = JsonUtils.fromJson(JsonUtils.toJson(payload), MessageModel.class);
-        if (messageModel == null) {
-            return new JBCefJSQuery.Response("error");
-        }
-
+    private boolean handleChatAction(String commandType, MessageModel messageModel) {
+        var service = service();
         var time = System.currentTimeMillis();
         var username = DevPilotLlmSettingsState.getInstance().getFullName();
         var uuid = UUID.randomUUID().toString();
@@ -159,344 +169,265 @@ public class DevPilotChatToolWindow {
 //            service.deepThinking(data, message.getContent(), userMessageModel);
 //        }
 
-        return new JBCefJSQuery.Response("success");
+        return true;
     }
 
     private void registerJsCallJavaHandler(JBCefBrowser browser) {
         var myQuery = JBCefJSQuery.create((JBCefBrowserBase) browser);
+        var commandRegistry = buildCommandRegistry();
 
-        myQuery.addHandler((query) -> {
-            var jsCallModel = JsonUtils.fromJson(query, JsCallModel.class);
-            if (jsCallModel == null) {
-                return new JBCefJSQuery.Response("error");
-            }
+        myQuery.addHandler((query) -> new JBCefJSQuery.Response(commandRegistry.dispatch(query)));
 
-            var command = jsCallModel.getCommand();
-            var service = project.getService(DevPilotChatToolWindowService.class);
+        browser.getJBCefClient().addLoadHandler(new CefLoadHandler() {
+            @Override
+            public void onLoadingStateChange(CefBrowser browser, boolean isLoading, boolean canGoBack, boolean canGoForward) {
 
-            switch (command) {
-                case "AgentExecutionApprovedOrNot": {
-                    var payload = jsCallModel.getPayload();
-                    service.agentExecutionApprovedOrNot(payload);
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "McpServerChanged": {
-                    var payload = jsCallModel.getPayload();
-                    service.mcpServerChanged(payload);
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "McpServerOpenConfigurationFile": {
-                    service.openMcpServerConfigurationFile();
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "ListMcpServers": {
-                    service.listMcpServers();
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "SwitchChatMode": {
-                    var payload = jsCallModel.getPayload();
-                    service.switchChatMode(payload);
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "AppendToConversation": {
-                    var payload = jsCallModel.getPayload();
-                    return handleChatAction(service, command, payload);
-                }
-                case "ChatInitialized": {
-                    service.callWebView(Boolean.FALSE);
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "InterruptChatStream": {
-                    service.interruptSend();
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "ClearChatHistory": {
-                    service.clearSession();
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "InsertCodeAtCaret": {
-                    var payload = jsCallModel.getPayload();
-                    var codeActionModel = JsonUtils.fromJson(JsonUtils.toJson(payload), CodeActionModel.class);
+            }
 
-                    if (codeActionModel == null) {
-                        return new JBCefJSQuery.Response("error");
-                    }
+            @Override
+            public void onLoadStart(CefBrowser browser, CefFrame frame, CefRequest.TransitionType transitionType) {
+                browser.executeJavaScript(
+                        "window.sendToIntelliJ = function(query) { " + myQuery.inject("query") + "};",
+                        null,
+                        0
+                );
 
-                    insertAtCaret(codeActionModel.getContent());
+                var format = "window.intellijConfig = {theme: '%s', locale: '%s', username: '%s', loggedIn: %s, env: '%s', version: '%s', platform: '%s'};";
+                var configModel = ConfigChangeUtils.configInit();
+                var code = String.format(format, configModel.getTheme(),
+                        configModel.getLocale(), configModel.getUsername(), configModel.isLoggedIn(),
+                        configModel.getEnv(), configModel.getVersion(), configModel.getPlatform());
 
-                    TelemetryUtils.chatAccept(codeActionModel, ChatActionTypeEnum.INSERT);
+                browser.executeJavaScript(code, null, 0);
+            }
 
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "ReplaceSelectedCode": {
-                    var payload = jsCallModel.getPayload();
-                    var codeActionModel = JsonUtils.fromJson(JsonUtils.toJson(payload), CodeActionModel.class);
+            @Override
+            public void onLoadEnd(CefBrowser browser, CefFrame frame, int httpStatusCode) {
 
-                    if (codeActionModel == null) {
-                        return new JBCefJSQuery.Response("error");
-                    }
+            }
 
-                    replaceSelectionCode(codeActionModel.getContent());
+            @Override
+            public void onLoadError(CefBrowser browser, CefFrame frame, ErrorCode errorCode, String errorText, String failedUrl) {
 
-                    TelemetryUtils.chatAccept(codeActionModel, ChatActionTypeEnum.REPLACE);
+            }
+        }, browser.getCefBrowser());
 
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "CreateNewFile": {
-                    var payload = jsCallModel.getPayload();
-                    var codeActionModel = JsonUtils.fromJson(JsonUtils.toJson(payload), CodeActionModel.class);
+    }
 
-                    if (codeActionModel == null) {
-                        return new JBCefJSQuery.Response("error");
-                    }
+    private void logTimeToInteractive() {
+        long start = loadStartNanos;
+        if (start == 0) {
+            return;
+        }
+        loadStartNanos = 0;
+        LOG.info("Chat webview became interactive in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+    }
 
-                    var userMessage = service.getUserMessage(codeActionModel.getMessageId());
+    private DevPilotChatToolWindowService service() {
+        return project.getService(DevPilotChatToolWindowService.class);
+    }
 
-                    if (userMessage == null) {
-                        return new JBCefJSQuery.Response("error");
-                    }
+    private JsCommandRegistry buildCommandRegistry() {
+        var registry = new JsCommandRegistry();
 
-                    // 获取最后一个为主要的code块
-                    var codeRefs = userMessage.getCodeRefs();
-                    CodeReferenceModel code;
+        registry.register("AgentExecutionApprovedOrNot", AgentApprovalModel.class, (command, payload) -> {
+            service().agentExecutionApprovedOrNot(payload.isApproved());
+            return true;
+        });
+        registry.register("McpServerChanged", McpServerChangedModel.class, (command, payload) -> {
+            service().mcpServerChanged(payload.getOperatorType(), payload.getServer());
+            return true;
+        });
+        registry.register("McpServerOpenConfigurationFile", () -> service().openMcpServerConfigurationFile());
+        registry.register("ListMcpServers", () -> service().listMcpServers());
+        registry.register("SwitchChatMode", ChatSession.class, (command, payload) -> {
+            service().switchChatMode(payload);
+            return true;
+        });
+        registry.register("AppendToConversation", MessageModel.class, this::handleChatAction);
+        registry.register("ChatInitialized", () -> {
+            logTimeToInteractive();
+            service().callWebView(Boolean.FALSE);
+        });
+        registry.register("InterruptChatStream", () -> service().interruptSend());
+        registry.register("ClearChatHistory", () -> service().clearSession());
+        registry.register("InsertCodeAtCaret", CodeActionModel.class, (command, codeActionModel) -> {
+            insertAtCaret(codeActionModel.getContent());
+            TelemetryUtils.chatAccept(codeActionModel, ChatActionTypeEnum.INSERT);
+            return true;
+        });
+        registry.register("ReplaceSelectedCode", CodeActionModel.class, (command, codeActionModel) -> {
+            replaceSelectionCode(codeActionModel.getContent());
+            TelemetryUtils.chatAccept(codeActionModel, ChatActionTypeEnum.REPLACE);
+            return true;
+        });
+        registry.register("CreateNewFile", CodeActionModel.class, this::handleCreateNewFile);
+        registry.register("GotoSelectedCode", CodeReferenceModel.class, (command, codeReferenceModel) -> {
+            ApplicationManager.getApplication().invokeLater(
+                    () -> EditorUtils.openFileAndSelectLines(project, codeReferenceModel.getFileUrl(),
+                            codeReferenceModel.getSelectedStartLine(), codeReferenceModel.getSelectedStartColumn(),
+                            codeReferenceModel.getSelectedEndLine(), codeReferenceModel.getSelectedEndColumn()));
+            return true;
+        });
+        registry.register("DeleteMessage", MessageModel.class, (command, messageModel) -> {
+            if (messageModel.getId() == null) {
+                return false;
+            }
+            service().deleteMessage(messageModel.getId());
+            return true;
+        });
+        registry.register("RegenerateMessage", () -> service().regenerateMessage());
+        for (String command : codeActionMap.keySet()) {
+            registry.register(command, MessageModel.class, this::handleCodeAction);
+        }
+        registry.register("CopyCode", CodeActionModel.class, (command, codeActionModel) -> {
+            if (codeActionModel.getContent() == null) {
+                return false;
+            }
 
-                    if (!CollectionUtils.isEmpty(codeRefs)) {
-                        code = codeRefs.get(codeRefs.size() - 1);
-                    } else {
-                        code = null;
-                    }
+            var clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+            clipboard.setContents(new StringSelection(codeActionModel.getContent()), null);
 
-                    ApplicationManager.getApplication().invokeLater(
-                            () -> NewFileUtils.createNewFile(project, codeActionModel.getContent(),
-                                    code, codeActionModel.getLang()));
+            TelemetryUtils.chatAccept(codeActionModel, ChatActionTypeEnum.COPY);
+            return true;
+        });
+        registry.register("OpenFile", CodeActionModel.class, (command, codeActionModel) -> {
+            if (codeActionModel.getContent() == null) {
+                return false;
+            }
 
-                    TelemetryUtils.chatAccept(codeActionModel, ChatActionTypeEnum.NEW_FILE);
+            String relativePath = codeActionModel.getContent();
+            String repo = codeActionModel.getRepo();
+            ApplicationManager.getApplication().invokeLater(
+                    () -> EditorUtils.openFileByRelativePath(repo, project, relativePath));
+            return true;
+        });
+        registry.register("Login", LoginUtils::gotoLogin);
+        registry.register("DislikeMessage", MessageModel.class, this::handleMessageFeedback);
+        registry.register("LikeMessage", MessageModel.class, this::handleMessageFeedback);
+        registry.register("ShowMessage", ShowMessageModel.class, (command, messageModel) -> {
+            if ("error".equals(messageModel.getType())) {
+                DevPilotNotification.error(messageModel.getContent());
+            } else {
+                DevPilotNotification.info(messageModel.getContent());
+            }
+            return true;
+        });
+        registry.register("CreateNewSession", () -> service().handleCreateNewSession());
+        registry.register("SwitchSession", HistoryActionModel.class, (command, payload) -> {
+            service().handleSwitchSession(String.valueOf(payload.getSessionId()));
+            return true;
+        });
+        registry.register("DeleteSession", HistoryActionModel.class, (command, payload) -> {
+            service().handleDeleteSession(String.valueOf(payload.getSessionId()));
+            return true;
+        });
+        registry.register("SearchHistory", HistoryActionModel.class, (command, payload) -> {
+            service().handleSearchHistory(String.valueOf(payload.getQuery()));
+            return true;
+        });
+        registry.register("LoadOlderMessages", LoadMessagesModel.class, (command, payload) -> {
+            if (payload.getBefore() == null) {
+                return false;
+            }
+            int size = payload.getSize() == null ? DevPilotChatToolWindowService.RENDER_WINDOW_SIZE : payload.getSize();
+            service().renderOlderMessages(payload.getSessionId(), payload.getBefore(), size);
+            return true;
+        });
+        registry.register("BackToChat", () -> service().callWebView(Boolean.TRUE));
+        registry.register("D2C", MessageModel.class, this::handleD2C);
 
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "GotoSelectedCode": {
-                    var payload = jsCallModel.getPayload();
-                    var codeReferenceModel = JsonUtils.fromJson(JsonUtils.toJson(payload), CodeReferenceModel.class);
+        return registry;
+    }
 
-                    if (codeReferenceModel == null) {
-                        return new JBCefJSQuery.Response("error");
-                    }
+    private boolean handleCreateNewFile(String command, CodeActionModel codeActionModel) {
+        var userMessage = service().getUserMessage(codeActionModel.getMessageId());
 
-                    ApplicationManager.getApplication().invokeLater(
-                            () -> EditorUtils.openFileAndSelectLines(project, codeReferenceModel.getFileUrl(),
-                                    codeReferenceModel.getSelectedStartLine(), codeReferenceModel.getSelectedStartColumn(),
-                                    codeReferenceModel.getSelectedEndLine(), codeReferenceModel.getSelectedEndColumn()));
+        if (userMessage == null) {
+            return false;
+        }
 
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "DeleteMessage": {
-                    var payload = jsCallModel.getPayload();
-                    var messageModel = JsonUtils.fromJson(JsonUtils.toJson(payload), MessageModel.class);
-                    if (messageModel == null || messageModel.getId() == null) {
-                        return new JBCefJSQuery.Response("error");
-                    }
-                    service.deleteMessage(messageModel.getId());
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "RegenerateMessage": {
-                    service.regenerateMessage();
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "FixCode":
-                case "CommentCode":
-                case "ExplainCode":
-                case "TestCode": {
-                    var payload = jsCallModel.getPayload();
-                    var messageModel = JsonUtils.fromJson(JsonUtils.toJson(payload), MessageModel.class);
-                    if (messageModel == null) {
-                        return new JBCefJSQuery.Response("error");
-                    }
-
-                    var coedRefs = messageModel.getCodeRefs();
-                    CodeReferenceModel code = null;
-                    if (!CollectionUtils.isEmpty(coedRefs)) {
-                        // 理论上这里只会有一个引用，但是万一有多个选择最后的一个
-                        code = coedRefs.get(coedRefs.size() - 1);
-                    }
-
-                    service.handleActions(code, codeActionMap.get(command), null, messageModel.getChatMode());
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "CopyCode": {
-                    var payload = jsCallModel.getPayload();
-                    var codeActionModel = JsonUtils.fromJson(JsonUtils.toJson(payload), CodeActionModel.class);
+        // 获取最后一个为主要的code块
+        var codeRefs = userMessage.getCodeRefs();
+        CodeReferenceModel code;
 
-                    if (codeActionModel == null || codeActionModel.getContent() == null) {
-                        return new JBCefJSQuery.Response("error");
-                    }
+        if (!CollectionUtils.isEmpty(codeRefs)) {
+            code = codeRefs.get(codeRefs.size() - 1);
+        } else {
+            code = null;
+        }
 
-                    var clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
-                    clipboard.setContents(new StringSelection(codeActionModel.getContent()), null);
+        ApplicationManager.getApplication().invokeLater(
+                () -> NewFileUtils.createNewFile(project, codeActionModel.getContent(),
+                        code, codeActionModel.getLang()));
 
-                    TelemetryUtils.chatAccept(codeActionModel, ChatActionTypeEnum.COPY);
+        TelemetryUtils.chatAccept(codeActionModel, ChatActionTypeEnum.NEW_FILE);
 
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "OpenFile": {
-                    var payload = jsCallModel.getPayload();
-                    var codeActionModel = JsonUtils.fromJson(JsonUtils.toJson(payload), CodeActionModel.class);
+        return true;
+    }
 
-                    if (codeActionModel == null || codeActionModel.getContent() == null) {
-                        return new JBCefJSQuery.Response("error");
-                    }
+    private boolean handleCodeAction(String command, MessageModel messageModel) {
+        var coedRefs = messageModel.getCodeRefs();
+        CodeReferenceModel code = null;
+        if (!CollectionUtils.isEmpty(coedRefs)) {
+            // 理论上这里只会有一个引用，但是万一有多个选择最后的一个
+            code = coedRefs.get(coedRefs.size() - 1);
+        }
 
-                    String relativePath = codeActionModel.getContent();
-                    String repo = codeActionModel.getRepo();
-                    ApplicationManager.getApplication().invokeLater(
-                            () -> EditorUtils.openFileByRelativePath(repo, project, relativePath));
+        service().handleActions(code, codeActionMap.get(command), null, messageModel.getChatMode());
+        return true;
+    }
 
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "Login": {
-                    LoginUtils.gotoLogin();
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "DislikeMessage":
-                case "LikeMessage": {
-                    var payload = jsCallModel.getPayload();
-                    var messageModel = JsonUtils.fromJson(JsonUtils.toJson(payload), MessageModel.class);
-                    if (messageModel == null || messageModel.getId() == null) {
-                        return new JBCefJSQuery.Response("error");
-                    }
-
-                    var id = messageModel.getId();
-                    var action = !command.equals("DislikeMessage");
-
-                    TelemetryUtils.messageFeedback(id, action);
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "ShowMessage": {
-                    var payload = jsCallModel.getPayload();
-                    var messageModel = JsonUtils.fromJson(JsonUtils.toJson(payload), ShowMessageModel.class);
-                    if (messageModel == null) {
-                        return new JBCefJSQuery.Response("error");
-                    }
-
-                    if ("error".equals(messageModel.getType())) {
-                        DevPilotNotification.error(messageModel.getContent());
-                    } else {
-                        DevPilotNotification.info(messageModel.getContent());
-                    }
-
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "CreateNewSession": {
-                    service.handleCreateNewSession();
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "SwitchSession": {
-                    var payload = jsCallModel.getPayload();
-                    var sessionIdMap = JsonUtils.fromJson(JsonUtils.toJson(payload), Map.class);
-                    if (sessionIdMap == null) {
-                        return new JBCefJSQuery.Response("error");
-                    }
-                    var sessionId = sessionIdMap.get("sessionId");
-                    service.handleSwitchSession(String.valueOf(sessionId));
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "DeleteSession": {
-                    var payload = jsCallModel.getPayload();
-                    var sessionIdMap = JsonUtils.fromJson(JsonUtils.toJson(payload), Map.class);
-                    if (sessionIdMap == null) {
-                        return new JBCefJSQuery.Response("error");
-                    }
-                    var sessionId = sessionIdMap.get("sessionId");
-                    service.handleDeleteSession(String.valueOf(sessionId));
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "BackToChat": {
-                    service.callWebView(Boolean.TRUE);
-                    return new JBCefJSQuery.Response("success");
-                }
-                case "D2C": {
-                    var payload = jsCallModel.getPayload();
-                    var messageModel = JsonUtils.fromJson(JsonUtils.toJson(payload), MessageModel.class);
-                    if (messageModel == null) {
-                        return new JBCefJSQuery.Response("error");
-                    }
-
-                    var coedRefs = messageModel.getCodeRefs();
-                    CodeReferenceModel code = null;
-                    if (!CollectionUtils.isEmpty(coedRefs)) {
-                        // 理论上这里只会有一个引用，但是万一有多个选择最后的一个
-                        code = coedRefs.get(coedRefs.size() - 1);
-                    }
-
-                    if (code == null || StringUtils.isEmpty(code.getBase64())) {
-                        return new JBCefJSQuery.Response("error");
-                    }
-
-                    String base64 = code.getBase64();
-                    List<String> base64List = new ArrayList<>();
-                    base64List.add(base64);
-
-                    // d2c默认不使用上下文
-                    messageModel.setChatMode(DefaultConst.NORMAL_CHAT_TYPE);
-                    var time = System.currentTimeMillis();
-                    var username = DevPilotLlmSettingsState.getInstance().getFullName();
-                    var uuid = UUID.randomUUID().toString();
-
-                    var userMessageModel = MessageModel.buildCodeMessage(
-                            uuid, time, messageModel.getContent(), username, messageModel.getCodeRefs(), messageModel.getChatMode());
-                    userMessageModel.setMsgType("EXTERNAL_AGENTS");
-
-                    Map<String, String> data = new HashMap<>();
-                    data.put("imageUrls", JsonUtils.toJson(base64List));
-                    data.put("flowId", "frontCodeGenerate");
-
-                    if (LanguageSettingsState.getInstance().getLanguageIndex() == 1) {
-                        data.put(ANSWER_LANGUAGE, "zh_CN");
-                    } else {
-                        data.put(ANSWER_LANGUAGE, "en_US");
-                    }
-
-                    service.chat("EXTERNAL_AGENTS", data, messageModel.getContent(), null, userMessageModel);
-                    return new JBCefJSQuery.Response("success");
-                }
-                default:
-                    return new JBCefJSQuery.Response("success");
-            }
-        });
+    private boolean handleMessageFeedback(String command, MessageModel messageModel) {
+        if (messageModel.getId() == null) {
+            return false;
+        }
 
-        browser.getJBCefClient().addLoadHandler(new CefLoadHandler() {
-            @Override
-            public void onLoadingStateChange(CefBrowser browser, boolean isLoading, boolean canGoBack, boolean canGoForward) {
+        var id = messageModel.getId();
+        var action = !command.equals("DislikeMessage");
 
-            }
+        TelemetryUtils.messageFeedback(id, action);
+        return true;
+    }
 
-            @Override
-            public void onLoadStart(CefBrowser browser, CefFrame frame, CefRequest.TransitionType transitionType) {
-                browser.executeJavaScript(
-                        "window.sendToIntelliJ = function(query) { " + myQuery.inject("query") + "};",
-                        null,
-                        0
-                );
+    private boolean handleD2C(String command, MessageModel messageModel) {
+        var coedRefs = messageModel.getCodeRefs();
+        CodeReferenceModel code = null;
+        if (!CollectionUtils.isEmpty(coedRefs)) {
+            // 理论上这里只会有一个引用，但是万一有多个选择最后的一个
+            code = coedRefs.get(coedRefs.size() - 1);
+        }
 
-                var format = "window.intellijConfig = {theme: '%s', locale: '%s', username: '%s', loggedIn: %s, env: '%s', version: '%s', platform: '%s'};";
-                var configModel = ConfigChangeUtils.configInit();
-                var code = String.format(format, configModel.getTheme(),
-                        configModel.getLocale(), configModel.getUsername(), configModel.isLoggedIn(),
-                        configModel.getEnv(), configModel.getVersion(), configModel.getPlatform());
+        if (code == null || StringUtils.isEmpty(code.getBase64())) {
+            return false;
+        }
 
-                browser.executeJavaScript(code, null, 0);
-            }
+        String base64 = code.getBase64();
+        List<String> base64List = new ArrayList<>();
+        base64List.add(base64);
 
-            @Override
-            public void onLoadEnd(CefBrowser browser, CefFrame frame, int httpStatusCode) {
+        // d2c默认不使用上下文
+        messageModel.setChatMode(DefaultConst.NORMAL_CHAT_TYPE);
+        var time = System.currentTimeMillis();
+        var username = DevPilotLlmSettingsState.getInstance().getFullName();
+        var uuid = UUID.randomUUID().toString();
 
-            }
+        var userMessageModel = MessageModel.buildCodeMessage(
+                uuid, time, messageModel.getContent(), username, messageModel.getCodeRefs(), messageModel.getChatMode());
+        userMessageModel.setMsgType("EXTERNAL_AGENTS");
 
-            @Override
-            public void onLoadError(CefBrowser browser, CefFrame frame, ErrorCode errorCode, String errorText, String failedUrl) {
+        Map<String, String> data = new HashMap<>();
+        data.put("imageUrls", JsonUtils.toJson(base64List));
+        data.put("flowId", "frontCodeGenerate");
 
-            }
-        }, browser.getCefBrowser());
+        if (LanguageSettingsState.getInstance().getLanguageIndex() == 1) {
+            data.put(ANSWER_LANGUAGE, "zh_CN");
+        } else {
+            data.put(ANSWER_LANGUAGE, "en_US");
+        }
 
+        service().chat("EXTERNAL_AGENTS", data, messageModel.getContent(), null, userMessageModel);
+        return true;
     }
 
     private final AtomicBoolean historyRendered = new AtomicBoolean(false);
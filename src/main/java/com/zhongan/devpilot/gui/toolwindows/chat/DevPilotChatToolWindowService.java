@@ -18,6 +18,10 @@ import com.zhongan.devpilot.DevPilotVersion;
 import com.zhongan.devpilot.actions.editor.popupmenu.BasicEditorAction;
 import com.zhongan.devpilot.agents.BinaryManager;
 import com.zhongan.devpilot.constant.DefaultConst;
+import com.zhongan.devpilot.context.ChatContextAssembler;
+import com.zhongan.devpilot.context.HistoryCompactor;
+import com.zhongan.devpilot.context.MessageTokenCounter;
+import com.zhongan.devpilot.context.RelatedCodeRetriever;
 import com.zhongan.devpilot.embedding.entity.request.EmbeddingQueryRequest;
 import com.zhongan.devpilot.embedding.entity.request.EmbeddingQueryResponse;
 import com.zhongan.devpilot.enums.EditorActionEnum;
@@ -37,6 +41,7 @@ import com.zhongan.devpilot.mcp.McpServer;
 import com.zhongan.devpilot.provider.file.FileAnalyzeProviderFactory;
 import com.zhongan.devpilot.session.ChatSessionManager;
 import com.zhongan.devpilot.session.ChatSessionManagerService;
+import com.zhongan.devpilot.session.model.ChatSearchResult;
 import com.zhongan.devpilot.session.model.ChatSession;
 import com.zhongan.devpilot.settings.state.LanguageSettingsState;
 import com.zhongan.devpilot.util.BalloonAlertUtils;
@@ -45,9 +50,9 @@ import com.zhongan.devpilot.util.EncryptionUtil;
 import com.zhongan.devpilot.util.JsonUtils;
 import com.zhongan.devpilot.util.MessageUtil;
 import com.zhongan.devpilot.util.PromptDataMapUtils;
-import com.zhongan.devpilot.util.PsiElementUtils;
 import com.zhongan.devpilot.webview.model.AgentDecisionModel;
 import com.zhongan.devpilot.webview.model.CodeReferenceModel;
+import com.zhongan.devpilot.webview.model.ConversationWindowModel;
 import com.zhongan.devpilot.webview.model.EmbeddedModel;
 import com.zhongan.devpilot.webview.model.JavaCallModel;
 import com.zhongan.devpilot.webview.model.LocaleModel;
@@ -60,13 +65,11 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -93,6 +96,11 @@ import static com.zhongan.devpilot.constant.PlaceholderConst.LANGUAGE;
 public final class DevPilotChatToolWindowService {
     private static final Logger LOG = Logger.getInstance(DevPilotChatToolWindowService.class);
 
+    // messages sent on every refresh, the rest of a long conversation is paged in by the webview
+    public static final int RENDER_WINDOW_SIZE = 20;
+
+    private static final int MAX_OLDER_MESSAGES_PAGE_SIZE = 100;
+
     private final Project project;
 
     private final DevPilotChatToolWindow devPilotChatToolWindow;
@@ -109,10 +117,13 @@ public final class DevPilotChatToolWindowService {
 
     private volatile String currentMessageId = null;
 
+    private final RelatedCodeRetriever relatedCodeRetriever;
+
     public DevPilotChatToolWindowService(Project project) {
         this.project = project;
         this.sessionManager = project.getService(ChatSessionManagerService.class).getSessionManager();
         this.devPilotChatToolWindow = new DevPilotChatToolWindow(project);
+        this.relatedCodeRetriever = new RelatedCodeRetriever(project);
         subscribeToFocusEvents();
     }
 
@@ -352,53 +363,7 @@ public final class DevPilotChatToolWindowService {
     }
 
     public List<CompletionRelatedCodeInfo> buildCompletionRelatedFile(String filePath, String document, int position, String language) {
-        var predict = completionCodePredict(filePath, document, position, language);
-        if (predict != null) {
-            var result = new CopyOnWriteArrayList<CompletionRelatedCodeInfo>();
-
-            // 本地索引召回
-            ApplicationManager.getApplication().runReadAction(() -> {
-                var list = FileAnalyzeProviderFactory.getProvider(language).callLocalRag(project, predict);
-                for (var element : list) {
-                    var info = new CompletionRelatedCodeInfo();
-                    info.setScore(1.0d);
-                    info.setFilePath(element.getContainingFile().getName());
-                    info.setCode(element.getText());
-                    result.add(info);
-                }
-            });
-
-            // 本地向量库召回
-            if (!StringUtils.isEmpty(predict.getComments())) {
-                this.llmProvider = LlmProviderFactory.INSTANCE.getLlmProvider(project);
-                var embeddingRequest = new EmbeddingQueryRequest();
-                embeddingRequest.setProjectName(project.getBasePath());
-                embeddingRequest.setHomeDir(BinaryManager.INSTANCE.getHomeDir().getAbsolutePath());
-                embeddingRequest.setContent(predict.getComments());
-
-                var embeddingResponse = this.llmProvider.embeddingQuery(embeddingRequest);
-                if (embeddingResponse != null) {
-                    var hitDataList = embeddingResponse.getHitsData();
-                    for (EmbeddingQueryResponse.HitData hitData : hitDataList) {
-                        var code = PsiElementUtils.getCodeBlock(project,
-                                hitData.getFilePath(), hitData.getStartOffset(), hitData.getEndOffset());
-                        if (code == null) {
-                            continue;
-                        }
-                        var info = new CompletionRelatedCodeInfo();
-                        info.setScore(Double.parseDouble(hitData.getScore()));
-                        info.setFilePath(hitData.getFilePath());
-                        info.setCode(code);
-                        result.add(info);
-                    }
-                }
-            }
-
-            // 本地索引和本地向量库一起返回
-            return result;
-        }
-
-        return null;
+        return relatedCodeRetriever.retrieve(filePath, document, position, language);
     }
 
     public DevPilotCodePrediction completionCodePredict(String filePath, String document, int position, String language) {
@@ -444,9 +409,10 @@ public final class DevPilotChatToolWindowService {
 
         var devPilotChatCompletionRequest = new DevPilotChatCompletionRequest();
         devPilotChatCompletionRequest.setVersion(CODE_PREDICT_PROMPT_VERSION);
-        devPilotChatCompletionRequest.getMessages().addAll(removeRedundantRelatedContext(copyHistoryRequestMessageList(sessionManager.getCurrentSession().getHistoryRequestMessageList())));
-        devPilotChatCompletionRequest.getMessages().add(
-                MessageUtil.createPromptMessage(System.currentTimeMillis() + "", "CODE_PREDICTION", content, dataMap));
+        List<DevPilotMessage> messages = removeRedundantRelatedContext(copyHistoryRequestMessageList(compactHistory(
+                sessionManager.getCurrentSession().getHistoryRequestMessageList())));
+        messages.add(MessageUtil.createPromptMessage(System.currentTimeMillis() + "", "CODE_PREDICTION", content, dataMap));
+        devPilotChatCompletionRequest.getMessages().addAll(ChatContextAssembler.INSTANCE.fit(messages));
         devPilotChatCompletionRequest.setStream(Boolean.FALSE);
         var response = this.llmProvider.codePrediction(devPilotChatCompletionRequest);
         if (!response.isSuccessful() || response.getContent() == null) {
@@ -569,7 +535,9 @@ public final class DevPilotChatToolWindowService {
                                Consumer<String> callback) {
         var devPilotChatCompletionRequest = new DevPilotChatCompletionRequest();
         devPilotChatCompletionRequest.setStream(true);
-        devPilotChatCompletionRequest.getMessages().addAll(copyHistoryRequestMessageList(historyRequestMessageList));
+        List<DevPilotMessage> compacted = compactHistory(historyRequestMessageList);
+        devPilotChatCompletionRequest.getMessages().addAll(ChatContextAssembler.INSTANCE
+                .fit(copyHistoryRequestMessageList(compacted), compacted == historyRequestMessageList ? getSessionTokens() : -1));
 
         if ("EXTERNAL_AGENTS".equals(msgType)) {
             devPilotChatCompletionRequest.setVersion(D2C_PROMPT_VERSION);
@@ -581,6 +549,21 @@ public final class DevPilotChatToolWindowService {
         return this.llmProvider.chatCompletion(project, devPilotChatCompletionRequest, callback, remoteRefs, localRefs, chatType);
     }
 
+    /**
+     * Running token total of the request history of the current session, only new messages are counted.
+     */
+    public int getSessionTokens() {
+        ChatSession session = sessionManager.getCurrentSession();
+        return MessageTokenCounter.INSTANCE.sessionTotal(session.getId(), session.getHistoryRequestMessageList());
+    }
+
+    /**
+     * Fold the older turns of a long session into a memory message, the history itself is left untouched.
+     */
+    private List<DevPilotMessage> compactHistory(List<DevPilotMessage> historyRequestMessageList) {
+        return HistoryCompactor.INSTANCE.compact(sessionManager.getCurrentSession().getId(), historyRequestMessageList, getSessionTokens());
+    }
+
     public void regenerateMessage(Consumer<String> callback, Map<String, String> data,
                                   List<CodeReferenceModel> remoteRefs, List<CodeReferenceModel> localRefs, int chatType, MessageModel messageModel) {
         // if data is not empty, the data should add into last history request message
@@ -634,13 +617,16 @@ public final class DevPilotChatToolWindowService {
      */
     private List<DevPilotMessage> removeRedundantRelatedContext(List<DevPilotMessage> devPilotMessages) {
         if (CollectionUtils.isEmpty(devPilotMessages)) {
-            return Collections.emptyList();
+            return new ArrayList<>();
         }
         ArrayList<DevPilotMessage> copy = new ArrayList<>(devPilotMessages);
         copy.forEach(
                 msg -> {
-                    if (msg.getPromptData() != null) {
-                        msg.getPromptData().remove("relatedContext");
+                    // the map is shared with the session history, which must keep it
+                    if (msg.getPromptData() != null && msg.getPromptData().containsKey("relatedContext")) {
+                        var promptData = new HashMap<>(msg.getPromptData());
+                        promptData.remove("relatedContext");
+                        msg.setPromptData(promptData);
                     }
                 }
         );
@@ -659,10 +645,16 @@ public final class DevPilotChatToolWindowService {
 
     public void handleDeleteSession(String sessionId) {
         sessionManager.deleteSession(sessionId, Boolean.FALSE);
+        MessageTokenCounter.INSTANCE.forgetSession(sessionId);
+        HistoryCompactor.INSTANCE.forgetSession(sessionId);
         renderHistorySession();
     }
 
     public List<MessageModel> getHistoryMessageList(boolean forceUpdate) {
+        return getRenderSession(forceUpdate).getHistoryMessageList();
+    }
+
+    private ChatSession getRenderSession(boolean forceUpdate) {
         if (forceUpdate) {
             ChatSession currentSession = sessionManager.getSessions().stream()
                     .filter(session -> session.getId().equals(sessionManager.getCurrentSession().getId()))
@@ -671,9 +663,9 @@ public final class DevPilotChatToolWindowService {
             if (null == currentSession) {
                 currentSession = sessionManager.createNewSession();
             }
-            return currentSession.getHistoryMessageList();
+            return currentSession;
         } else {
-            return sessionManager.getCurrentSession().getHistoryMessageList();
+            return sessionManager.getCurrentSession();
         }
     }
 
@@ -883,14 +875,18 @@ public final class DevPilotChatToolWindowService {
     }
 
     public void callWebView(JavaCallModel javaCallModel) {
+        callWebView("window.receiveFromIntelliJ", javaCallModel);
+    }
+
+    private void callWebView(String function, Object payload) {
         var browser = getDevPilotChatToolWindow().jbCefBrowser().getCefBrowser();
-        var json = JsonUtils.toJson(javaCallModel);
+        var json = JsonUtils.toJson(payload);
 
         if (json == null) {
             return;
         }
 
-        var jsCode = "window.receiveFromIntelliJ(" + json + ")";
+        var jsCode = function + "(" + json + ")";
         browser.executeJavaScript(jsCode, browser.getURL(), 0);
     }
 
@@ -901,38 +897,51 @@ public final class DevPilotChatToolWindowService {
     }
 
     public void callWebView(MessageModel messageModel) {
-        var messageList = getHistoryMessageList(Boolean.FALSE);
-
-        var tmpList = new ArrayList<>(messageList);
-        tmpList.add(messageModel);
-
-        var javaCallModel = new JavaCallModel();
-        javaCallModel.setCommand("RenderChatConversation");
-        javaCallModel.setPayload(tmpList);
-
-        callWebView(javaCallModel);
+        var session = getRenderSession(Boolean.FALSE);
+        callWebView("window.receiveChatWindow", ConversationWindowModel.latest(
+                session.getId(), session.getHistoryMessageList(), messageModel, RENDER_WINDOW_SIZE));
     }
 
+    /**
+     * Render the latest messages of the current session, the webview asks for older ones with
+     * {@link #renderOlderMessages(String, int, int)} when they are scrolled into view.
+     */
     public void callWebView(boolean forceUpdate) {
-        var messageList = getHistoryMessageList(forceUpdate);
+        var session = getRenderSession(forceUpdate);
+        callWebView("window.receiveChatWindow", ConversationWindowModel.latest(
+                session.getId(), session.getHistoryMessageList(), null, RENDER_WINDOW_SIZE));
+        changeChatMode(sessionManager.getCurrentChatMode());
+    }
 
-        var javaCallModel = new JavaCallModel();
-        javaCallModel.setCommand("RenderChatConversation");
-        javaCallModel.setPayload(messageList);
+    public void renderOlderMessages(String sessionId, int before, int size) {
+        var session = sessionManager.getCurrentSession();
+        if (session == null || !StringUtils.equals(session.getId(), sessionId)) {
+            return;
+        }
 
-        callWebView(javaCallModel);
-        changeChatMode(sessionManager.getCurrentChatMode());
+        int pageSize = Math.min(Math.max(size, 1), MAX_OLDER_MESSAGES_PAGE_SIZE);
+        callWebView("window.receiveChatPage", ConversationWindowModel.before(
+                session.getId(), session.getHistoryMessageList(), before, pageSize));
     }
 
     public void renderHistorySession() {
         var javaCallModel = new JavaCallModel();
         javaCallModel.setCommand("ShowHistory");
-        javaCallModel.setPayload(sessionManager.getSessions().stream()
-                .filter(t -> CollectionUtils.isNotEmpty(t.getHistoryRequestMessageList()))
-                .collect(Collectors.toList()));
+        javaCallModel.setPayload(sessionManager.getSessionSummaries());
         callWebView(javaCallModel);
     }
 
+    public void handleSearchHistory(String query) {
+        var javaCallModel = new JavaCallModel();
+        javaCallModel.setCommand("SearchHistoryResult");
+        javaCallModel.setPayload(searchHistory(query));
+        callWebView(javaCallModel);
+    }
+
+    public ChatSearchResult searchHistory(String query) {
+        return sessionManager.searchHistory(query, ChatSessionManager.HISTORY_SEARCH_LIMIT);
+    }
+
     public void changeTheme(String theme) {
         var javaCallModel = new JavaCallModel();
         javaCallModel.setCommand("ThemeChanged");
@@ -991,13 +1000,12 @@ public final class DevPilotChatToolWindowService {
         return EncryptionUtil.getMD5Hash(path);
     }
 
-    public void switchChatMode(Object payload) {
+    public void switchChatMode(ChatSession newSession) {
         ChatSession currentSession = sessionManager.getCurrentSession();
         if (currentSession == null) {
             return;
         }
 
-        ChatSession newSession = JsonUtils.fromJson(JsonUtils.toJson(payload), ChatSession.class);
         if (newSession == null || newSession.getChatMode() == 0) {
             return;
         }
@@ -1036,11 +1044,8 @@ public final class DevPilotChatToolWindowService {
         }
     }
 
-    public void mcpServerChanged(Object payload) {
+    public void mcpServerChanged(String operatorType, McpServer server) {
         LOG.warn("-------McpServerChanged---------");
-        Map<String, Object> eventMap = JsonUtils.fromJson(JsonUtils.toJson(payload), Map.class);
-        String operatorType = (String) eventMap.get("operatorType");
-        McpServer server = JsonUtils.fromJson(JsonUtils.toJson(eventMap.get("server")), McpServer.class);
         McpConnections result = McpConfigurationHandler.INSTANCE.handleMcpServerChanged(operatorType, server);
 
 //        McpConnections result = McpConfigurationHandler.INSTANCE.loadMcpServersWithConnectionStatus(Boolean.TRUE);
@@ -1050,9 +1055,7 @@ public final class DevPilotChatToolWindowService {
         callWebView(javaCallModel);
     }
 
-    public void agentExecutionApprovedOrNot(Object payload) {
-        Map<String, Boolean> eventMap = JsonUtils.fromJson(JsonUtils.toJson(payload), Map.class);
-        boolean approvedOrNot = eventMap.getOrDefault("approved", Boolean.FALSE);
+    public void agentExecutionApprovedOrNot(boolean approvedOrNot) {
         var currentSession = sessionManager.getCurrentSession();
         var historyMessageList = currentSession.getHistoryMessageList();
         MessageModel lastMessage = historyMessageList.isEmpty() ? null : historyMessageList.get(historyMessageList.size() - 1);
@@ -0,0 +1,103 @@
+package com.zhongan.devpilot.gui.toolwindows.chat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.zhongan.devpilot.util.JsonUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dispatches the commands the webview sends through the JCEF query.
+ * <p>
+ * A query is parsed once into a tree. The payload is bound from that tree straight into the type its command
+ * was registered with, instead of being written back to a string and parsed again. Commands without a
+ * registration are acknowledged and ignored, as the webview expects.
+ */
+public class JsCommandRegistry {
+
+    public static final String SUCCESS = "success";
+
+    public static final String ERROR = "error";
+
+    private final Map<String, Registration<?>> registrations = new HashMap<>();
+
+    /**
+     * Register a command carrying a payload. The handler is not called when the payload is missing or cannot
+     * be bound, the query is answered with an error instead.
+     *
+     * @param command     command name sent by the webview
+     * @param payloadType type the payload is bound to
+     * @param handler     returns false to answer the query with an error
+     */
+    public <T> JsCommandRegistry register(String command, Class<T> payloadType, JsCommand<T> handler) {
+        registrations.put(command, new Registration<>(payloadType, handler));
+        return this;
+    }
+
+    /**
+     * Register a command whose payload is ignored.
+     */
+    public JsCommandRegistry register(String command, Runnable handler) {
+        registrations.put(command, new Registration<Void>(null, (name, payload) -> {
+            handler.run();
+            return true;
+        }));
+        return this;
+    }
+
+    public boolean contains(String command) {
+        return registrations.containsKey(command);
+    }
+
+    /**
+     * Handle a query of the form {@code {"command": "...", "payload": {...}}}.
+     *
+     * @return {@link #SUCCESS} or {@link #ERROR}
+     */
+    public String dispatch(String query) {
+        JsonNode root = JsonUtils.readTree(query);
+        if (root == null || !root.isObject()) {
+            return ERROR;
+        }
+
+        JsonNode command = root.get("command");
+        if (command == null || !command.isTextual()) {
+            return ERROR;
+        }
+
+        Registration<?> registration = registrations.get(command.textValue());
+        if (registration == null) {
+            return SUCCESS;
+        }
+
+        return registration.execute(command.textValue(), root.get("payload")) ? SUCCESS : ERROR;
+    }
+
+    @FunctionalInterface
+    public interface JsCommand<T> {
+        boolean execute(String command, T payload);
+    }
+
+    private static class Registration<T> {
+        private final Class<T> payloadType;
+
+        private final JsCommand<T> handler;
+
+        Registration(Class<T> payloadType, JsCommand<T> handler) {
+            this.payloadType = payloadType;
+            this.handler = handler;
+        }
+
+        boolean execute(String command, JsonNode payload) {
+            if (payloadType == null) {
+                return handler.execute(command, null);
+            }
+
+            T value = JsonUtils.treeToValue(payload, payloadType);
+            if (value == null) {
+                return false;
+            }
+            return handler.execute(command, value);
+        }
+    }
+}
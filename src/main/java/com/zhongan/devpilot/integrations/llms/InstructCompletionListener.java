@@ -0,0 +1,18 @@
+package com.zhongan.devpilot.integrations.llms;
+
+/**
+ * Receives the candidates of a streamed instruct completion as they are generated.
+ */
+public interface InstructCompletionListener {
+    /**
+     * @param index    index of the candidate, candidates are interleaved
+     * @param id       id of the candidate
+     * @param delta    text appended to the candidate since its previous chunk
+     * @param finished whether the candidate is complete
+     */
+    void onCandidate(int index, String id, String delta, boolean finished);
+
+    void onComplete();
+
+    void onFailure(String message);
+}
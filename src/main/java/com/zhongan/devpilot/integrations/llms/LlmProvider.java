@@ -1,9 +1,13 @@
 package com.zhongan.devpilot.integrations.llms;
 
+import com.google.gson.Gson;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
 import com.zhongan.devpilot.actions.notifications.DevPilotNotification;
 import com.zhongan.devpilot.agents.BinaryManager;
+import com.zhongan.devpilot.context.MessageTokenCounter;
+import com.zhongan.devpilot.context.StreamingTokenCounter;
 import com.zhongan.devpilot.embedding.entity.request.EmbeddingChunkRequest;
 import com.zhongan.devpilot.embedding.entity.request.EmbeddingChunkResponse;
 import com.zhongan.devpilot.embedding.entity.request.EmbeddingDeleteRequest;
@@ -19,11 +23,15 @@ import com.zhongan.devpilot.integrations.llms.entity.DevPilotMessage;
 import com.zhongan.devpilot.integrations.llms.entity.DevPilotRagRequest;
 import com.zhongan.devpilot.integrations.llms.entity.DevPilotRagResponse;
 import com.zhongan.devpilot.integrations.llms.entity.DevPilotSuccessStreamingResponse;
+import com.zhongan.devpilot.integrations.llms.entity.InstructCompletionChunk;
 import com.zhongan.devpilot.session.model.ChatSession;
+import com.zhongan.devpilot.settings.state.LanguageSettingsState;
 import com.zhongan.devpilot.util.DevPilotMessageBundle;
+import com.zhongan.devpilot.util.GatewayRequestUtils;
 import com.zhongan.devpilot.util.JsonUtils;
 import com.zhongan.devpilot.util.LoginUtils;
 import com.zhongan.devpilot.util.OkhttpUtils;
+import com.zhongan.devpilot.util.ProjectUtil;
 import com.zhongan.devpilot.util.UserAgentUtils;
 import com.zhongan.devpilot.webview.model.CodeReferenceModel;
 import com.zhongan.devpilot.webview.model.MessageModel;
@@ -49,6 +57,7 @@ import okhttp3.sse.EventSource;
 import okhttp3.sse.EventSourceListener;
 import okhttp3.sse.EventSources;
 
+import static com.zhongan.devpilot.constant.DefaultConst.AGENT_INSTRUCT_COMPLETION;
 import static com.zhongan.devpilot.constant.DefaultConst.EMBEDDING_DELETE_PATH;
 import static com.zhongan.devpilot.constant.DefaultConst.EMBEDDING_RESET_INDEX_PATH;
 import static com.zhongan.devpilot.constant.DefaultConst.EMBEDDING_SEARCH_PATH;
@@ -108,10 +117,93 @@ public interface LlmProvider {
         DevPilotNotification.upgradePluginNotification(service.getProject());
     }
 
+    /**
+     * Stream the candidates of an instruct completion, the listener is called on the http thread as each one grows.
+     * An agent that does not stream answers with a single json message, which is passed on as one finished candidate.
+     *
+     * @return the running stream, to be cancelled once the completion is no longer wanted, or null when the request
+     *         could not be sent
+     */
+    default EventSource instructCompletionStream(DevPilotInstructCompletionRequest instructCompletionRequest,
+                                                 InstructCompletionListener listener) {
+        if (!LoginUtils.isLogin()) {
+            return null;
+        }
+
+        Pair<Integer, Long> portPId = BinaryManager.INSTANCE.retrieveAlivePort();
+        if (null == portPId) {
+            return null;
+        }
+
+        instructCompletionRequest.setStream(true);
+        String requestBody = GatewayRequestUtils.completionRequestPureJson(instructCompletionRequest, portPId.first);
+        var request = new Request.Builder()
+                .url(REMOTE_RAG_DEFAULT_HOST + portPId.first + AGENT_INSTRUCT_COMPLETION)
+                .header("User-Agent", UserAgentUtils.buildUserAgent())
+                .header("Auth-Type", LoginUtils.getLoginType())
+                .header("X-B3-Language", LanguageSettingsState.getInstance().getLanguageIndex() == 1 ? "zh-CN" : "en-US")
+                .header("Accept", "text/event-stream")
+                .post(RequestBody.create(requestBody, MediaType.parse("application/json")))
+                .build();
+
+        return EventSources.createFactory(OkhttpUtils.getClient()).newEventSource(request, new EventSourceListener() {
+            @Override
+            public void onEvent(@NotNull EventSource eventSource, @Nullable String id, @Nullable String type, @NotNull String data) {
+                if (data.equals("[DONE]")) {
+                    return;
+                }
+
+                var chunk = JsonUtils.fromJson(data, InstructCompletionChunk.class);
+                if (chunk != null) {
+                    listener.onCandidate(chunk.getIndex(), chunk.getId(), chunk.getContent(), chunk.isFinished());
+                }
+            }
+
+            @Override
+            public void onClosed(@NotNull EventSource eventSource) {
+                listener.onComplete();
+            }
+
+            @Override
+            public void onFailure(@NotNull EventSource eventSource, @Nullable Throwable t, @Nullable Response response) {
+                // older agents ignore the stream flag and answer with plain json, which ends up here
+                var body = response == null ? null : response.body();
+                if (body != null && response.isSuccessful() && body.contentType() != null
+                        && !"event-stream".equals(body.contentType().subtype())) {
+                    try {
+                        var message = new Gson().fromJson(body.string(), DevPilotMessage.class);
+                        if (message != null) {
+                            listener.onCandidate(0, message.getId(), message.getContent(), true);
+                            listener.onComplete();
+                            return;
+                        }
+                    } catch (Exception e) {
+                        listener.onFailure("Parse completion response failed: " + e.getMessage());
+                        return;
+                    }
+                }
+
+                if (body != null && !response.isSuccessful()) {
+                    try {
+                        if (isPluginVersionTooLowResp(resolveJsonBody(body.string()))) {
+                            handlePluginVersionTooLow(ProjectUtil.currentOrDefaultProject(null).getService(DevPilotChatToolWindowService.class), false);
+                        }
+                    } catch (Exception e) {
+                        Logger.getInstance(getClass()).warn("Read completion error response failed: " + e.getMessage());
+                    }
+                }
+
+                listener.onFailure(t != null ? t.getMessage()
+                        : "Instruct completion failed: " + (response == null ? "no response" : response.code()));
+            }
+        });
+    }
+
     default EventSource buildEventSource(Request request, DevPilotChatToolWindowService service, Consumer<String> callback,
                                          List<CodeReferenceModel> remoteRefs, List<CodeReferenceModel> localRefs, int chatType) {
         var time = System.currentTimeMillis();
         var result = new StringBuilder();
+        var resultTokens = new StreamingTokenCounter();
         var client = OkhttpUtils.getClient();
 
         return EventSources.createFactory(client).newEventSource(request, new EventSourceListener() {
@@ -134,11 +226,13 @@ public interface LlmProvider {
                     var ragResp = response.getRag();
                     var files = ragResp.getFiles();
                     var app = ragResp.getApp();
+                    int ragStart = result.length();
                     result.append("\n\n<div class=\"rag-files\" data-repo=\"").append(app).append("\">");
                     for (DevPilotSuccessStreamingResponse.RagFile file : files) {
                         result.append("<div class=\"rag-files-item\">").append(file.getFile()).append("</div>");
                     }
                     result.append("</div>\n\n");
+                    resultTokens.append(result.substring(ragStart));
                 } else {
                     if (CollectionUtils.isEmpty(response.getChoices())) {
                         return;
@@ -148,6 +242,7 @@ public interface LlmProvider {
 
                     if (choice.getDelta().getContent() != null) {
                         result.append(choice.getDelta().getContent());
+                        resultTokens.append(choice.getDelta().getContent());
                     }
 
                     if (!StringUtils.isEmpty(finishReason)) {
@@ -188,6 +283,8 @@ public interface LlmProvider {
                     devPilotMessage.setId(response.getId());
                     devPilotMessage.setRole("assistant");
                     devPilotMessage.setContent(result.toString());
+                    // counted while streaming, the session total will not encode the answer again
+                    MessageTokenCounter.INSTANCE.record(devPilotMessage.getContent(), resultTokens.getTokens());
                     service.addRequestMessage(devPilotMessage);
 
                     if (callback != null) {
@@ -2,6 +2,7 @@ package com.zhongan.devpilot.integrations.llms.entity;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.intellij.openapi.editor.Editor;
+import com.zhongan.devpilot.completions.prediction.CompletionSnapshot;
 
 import java.util.List;
 
@@ -11,6 +12,9 @@ public class DevPilotInstructCompletionRequest {
 
     private int offset;
 
+    // editor state the request was built from, null for requests built straight from the editor
+    private CompletionSnapshot snapshot;
+
     boolean stream = Boolean.FALSE;
 
     double temperature = 0L;
@@ -30,6 +34,16 @@ public class DevPilotInstructCompletionRequest {
 
     List<CompletionRelatedCodeInfo> relatedCodeInfos;
 
+    // start of the prompt/suffix window in the document, -1 when no window was taken
+    int windowStart = -1;
+
+    int documentLength;
+
+    String documentHash;
+
+    // version of the document the offset refers to, see DocumentSyncManager
+    long documentVersion;
+
     public Editor getEditor() {
         return editor;
     }
@@ -46,6 +60,14 @@ public class DevPilotInstructCompletionRequest {
         this.offset = offset;
     }
 
+    public CompletionSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(CompletionSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
     public boolean isStream() {
         return stream;
     }
@@ -117,4 +139,36 @@ public class DevPilotInstructCompletionRequest {
     public void setRelatedCodeInfos(List<CompletionRelatedCodeInfo> relatedCodeInfos) {
         this.relatedCodeInfos = relatedCodeInfos;
     }
+
+    public int getWindowStart() {
+        return windowStart;
+    }
+
+    public void setWindowStart(int windowStart) {
+        this.windowStart = windowStart;
+    }
+
+    public int getDocumentLength() {
+        return documentLength;
+    }
+
+    public void setDocumentLength(int documentLength) {
+        this.documentLength = documentLength;
+    }
+
+    public String getDocumentHash() {
+        return documentHash;
+    }
+
+    public void setDocumentHash(String documentHash) {
+        this.documentHash = documentHash;
+    }
+
+    public long getDocumentVersion() {
+        return documentVersion;
+    }
+
+    public void setDocumentVersion(long documentVersion) {
+        this.documentVersion = documentVersion;
+    }
 }
@@ -0,0 +1,47 @@
+package com.zhongan.devpilot.integrations.llms.entity;
+
+/**
+ * One server sent event of a streamed instruct completion, carrying the text appended to a candidate.
+ */
+public class InstructCompletionChunk {
+
+    private int index;
+
+    private String id;
+
+    private String content;
+
+    private boolean finished;
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public void setFinished(boolean finished) {
+        this.finished = finished;
+    }
+}
@@ -100,6 +100,7 @@ public final class TrialServiceProvider implements LlmProvider {
                 body.put("session", session);
                 body.put("osName", ProcessUtils.getOSName());
                 body.put("basePath", project.getBasePath());
+                body.put("partialMode", SSEClient.getInstance(project).getPartialMessageAssembler().getPartialMode(session.getId()));
 
                 String lastUserMessageId = session.getHistoryRequestMessageList().get(session.getHistoryRequestMessageList().size() - 1).getId();
 
@@ -256,10 +257,9 @@ public final class TrialServiceProvider implements LlmProvider {
 
         Response response = null;
         try {
-            String requestBody = GatewayRequestUtils.completionRequestPureJson(instructCompletionRequest);
-
             Pair<Integer, Long> portPId = BinaryManager.INSTANCE.retrieveAlivePort();
             if (null != portPId) {
+                String requestBody = GatewayRequestUtils.completionRequestPureJson(instructCompletionRequest, portPId.first);
                 String url = REMOTE_RAG_DEFAULT_HOST + portPId.first + AGENT_INSTRUCT_COMPLETION;
                 var request = new Request.Builder()
                         .url(url)
@@ -3,16 +3,18 @@ package com.zhongan.devpilot.listener;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.event.CaretEvent;
 import com.intellij.openapi.editor.event.CaretListener;
 import com.intellij.openapi.editor.markup.GutterIconRenderer;
-import com.intellij.openapi.editor.markup.MarkupModel;
 import com.intellij.openapi.editor.markup.RangeHighlighter;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.keymap.KeymapUtil;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.EdtExecutorService;
 import com.zhongan.devpilot.completions.general.DependencyContainer;
 import com.zhongan.devpilot.completions.inline.CompletionPreview;
 import com.zhongan.devpilot.completions.inline.DefaultCompletionAdjustment;
@@ -20,8 +22,8 @@ import com.zhongan.devpilot.completions.prediction.DevPilotCompletion;
 import com.zhongan.devpilot.enums.CompletionTypeEnum;
 import com.zhongan.devpilot.util.DevPilotMessageBundle;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.Icon;
 
@@ -31,8 +33,20 @@ import org.jetbrains.annotations.Nullable;
 import static com.zhongan.devpilot.DevPilotIcons.COMPLETION_IN_PROGRESS;
 import static com.zhongan.devpilot.DevPilotIcons.SYSTEM_ICON;
 
+/**
+ * Shows the chat completion icon in the gutter of the caret line.
+ * <p>
+ * Each editor keeps a single highlighter and renderer in its user data, so no editor is referenced from here.
+ * Caret moves are coalesced: only the last position of a frame is applied, and the highlighter is only
+ * replaced when the line actually changes. A renderer showing a completion in progress stays with that
+ * completion, the line the caret moves to gets a new one.
+ */
 public class DevPilotLineIconListener implements CaretListener {
-    private static final Map<Editor, RangeHighlighter> activeHighlighters = new HashMap<>();
+    private static final Key<LineIcon> LINE_ICON = Key.create("DEVPILOT_LINE_ICON");
+
+    private static final long MOVE_DELAY_MILLIS = 16;
+
+    private static final int NO_LINE = -1;
 
     private final Project project;
 
@@ -63,7 +77,7 @@ public class DevPilotLineIconListener implements CaretListener {
         int line = event.getCaret().getLogicalPosition().line;
 
         // 更新光标所在行的图标
-        updateGutterIcon(editor, line);
+        scheduleGutterIconMove(editor, line);
     }
 
     private boolean isNonEditableEditor(Editor editor) {
@@ -73,37 +87,105 @@ public class DevPilotLineIconListener implements CaretListener {
     }
 
     public static DevPilotGutterIconRenderer updateGutterIcon(Editor editor, int line) {
-        MarkupModel markupModel = editor.getMarkupModel();
+        LineIcon lineIcon = getLineIcon(editor);
+        lineIcon.pendingLine = NO_LINE;
+        return moveGutterIcon(editor, lineIcon, line);
+    }
+
+    private static void scheduleGutterIconMove(Editor editor, int line) {
+        LineIcon lineIcon = getLineIcon(editor);
+        lineIcon.pendingLine = line;
+        if (lineIcon.moveScheduled) {
+            return;
+        }
+
+        lineIcon.moveScheduled = true;
+        var editorReference = new WeakReference<>(editor);
+        EdtExecutorService.getScheduledExecutorInstance().schedule(() -> {
+            Editor target = editorReference.get();
+            if (target == null || target.isDisposed()) {
+                return;
+            }
+
+            getLineIcon(target).moveScheduled = false;
+            flushPendingMove(target);
+        }, MOVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Apply the last caret line of the editor right away instead of waiting for the scheduled move.
+     */
+    static void flushPendingMove(Editor editor) {
+        LineIcon lineIcon = editor.getUserData(LINE_ICON);
+        if (lineIcon != null && lineIcon.pendingLine != NO_LINE) {
+            int pendingLine = lineIcon.pendingLine;
+            lineIcon.pendingLine = NO_LINE;
+            moveGutterIcon(editor, lineIcon, pendingLine);
+        }
+    }
+
+    private static DevPilotGutterIconRenderer moveGutterIcon(Editor editor, LineIcon lineIcon, int line) {
+        Document document = editor.getDocument();
+        // the document may have changed since the move was scheduled
+        int targetLine = Math.max(0, Math.min(line, document.getLineCount() - 1));
+
+        RangeHighlighter highlighter = lineIcon.highlighter;
+        if (highlighter != null && highlighter.isValid()
+                && document.getLineNumber(highlighter.getStartOffset()) == targetLine) {
+            return lineIcon.renderer;
+        }
 
         // 清理之前的高亮
-        removePreviousHighlight(editor);
+        removeHighlighter(editor, lineIcon);
+
+        // a completion still loading keeps the renderer it was started with, the new line gets its own
+        if (lineIcon.renderer.isLoading()) {
+            lineIcon.renderer = new DevPilotGutterIconRenderer();
+        }
 
         // 添加新的高亮图标
-        RangeHighlighter highlighter = markupModel.addLineHighlighter(line, 0, null);
-        var gutterIconRenderer = new DevPilotGutterIconRenderer(line);
-        highlighter.setGutterIconRenderer(gutterIconRenderer);
-        activeHighlighters.put(editor, highlighter);
-        return gutterIconRenderer;
+        highlighter = editor.getMarkupModel().addLineHighlighter(targetLine, 0, null);
+        highlighter.setGutterIconRenderer(lineIcon.renderer);
+        lineIcon.highlighter = highlighter;
+        return lineIcon.renderer;
     }
 
     private static void removePreviousHighlight(Editor editor) {
-        if (activeHighlighters.containsKey(editor)) {
-            RangeHighlighter highlighter = activeHighlighters.get(editor);
-            if (highlighter != null) {
-                editor.getMarkupModel().removeHighlighter(highlighter);
-            }
-            activeHighlighters.remove(editor);
+        LineIcon lineIcon = editor.getUserData(LINE_ICON);
+        if (lineIcon != null) {
+            lineIcon.pendingLine = NO_LINE;
+            removeHighlighter(editor, lineIcon);
         }
     }
 
-    public static class DevPilotGutterIconRenderer extends GutterIconRenderer {
-        private final int line;
-
-        private boolean isLoading;
+    private static void removeHighlighter(Editor editor, LineIcon lineIcon) {
+        if (lineIcon.highlighter != null) {
+            editor.getMarkupModel().removeHighlighter(lineIcon.highlighter);
+            lineIcon.highlighter = null;
+        }
+    }
 
-        DevPilotGutterIconRenderer(int line) {
-            this.line = line;
+    private static LineIcon getLineIcon(Editor editor) {
+        LineIcon lineIcon = editor.getUserData(LINE_ICON);
+        if (lineIcon == null) {
+            lineIcon = new LineIcon();
+            editor.putUserData(LINE_ICON, lineIcon);
         }
+        return lineIcon;
+    }
+
+    private static class LineIcon {
+        private DevPilotGutterIconRenderer renderer = new DevPilotGutterIconRenderer();
+
+        private RangeHighlighter highlighter;
+
+        private int pendingLine = NO_LINE;
+
+        private boolean moveScheduled;
+    }
+
+    public static class DevPilotGutterIconRenderer extends GutterIconRenderer {
+        private boolean isLoading;
 
         @Override
         public @NotNull Icon getIcon() {
@@ -148,14 +230,15 @@ public class DevPilotLineIconListener implements CaretListener {
             isLoading = loading;
         }
 
+        // one renderer follows the caret of an editor, it is only ever equal to itself
         @Override
         public boolean equals(Object obj) {
-            return obj instanceof DevPilotGutterIconRenderer && line == ((DevPilotGutterIconRenderer) obj).line;
+            return obj == this;
         }
 
         @Override
         public int hashCode() {
-            return Integer.hashCode(line);
+            return System.identityHashCode(this);
         }
     }
 }
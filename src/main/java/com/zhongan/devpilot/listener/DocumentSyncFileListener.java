@@ -0,0 +1,40 @@
+package com.zhongan.devpilot.listener;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.zhongan.devpilot.completions.sync.DocumentSyncManager;
+
+import org.jetbrains.annotations.NotNull;
+
+public class DocumentSyncFileListener implements FileEditorManagerListener {
+
+    @Override
+    public void fileClosed(@NotNull FileEditorManager source, @NotNull VirtualFile file) {
+        if (!source.isFileOpen(file)) {
+            closeIfUnused(file, source.getProject());
+        }
+    }
+
+    /**
+     * Close the document of a file on the agent unless an editor outside the given project still shows it.
+     */
+    public static void closeIfUnused(@NotNull VirtualFile file, @NotNull Project closing) {
+        Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+        if (document == null) {
+            return;
+        }
+
+        for (Editor editor : EditorFactory.getInstance().getEditors(document)) {
+            if (editor.getProject() != closing) {
+                return;
+            }
+        }
+        DocumentSyncManager.INSTANCE.close(document);
+    }
+}
@@ -1,9 +1,11 @@
 package com.zhongan.devpilot.listener;
 
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
 import com.intellij.openapi.project.ProjectManagerListener;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.zhongan.devpilot.agents.BinaryManager;
 import com.zhongan.devpilot.sse.SSEClient;
 import com.zhongan.devpilot.util.ProjectUtil;
@@ -19,6 +21,9 @@ public class MultiProjectManagerListener implements ProjectManagerListener {
 
     public void projectClosing(@NotNull Project project) {
         SSEClient.removeInstance(project);
+        for (VirtualFile file : FileEditorManager.getInstance(project).getOpenFiles()) {
+            DocumentSyncFileListener.closeIfUnused(file, project);
+        }
         Project[] openProjects = ProjectManager.getInstance().getOpenProjects();
         if (openProjects.length == 1) {
             LOG.warn("Last project: " + ProjectUtil.getProjectIdentifier(project) + " closed, kill the agent process");
@@ -0,0 +1,22 @@
+package com.zhongan.devpilot.listener;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.zhongan.devpilot.completions.prediction.SdkPathCache;
+
+import org.jetbrains.annotations.NotNull;
+
+public class SdkPathRootsListener implements ModuleRootListener {
+
+    private final Project project;
+
+    public SdkPathRootsListener(Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public void rootsChanged(@NotNull ModuleRootEvent event) {
+        SdkPathCache.INSTANCE.invalidate(project);
+    }
+}
@@ -28,6 +28,7 @@ import com.intellij.psi.util.PropertyUtil;
 import com.intellij.psi.util.PsiFormatUtil;
 import com.intellij.psi.util.PsiFormatUtilBase;
 import com.zhongan.devpilot.constant.PromptConst;
+import com.zhongan.devpilot.embedding.RecallHitResolver;
 import com.zhongan.devpilot.embedding.entity.DevPilotFileInfo;
 import com.zhongan.devpilot.embedding.entity.FileMeta;
 import com.zhongan.devpilot.embedding.entity.FunctionMeta;
@@ -162,9 +163,7 @@ public class JavaFileAnalyzeProvider implements FileAnalyzeProvider {
         }
 
         if (localEmbeddingRef != null && !localEmbeddingRef.isEmpty()) {
-            String codeList = localEmbeddingRef.stream()
-                    .map(hitData -> PsiElementUtils.getCodeBlock(project,
-                            hitData.getFilePath(), hitData.getStartOffset(), hitData.getEndOffset()))
+            String codeList = new RecallHitResolver(project).resolveAll(localEmbeddingRef).stream()
                     .filter(code -> !StringUtils.isEmpty(code))
                     .collect(Collectors.joining("\n"));
 
@@ -7,14 +7,16 @@ import com.intellij.openapi.project.Project;
 import com.zhongan.devpilot.agents.BinaryManager;
 import com.zhongan.devpilot.constant.DefaultConst;
 import com.zhongan.devpilot.integrations.llms.LlmProviderFactory;
+import com.zhongan.devpilot.session.model.ChatSearchHit;
+import com.zhongan.devpilot.session.model.ChatSearchResult;
 import com.zhongan.devpilot.session.model.ChatSession;
+import com.zhongan.devpilot.session.model.ChatSessionSummary;
+import com.zhongan.devpilot.settings.state.SessionStorageSettingsState;
 import com.zhongan.devpilot.sse.SSEClient;
 import com.zhongan.devpilot.util.JsonUtils;
 import com.zhongan.devpilot.util.ProjectUtil;
 
 import java.io.File;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -22,9 +24,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 
@@ -38,13 +40,16 @@ public class ChatSessionManager {
 
     private static final String SESSIONS_DIR = ".session_histories";
 
-    private static final int MAX_SESSIONS = 20;
+    private static final String SESSION_JOURNALS_DIR = ".session_journals";
+
+    public static final int HISTORY_SEARCH_LIMIT = 20;
 
     private final String basePath;
 
     private ChatSession currentSession;
 
-    private List<ChatSession> sessions = new ArrayList<>();
+    private final SessionHotTier hotTier = new SessionHotTier(
+            () -> SessionStorageSettingsState.getInstance().getHotTierMegabytes() * 1024L * 1024L);
 
     private boolean sessionUpdated = false;
 
@@ -54,17 +59,29 @@ public class ChatSessionManager {
 
     private final Object syncLock = new Object();
 
+    // serialises the storage maintenance with the session reads and writes, never held while waiting for the EDT
+    private final Object storageLock = new Object();
+
+    private final SessionJournal journal;
+
+    private final SessionSummaryIndex summaryIndex;
+
     public ChatSessionManager(Project project) {
         this.project = project;
         File homeDir = BinaryManager.INSTANCE.getHomeDir();
 
         this.basePath = homeDir.getPath() + File.separator + SESSIONS_DIR;
         initializeSessionsDirectory();
-        loadingSessions();
-        if (sessions.isEmpty()) {
+        this.journal = new SessionJournal(new File(homeDir, SESSION_JOURNALS_DIR));
+        this.summaryIndex = new SessionSummaryIndex(new File(basePath), journal);
+        summaryIndex.refresh();
+
+        ChatSessionSummary latest = summaryIndex.latest();
+        ChatSession latestSession = latest == null ? null : findSession(latest.getId());
+        if (latestSession == null) {
             createNewSession();
         } else {
-            currentSession = sessions.get(0);
+            currentSession = latestSession;
             log.warn("Initial current session by construction. Current session id:" + currentSession.getId() + ".");
         }
 //        switchSession(currentSession.getId());
@@ -77,26 +94,147 @@ public class ChatSessionManager {
         }
     }
 
-    private void loadingSessions() {
-        File directory = new File(basePath);
-        if (directory.exists()) {
-            File[] files = directory.listFiles((dir, name) -> name.endsWith(".json"));
-            if (files != null) {
-                for (File file : files) {
-                    try {
-                        String json = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
-                        ChatSession session = JsonUtils.fromJson(json, ChatSession.class);
-                        if (session != null) {
-                            makeUpForChatMode(session);
-                            sessions.add(session);
-                        }
-                    } catch (IOException e) {
-                        sessions.clear();
+    /**
+     * Find a session by id, the message bodies are replayed from its journal the first time it is opened.
+     * Sessions only persisted by the agent are read from its file and migrated to a journal.
+     */
+    private ChatSession findSession(String sessionId) {
+        synchronized (storageLock) {
+            ChatSession session = hotTier.get(sessionId);
+            if (session != null) {
+                return session;
+            }
+
+            session = readSession(sessionId, true);
+            if (session == null) {
+                return null;
+            }
+            makeUpForChatMode(session);
+            hotTier.put(session, currentSessionId());
+            return session;
+        }
+    }
+
+    private ChatSession readSession(String sessionId, boolean migrate) {
+        ChatSession session = journal.load(sessionId);
+        if (session != null) {
+            return session;
+        }
+
+        File file = summaryIndex.getFile(sessionId);
+        session = file == null ? null : JsonUtils.fromJson(file, ChatSession.class);
+        if (session == null || !StringUtils.equals(session.getId(), sessionId)) {
+            return null;
+        }
+        if (migrate) {
+            journal.compact(session);
+        }
+        return session;
+    }
+
+    private void persist(ChatSession session) {
+        synchronized (storageLock) {
+            journal.append(session);
+            summaryIndex.update(session);
+            hotTier.put(session, currentSessionId());
+        }
+        SessionSearchIndex.getInstance().update(session);
+    }
+
+    private String currentSessionId() {
+        return currentSession == null ? null : currentSession.getId();
+    }
+
+    /**
+     * Delete the sessions past the retention and compress the idle ones, see {@link SessionStorageSettingsState}.
+     * Each step holds the storage lock for a single session, so the EDT never waits for the whole pass.
+     */
+    private void maintainStorage() {
+        SessionStorageSettingsState settings = SessionStorageSettingsState.getInstance();
+        SessionRetentionPolicy policy = new SessionRetentionPolicy(settings.getRetentionDays(),
+                settings.getMaxStorageMegabytes(), settings.getColdAfterDays());
+        long now = System.currentTimeMillis();
+
+        List<String> expired;
+        List<String> cold;
+        synchronized (storageLock) {
+            summaryIndex.refresh();
+            expired = policy.selectExpired(summaryIndex.getSummaries(), this::diskSize, now, currentSessionId());
+            cold = policy.selectCold(summaryIndex.getSummaries(), now, currentSessionId());
+        }
+        for (String sessionId : expired) {
+            deleteSession(sessionId, Boolean.TRUE);
+        }
+
+        int frozen = 0;
+        for (String sessionId : cold) {
+            synchronized (storageLock) {
+                if (StringUtils.equals(sessionId, currentSessionId()) || hotTier.get(sessionId) != null
+                        || journal.isCold(sessionId) || !journal.freeze(sessionId)) {
+                    continue;
+                }
+                // the journal holds the session, the agent gets its copy back when the session is opened again
+                agentCopy(sessionId).delete();
+                frozen++;
+            }
+        }
+
+        // catch up with the sessions changed outside of this plugin, or indexed before the index existed
+        SessionSearchIndex searchIndex = SessionSearchIndex.getInstance();
+        int indexed = 0;
+        for (ChatSessionSummary summary : summaryIndex.getSummaries()) {
+            if (!searchIndex.isIndexed(summary.getId(), summary.getUpdateTime())) {
+                ChatSession session;
+                synchronized (storageLock) {
+                    session = hotTier.get(summary.getId());
+                    if (session == null) {
+                        session = readSession(summary.getId(), false);
                     }
                 }
+                if (session != null) {
+                    searchIndex.update(session);
+                    indexed++;
+                }
             }
         }
-        sortSessionsByUpdateTime();
+        log.info("Session storage maintained, expired:" + expired.size() + ", frozen:" + frozen + ", indexed:" + indexed
+                + ", hot sessions:" + hotTier.size() + ", hot bytes:" + hotTier.getUsedBytes() + ".");
+    }
+
+    /**
+     * Session file the agent writes for every save, a duplicate of the journal.
+     */
+    private File agentCopy(String sessionId) {
+        return new File(basePath, sessionId + ".json");
+    }
+
+    /**
+     * Search the chat history.
+     *
+     * @param query free text, every term must match a word or a word prefix
+     * @param limit max hits
+     * @return matching messages best first, with the title of their session
+     */
+    public ChatSearchResult searchHistory(String query, int limit) {
+        long start = System.nanoTime();
+        Map<String, ChatSessionSummary> summaries = new HashMap<>();
+        for (ChatSessionSummary summary : summaryIndex.getSummaries()) {
+            summaries.put(summary.getId(), summary);
+        }
+
+        List<ChatSearchHit> hits = new ArrayList<>();
+        for (ChatSearchHit hit : SessionSearchIndex.getInstance().search(query, limit)) {
+            ChatSessionSummary summary = summaries.get(hit.getSessionId());
+            if (summary != null) {
+                hit.setTitle(summary.getTitle());
+                hits.add(hit);
+            }
+        }
+        return new ChatSearchResult(query, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), hits);
+    }
+
+    private long diskSize(String sessionId) {
+        return journal.diskSize(sessionId) + agentCopy(sessionId).length();
     }
 
     private void makeUpForChatMode(ChatSession session) {
@@ -105,10 +243,6 @@ public class ChatSessionManager {
         }
     }
 
-    private void sortSessionsByUpdateTime() {
-        sessions.sort(Comparator.comparing(ChatSession::getUpdateTime).reversed());
-    }
-
     public void createNewSessionWithChatMode(int chatMode) {
         createNewSession();
         currentSession.setChatMode(chatMode);
@@ -123,20 +257,14 @@ public class ChatSessionManager {
             log.warn("Cleared current session:" + currentSession.getId() + " for skipping creating new session.");
             return currentSession;
         }
-        while (sessions.size() > MAX_SESSIONS) {
-            sortSessionsByUpdateTime();
-            ChatSession oldestSession = sessions.get(sessions.size() - 1);
-            deleteSession(oldestSession.getId(), Boolean.TRUE);
-        }
-
         ChatSession session = new ChatSession();
         session.setChatMode(null == currentSession ? DefaultConst.AGENT_CHAT_TYPE : currentSession.getChatMode());
         session.setId(UUID.randomUUID().toString());
         session.setCreateTime(System.currentTimeMillis());
         session.setUpdateTime(System.currentTimeMillis());
 
-        sessions.add(session);
         currentSession = session;
+        hotTier.put(session, session.getId());
         log.warn("Created new session:" + currentSession.getId() + ".");
         return session;
 
@@ -148,6 +276,7 @@ public class ChatSessionManager {
             return;
         }
         session.setUpdateTime(System.currentTimeMillis());
+        persist(session);
         Map<String, Object> map = new HashMap<>();
         map.put("clientId", getClientId());
         map.put("session", session);
@@ -157,9 +286,16 @@ public class ChatSessionManager {
     }
 
     public void deleteSession(String sessionId, boolean directDeleteFlag) {
-        sessions.removeIf(s -> s.getId().equals(sessionId));
+        synchronized (storageLock) {
+            hotTier.remove(sessionId);
+            summaryIndex.remove(sessionId);
+            journal.delete(sessionId);
+        }
+        SessionSearchIndex.getInstance().remove(sessionId);
         if (!directDeleteFlag && (currentSession != null && currentSession.getId().equals(sessionId))) {
-            currentSession = sessions.isEmpty() ? createNewSession() : getLastModifiedSession();
+            ChatSessionSummary latest = summaryIndex.latest();
+            ChatSession latestSession = latest == null ? null : findSession(latest.getId());
+            currentSession = latestSession == null ? createNewSession() : latestSession;
             log.warn("Deleted session:" + sessionId + ", and switched to session:" + currentSession.getId() + ".");
         }
 
@@ -171,11 +307,17 @@ public class ChatSessionManager {
     }
 
     public void switchSession(String sessionId) {
-        for (ChatSession session : sessions) {
-            if (session.getId().equals(sessionId)) {
-                currentSession = session;
-                log.warn("Switched to session:" + currentSession.getId() + ".");
-                break;
+        ChatSession session = findSession(sessionId);
+        if (session != null) {
+            currentSession = session;
+            log.warn("Switched to session:" + currentSession.getId() + ".");
+            if (CollectionUtils.isNotEmpty(session.getHistoryRequestMessageList()) && !agentCopy(session.getId()).exists()) {
+                // the agent copy of a compressed session was dropped, let the agent write it again
+                Map<String, Object> map = new HashMap<>();
+                map.put("clientId", getClientId());
+                map.put("session", session);
+                map.put("sessionDir", basePath);
+                publishEvent("Session-Saved", map);
             }
         }
         Map<String, Object> map = buildClientSessionMap();
@@ -214,23 +356,35 @@ public class ChatSessionManager {
         return currentChatMode;
     }
 
-    private ChatSession getLastModifiedSession() {
-        sortSessionsByUpdateTime();
-        return sessions.get(0);
-    }
-
     /**
-     * Retrieve sessions for rendering history.
+     * Retrieve sessions from the agent, they only refresh the summaries and are not kept in memory.
      *
-     * @return ChatSession list
+     * @return ChatSession list, the current session only if the agent has none
      */
     public List<ChatSession> getSessions() {
         List<ChatSession> remoteSessions = LlmProviderFactory.INSTANCE.getLlmProvider(this.project).retrieveSessions(buildClientSessionMap());
-        if (CollectionUtils.isNotEmpty(remoteSessions)) {
-            sessions = remoteSessions;
+        if (CollectionUtils.isEmpty(remoteSessions)) {
+            List<ChatSession> localSessions = new ArrayList<>();
+            if (currentSession != null) {
+                localSessions.add(currentSession);
+            }
+            return localSessions;
+        }
+        summaryIndex.updateAll(remoteSessions);
+        remoteSessions.sort(Comparator.comparing(ChatSession::getUpdateTime).reversed());
+        return remoteSessions;
+    }
+
+    /**
+     * Retrieve the session summaries for rendering history, without loading the message bodies.
+     *
+     * @return ChatSessionSummary list, latest first
+     */
+    public List<ChatSessionSummary> getSessionSummaries() {
+        synchronized (storageLock) {
+            summaryIndex.refresh();
+            return summaryIndex.visibleSummaries();
         }
-        sortSessionsByUpdateTime();
-        return new ArrayList<>(sessions);
     }
 
     public boolean isSessionUpdated() {
@@ -243,6 +397,7 @@ public class ChatSessionManager {
 
     public void deleteMessage(String id) {
         currentSession.setUpdateTime(System.currentTimeMillis());
+        persist(currentSession);
         Map<String, Object> map = new HashMap<>();
         map.put("clientId", getClientId());
         map.put("session", currentSession);
@@ -253,6 +408,7 @@ public class ChatSessionManager {
 
     public void sessionUIRefreshed() {
         if (CollectionUtils.isNotEmpty(currentSession.getHistoryMessageList())) {
+            persist(currentSession);
             Map<String, Object> map = new HashMap<>();
             map.put("clientId", getClientId());
             map.put("session", currentSession);
@@ -281,6 +437,7 @@ public class ChatSessionManager {
         currentSession.setContainsRequireResourcePrompts(Boolean.FALSE);
         currentSession.setContainsRequirePromptsPrompts(Boolean.FALSE);
         currentSession.setUpdateTime(System.currentTimeMillis());
+        persist(currentSession);
         Map<String, Object> map = new HashMap<>();
         map.put("clientId", getClientId());
         map.put("session", currentSession);
@@ -304,22 +461,28 @@ public class ChatSessionManager {
     public void loadSessions(String clientId) {
         synchronized (syncLock) {
             this.clientId = clientId;
-            sessions = LlmProviderFactory.INSTANCE.getLlmProvider(this.project).retrieveSessions(buildClientSessionMap());
+            List<ChatSession> remoteSessions = LlmProviderFactory.INSTANCE.getLlmProvider(this.project).retrieveSessions(buildClientSessionMap());
+            if (remoteSessions == null) {
+                remoteSessions = new ArrayList<>();
+            }
+            summaryIndex.updateAll(remoteSessions);
 
             if (null == currentSession) {
-                if (sessions.isEmpty()) {
+                if (remoteSessions.isEmpty()) {
                     createNewSession();
                 } else {
-                    currentSession = sessions.get(0);
+                    currentSession = remoteSessions.get(0);
+                    hotTier.put(currentSession, currentSession.getId());
                     log.warn("Loaded session:" + currentSession.getId() + ".");
                 }
             } else {
-                if (sessions.stream().noneMatch(session -> session.getId().equals(currentSession.getId()))) {
+                if (remoteSessions.stream().noneMatch(session -> session.getId().equals(currentSession.getId()))) {
                     createNewSession();
                 }
             }
             switchSession(currentSession.getId());
         }
+        ApplicationManager.getApplication().executeOnPooledThread(this::maintainStorage);
     }
 
     private void publishEvent(String event, Object data) {
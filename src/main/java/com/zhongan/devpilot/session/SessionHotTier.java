@@ -0,0 +1,161 @@
+package com.zhongan.devpilot.session;
+
+import com.zhongan.devpilot.integrations.llms.entity.DevPilotMessage;
+import com.zhongan.devpilot.session.model.ChatSession;
+import com.zhongan.devpilot.webview.model.MessageModel;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Sessions kept materialized in memory, least recently used first out.
+ * <p>
+ * Every session is accounted with an estimate of its heap footprint, kept up to date incrementally: a put of the
+ * same session only measures the messages added since the previous one, plus the last one which may still be
+ * streaming. Lists that shrank or were replaced are measured again. Once the total goes over the budget, the
+ * least recently used sessions are dropped; they are already persisted in the journal and paged back in when
+ * opened again. The pinned session, usually the current one, is never dropped.
+ */
+public class SessionHotTier {
+    // rough heap cost of a message besides its text: the model object, its id, timestamps and list slot
+    private static final long MESSAGE_OVERHEAD_BYTES = 256;
+
+    private final LongSupplier budgetBytes;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long usedBytes;
+
+    public SessionHotTier(LongSupplier budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public synchronized ChatSession get(String sessionId) {
+        Entry entry = entries.get(sessionId);
+        return entry == null ? null : entry.session;
+    }
+
+    /**
+     * Add a session or account its new size, then evict over the budget.
+     *
+     * @param session  the session to keep in memory
+     * @param pinnedId id of the session that must stay in memory
+     */
+    public synchronized void put(ChatSession session, String pinnedId) {
+        Entry entry = entries.get(session.getId());
+        if (entry == null || entry.session != session) {
+            if (entry != null) {
+                usedBytes -= entry.bytes;
+            }
+            entry = new Entry(session);
+            entries.put(session.getId(), entry);
+        } else {
+            usedBytes -= entry.bytes;
+        }
+        entry.measure();
+        usedBytes += entry.bytes;
+        evict(pinnedId);
+    }
+
+    public synchronized void remove(String sessionId) {
+        Entry entry = entries.remove(sessionId);
+        if (entry != null) {
+            usedBytes -= entry.bytes;
+        }
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void evict(String pinnedId) {
+        long budget = budgetBytes.getAsLong();
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (usedBytes > budget && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            if (StringUtils.equals(eldest.getKey(), pinnedId)) {
+                continue;
+            }
+            usedBytes -= eldest.getValue().bytes;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Full estimate of a session, as accounted by {@link #put}.
+     */
+    static long estimateBytes(ChatSession session) {
+        Entry entry = new Entry(session);
+        entry.measure();
+        return entry.bytes;
+    }
+
+    private static class Entry {
+        private final ChatSession session;
+
+        private final Footprint<MessageModel> messages = new Footprint<>(MessageModel::getContent);
+
+        private final Footprint<DevPilotMessage> requests = new Footprint<>(DevPilotMessage::getContent);
+
+        private long bytes;
+
+        Entry(ChatSession session) {
+            this.session = session;
+        }
+
+        void measure() {
+            bytes = MESSAGE_OVERHEAD_BYTES + messages.measure(session.getHistoryMessageList())
+                    + requests.measure(session.getHistoryRequestMessageList());
+        }
+    }
+
+    private static class Footprint<T> {
+        private final Function<T, String> content;
+
+        private List<T> list;
+
+        // items seen by the last measure
+        private int counted;
+
+        // bytes of all counted items but the last one
+        private long settledBytes;
+
+        Footprint(Function<T, String> content) {
+            this.content = content;
+        }
+
+        long measure(List<T> items) {
+            if (items != list || items == null || items.size() < counted) {
+                list = items;
+                counted = 0;
+                settledBytes = 0;
+            }
+            if (items == null) {
+                return 0;
+            }
+
+            // measure the last counted item again, then add the new ones
+            long settled = settledBytes;
+            for (int i = Math.max(counted - 1, 0); i < items.size() - 1; i++) {
+                settled += itemBytes(items.get(i));
+            }
+            counted = items.size();
+            settledBytes = settled;
+            return items.isEmpty() ? settled : settled + itemBytes(items.get(items.size() - 1));
+        }
+
+        private long itemBytes(T item) {
+            return MESSAGE_OVERHEAD_BYTES + 2L * StringUtils.length(content.apply(item));
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.zhongan.devpilot.session;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.zhongan.devpilot.integrations.llms.entity.DevPilotMessage;
+import com.zhongan.devpilot.session.model.ChatSession;
+import com.zhongan.devpilot.session.model.ChatSessionJournalRecord;
+import com.zhongan.devpilot.session.model.ChatSessionSummary;
+import com.zhongan.devpilot.util.JsonUtils;
+import com.zhongan.devpilot.webview.model.AgentDecisionModel;
+import com.zhongan.devpilot.webview.model.MessageModel;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Append-only journal of the sessions saved by this plugin, one journal and one header file per session.
+ * <p>
+ * Each save appends a single line holding only what changed since the previous save: the length of the common
+ * prefix of both message lists, the items after it and the session flags. The header is a small summary of the
+ * session rewritten atomically on every save, so the history can be listed without opening the journals. After
+ * {@link #COMPACT_RECORDS} changes, or when the journal state of a session is unknown, the journal is rewritten
+ * as a single snapshot. Replay stops at the first unreadable line, so a crash of the IDE loses at most the record
+ * being written; the journal state is then left unknown, so the next save rewrites the torn journal instead of
+ * appending after its broken tail.
+ * <p>
+ * Idle sessions are moved to the cold tier by {@link #freeze(String)}: the journal is replaced by a gzip compressed
+ * snapshot, which is paged in on access and turned back into a plain journal on the next save.
+ */
+public class SessionJournal {
+    private static final Logger LOG = Logger.getInstance(SessionJournal.class);
+
+    public static final String JOURNAL_SUFFIX = ".journal";
+
+    public static final String HEADER_SUFFIX = ".header";
+
+    public static final String COLD_SUFFIX = ".journal.gz";
+
+    private static final int COMPACT_RECORDS = 64;
+
+    private final File directory;
+
+    // session id -> what the journal on disk currently holds
+    private final Map<String, JournalState> states = new ConcurrentHashMap<>();
+
+    public SessionJournal(File directory) {
+        this.directory = directory;
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Persist the changes of a session since its previous save.
+     */
+    public synchronized void append(ChatSession session) {
+        if (session == null || StringUtils.isEmpty(session.getId())) {
+            return;
+        }
+
+        JournalState state = states.get(session.getId());
+        if (state == null || state.records >= COMPACT_RECORDS || !journalFile(session.getId()).exists()) {
+            compact(session);
+            return;
+        }
+
+        List<Long> messagePrints = fingerprintMessages(session.getHistoryMessageList());
+        List<Long> requestPrints = fingerprintRequests(session.getHistoryRequestMessageList());
+        int keepMessages = commonPrefix(state.messagePrints, messagePrints);
+        int keepRequests = commonPrefix(state.requestPrints, requestPrints);
+
+        ChatSessionJournalRecord record = ChatSessionJournalRecord.delta(session, keepMessages, keepRequests);
+        if (!appendLine(journalFile(session.getId()), JsonUtils.toJson(record))) {
+            states.remove(session.getId());
+            return;
+        }
+        states.put(session.getId(), new JournalState(messagePrints, requestPrints, state.records + 1));
+        writeHeader(session);
+    }
+
+    /**
+     * Rewrite the journal of a session as a single snapshot.
+     */
+    public synchronized void compact(ChatSession session) {
+        File journal = journalFile(session.getId());
+        File temp = new File(directory, session.getId() + JOURNAL_SUFFIX + ".tmp");
+        try {
+            Files.writeString(temp.toPath(), JsonUtils.toJson(ChatSessionJournalRecord.snapshot(session)) + "\n", StandardCharsets.UTF_8);
+            Files.move(temp.toPath(), journal.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Error occurred while compacting journal of session:" + session.getId() + ".", e);
+            states.remove(session.getId());
+            return;
+        }
+        coldFile(session.getId()).delete();
+        states.put(session.getId(), new JournalState(fingerprintMessages(session.getHistoryMessageList()),
+                fingerprintRequests(session.getHistoryRequestMessageList()), 0));
+        writeHeader(session);
+    }
+
+    /**
+     * Move a session to the cold tier, the journal is replaced by a compressed snapshot.
+     *
+     * @return whether the session is now cold
+     */
+    public synchronized boolean freeze(String sessionId) {
+        if (!journalFile(sessionId).exists()) {
+            return coldFile(sessionId).exists();
+        }
+        ChatSession session = load(sessionId);
+        if (session == null) {
+            return false;
+        }
+
+        File cold = coldFile(sessionId);
+        File temp = new File(directory, sessionId + COLD_SUFFIX + ".tmp");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(temp))) {
+            out.write((JsonUtils.toJson(ChatSessionJournalRecord.snapshot(session)) + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOG.warn("Error occurred while freezing session:" + sessionId + ".", e);
+            temp.delete();
+            return false;
+        }
+
+        try {
+            Files.move(temp.toPath(), cold.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Error occurred while freezing session:" + sessionId + ".", e);
+            return false;
+        }
+        journalFile(sessionId).delete();
+        // the next save rewrites a plain journal from a snapshot
+        states.remove(sessionId);
+        return true;
+    }
+
+    public boolean isCold(String sessionId) {
+        return coldFile(sessionId).exists() && !journalFile(sessionId).exists();
+    }
+
+    /**
+     * Bytes the session takes in the journal directory.
+     */
+    public long diskSize(String sessionId) {
+        return journalFile(sessionId).length() + coldFile(sessionId).length() + headerFile(sessionId).length();
+    }
+
+    /**
+     * Replay the journal of a session, or page it in from the cold tier. Null if there is none or it holds no
+     * snapshot.
+     */
+    public synchronized ChatSession load(String sessionId) {
+        File journal = journalFile(sessionId);
+        boolean cold = !journal.exists();
+        if (cold && !coldFile(sessionId).exists()) {
+            return null;
+        }
+
+        ChatSession session = null;
+        int records = 0;
+        boolean torn = false;
+        try (BufferedReader reader = cold ? openCold(sessionId) : Files.newBufferedReader(journal.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (StringUtils.isBlank(line)) {
+                    continue;
+                }
+                ChatSessionJournalRecord record = JsonUtils.fromJson(line, ChatSessionJournalRecord.class);
+                if (record == null) {
+                    LOG.warn("Stop replaying journal of session:" + sessionId + " at an unreadable record.");
+                    torn = true;
+                    break;
+                }
+                if (ChatSessionJournalRecord.SNAPSHOT.equals(record.getType())) {
+                    session = record.getSession();
+                    records = 0;
+                } else if (session != null) {
+                    record.applyTo(session);
+                    records++;
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Error occurred while replaying journal of session:" + sessionId + ".", e);
+            torn = true;
+        }
+
+        if (session == null || !StringUtils.equals(sessionId, session.getId())) {
+            states.remove(sessionId);
+            return null;
+        }
+        if (cold || torn || !endsWithNewline(journal)) {
+            // nothing to append to yet, or records appended after a torn tail would never be replayed; the next
+            // save writes a plain journal from a snapshot
+            states.remove(sessionId);
+        } else {
+            states.put(sessionId, new JournalState(fingerprintMessages(session.getHistoryMessageList()),
+                    fingerprintRequests(session.getHistoryRequestMessageList()), records));
+        }
+        return session;
+    }
+
+    public ChatSessionSummary readHeader(File header) {
+        return JsonUtils.fromJson(header, ChatSessionSummary.class);
+    }
+
+    public synchronized void delete(String sessionId) {
+        states.remove(sessionId);
+        journalFile(sessionId).delete();
+        coldFile(sessionId).delete();
+        headerFile(sessionId).delete();
+    }
+
+    private BufferedReader openCold(String sessionId) throws IOException {
+        return new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(coldFile(sessionId))), StandardCharsets.UTF_8));
+    }
+
+    private void writeHeader(ChatSession session) {
+        File header = headerFile(session.getId());
+        File temp = new File(directory, session.getId() + HEADER_SUFFIX + ".tmp");
+        try {
+            Files.writeString(temp.toPath(), JsonUtils.toJson(ChatSessionSummary.of(session)), StandardCharsets.UTF_8);
+            Files.move(temp.toPath(), header.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Error occurred while writing header of session:" + session.getId() + ".", e);
+        }
+    }
+
+    private boolean appendLine(File journal, String line) {
+        if (line == null) {
+            return false;
+        }
+        try (FileOutputStream out = new FileOutputStream(journal, true)) {
+            out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Error occurred while appending to journal:" + journal.getName() + ".", e);
+            return false;
+        }
+    }
+
+    private static boolean endsWithNewline(File file) {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if (in.length() == 0) {
+                return false;
+            }
+            in.seek(in.length() - 1);
+            return in.read() == '\n';
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private File journalFile(String sessionId) {
+        return new File(directory, sessionId + JOURNAL_SUFFIX);
+    }
+
+    private File headerFile(String sessionId) {
+        return new File(directory, sessionId + HEADER_SUFFIX);
+    }
+
+    private File coldFile(String sessionId) {
+        return new File(directory, sessionId + COLD_SUFFIX);
+    }
+
+    private static int commonPrefix(List<Long> persisted, List<Long> current) {
+        int size = Math.min(persisted.size(), current.size());
+        int prefix = 0;
+        while (prefix < size && persisted.get(prefix).equals(current.get(prefix))) {
+            prefix++;
+        }
+        // the last item may have been changed in place (streamed content, approved decisions), always rewrite it
+        return Math.min(prefix, Math.max(0, current.size() - 1));
+    }
+
+    private static List<Long> fingerprintMessages(List<MessageModel> messages) {
+        List<Long> prints = new ArrayList<>(messages.size());
+        for (MessageModel message : messages) {
+            List<AgentDecisionModel> decisions = message.getDecisions();
+            AgentDecisionModel last = decisions == null || decisions.isEmpty() ? null : decisions.get(decisions.size() - 1);
+            prints.add((long) Objects.hash(message.getId(), message.getContent(), message.getStreaming(),
+                    decisions == null ? 0 : decisions.size(),
+                    last == null ? null : last.getResult(), last != null && last.isCompleted()));
+        }
+        return prints;
+    }
+
+    private static List<Long> fingerprintRequests(List<DevPilotMessage> requests) {
+        List<Long> prints = new ArrayList<>(requests.size());
+        for (DevPilotMessage request : requests) {
+            prints.add((long) Objects.hash(request.getId(), request.getRole(), request.getContent()));
+        }
+        return prints;
+    }
+
+    private static class JournalState {
+        private final List<Long> messagePrints;
+
+        private final List<Long> requestPrints;
+
+        private final int records;
+
+        JournalState(List<Long> messagePrints, List<Long> requestPrints, int records) {
+            this.messagePrints = messagePrints;
+            this.requestPrints = requestPrints;
+            this.records = records;
+        }
+    }
+}
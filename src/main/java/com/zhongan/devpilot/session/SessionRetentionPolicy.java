@@ -0,0 +1,80 @@
+package com.zhongan.devpilot.session;
+
+import com.zhongan.devpilot.session.model.ChatSessionSummary;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Decides which sessions leave the storage and which move to the compressed cold tier, by age and total size
+ * instead of a fixed count. A limit that is not positive is disabled.
+ */
+public class SessionRetentionPolicy {
+    private final long maxAgeMillis;
+
+    private final long maxStorageBytes;
+
+    private final long coldAfterMillis;
+
+    public SessionRetentionPolicy(int retentionDays, int maxStorageMegabytes, int coldAfterDays) {
+        this.maxAgeMillis = TimeUnit.DAYS.toMillis(retentionDays);
+        this.maxStorageBytes = maxStorageMegabytes * 1024L * 1024L;
+        this.coldAfterMillis = TimeUnit.DAYS.toMillis(coldAfterDays);
+    }
+
+    /**
+     * Select the sessions to delete: the ones older than the retention, then the oldest ones until the rest
+     * fits in the storage limit.
+     *
+     * @param summaries all known sessions
+     * @param footprint bytes a session takes on disk
+     * @param now       current time in millis
+     * @param pinnedId  id of the session that must be kept
+     */
+    public List<String> selectExpired(List<ChatSessionSummary> summaries, ToLongFunction<String> footprint, long now, String pinnedId) {
+        List<ChatSessionSummary> latestFirst = new ArrayList<>(summaries);
+        latestFirst.sort(Comparator.comparingLong(ChatSessionSummary::getUpdateTime).reversed());
+
+        List<String> expired = new ArrayList<>();
+        long kept = 0;
+        boolean full = false;
+        for (ChatSessionSummary summary : latestFirst) {
+            if (StringUtils.equals(summary.getId(), pinnedId)) {
+                kept += footprint.applyAsLong(summary.getId());
+                continue;
+            }
+
+            long bytes = footprint.applyAsLong(summary.getId());
+            boolean tooOld = maxAgeMillis > 0 && now - summary.getUpdateTime() > maxAgeMillis;
+            // once the limit is reached, every older session goes as well
+            full = full || maxStorageBytes > 0 && kept + bytes > maxStorageBytes;
+            if (tooOld || full) {
+                expired.add(summary.getId());
+            } else {
+                kept += bytes;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Select the sessions idle long enough to be compressed.
+     */
+    public List<String> selectCold(List<ChatSessionSummary> summaries, long now, String pinnedId) {
+        List<String> cold = new ArrayList<>();
+        if (coldAfterMillis <= 0) {
+            return cold;
+        }
+        for (ChatSessionSummary summary : summaries) {
+            if (!StringUtils.equals(summary.getId(), pinnedId) && now - summary.getUpdateTime() > coldAfterMillis) {
+                cold.add(summary.getId());
+            }
+        }
+        return cold;
+    }
+}
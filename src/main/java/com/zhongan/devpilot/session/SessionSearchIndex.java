@@ -0,0 +1,737 @@
+package com.zhongan.devpilot.session;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.zhongan.devpilot.agents.BinaryManager;
+import com.zhongan.devpilot.session.model.ChatSearchHit;
+import com.zhongan.devpilot.session.model.ChatSession;
+import com.zhongan.devpilot.webview.model.AgentDecisionModel;
+import com.zhongan.devpilot.webview.model.CodeReferenceModel;
+import com.zhongan.devpilot.webview.model.MessageModel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Full-text index over the chat history, shared by all projects and IDE instances since the sessions are stored
+ * per user.
+ * <p>
+ * Every message is a document made of its content, the file names and code of its code references and the
+ * thoughts of its decisions. Terms are lowercase words, plus single characters and bigrams for CJK text. Each
+ * session is a segment file holding its documents and their sorted terms, a change of a session only rewrites its
+ * own segment, and a message is only re-tokenized when its fingerprint changes.
+ * <p>
+ * The heap only holds a dictionary from terms to the sessions containing them and a few recently used segments.
+ * A query term matches the terms it is a prefix of, the dictionary narrows the query down to the sessions having
+ * every term and their segments are scanned latest first. Hits are ranked by their exact matches, then by time.
+ * <p>
+ * Segments are written a few seconds after the last change under a file lock, a segment another instance wrote
+ * for a newer version of the session is kept. The segments written by other instances are picked up when the
+ * index is used.
+ */
+public class SessionSearchIndex {
+    private static final Logger LOG = Logger.getInstance(SessionSearchIndex.class);
+
+    private static final String INDEX_DIRECTORY = ".session_search";
+
+    // single file index of the previous format
+    private static final String LEGACY_INDEX_FILE = ".session_search.index";
+
+    private static final String SEGMENT_SUFFIX = ".idx";
+
+    private static final String LOCK_FILE = ".lock";
+
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int PREVIEW_LENGTH = 80;
+
+    private static final int MAX_TERM_LENGTH = 64;
+
+    private static final long FLUSH_DELAY_SECONDS = 10;
+
+    private static final long REFRESH_INTERVAL_MILLIS = 5000;
+
+    private static final int MAX_CACHED_SEGMENTS = 64;
+
+    private static final int EXACT_SCORE = 2;
+
+    private static final int PREFIX_SCORE = 1;
+
+    private static final int[] EMPTY = new int[0];
+
+    private final File directory;
+
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "DevPilot-Session-Search-Flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    // term -> ordinals of the sessions containing it
+    private final TreeMap<String, PostingList> postings = new TreeMap<>();
+
+    // ordinal -> session, null once the session is removed or indexed again under a new ordinal
+    private final List<IndexedSession> sessions = new ArrayList<>();
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+
+    private final Set<String> dirty = new HashSet<>();
+
+    // recently used segments, the ones waiting to be written are never evicted
+    private final Map<String, Segment> segments = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Segment> eldest) {
+            return size() > MAX_CACHED_SEGMENTS && !dirty.contains(eldest.getKey());
+        }
+    };
+
+    private final Set<String> removed = new HashSet<>();
+
+    private int removedCount;
+
+    private long lastRefresh;
+
+    private boolean loaded;
+
+    public SessionSearchIndex(File directory) {
+        this.directory = directory;
+    }
+
+    public static SessionSearchIndex getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Index the messages of a session that changed since its previous update.
+     */
+    public synchronized void update(ChatSession session) {
+        if (session == null || StringUtils.isEmpty(session.getId())) {
+            return;
+        }
+        ensureLoaded();
+
+        Segment previous = segment(session.getId());
+        Map<String, Document> previousDocuments = new HashMap<>();
+        if (previous != null) {
+            previous.documents.forEach(document -> previousDocuments.put(document.messageId, document));
+        }
+
+        List<Document> documents = new ArrayList<>();
+        Set<String> messageIds = new HashSet<>();
+        if (session.getHistoryMessageList() != null) {
+            for (MessageModel message : session.getHistoryMessageList()) {
+                if (message.getId() == null || !messageIds.add(message.getId())) {
+                    continue;
+                }
+                int fingerprint = fingerprint(message);
+                Document document = previousDocuments.get(message.getId());
+                if (document == null || document.fingerprint != fingerprint) {
+                    String text = indexedText(message);
+                    if (StringUtils.isBlank(text)) {
+                        continue;
+                    }
+                    document = newDocument(message, fingerprint, text);
+                }
+                documents.add(document);
+            }
+        }
+
+        IndexedSession indexed = indexed(session.getId());
+        Segment segment = new Segment(session.getId(), session.getUpdateTime(), documents);
+        removed.remove(session.getId());
+        dirty.add(session.getId());
+        segments.put(session.getId(), segment);
+        index(segment, indexed == null ? 0 : indexed.stamp);
+        scheduleFlush();
+    }
+
+    public synchronized void remove(String sessionId) {
+        ensureLoaded();
+        unindex(sessionId);
+        segments.remove(sessionId);
+        dirty.remove(sessionId);
+        removed.add(sessionId);
+        scheduleFlush();
+    }
+
+    /**
+     * Whether the session is indexed at least up to the given update time.
+     */
+    public synchronized boolean isIndexed(String sessionId, long updateTime) {
+        ensureLoaded();
+        refresh(false);
+        IndexedSession indexed = indexed(sessionId);
+        return indexed != null && indexed.updateTime >= updateTime;
+    }
+
+    /**
+     * Find the messages matching every term of the query, a term matches the words it is a prefix of.
+     *
+     * @param query free text
+     * @param limit max hits
+     * @return hits with the most exact matches first, latest first among them
+     */
+    public synchronized List<ChatSearchHit> search(String query, int limit) {
+        List<ChatSearchHit> hits = new ArrayList<>();
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (terms.isEmpty() || limit <= 0) {
+            return hits;
+        }
+        ensureLoaded();
+        refresh(false);
+
+        BitSet candidates = null;
+        for (String term : terms) {
+            BitSet matching = matchingSessions(term);
+            if (candidates == null) {
+                candidates = matching;
+            } else {
+                candidates.and(matching);
+            }
+            if (candidates.isEmpty()) {
+                return hits;
+            }
+        }
+
+        List<IndexedSession> candidateSessions = new ArrayList<>();
+        for (int ordinal = candidates.nextSetBit(0); ordinal >= 0; ordinal = candidates.nextSetBit(ordinal + 1)) {
+            candidateSessions.add(sessions.get(ordinal));
+        }
+        candidateSessions.sort(Comparator.comparingLong((IndexedSession indexed) -> indexed.updateTime).reversed());
+
+        int bestScore = terms.size() * EXACT_SCORE;
+        // times of the latest best scored matches, a session older than all of them cannot outrank them
+        PriorityQueue<Long> bestTimes = new PriorityQueue<>();
+        List<Match> matches = new ArrayList<>();
+        for (IndexedSession indexed : candidateSessions) {
+            if (bestTimes.size() >= limit && bestTimes.peek() > indexed.updateTime) {
+                break;
+            }
+            Segment segment = segment(indexed.sessionId);
+            if (segment == null) {
+                continue;
+            }
+            for (Document document : segment.documents) {
+                int score = score(document, terms);
+                if (score == 0) {
+                    continue;
+                }
+                matches.add(new Match(segment.sessionId, document, score));
+                if (score == bestScore) {
+                    bestTimes.add(document.time);
+                    if (bestTimes.size() > limit) {
+                        bestTimes.poll();
+                    }
+                }
+            }
+        }
+
+        matches.sort(Comparator.comparingInt((Match match) -> match.score).reversed()
+                .thenComparing(Comparator.comparingLong((Match match) -> match.document.time).reversed()));
+        for (Match match : matches.subList(0, Math.min(limit, matches.size()))) {
+            Document document = match.document;
+            hits.add(new ChatSearchHit(match.sessionId, document.messageId, document.role, document.time, document.preview));
+        }
+        return hits;
+    }
+
+    /**
+     * Write the changed segments to disk.
+     */
+    public synchronized void flush() {
+        if (dirty.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            LOG.warn("Failed to create session search index directory " + directory + ".");
+            return;
+        }
+
+        // other IDE instances share the directory
+        try (FileChannel channel = FileChannel.open(new File(directory, LOCK_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE); FileLock ignored = channel.lock()) {
+            for (String sessionId : new ArrayList<>(removed)) {
+                Files.deleteIfExists(segmentFile(sessionId).toPath());
+                removed.remove(sessionId);
+            }
+            for (String sessionId : new ArrayList<>(dirty)) {
+                Segment segment = segments.get(sessionId);
+                if (segment == null || writeSegment(segment)) {
+                    dirty.remove(sessionId);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Error occurred while writing session search index.", e);
+        }
+        compactIfNeeded();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            flushScheduler.schedule(() -> {
+                flushScheduled.set(false);
+                flush();
+            }, FLUSH_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Write a segment unless another instance wrote a newer version of the session since it was read, called
+     * while holding the file lock.
+     *
+     * @return whether the segment does not need to be written anymore
+     */
+    private boolean writeSegment(Segment segment) {
+        File file = segmentFile(segment.sessionId);
+        IndexedSession indexed = indexed(segment.sessionId);
+        long stamp = stamp(file);
+        if (stamp != 0 && (indexed == null || stamp != indexed.stamp)) {
+            Segment written = readSegment(file);
+            if (written != null && written.updateTime > segment.updateTime) {
+                segments.put(written.sessionId, written);
+                index(written, stamp);
+                return true;
+            }
+        }
+
+        File temp = new File(directory, segment.sessionId + SEGMENT_SUFFIX + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))))) {
+            write(out, segment);
+        } catch (IOException e) {
+            LOG.warn("Error occurred while writing session search segment " + segment.sessionId + ".", e);
+            temp.delete();
+            return false;
+        }
+
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Error occurred while replacing session search segment " + segment.sessionId + ".", e);
+            temp.delete();
+            return false;
+        }
+        if (indexed != null) {
+            indexed.stamp = stamp(file);
+        }
+        return true;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        refresh(true);
+    }
+
+    /**
+     * Pick up the segments other instances wrote or deleted, at most every few seconds.
+     */
+    private void refresh(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now - lastRefresh < REFRESH_INTERVAL_MILLIS) {
+            return;
+        }
+        lastRefresh = now;
+
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        Set<String> present = new HashSet<>();
+        for (File file : files == null ? new File[0] : files) {
+            String sessionId = StringUtils.removeEnd(file.getName(), SEGMENT_SUFFIX);
+            present.add(sessionId);
+            if (dirty.contains(sessionId) || removed.contains(sessionId)) {
+                continue;
+            }
+
+            long stamp = stamp(file);
+            IndexedSession indexed = indexed(sessionId);
+            if (indexed != null && indexed.stamp == stamp) {
+                continue;
+            }
+            // an unreadable segment stays out of the index, so the session is indexed and written again
+            segments.remove(sessionId);
+            Segment segment = readSegment(file);
+            if (segment != null) {
+                index(segment, stamp);
+            } else {
+                unindex(sessionId);
+            }
+        }
+
+        for (String sessionId : new ArrayList<>(ordinals.keySet())) {
+            if (!present.contains(sessionId) && !dirty.contains(sessionId)) {
+                unindex(sessionId);
+                segments.remove(sessionId);
+            }
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Give the session a new ordinal, ordinals only grow so the posting lists stay sorted.
+     */
+    private void index(Segment segment, long stamp) {
+        unindex(segment.sessionId);
+        int ordinal = sessions.size();
+        sessions.add(new IndexedSession(segment.sessionId, segment.updateTime, stamp));
+        ordinals.put(segment.sessionId, ordinal);
+        for (String term : segment.terms()) {
+            postings.computeIfAbsent(term, t -> new PostingList()).add(ordinal);
+        }
+    }
+
+    private void unindex(String sessionId) {
+        Integer ordinal = ordinals.remove(sessionId);
+        if (ordinal != null) {
+            sessions.set(ordinal, null);
+            removedCount++;
+        }
+    }
+
+    private IndexedSession indexed(String sessionId) {
+        Integer ordinal = ordinals.get(sessionId);
+        return ordinal == null ? null : sessions.get(ordinal);
+    }
+
+    private Segment segment(String sessionId) {
+        Segment segment = segments.get(sessionId);
+        if (segment == null && ordinals.containsKey(sessionId)) {
+            segment = readSegment(segmentFile(sessionId));
+            if (segment != null) {
+                segments.put(sessionId, segment);
+            }
+        }
+        return segment;
+    }
+
+    private BitSet matchingSessions(String term) {
+        BitSet matching = new BitSet(sessions.size());
+        for (PostingList list : postings.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+            for (int i = 0; i < list.size; i++) {
+                if (sessions.get(list.keys[i]) != null) {
+                    matching.set(list.keys[i]);
+                }
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Drop the removed ordinals once they outnumber the live ones, the others keep their order.
+     */
+    private void compactIfNeeded() {
+        if (removedCount == 0 || removedCount < sessions.size() - removedCount) {
+            return;
+        }
+
+        int[] remap = new int[sessions.size()];
+        List<IndexedSession> live = new ArrayList<>(sessions.size() - removedCount);
+        for (int ordinal = 0; ordinal < sessions.size(); ordinal++) {
+            IndexedSession indexed = sessions.get(ordinal);
+            remap[ordinal] = indexed == null ? -1 : live.size();
+            if (indexed != null) {
+                live.add(indexed);
+            }
+        }
+
+        postings.values().removeIf(list -> {
+            int size = 0;
+            for (int i = 0; i < list.size; i++) {
+                int ordinal = remap[list.keys[i]];
+                if (ordinal >= 0) {
+                    list.keys[size++] = ordinal;
+                }
+            }
+            list.size = size;
+            return size == 0;
+        });
+        ordinals.replaceAll((sessionId, ordinal) -> remap[ordinal]);
+
+        sessions.clear();
+        sessions.addAll(live);
+        removedCount = 0;
+    }
+
+    private File segmentFile(String sessionId) {
+        return new File(directory, sessionId + SEGMENT_SUFFIX);
+    }
+
+    private static long stamp(File file) {
+        return file.exists() ? file.lastModified() * 31 + file.length() : 0;
+    }
+
+    private static Segment readSegment(File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            return read(in);
+        } catch (IOException e) {
+            LOG.warn("Error occurred while reading session search segment " + file.getName() + ".", e);
+            return null;
+        }
+    }
+
+    private static void write(DataOutputStream out, Segment segment) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(segment.sessionId);
+        out.writeLong(segment.updateTime);
+        out.writeInt(segment.documents.size());
+        for (Document document : segment.documents) {
+            out.writeUTF(document.messageId);
+            out.writeInt(document.fingerprint);
+            out.writeUTF(document.role);
+            out.writeLong(document.time);
+            out.writeUTF(document.preview);
+            out.writeInt(document.terms.length);
+            for (String term : document.terms) {
+                out.writeUTF(term);
+            }
+        }
+    }
+
+    private static Segment read(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+
+        String sessionId = in.readUTF();
+        long updateTime = in.readLong();
+        int documentCount = in.readInt();
+        List<Document> documents = new ArrayList<>(documentCount);
+        for (int i = 0; i < documentCount; i++) {
+            String messageId = in.readUTF();
+            int fingerprint = in.readInt();
+            String role = in.readUTF();
+            long time = in.readLong();
+            String preview = in.readUTF();
+            String[] terms = new String[in.readInt()];
+            for (int j = 0; j < terms.length; j++) {
+                terms[j] = in.readUTF();
+            }
+            documents.add(new Document(messageId, fingerprint, role, time, preview, terms));
+        }
+        return new Segment(sessionId, updateTime, documents);
+    }
+
+    /**
+     * Sum of the query terms matches, a whole word scores more than a prefix, 0 unless every term matches.
+     */
+    private static int score(Document document, List<String> terms) {
+        int score = 0;
+        for (String term : terms) {
+            int index = Arrays.binarySearch(document.terms, term);
+            if (index >= 0) {
+                score += EXACT_SCORE;
+                continue;
+            }
+            int next = -index - 1;
+            if (next < document.terms.length && document.terms[next].startsWith(term)) {
+                score += PREFIX_SCORE;
+                continue;
+            }
+            return 0;
+        }
+        return score;
+    }
+
+    private static Document newDocument(MessageModel message, int fingerprint, String text) {
+        long time = message.getTime() == null ? 0 : message.getTime();
+        String preview = StringUtils.abbreviate(StringUtils.normalizeSpace(StringUtils.defaultString(message.getContent())), PREVIEW_LENGTH);
+        return new Document(message.getId(), fingerprint, StringUtils.defaultString(message.getRole()), time, preview,
+                new TreeSet<>(tokenize(text)).toArray(new String[0]));
+    }
+
+    private static int fingerprint(MessageModel message) {
+        List<AgentDecisionModel> decisions = message.getDecisions();
+        AgentDecisionModel last = decisions == null || decisions.isEmpty() ? null : decisions.get(decisions.size() - 1);
+        return Objects.hash(message.getContent(), message.getCodeRefs() == null ? 0 : message.getCodeRefs().size(),
+                decisions == null ? 0 : decisions.size(), last == null ? null : last.getThought());
+    }
+
+    private static String indexedText(MessageModel message) {
+        StringBuilder text = new StringBuilder(StringUtils.defaultString(message.getContent()));
+        if (message.getCodeRefs() != null) {
+            for (CodeReferenceModel codeRef : message.getCodeRefs()) {
+                text.append('\n').append(StringUtils.defaultString(codeRef.getFileName()))
+                        .append('\n').append(StringUtils.defaultString(codeRef.getSourceCode()));
+            }
+        }
+        if (message.getDecisions() != null) {
+            for (AgentDecisionModel decision : message.getDecisions()) {
+                text.append('\n').append(StringUtils.defaultString(decision.getThought()));
+            }
+        }
+        return text.toString();
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            int start = i;
+            if (isCjk(c)) {
+                while (i < length && isCjk(text.charAt(i))) {
+                    tokens.add(String.valueOf(text.charAt(i)));
+                    if (i > start) {
+                        tokens.add(text.substring(i - 1, i + 1));
+                    }
+                    i++;
+                }
+            } else if (Character.isLetterOrDigit(c) || c == '_') {
+                while (i < length && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_') && !isCjk(text.charAt(i))) {
+                    i++;
+                }
+                if (i - start >= 2 && i - start <= MAX_TERM_LENGTH) {
+                    tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+            } else {
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static class Holder {
+        private static final SessionSearchIndex INSTANCE = create();
+
+        private static SessionSearchIndex create() {
+            File homeDir = BinaryManager.INSTANCE.getHomeDir();
+            new File(homeDir, LEGACY_INDEX_FILE).delete();
+            return new SessionSearchIndex(new File(homeDir, INDEX_DIRECTORY));
+        }
+    }
+
+    private static class Segment {
+        private final String sessionId;
+
+        private final long updateTime;
+
+        private final List<Document> documents;
+
+        Segment(String sessionId, long updateTime, List<Document> documents) {
+            this.sessionId = sessionId;
+            this.updateTime = updateTime;
+            this.documents = documents;
+        }
+
+        Set<String> terms() {
+            Set<String> terms = new HashSet<>();
+            for (Document document : documents) {
+                terms.addAll(Arrays.asList(document.terms));
+            }
+            return terms;
+        }
+    }
+
+    private static class Document {
+        private final String messageId;
+
+        private final int fingerprint;
+
+        private final String role;
+
+        private final long time;
+
+        private final String preview;
+
+        // sorted, for exact and prefix lookups
+        private final String[] terms;
+
+        Document(String messageId, int fingerprint, String role, long time, String preview, String[] terms) {
+            this.messageId = messageId;
+            this.fingerprint = fingerprint;
+            this.role = role;
+            this.time = time;
+            this.preview = preview;
+            this.terms = terms;
+        }
+    }
+
+    private static class Match {
+        private final String sessionId;
+
+        private final Document document;
+
+        private final int score;
+
+        Match(String sessionId, Document document, int score) {
+            this.sessionId = sessionId;
+            this.document = document;
+            this.score = score;
+        }
+    }
+
+    private static class IndexedSession {
+        private final String sessionId;
+
+        private final long updateTime;
+
+        // last modification of the segment file as seen by this instance, 0 if not written yet
+        private long stamp;
+
+        IndexedSession(String sessionId, long updateTime, long stamp) {
+            this.sessionId = sessionId;
+            this.updateTime = updateTime;
+            this.stamp = stamp;
+        }
+    }
+
+    private static class PostingList {
+        private int[] keys = EMPTY;
+
+        private int size;
+
+        void add(int key) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(4, size * 2));
+            }
+            keys[size++] = key;
+        }
+    }
+}
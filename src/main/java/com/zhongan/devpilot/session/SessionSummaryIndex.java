@@ -0,0 +1,263 @@
+package com.zhongan.devpilot.session;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.intellij.openapi.diagnostic.Logger;
+import com.zhongan.devpilot.session.model.ChatSession;
+import com.zhongan.devpilot.session.model.ChatSessionSummary;
+import com.zhongan.devpilot.util.JsonUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Summary index of the persisted sessions, served to the history panel.
+ * <p>
+ * Sessions saved by this plugin are listed from the headers of the {@link SessionJournal}. Session files written
+ * by the agent that have no journal yet are read with the streaming parser to pick up the metadata, the first
+ * message and the message counts, without materializing the message bodies. A refresh only reads the files whose
+ * length or modification time changed since the last scan.
+ */
+public class SessionSummaryIndex {
+    private static final Logger LOG = Logger.getInstance(SessionSummaryIndex.class);
+
+    private static final Comparator<ChatSessionSummary> LATEST_FIRST =
+            Comparator.comparingLong(ChatSessionSummary::getUpdateTime).reversed();
+
+    private final File directory;
+
+    private final SessionJournal journal;
+
+    // file path -> indexed file
+    private final Map<String, IndexedFile> files = new HashMap<>();
+
+    // session id -> summary
+    private final Map<String, ChatSessionSummary> summaries = new HashMap<>();
+
+    public SessionSummaryIndex(File directory, SessionJournal journal) {
+        this.directory = directory;
+        this.journal = journal;
+    }
+
+    public synchronized void refresh() {
+        Set<String> seen = new HashSet<>();
+        Set<String> journaled = new HashSet<>();
+
+        File[] headers = journal.getDirectory().listFiles((dir, name) -> name.endsWith(SessionJournal.HEADER_SUFFIX));
+        if (headers != null) {
+            for (File header : headers) {
+                journaled.add(StringUtils.removeEnd(header.getName(), SessionJournal.HEADER_SUFFIX));
+                index(header, true, seen);
+            }
+        }
+
+        File[] sessionFiles = directory.listFiles((dir, name) -> name.endsWith(".json"));
+        if (sessionFiles != null) {
+            for (File file : sessionFiles) {
+                // the journal is kept up to date with every save, no need to parse the agent copy
+                if (!journaled.contains(StringUtils.removeEnd(file.getName(), ".json"))) {
+                    index(file, false, seen);
+                }
+            }
+        }
+
+        List<String> vanished = new ArrayList<>();
+        files.entrySet().removeIf(entry -> {
+            if (seen.contains(entry.getKey())) {
+                return false;
+            }
+            vanished.add(entry.getValue().sessionId);
+            return true;
+        });
+        for (String sessionId : vanished) {
+            if (files.values().stream().noneMatch(indexed -> indexed.sessionId.equals(sessionId))) {
+                summaries.remove(sessionId);
+            }
+        }
+    }
+
+    private void index(File file, boolean header, Set<String> seen) {
+        String path = file.getPath();
+        seen.add(path);
+
+        IndexedFile indexed = files.get(path);
+        if (indexed != null && indexed.lastModified == file.lastModified() && indexed.length == file.length()) {
+            return;
+        }
+
+        ChatSessionSummary summary = header ? journal.readHeader(file) : readSummary(file);
+        if (summary == null || summary.getId() == null) {
+            files.remove(path);
+            return;
+        }
+        files.put(path, new IndexedFile(summary.getId(), header, file.lastModified(), file.length()));
+
+        ChatSessionSummary known = summaries.get(summary.getId());
+        if (known == null || known.getUpdateTime() <= summary.getUpdateTime()) {
+            summaries.put(summary.getId(), summary);
+        }
+    }
+
+    public synchronized void update(ChatSession session) {
+        if (session == null || session.getId() == null) {
+            return;
+        }
+        summaries.put(session.getId(), ChatSessionSummary.of(session));
+    }
+
+    public synchronized void updateAll(List<ChatSession> sessions) {
+        if (sessions != null) {
+            sessions.forEach(this::update);
+        }
+    }
+
+    public synchronized void remove(String sessionId) {
+        summaries.remove(sessionId);
+    }
+
+    public synchronized List<ChatSessionSummary> getSummaries() {
+        return new ArrayList<>(summaries.values());
+    }
+
+    public synchronized int size() {
+        return summaries.size();
+    }
+
+    public synchronized ChatSessionSummary latest() {
+        return summaries.values().stream().min(LATEST_FIRST).orElse(null);
+    }
+
+    /**
+     * Find the file the agent persisted a session to, null if it has not been written yet.
+     */
+    public synchronized File getFile(String sessionId) {
+        for (Map.Entry<String, IndexedFile> entry : files.entrySet()) {
+            if (!entry.getValue().header && entry.getValue().sessionId.equals(sessionId)) {
+                return new File(entry.getKey());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The sessions that contain requests, latest first.
+     */
+    public synchronized List<ChatSessionSummary> visibleSummaries() {
+        return summaries.values().stream()
+                .filter(summary -> summary.getRequestMessageCount() > 0)
+                .sorted(LATEST_FIRST)
+                .collect(Collectors.toList());
+    }
+
+    static ChatSessionSummary readSummary(File file) {
+        try (JsonParser parser = JsonUtils.createParser(file)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            ChatSessionSummary summary = new ChatSessionSummary();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (field) {
+                    case "id":
+                        summary.setId(parser.getValueAsString());
+                        break;
+                    case "createTime":
+                        summary.setCreateTime(parser.getValueAsLong());
+                        break;
+                    case "updateTime":
+                        summary.setUpdateTime(parser.getValueAsLong());
+                        break;
+                    case "chatMode":
+                        summary.setChatMode(parser.getValueAsInt());
+                        break;
+                    case "historyMessageList":
+                        readMessages(parser, summary);
+                        break;
+                    case "historyRequestMessageList":
+                        summary.setRequestMessageCount(countElements(parser));
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+            return summary;
+        } catch (IOException e) {
+            LOG.warn("Error occurred while indexing session file:" + file.getName() + ".", e);
+            return null;
+        }
+    }
+
+    private static void readMessages(JsonParser parser, ChatSessionSummary summary) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+
+        int count = 0;
+        long size = 0;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("content".equals(field) && parser.currentToken() == JsonToken.VALUE_STRING) {
+                    String content = parser.getText();
+                    size += content.length();
+                    if (count == 0) {
+                        summary.setTitle(content);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            count++;
+        }
+        summary.setMessageCount(count);
+        summary.setSize(size);
+    }
+
+    private static int countElements(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return 0;
+        }
+
+        int count = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            parser.skipChildren();
+            count++;
+        }
+        return count;
+    }
+
+    private static class IndexedFile {
+        private final String sessionId;
+
+        private final boolean header;
+
+        private final long lastModified;
+
+        private final long length;
+
+        IndexedFile(String sessionId, boolean header, long lastModified, long length) {
+            this.sessionId = sessionId;
+            this.header = header;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+}
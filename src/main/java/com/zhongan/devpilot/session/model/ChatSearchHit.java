@@ -0,0 +1,74 @@
+package com.zhongan.devpilot.session.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ChatSearchHit {
+    private String sessionId;
+
+    private String messageId;
+
+    private String title;
+
+    private String role;
+
+    private long time;
+
+    private String preview;
+
+    public ChatSearchHit(String sessionId, String messageId, String role, long time, String preview) {
+        this.sessionId = sessionId;
+        this.messageId = messageId;
+        this.role = role;
+        this.time = time;
+        this.preview = preview;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public void setRole(String role) {
+        this.role = role;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    public String getPreview() {
+        return preview;
+    }
+
+    public void setPreview(String preview) {
+        this.preview = preview;
+    }
+}
@@ -0,0 +1,44 @@
+package com.zhongan.devpilot.session.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ChatSearchResult {
+    private String query;
+
+    private long tookMillis;
+
+    private List<ChatSearchHit> hits;
+
+    public ChatSearchResult(String query, long tookMillis, List<ChatSearchHit> hits) {
+        this.query = query;
+        this.tookMillis = tookMillis;
+        this.hits = hits;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public long getTookMillis() {
+        return tookMillis;
+    }
+
+    public void setTookMillis(long tookMillis) {
+        this.tookMillis = tookMillis;
+    }
+
+    public List<ChatSearchHit> getHits() {
+        return hits;
+    }
+
+    public void setHits(List<ChatSearchHit> hits) {
+        this.hits = hits;
+    }
+}
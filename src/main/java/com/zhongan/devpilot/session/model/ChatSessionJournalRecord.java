@@ -0,0 +1,188 @@
+package com.zhongan.devpilot.session.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.zhongan.devpilot.integrations.llms.entity.DevPilotMessage;
+import com.zhongan.devpilot.webview.model.MessageModel;
+
+import java.util.List;
+
+/**
+ * One line of a session journal: either a full snapshot of the session, or the change since the previous record.
+ * A change keeps the first {@code keepMessages} / {@code keepRequests} items of each list, appends the carried
+ * items after them and overwrites the session flags.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChatSessionJournalRecord {
+    public static final String SNAPSHOT = "snapshot";
+
+    public static final String DELTA = "delta";
+
+    private String type;
+
+    private ChatSession session;
+
+    private int keepMessages;
+
+    private int keepRequests;
+
+    private List<MessageModel> messages;
+
+    private List<DevPilotMessage> requests;
+
+    private long updateTime;
+
+    private int chatMode;
+
+    private boolean abort;
+
+    private boolean containsRequireToolPrompts;
+
+    private boolean containsRequireResourcePrompts;
+
+    private boolean containsRequirePromptsPrompts;
+
+    public static ChatSessionJournalRecord snapshot(ChatSession session) {
+        ChatSessionJournalRecord record = new ChatSessionJournalRecord();
+        record.setType(SNAPSHOT);
+        record.setSession(session);
+        return record;
+    }
+
+    public static ChatSessionJournalRecord delta(ChatSession session, int keepMessages, int keepRequests) {
+        ChatSessionJournalRecord record = new ChatSessionJournalRecord();
+        record.setType(DELTA);
+        record.setKeepMessages(keepMessages);
+        record.setKeepRequests(keepRequests);
+        record.setMessages(session.getHistoryMessageList().subList(keepMessages, session.getHistoryMessageList().size()));
+        record.setRequests(session.getHistoryRequestMessageList().subList(keepRequests, session.getHistoryRequestMessageList().size()));
+        record.setUpdateTime(session.getUpdateTime());
+        record.setChatMode(session.getChatMode());
+        record.setAbort(session.isAbort());
+        record.setContainsRequireToolPrompts(session.isContainsRequireToolPrompts());
+        record.setContainsRequireResourcePrompts(session.isContainsRequireResourcePrompts());
+        record.setContainsRequirePromptsPrompts(session.isContainsRequirePromptsPrompts());
+        return record;
+    }
+
+    /**
+     * Apply this change on top of the session replayed so far.
+     */
+    public void applyTo(ChatSession target) {
+        List<MessageModel> messageList = target.getHistoryMessageList();
+        messageList.subList(Math.min(keepMessages, messageList.size()), messageList.size()).clear();
+        if (messages != null) {
+            messageList.addAll(messages);
+        }
+
+        List<DevPilotMessage> requestList = target.getHistoryRequestMessageList();
+        requestList.subList(Math.min(keepRequests, requestList.size()), requestList.size()).clear();
+        if (requests != null) {
+            requestList.addAll(requests);
+        }
+
+        target.setUpdateTime(updateTime);
+        target.setChatMode(chatMode);
+        target.setAbort(abort);
+        target.setContainsRequireToolPrompts(containsRequireToolPrompts);
+        target.setContainsRequireResourcePrompts(containsRequireResourcePrompts);
+        target.setContainsRequirePromptsPrompts(containsRequirePromptsPrompts);
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public ChatSession getSession() {
+        return session;
+    }
+
+    public void setSession(ChatSession session) {
+        this.session = session;
+    }
+
+    public int getKeepMessages() {
+        return keepMessages;
+    }
+
+    public void setKeepMessages(int keepMessages) {
+        this.keepMessages = keepMessages;
+    }
+
+    public int getKeepRequests() {
+        return keepRequests;
+    }
+
+    public void setKeepRequests(int keepRequests) {
+        this.keepRequests = keepRequests;
+    }
+
+    public List<MessageModel> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<MessageModel> messages) {
+        this.messages = messages;
+    }
+
+    public List<DevPilotMessage> getRequests() {
+        return requests;
+    }
+
+    public void setRequests(List<DevPilotMessage> requests) {
+        this.requests = requests;
+    }
+
+    public long getUpdateTime() {
+        return updateTime;
+    }
+
+    public void setUpdateTime(long updateTime) {
+        this.updateTime = updateTime;
+    }
+
+    public int getChatMode() {
+        return chatMode;
+    }
+
+    public void setChatMode(int chatMode) {
+        this.chatMode = chatMode;
+    }
+
+    public boolean isAbort() {
+        return abort;
+    }
+
+    public void setAbort(boolean abort) {
+        this.abort = abort;
+    }
+
+    public boolean isContainsRequireToolPrompts() {
+        return containsRequireToolPrompts;
+    }
+
+    public void setContainsRequireToolPrompts(boolean containsRequireToolPrompts) {
+        this.containsRequireToolPrompts = containsRequireToolPrompts;
+    }
+
+    public boolean isContainsRequireResourcePrompts() {
+        return containsRequireResourcePrompts;
+    }
+
+    public void setContainsRequireResourcePrompts(boolean containsRequireResourcePrompts) {
+        this.containsRequireResourcePrompts = containsRequireResourcePrompts;
+    }
+
+    public boolean isContainsRequirePromptsPrompts() {
+        return containsRequirePromptsPrompts;
+    }
+
+    public void setContainsRequirePromptsPrompts(boolean containsRequirePromptsPrompts) {
+        this.containsRequirePromptsPrompts = containsRequirePromptsPrompts;
+    }
+}
@@ -0,0 +1,133 @@
+package com.zhongan.devpilot.session.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.zhongan.devpilot.webview.model.MessageModel;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Lightweight entry of the session history, the message bodies are only loaded when the session is opened.
+ */
+@JsonIgnoreProperties(value = "historyMessageList", allowGetters = true, ignoreUnknown = true)
+public class ChatSessionSummary {
+    public static final int TITLE_MAX_LENGTH = 100;
+
+    private String id;
+
+    private String title;
+
+    private long createTime;
+
+    private long updateTime;
+
+    private int chatMode;
+
+    private int messageCount;
+
+    private int requestMessageCount;
+
+    // characters of message content
+    private long size;
+
+    public static ChatSessionSummary of(ChatSession session) {
+        ChatSessionSummary summary = new ChatSessionSummary();
+        summary.setId(session.getId());
+        summary.setCreateTime(session.getCreateTime());
+        summary.setUpdateTime(session.getUpdateTime());
+        summary.setChatMode(session.getChatMode());
+
+        List<MessageModel> messages = session.getHistoryMessageList();
+        if (CollectionUtils.isNotEmpty(messages)) {
+            summary.setTitle(messages.get(0).getContent());
+            summary.setMessageCount(messages.size());
+            long size = 0;
+            for (MessageModel message : messages) {
+                size += StringUtils.length(message.getContent());
+            }
+            summary.setSize(size);
+        }
+        if (session.getHistoryRequestMessageList() != null) {
+            summary.setRequestMessageCount(session.getHistoryRequestMessageList().size());
+        }
+        return summary;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = StringUtils.abbreviate(title, TITLE_MAX_LENGTH);
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(long createTime) {
+        this.createTime = createTime;
+    }
+
+    public long getUpdateTime() {
+        return updateTime;
+    }
+
+    public void setUpdateTime(long updateTime) {
+        this.updateTime = updateTime;
+    }
+
+    public int getChatMode() {
+        return chatMode;
+    }
+
+    public void setChatMode(int chatMode) {
+        this.chatMode = chatMode;
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(int messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public int getRequestMessageCount() {
+        return requestMessageCount;
+    }
+
+    public void setRequestMessageCount(int requestMessageCount) {
+        this.requestMessageCount = requestMessageCount;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    /**
+     * The history panel shows the first message as the title, it is the only message sent with the summary.
+     */
+    public List<Map<String, String>> getHistoryMessageList() {
+        if (messageCount == 0) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(Collections.singletonMap("content", StringUtils.defaultString(title)));
+    }
+}
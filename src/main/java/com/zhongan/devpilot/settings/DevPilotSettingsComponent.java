@@ -1,6 +1,7 @@
 package com.zhongan.devpilot.settings;
 
 import com.intellij.openapi.ui.ComboBox;
+import com.intellij.ui.JBIntSpinner;
 import com.intellij.ui.TitledSeparator;
 import com.intellij.ui.components.JBRadioButton;
 import com.intellij.ui.components.JBTextField;
@@ -16,6 +17,7 @@ import com.zhongan.devpilot.settings.state.DevPilotLlmSettingsState;
 import com.zhongan.devpilot.settings.state.LanguageSettingsState;
 import com.zhongan.devpilot.settings.state.LocalRagSettingsState;
 import com.zhongan.devpilot.settings.state.PersonalAdvancedSettingsState;
+import com.zhongan.devpilot.settings.state.SessionStorageSettingsState;
 import com.zhongan.devpilot.util.DevPilotMessageBundle;
 
 import javax.swing.JComponent;
@@ -50,6 +52,12 @@ public class DevPilotSettingsComponent {
 
     private final JBTextField localStorageField;
 
+    private final JBIntSpinner sessionRetentionDaysSpinner;
+
+    private final JBIntSpinner sessionMaxStorageSpinner;
+
+    private final JBIntSpinner sessionColdAfterDaysSpinner;
+
     // CLI related components
     private final JBRadioButton autoAuthenticationRadio;
 
@@ -81,6 +89,11 @@ public class DevPilotSettingsComponent {
         var personalAdvancedSettings = PersonalAdvancedSettingsState.getInstance();
         localStorageField = new JBTextField(personalAdvancedSettings.getLocalStorage(), 20);
 
+        var sessionStorageSettings = SessionStorageSettingsState.getInstance();
+        sessionRetentionDaysSpinner = new JBIntSpinner(sessionStorageSettings.getRetentionDays(), 0, 3650);
+        sessionMaxStorageSpinner = new JBIntSpinner(sessionStorageSettings.getMaxStorageMegabytes(), 0, 102400);
+        sessionColdAfterDaysSpinner = new JBIntSpinner(sessionStorageSettings.getColdAfterDays(), 0, 3650);
+
         // Initialize CLI related components
         claudeTerminalService = ClaudeTerminalService.INSTANCE;
         var aiGatewaySettings = AIGatewaySettingsState.getInstance();
@@ -114,7 +127,13 @@ public class DevPilotSettingsComponent {
                 .addVerticalGap(8)
                 .addComponent(new TitledSeparator(
                         DevPilotMessageBundle.get("devpilot.settings.service.status.check.title")))
-                .addComponent(statusCheckRadio);
+                .addComponent(statusCheckRadio)
+                .addVerticalGap(8)
+                .addComponent(new TitledSeparator(
+                        DevPilotMessageBundle.get("devpilot.settings.session.storage.title")))
+                .addComponent(createSpinnerPanel(sessionRetentionDaysSpinner, "devpilot.settings.session.retention.days"))
+                .addComponent(createSpinnerPanel(sessionMaxStorageSpinner, "devpilot.settings.session.max.storage"))
+                .addComponent(createSpinnerPanel(sessionColdAfterDaysSpinner, "devpilot.settings.session.cold.days"));
 
         // Add CLI settings only if CLI is available
         if (claudeTerminalService.isCliAvailable()) {
@@ -129,6 +148,16 @@ public class DevPilotSettingsComponent {
                 .getPanel();
     }
 
+    private JComponent createSpinnerPanel(JBIntSpinner spinner, String labelKey) {
+        var panel = UI.PanelFactory.grid()
+                .add(UI.PanelFactory.panel(spinner)
+                        .withLabel(DevPilotMessageBundle.get(labelKey))
+                        .resizeX(false))
+                .createPanel();
+        panel.setBorder(JBUI.Borders.emptyLeft(0));
+        return panel;
+    }
+
     private JComponent createTextArea(String text) {
         JTextArea textArea = new JTextArea(text);
         textArea.setLineWrap(true);
@@ -237,6 +266,18 @@ public class DevPilotSettingsComponent {
         return localStorageField.getText();
     }
 
+    public int getSessionRetentionDays() {
+        return sessionRetentionDaysSpinner.getNumber();
+    }
+
+    public int getSessionMaxStorageMegabytes() {
+        return sessionMaxStorageSpinner.getNumber();
+    }
+
+    public int getSessionColdAfterDays() {
+        return sessionColdAfterDaysSpinner.getNumber();
+    }
+
     // For reset
     public void setFullName(String text) {
         fullNameField.setText(text);
@@ -273,6 +314,18 @@ public class DevPilotSettingsComponent {
         localStorageField.setText(text);
     }
 
+    public void setSessionRetentionDays(int days) {
+        sessionRetentionDaysSpinner.setNumber(days);
+    }
+
+    public void setSessionMaxStorageMegabytes(int megabytes) {
+        sessionMaxStorageSpinner.setNumber(megabytes);
+    }
+
+    public void setSessionColdAfterDays(int days) {
+        sessionColdAfterDaysSpinner.setNumber(days);
+    }
+
     // CLI related getters and setters
     public boolean getAutoAuthentication() {
         return autoAuthenticationRadio != null && autoAuthenticationRadio.isSelected();
@@ -16,6 +16,7 @@ import com.zhongan.devpilot.settings.state.DevPilotLlmSettingsState;
 import com.zhongan.devpilot.settings.state.LanguageSettingsState;
 import com.zhongan.devpilot.settings.state.LocalRagSettingsState;
 import com.zhongan.devpilot.settings.state.PersonalAdvancedSettingsState;
+import com.zhongan.devpilot.settings.state.SessionStorageSettingsState;
 import com.zhongan.devpilot.util.ConfigChangeUtils;
 import com.zhongan.devpilot.util.ConfigurableUtils;
 import com.zhongan.devpilot.util.DevPilotMessageBundle;
@@ -60,6 +61,7 @@ public class DevPilotSettingsConfigurable implements Configurable, Disposable {
         var completionEnable = CompletionSettingsState.getInstance().getEnable();
         Boolean enable = AvailabilityCheck.getInstance().getEnable();
         Boolean localRagEnabled = LocalRagSettingsState.getInstance().getEnable();
+        var sessionStorageSettings = SessionStorageSettingsState.getInstance();
 
         // Check CLI settings if CLI is available
         var aiGatewaySettings = AIGatewaySettingsState.getInstance();
@@ -77,6 +79,9 @@ public class DevPilotSettingsConfigurable implements Configurable, Disposable {
                 || !settingsComponent.getStatusCheckEnabled() == (enable)
                 || !settingsComponent.getLocalRagEnabled() == (localRagEnabled)
                 || !settingsComponent.getLocalStoragePath().equals(personalAdvancedSettings.getLocalStorage())
+                || settingsComponent.getSessionRetentionDays() != sessionStorageSettings.getRetentionDays()
+                || settingsComponent.getSessionMaxStorageMegabytes() != sessionStorageSettings.getMaxStorageMegabytes()
+                || settingsComponent.getSessionColdAfterDays() != sessionStorageSettings.getColdAfterDays()
                 || cliSettingsModified;
     }
 
@@ -162,6 +167,12 @@ public class DevPilotSettingsConfigurable implements Configurable, Disposable {
 //            LocalEmbeddingService.immediateStartCurrentProject();
 //        }
 
+        // applied by the next storage maintenance
+        SessionStorageSettingsState sessionStorageSettings = SessionStorageSettingsState.getInstance();
+        sessionStorageSettings.setRetentionDays(settingsComponent.getSessionRetentionDays());
+        sessionStorageSettings.setMaxStorageMegabytes(settingsComponent.getSessionMaxStorageMegabytes());
+        sessionStorageSettings.setColdAfterDays(settingsComponent.getSessionColdAfterDays());
+
         // Apply CLI settings if CLI is available
         if (settingsComponent.isCliAvailable()) {
             var aiGatewaySettings = AIGatewaySettingsState.getInstance();
@@ -195,6 +206,11 @@ public class DevPilotSettingsConfigurable implements Configurable, Disposable {
         LocalRagSettingsState localRagSettings = LocalRagSettingsState.getInstance();
         settingsComponent.setLocalRagRadioEnabled(localRagSettings.getEnable());
 
+        SessionStorageSettingsState sessionStorageSettings = SessionStorageSettingsState.getInstance();
+        settingsComponent.setSessionRetentionDays(sessionStorageSettings.getRetentionDays());
+        settingsComponent.setSessionMaxStorageMegabytes(sessionStorageSettings.getMaxStorageMegabytes());
+        settingsComponent.setSessionColdAfterDays(sessionStorageSettings.getColdAfterDays());
+
         // Reset CLI settings if CLI is available
         if (settingsComponent.isCliAvailable()) {
             var aiGatewaySettings = AIGatewaySettingsState.getInstance();
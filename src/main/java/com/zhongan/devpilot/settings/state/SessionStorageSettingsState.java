@@ -0,0 +1,69 @@
+package com.zhongan.devpilot.settings.state;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.util.xmlb.XmlSerializerUtil;
+
+@State(name = "DevPilot_Session_Storage_Settings", storages = @Storage("DevPilot_Session_Storage_Settings.xml"))
+public class SessionStorageSettingsState implements PersistentStateComponent<SessionStorageSettingsState> {
+
+    // sessions not updated for this many days are deleted, off unless the user sets it
+    private int retentionDays = 0;
+
+    // the oldest sessions are deleted once the session storage grows over this size, off unless the user sets it
+    private int maxStorageMegabytes = 0;
+
+    // sessions not updated for this many days are compressed on disk
+    private int coldAfterDays = 7;
+
+    // budget of the sessions kept in memory
+    private int hotTierMegabytes = 32;
+
+    public static SessionStorageSettingsState getInstance() {
+        return ApplicationManager.getApplication().getService(SessionStorageSettingsState.class);
+    }
+
+    @Override
+    public SessionStorageSettingsState getState() {
+        return this;
+    }
+
+    @Override
+    public void loadState(SessionStorageSettingsState state) {
+        XmlSerializerUtil.copyBean(state, this);
+    }
+
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    public void setRetentionDays(int retentionDays) {
+        this.retentionDays = retentionDays;
+    }
+
+    public int getMaxStorageMegabytes() {
+        return maxStorageMegabytes;
+    }
+
+    public void setMaxStorageMegabytes(int maxStorageMegabytes) {
+        this.maxStorageMegabytes = maxStorageMegabytes;
+    }
+
+    public int getColdAfterDays() {
+        return coldAfterDays;
+    }
+
+    public void setColdAfterDays(int coldAfterDays) {
+        this.coldAfterDays = coldAfterDays;
+    }
+
+    public int getHotTierMegabytes() {
+        return hotTierMegabytes;
+    }
+
+    public void setHotTierMegabytes(int hotTierMegabytes) {
+        this.hotTierMegabytes = hotTierMegabytes;
+    }
+}
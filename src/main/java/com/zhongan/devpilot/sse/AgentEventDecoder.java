@@ -0,0 +1,177 @@
+package com.zhongan.devpilot.sse;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.intellij.openapi.diagnostic.Logger;
+import com.zhongan.devpilot.session.model.ChatSession;
+import com.zhongan.devpilot.sse.entity.AgentEvent;
+import com.zhongan.devpilot.sse.entity.PartialMessage;
+import com.zhongan.devpilot.util.JsonUtils;
+
+import java.io.IOException;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Single-pass decoder for agent events, built on the jackson streaming parser.
+ * <p>
+ * The envelope is read field by field without building an intermediate map. The nested message is decoded
+ * straight into {@link PartialMessage}; the embedded {@link ChatSession} is skipped unless the event needs it,
+ * which avoids materializing the whole conversation on every streaming tick.
+ */
+public class AgentEventDecoder {
+
+    private static final Logger LOG = Logger.getInstance(AgentEventDecoder.class);
+
+    public static final AgentEventDecoder INSTANCE = new AgentEventDecoder();
+
+    public AgentEvent decode(String json) {
+        if (StringUtils.isEmpty(json)) {
+            return null;
+        }
+
+        try (JsonParser parser = JsonUtils.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            AgentEvent event = new AgentEvent();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "event":
+                        event.setEvent(readText(parser));
+                        break;
+                    case "tag":
+                        event.setTag(readText(parser));
+                        break;
+                    case "clientId":
+                        event.setClientId(readText(parser));
+                        break;
+                    case "message":
+                        event.setMessage(readRaw(parser));
+                        break;
+                    case "seq":
+                        event.setSeq(parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getValueAsLong());
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+            return event;
+        } catch (IOException e) {
+            LOG.warn("Error occurred while decoding agent event.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Decode the nested message of a DeepThinking event.
+     *
+     * @param event        the decoded envelope
+     * @param withSession  whether the embedded session should be bound, it is skipped otherwise
+     */
+    public PartialMessage readPartialMessage(AgentEvent event, boolean withSession) {
+        if (event == null || StringUtils.isEmpty(event.getMessage())) {
+            return null;
+        }
+
+        try (JsonParser parser = JsonUtils.createParser(event.getMessage())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            PartialMessage partialMessage = new PartialMessage();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (field) {
+                    case "clientId":
+                        partialMessage.setClientId(readText(parser));
+                        break;
+                    case "sessionId":
+                        partialMessage.setSessionId(readText(parser));
+                        break;
+                    case "thought":
+                        partialMessage.setThought(readText(parser));
+                        break;
+                    case "actionType":
+                        partialMessage.setActionType(readText(parser));
+                        break;
+                    case "action":
+                        partialMessage.setAction(parser.currentToken() == JsonToken.VALUE_STRING
+                                ? parser.getText() : JsonUtils.readValue(parser, Object.class));
+                        break;
+                    case "completed":
+                        partialMessage.setCompleted(parser.getValueAsBoolean());
+                        break;
+                    case "thoughtCompleted":
+                        partialMessage.setThoughtCompleted(parser.getValueAsBoolean());
+                        break;
+                    case "session":
+                        if (withSession) {
+                            partialMessage.setSession(JsonUtils.readValue(parser, ChatSession.class));
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    case "result":
+                        partialMessage.setResult(readText(parser));
+                        break;
+                    case "serverName":
+                        partialMessage.setServerName(readText(parser));
+                        break;
+                    case "componentType":
+                        partialMessage.setComponentType(readText(parser));
+                        break;
+                    case "componentName":
+                        partialMessage.setComponentName(readText(parser));
+                        break;
+                    case "responseId":
+                        partialMessage.setResponseId(readText(parser));
+                        break;
+                    case "statusCode":
+                        partialMessage.setStatusCode(parser.getValueAsInt());
+                        break;
+                    case "delta":
+                        partialMessage.setDelta(parser.getValueAsBoolean());
+                        break;
+                    case "thoughtLength":
+                        partialMessage.setThoughtLength(parser.getValueAsInt());
+                        break;
+                    case "actionLength":
+                        partialMessage.setActionLength(parser.getValueAsInt());
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+            return partialMessage;
+        } catch (IOException e) {
+            LOG.warn("Error occurred while decoding partial message of " + event.getTag() + ".", e);
+            return null;
+        }
+    }
+
+    private String readText(JsonParser parser) throws IOException {
+        if (parser.currentToken().isScalarValue()) {
+            return parser.getValueAsString();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private String readRaw(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            // tolerate agents that embed the message as an object instead of a json string
+            return JsonUtils.toJson(JsonUtils.readValue(parser, Object.class));
+        }
+        return token.isScalarValue() ? parser.getValueAsString() : null;
+    }
+}
@@ -7,13 +7,13 @@ import com.zhongan.devpilot.gui.toolwindows.chat.DevPilotChatToolWindowService;
 import com.zhongan.devpilot.integrations.llms.LlmProviderFactory;
 import com.zhongan.devpilot.session.ChatSessionManager;
 import com.zhongan.devpilot.session.ChatSessionManagerService;
+import com.zhongan.devpilot.sse.entity.AgentEvent;
 import com.zhongan.devpilot.sse.entity.PartialMessage;
 import com.zhongan.devpilot.util.JsonUtils;
 import com.zhongan.devpilot.webview.model.AgentDecisionModel;
 import com.zhongan.devpilot.webview.model.MessageModel;
 
 import java.util.List;
-import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -32,9 +32,9 @@ public class DeepThinkingEventProcessor {
         service = project.getService(DevPilotChatToolWindowService.class);
     }
 
-    public void processDeepThinkingEvent(Project project, Map<String, String> eventData) {
+    public void processDeepThinkingEvent(Project project, AgentEvent event) {
         try {
-            String tag = eventData.get("tag");
+            String tag = event.getTag();
             if (StringUtils.isEmpty(tag)) {
                 LOG.warn("DeepThinking event missing event tag:" + tag + ".");
                 return;
@@ -42,15 +42,15 @@ public class DeepThinkingEventProcessor {
             prepareProcessorContext(project);
 
             if (StringUtils.equalsIgnoreCase(tag, "partial-steaming") || StringUtils.equalsIgnoreCase(tag, "partial-completed")) {
-                processEvent(project, eventData, tag);
+                processEvent(project, event, tag);
             } else if (StringUtils.equalsIgnoreCase(tag, "request-failed")) {
-                processFailedEvent(project, eventData, tag);
+                processFailedEvent(project, event, tag);
             } else if (StringUtils.equalsIgnoreCase(tag, "request-cancelled")) {
-                processCancelledEvent(project, eventData, tag);
+                processCancelledEvent(project, event, tag);
             } else if (StringUtils.equalsIgnoreCase(tag, "mcp-decision")) {
-                processMcpDecision(eventData, tag);
+                processMcpDecision(event, tag);
             } else if (StringUtils.equalsIgnoreCase(tag, "max-rounds-reached")) {
-                processMaxRoundsReached(project, eventData, tag);
+                processMaxRoundsReached(project, event, tag);
             } else {
                 LOG.warn("Unknown DeepThinking event tag:" + tag + ".");
             }
@@ -60,8 +60,8 @@ public class DeepThinkingEventProcessor {
         }
     }
 
-    private void processMcpDecision(Map<String, String> eventData, String tag) {
-        PartialMessage partialMessage = preparePartialMessage(eventData, tag, Boolean.TRUE);
+    private void processMcpDecision(AgentEvent event, String tag) {
+        PartialMessage partialMessage = preparePartialMessage(event, tag, Boolean.TRUE, Boolean.FALSE);
         if (null != partialMessage) {
             MessageModel lastMessage = getLastMessage();
             boolean existAssistantFlag = isLastMessageFromAssistant(lastMessage);
@@ -81,9 +81,9 @@ public class DeepThinkingEventProcessor {
         }
     }
 
-    private void processFailedEvent(Project project, Map<String, String> eventData, String tag) {
-        LOG.warn("Processing failed event with eventData:[" + JsonUtils.toJson(eventData) + "].");
-        PartialMessage partialMessage = preparePartialMessage(eventData, tag, Boolean.FALSE);
+    private void processFailedEvent(Project project, AgentEvent event, String tag) {
+        LOG.warn("Processing failed event with eventData:[" + event + "].");
+        PartialMessage partialMessage = preparePartialMessage(event, tag, Boolean.FALSE, Boolean.TRUE);
         if (null != partialMessage) {
             var llmProvider = LlmProviderFactory.INSTANCE.getLlmProvider(project);
             if (partialMessage.getStatusCode() == 401) {
@@ -107,8 +107,8 @@ public class DeepThinkingEventProcessor {
         }
     }
 
-    private void processCancelledEvent(Project project, Map<String, String> eventData, String tag) {
-        PartialMessage partialMessage = preparePartialMessage(eventData, tag, Boolean.FALSE);
+    private void processCancelledEvent(Project project, AgentEvent event, String tag) {
+        PartialMessage partialMessage = preparePartialMessage(event, tag, Boolean.FALSE, Boolean.TRUE);
         if (null != partialMessage) {
             MessageModel lastMessage = getLastMessage();
             boolean existAssistantFlag = isLastMessageFromAssistant(lastMessage);
@@ -121,8 +121,9 @@ public class DeepThinkingEventProcessor {
         }
     }
 
-    private PartialMessage preparePartialMessage(Map<String, String> eventData, String tag, boolean excludeAborted) {
-        PartialMessage partialMessage = JsonUtils.fromJson(eventData.get("message"), PartialMessage.class);
+    private PartialMessage preparePartialMessage(AgentEvent event, String tag, boolean excludeAborted, boolean withSession) {
+        PartialMessage partialMessage = event.getPartialMessage() != null
+                ? event.getPartialMessage() : AgentEventDecoder.INSTANCE.readPartialMessage(event, withSession);
 
         boolean isInValidPartialMessage = partialMessage == null || StringUtils.isEmpty(partialMessage.getSessionId());
 
@@ -144,10 +145,10 @@ public class DeepThinkingEventProcessor {
         return partialMessage;
     }
 
-    private void processEvent(Project project, Map<String, String> eventData, String tag) {
+    private void processEvent(Project project, AgentEvent event, String tag) {
         try {
 
-            PartialMessage partialMessage = preparePartialMessage(eventData, tag, Boolean.TRUE);
+            PartialMessage partialMessage = preparePartialMessage(event, tag, Boolean.TRUE, Boolean.FALSE);
             if (null == partialMessage) {
                 return;
             }
@@ -311,8 +312,8 @@ public class DeepThinkingEventProcessor {
         return result;
     }
 
-    private void processMaxRoundsReached(Project project, Map<String, String> eventData, String tag) {
-        PartialMessage partialMessage = preparePartialMessage(eventData, tag, Boolean.FALSE);
+    private void processMaxRoundsReached(Project project, AgentEvent event, String tag) {
+        PartialMessage partialMessage = preparePartialMessage(event, tag, Boolean.FALSE, Boolean.TRUE);
         if (null == partialMessage) {
             return;
         }
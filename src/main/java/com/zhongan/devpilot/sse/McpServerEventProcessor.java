@@ -3,8 +3,7 @@ package com.zhongan.devpilot.sse;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.zhongan.devpilot.mcp.McpConfigurationHandler;
-
-import java.util.Map;
+import com.zhongan.devpilot.sse.entity.AgentEvent;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -14,9 +13,9 @@ public class McpServerEventProcessor {
 
     public static final McpServerEventProcessor INSTANCE = new McpServerEventProcessor();
 
-    public void processMcpServerEvent(Project project, Map<String, String> eventData) {
+    public void processMcpServerEvent(Project project, AgentEvent event) {
         try {
-            String tag = eventData.get("tag");
+            String tag = event.getTag();
             if (StringUtils.isEmpty(tag)) {
                 LOG.warn("Session event missing tag information");
                 return;
@@ -0,0 +1,219 @@
+package com.zhongan.devpilot.sse;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.zhongan.devpilot.sse.entity.PartialMessage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Rebuilds full partial messages from the delta mode ticks of the agent.
+ * <p>
+ * The plugin asks for delta mode in the deepThinking request. The agent then sends, per response, ticks numbered
+ * from 1 whose thought and action only carry the text appended since the previous tick, together with the total
+ * lengths so the result can be validated. Ticks that are not marked as delta are full snapshots and reset the
+ * base. When a tick is missing or the lengths do not match, the response is marked broken, a full snapshot of it
+ * is asked for and deltas are dropped until that snapshot arrives. The terminal tick is always passed on, with
+ * the text assembled so far when the response is still broken, so the message is completed either way. A session
+ * whose response broke asks for snapshot mode on its next request, and goes back to delta mode once a response
+ * completes cleanly.
+ */
+public class PartialMessageAssembler {
+
+    private static final Logger LOG = Logger.getInstance(PartialMessageAssembler.class);
+
+    public static final String DELTA_MODE = "delta";
+
+    public static final String SNAPSHOT_MODE = "snapshot";
+
+    private static final int MAX_ASSEMBLIES = 64;
+
+    private final Map<String, Assembly> assemblies = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Assembly> eldest) {
+            return size() > MAX_ASSEMBLIES;
+        }
+    };
+
+    private final Set<String> snapshotSessions = ConcurrentHashMap.newKeySet();
+
+    private final BiConsumer<String, String> snapshotRequester;
+
+    public PartialMessageAssembler() {
+        this((sessionId, responseId) -> {
+        });
+    }
+
+    /**
+     * @param snapshotRequester asks the agent for a full snapshot of a response, called with its session and
+     *                          response id when the response breaks
+     */
+    public PartialMessageAssembler(BiConsumer<String, String> snapshotRequester) {
+        this.snapshotRequester = snapshotRequester;
+    }
+
+    public String getPartialMode(String sessionId) {
+        return snapshotSessions.contains(sessionId) ? SNAPSHOT_MODE : DELTA_MODE;
+    }
+
+    /**
+     * Apply a tick to the response it belongs to.
+     *
+     * @param seq      sequence number of the tick
+     * @param message  the decoded tick, rewritten in place to the full message
+     * @param terminal whether the response ends with this tick
+     * @return the full message, or null when the tick cannot be applied and must be dropped, never null for a
+     *         terminal tick
+     */
+    public synchronized PartialMessage assemble(long seq, PartialMessage message, boolean terminal) {
+        String key = StringUtils.defaultIfEmpty(message.getResponseId(), message.getSessionId());
+        Assembly assembly = assemblies.get(key);
+
+        if (!message.isDelta()) {
+            if (terminal) {
+                complete(key, message.getSessionId(), assembly);
+            } else {
+                Assembly rebased = new Assembly(seq, message);
+                rebased.resynced = assembly != null && (assembly.broken || assembly.resynced);
+                assemblies.put(key, rebased);
+            }
+            return message;
+        }
+
+        if (assembly == null && seq == 1) {
+            assembly = new Assembly(0, null);
+            assemblies.put(key, assembly);
+        }
+
+        if (assembly != null && !assembly.broken && seq == assembly.seq + 1) {
+            if (assembly.fits(message)) {
+                assembly.apply(seq, message);
+                setAssembled(message, assembly);
+                if (terminal) {
+                    complete(key, message.getSessionId(), assembly);
+                }
+                return message;
+            }
+            assembly = markBroken(key, message, "length mismatch at seq " + seq);
+        } else if (assembly == null || !assembly.broken) {
+            assembly = markBroken(key, message, "expected seq " + (assembly == null ? 1 : assembly.seq + 1) + " but got " + seq);
+        }
+
+        if (!terminal) {
+            return null;
+        }
+
+        // the response ends anyway, complete it with what could be assembled instead of leaving it streaming
+        LOG.warn("Complete " + key + " with the text assembled before the missing tick " + (assembly.seq + 1) + ".");
+        setAssembled(message, assembly);
+        complete(key, message.getSessionId(), assembly);
+        return message;
+    }
+
+    /**
+     * A response in snapshot mode ended, the session can ask for deltas again.
+     */
+    public void snapshotCompleted(String sessionId) {
+        if (StringUtils.isNotEmpty(sessionId)) {
+            snapshotSessions.remove(sessionId);
+        }
+    }
+
+    private void setAssembled(PartialMessage message, Assembly assembly) {
+        message.setThought(assembly.thought.toString());
+        message.setAction(assembly.currentAction());
+        message.setDelta(false);
+    }
+
+    private void complete(String key, String sessionId, Assembly assembly) {
+        assemblies.remove(key);
+        if (assembly == null || !assembly.broken && !assembly.resynced) {
+            snapshotCompleted(sessionId);
+        }
+    }
+
+    private Assembly markBroken(String key, PartialMessage message, String reason) {
+        LOG.warn("Drop delta tick of " + key + " (" + reason + "), ask for a snapshot.");
+        Assembly assembly = assemblies.computeIfAbsent(key, k -> new Assembly(0, null));
+        assembly.broken = true;
+
+        if (StringUtils.isNotEmpty(message.getSessionId())) {
+            snapshotSessions.add(message.getSessionId());
+            try {
+                snapshotRequester.accept(message.getSessionId(), message.getResponseId());
+            } catch (Exception e) {
+                LOG.warn("Error occurred while asking for a snapshot of " + key + ".", e);
+            }
+        }
+        return assembly;
+    }
+
+    private static class Assembly {
+        private final StringBuilder thought = new StringBuilder();
+
+        private final StringBuilder action = new StringBuilder();
+
+        // non textual actions are always sent whole
+        private Object actionValue;
+
+        private long seq;
+
+        private boolean broken;
+
+        // the response broke before and was rebased on a snapshot
+        private boolean resynced;
+
+        Assembly(long seq, PartialMessage snapshot) {
+            this.seq = seq;
+            if (snapshot != null) {
+                append(snapshot);
+            }
+        }
+
+        void apply(long seq, PartialMessage delta) {
+            this.seq = seq;
+            append(delta);
+        }
+
+        boolean fits(PartialMessage delta) {
+            boolean thoughtFits = delta.getThoughtLength() <= 0
+                    || delta.getThoughtLength() == thought.length() + StringUtils.length(delta.getThought());
+
+            Object value = delta.getAction();
+            if (value == null ? actionValue != null : !(value instanceof String)) {
+                // non textual actions are sent whole and carry no length
+                return thoughtFits;
+            }
+            return thoughtFits && (delta.getActionLength() <= 0
+                    || delta.getActionLength() == action.length() + StringUtils.length((String) value));
+        }
+
+        Object currentAction() {
+            if (actionValue != null) {
+                return actionValue;
+            }
+            // keep "no action yet" distinguishable from an empty one, the processor relies on it
+            return action.length() == 0 ? null : action.toString();
+        }
+
+        private void append(PartialMessage message) {
+            if (message.getThought() != null) {
+                thought.append(message.getThought());
+            }
+
+            Object value = message.getAction();
+            if (value instanceof String) {
+                action.append((String) value);
+                actionValue = null;
+            } else if (value != null) {
+                action.setLength(0);
+                actionValue = value;
+            }
+        }
+    }
+}
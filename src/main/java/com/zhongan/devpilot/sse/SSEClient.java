@@ -10,19 +10,17 @@ import com.zhongan.devpilot.agents.AgentsRunner;
 import com.zhongan.devpilot.agents.BinaryManager;
 import com.zhongan.devpilot.mcp.McpConfigurationHandler;
 import com.zhongan.devpilot.session.ChatSessionManagerService;
+import com.zhongan.devpilot.sse.entity.AgentEvent;
+import com.zhongan.devpilot.sse.entity.PartialMessage;
 import com.zhongan.devpilot.util.JsonUtils;
 import com.zhongan.devpilot.util.LoginUtils;
 import com.zhongan.devpilot.util.OkhttpUtils;
 import com.zhongan.devpilot.util.UserAgentUtils;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -31,12 +29,21 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okhttp3.sse.EventSource;
+import okhttp3.sse.EventSourceListener;
+import okhttp3.sse.EventSources;
 
+import static com.zhongan.devpilot.constant.DefaultConst.DEEP_THINKING_SNAPSHOT_PATH;
 import static com.zhongan.devpilot.constant.DefaultConst.REMOTE_AGENT_DEFAULT_HOST;
 import static com.zhongan.devpilot.constant.DefaultConst.SSE_PATH;
 import static com.zhongan.devpilot.util.ProjectUtil.getProjectIdentifier;
@@ -60,6 +67,9 @@ public class SSEClient implements AgentRefreshedObserver {
 
     private static final long INITIAL_RETRY_INTERVAL = 5000;
 
+    // while the agent is starting, looking up its port already waits for it, so the next try can follow quickly
+    private static final long STARTING_RETRY_INTERVAL = 200;
+
     private static final long MAX_RETRY_INTERVAL = 60000;
 
     private static final long HEARTBEAT_INTERVAL = 30000;
@@ -82,6 +92,16 @@ public class SSEClient implements AgentRefreshedObserver {
 
     private static final Map<Project, SSEClient> clientInstances = new ConcurrentHashMap<>();
 
+    // the event stream stays open indefinitely, so it must not inherit the read timeout of the shared client
+    private static final OkHttpClient sseHttpClient = OkhttpUtils.getClient().newBuilder()
+            .connectTimeout(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS)
+            .readTimeout(0, TimeUnit.MILLISECONDS)
+            .build();
+
+    private final SSEEventDispatcher eventDispatcher;
+
+    private final PartialMessageAssembler partialMessageAssembler = new PartialMessageAssembler(this::requestPartialSnapshot);
+
     private final ReentrantLock connectionLock = new ReentrantLock();
 
     private final ReentrantLock heartbeatLock = new ReentrantLock();
@@ -97,6 +117,7 @@ public class SSEClient implements AgentRefreshedObserver {
 
     private SSEClient(Project project) {
         this.project = project;
+        this.eventDispatcher = new SSEEventDispatcher(getProjectIdentifier(project), this::processEvent);
     }
 
     public static SSEClient getInstance(Project project) {
@@ -118,6 +139,7 @@ public class SSEClient implements AgentRefreshedObserver {
         if (client != null) {
             AgentsRunner.INSTANCE.removeRefreshObserver(client);
             client.disconnect();
+            client.eventDispatcher.stop();
         }
     }
 
@@ -136,12 +158,20 @@ public class SSEClient implements AgentRefreshedObserver {
         retryCount.set(0);
         currentRetryInterval.set(INITIAL_RETRY_INTERVAL);
 
+        eventDispatcher.start();
+
         connectionThread = new Thread(() -> {
             while (retryCount.get() < MAX_RETRY_COUNT && !Thread.currentThread().isInterrupted()) {
-                HttpURLConnection connection = null;
+                EventSource eventSource = null;
                 try {
                     Pair<Integer, Long> portPId = getAgentPort();
                     if (portPId == null) {
+                        if (AgentsRunner.INSTANCE.isStarting()) {
+                            // a start in progress ends within its readiness deadline, it does not use up the retries
+                            LOG.info("Agent正在启动，稍后重试");
+                            Thread.sleep(STARTING_RETRY_INTERVAL);
+                            continue;
+                        }
                         handleConnectionError(ConnectionErrorType.AGENT_NOT_RUNNING);
                         continue;
                     }
@@ -154,8 +184,9 @@ public class SSEClient implements AgentRefreshedObserver {
                         return;
                     }
 
-                    connection = establishConnection();
-                    if (connection == null) {
+                    AgentEventListener listener = new AgentEventListener();
+                    eventSource = establishConnection(listener);
+                    if (!listener.awaitOpened()) {
                         handleConnectionError(ConnectionErrorType.NETWORK_ERROR);
                         continue;
                     }
@@ -163,19 +194,18 @@ public class SSEClient implements AgentRefreshedObserver {
                     connected.set(true);
                     retryCount.set(0);
 
-                    processEventStream(connection);
+                    listener.awaitClosed();
 
-                } catch (IOException e) {
-                    LOG.warn("SSE连接IO异常: " + e.getMessage(), e);
-                    handleConnectionError(ConnectionErrorType.NETWORK_ERROR);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 } catch (Throwable e) {
                     LOG.warn("SSE连接异常: " + e.getMessage(), e);
                     handleConnectionError(ConnectionErrorType.UNKNOWN_ERROR);
                 } finally {
                     resetConnectionState();
-                    if (connection != null) {
+                    if (eventSource != null) {
                         try {
-                            connection.disconnect();
+                            eventSource.cancel();
                         } catch (Exception e) {
                             LOG.warn("关闭连接时发生异常", e);
                         }
@@ -271,69 +301,156 @@ public class SSEClient implements AgentRefreshedObserver {
         }
     }
 
-    private HttpURLConnection establishConnection() {
-        try {
-            String sseUrl = REMOTE_AGENT_DEFAULT_HOST + currentPort + SSE_PATH;
-            LOG.warn("尝试连接SSE服务: " + sseUrl);
-
-            URL url = new URL(sseUrl);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("Accept", "text/event-stream");
-            connection.setRequestProperty("Accept-Charset", "UTF-8");
-            connection.setDoInput(true);
-            connection.setConnectTimeout(CONNECTION_TIMEOUT);
-            connection.connect();
-
-            int responseCode = connection.getResponseCode();
-            if (responseCode != 200) {
-                LOG.warn("SSE连接失败，响应码: " + responseCode);
-                safeDisconnect(connection);
-                return null;
-            }
-
-            return connection;
-        } catch (IOException e) {
-            LOG.warn("建立SSE连接失败: " + e.getMessage(), e);
-            return null;
+    private EventSource establishConnection(AgentEventListener listener) {
+        String sseUrl = REMOTE_AGENT_DEFAULT_HOST + currentPort + SSE_PATH;
+        LOG.warn("尝试连接SSE服务: " + sseUrl);
+
+        Request request = new Request.Builder()
+                .url(sseUrl)
+                .header("Accept", "text/event-stream")
+                .header("Accept-Charset", "UTF-8")
+                .get()
+                .build();
+
+        return EventSources.createFactory(sseHttpClient).newEventSource(request, listener);
+    }
+
+    /**
+     * Runs on the OkHttp reader thread, so it only decodes the event envelope and hands it to the dispatcher.
+     */
+    private void onStreamEvent(String message) {
+        lastMessageTime = System.currentTimeMillis();
+        if (StringUtils.isEmpty(message)) {
+            return;
+        }
+
+        AgentEvent event = AgentEventDecoder.INSTANCE.decode(message);
+        if (null == event) {
+            return;
         }
+
+        if (!assemblePartialEvent(event)) {
+            return;
+        }
+        eventDispatcher.dispatch(event);
     }
 
-    private void safeDisconnect(HttpURLConnection connection) {
-        if (connection != null) {
-            try {
-                connection.disconnect();
-            } catch (Exception e) {
-                LOG.warn("安全断开连接时发生异常", e);
+    /**
+     * Partial messages are decoded here so ticks can be coalesced per response. Delta ticks must be applied in
+     * stream order before any coalescing, so they are reassembled here too. Ticks skip the embedded session,
+     * decoding them on the reader thread stays cheap.
+     *
+     * @return false when the tick cannot be applied and must be dropped
+     */
+    private boolean assemblePartialEvent(AgentEvent event) {
+        boolean streaming = event.isStreamingTick();
+        boolean completed = event.isEvent(AgentEvent.DEEP_THINKING) && StringUtils.equalsIgnoreCase(AgentEvent.PARTIAL_COMPLETED_TAG, event.getTag());
+        if (!streaming && !completed) {
+            return true;
+        }
+
+        PartialMessage partialMessage = AgentEventDecoder.INSTANCE.readPartialMessage(event, false);
+        if (partialMessage == null) {
+            return true;
+        }
+
+        if (event.getSeq() == null) {
+            if (completed) {
+                partialMessageAssembler.snapshotCompleted(partialMessage.getSessionId());
             }
+            event.setPartialMessage(partialMessage);
+            return true;
         }
+
+        PartialMessage assembled = partialMessageAssembler.assemble(event.getSeq(), partialMessage, completed);
+        event.setPartialMessage(assembled);
+        return assembled != null;
     }
 
-    private void processEventStream(HttpURLConnection connection) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
-            String line;
-            while ((line = reader.readLine()) != null && !Thread.currentThread().isInterrupted()) {
-                if (line.isEmpty()) {
-                    continue;
-                }
+    /**
+     * Ask the agent to send the current state of a response as a full snapshot tick, after a delta went missing.
+     */
+    private void requestPartialSnapshot(String sessionId, String responseId) {
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            Pair<Integer, Long> portPId = BinaryManager.INSTANCE.retrieveAlivePort();
+            if (portPId == null || portPId.first == null) {
+                return;
+            }
 
-                if (line.startsWith("event:")) {
-                    lastMessageTime = System.currentTimeMillis();
-                    String data = line.substring(6).trim();
-                    processEvent(data);
-                } else if (line.startsWith("id:")) {
-                    lastMessageTime = System.currentTimeMillis();
-                } else if (line.startsWith("data:")) {
-                    String data = line.substring(5).trim();
-                    if (!data.isEmpty()) {
-                        lastMessageTime = System.currentTimeMillis();
-                        LOG.debug("收到SSE数据: " + data);
-                    }
+            Map<String, Object> body = new HashMap<>();
+            body.put("clientId", clientId);
+            body.put("sessionId", sessionId);
+            body.put("responseId", responseId);
+
+            Request request = new Request.Builder()
+                    .url(REMOTE_AGENT_DEFAULT_HOST + portPId.first + DEEP_THINKING_SNAPSHOT_PATH)
+                    .header("User-Agent", UserAgentUtils.buildUserAgent())
+                    .header("Auth-Type", LoginUtils.getLoginType())
+                    .post(RequestBody.create(JsonUtils.toJson(body), MediaType.parse("application/json")))
+                    .build();
+
+            try (Response response = OkhttpUtils.getClient().newCall(request).execute()) {
+                if (!response.isSuccessful()) {
+                    LOG.warn("Request snapshot of " + responseId + " failed, response code: " + response.code() + ".");
                 }
+            } catch (Exception e) {
+                LOG.warn("Error occurred while requesting snapshot of " + responseId + ".", e);
+            }
+        });
+    }
+
+    public PartialMessageAssembler getPartialMessageAssembler() {
+        return partialMessageAssembler;
+    }
+
+    private class AgentEventListener extends EventSourceListener {
+        private final CountDownLatch openedLatch = new CountDownLatch(1);
+
+        private final CountDownLatch closedLatch = new CountDownLatch(1);
+
+        private volatile boolean opened = false;
+
+        @Override
+        public void onOpen(@NotNull EventSource eventSource, @NotNull Response response) {
+            // responses keep their assemblies, ticks lost while reconnecting show up as a gap and are resynced
+            opened = true;
+            openedLatch.countDown();
+        }
+
+        @Override
+        public void onEvent(@NotNull EventSource eventSource, @Nullable String id, @Nullable String type, @NotNull String data) {
+            // the agent writes the json envelope on the "event:" field, "data:" only carries a placeholder
+            if (StringUtils.startsWith(type, "{")) {
+                onStreamEvent(type);
+            } else {
+                onStreamEvent(data);
             }
-        } catch (IOException e) {
-            LOG.warn("SSE事件流处理中断: " + e.getMessage(), e);
-            throw e;
+        }
+
+        @Override
+        public void onClosed(@NotNull EventSource eventSource) {
+            LOG.info("SSE事件流已关闭, 端口: " + currentPort);
+            openedLatch.countDown();
+            closedLatch.countDown();
+        }
+
+        @Override
+        public void onFailure(@NotNull EventSource eventSource, @Nullable Throwable t, @Nullable Response response) {
+            if (response != null && !response.isSuccessful()) {
+                LOG.warn("SSE连接失败，响应码: " + response.code());
+            } else if (t != null) {
+                LOG.warn("SSE事件流处理中断: " + t.getMessage(), t);
+            }
+            openedLatch.countDown();
+            closedLatch.countDown();
+        }
+
+        boolean awaitOpened() throws InterruptedException {
+            return openedLatch.await(CONNECTION_TIMEOUT * 2L, TimeUnit.MILLISECONDS) && opened;
+        }
+
+        void awaitClosed() throws InterruptedException {
+            closedLatch.await();
         }
     }
 
@@ -370,33 +487,25 @@ public class SSEClient implements AgentRefreshedObserver {
         disconnect();
     }
 
-    private void processEvent(String message) {
-        if (StringUtils.isEmpty(message)) {
-            return;
-        }
-
+    private void processEvent(AgentEvent event) {
         try {
-            Map<String, String> eventMap = JsonUtils.fromJson(message, Map.class);
-            if (null != eventMap) {
-                var eventType = eventMap.get("event");
-                if (StringUtils.equalsIgnoreCase("ClientConnected", String.valueOf(eventType))) {
-                    handleClientConnectedEvent(eventMap);
-                } else if (StringUtils.equalsIgnoreCase("DeepThinking", String.valueOf(eventType))) {
-                    DeepThinkingEventProcessor.INSTANCE.processDeepThinkingEvent(project, eventMap);
-                } else if (StringUtils.equalsIgnoreCase("Session", String.valueOf(eventType))) {
-                    SessionEventProcessor.INSTANCE.processSessionEvent(project, eventMap);
-                } else if (StringUtils.equalsIgnoreCase("McpServers", String.valueOf(eventType))) {
-                    McpServerEventProcessor.INSTANCE.processMcpServerEvent(project, eventMap);
-                } else {
-                    LOG.warn("收到未知类型事件: " + eventType);
-                }
+            if (event.isEvent(AgentEvent.CLIENT_CONNECTED)) {
+                handleClientConnectedEvent(event);
+            } else if (event.isEvent(AgentEvent.DEEP_THINKING)) {
+                DeepThinkingEventProcessor.INSTANCE.processDeepThinkingEvent(project, event);
+            } else if (event.isEvent(AgentEvent.SESSION)) {
+                SessionEventProcessor.INSTANCE.processSessionEvent(project, event);
+            } else if (event.isEvent(AgentEvent.MCP_SERVERS)) {
+                McpServerEventProcessor.INSTANCE.processMcpServerEvent(project, event);
+            } else {
+                LOG.warn("收到未知类型事件: " + event.getEvent());
             }
         } catch (Throwable e) {
             LOG.warn("处理SSE事件时发生异常: " + e.getMessage(), e);
         }
     }
 
-    private void handleClientConnectedEvent(Map<String, String> eventMap) {
+    private void handleClientConnectedEvent(AgentEvent event) {
         boolean lockAcquired = false;
 
         try {
@@ -405,7 +514,7 @@ public class SSEClient implements AgentRefreshedObserver {
                 LOG.warn("获取连接锁超时，无法处理客户端连接事件");
                 return;
             }
-            clientId = String.valueOf(eventMap.get("clientId"));
+            clientId = String.valueOf(event.getClientId());
             LOG.info("添加SSE客户端: " + clientId + " 项目路径: " + project.getBasePath());
 
             if (project.isDisposed()) {
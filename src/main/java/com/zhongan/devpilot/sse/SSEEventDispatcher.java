@@ -0,0 +1,183 @@
+package com.zhongan.devpilot.sse;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.zhongan.devpilot.sse.entity.AgentEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Decouples reading the agent event stream from processing the events.
+ * <p>
+ * The SSE reader only enqueues events here and returns to the socket immediately, a single dispatch thread
+ * drains the queue in arrival order. Streaming ticks are coalesced per response: a tick still waiting in the
+ * queue is replaced in place by a newer tick of the same response, since every tick carries the latest state of
+ * its response. Ticks of other responses are left alone. Every other event, terminal ticks and decisions
+ * included, is never coalesced and acts as a barrier: ticks queued before it are not replaced by later ones.
+ * <p>
+ * The queue is bounded. When the handler falls behind, only streaming ticks are dropped, every other event makes
+ * the reader wait for room.
+ */
+public class SSEEventDispatcher {
+
+    private static final Logger LOG = Logger.getInstance(SSEEventDispatcher.class);
+
+    private static final int MAX_PENDING_EVENTS = 256;
+
+    private static final long OFFER_TIMEOUT_MILLIS = 1000;
+
+    private final LinkedBlockingDeque<PendingEvent> pendingEvents = new LinkedBlockingDeque<>(MAX_PENDING_EVENTS);
+
+    // latest queued tick of each response since the last barrier, guarded by itself
+    private final Map<String, PendingEvent> coalescableEvents = new HashMap<>();
+
+    private final AtomicLong coalescedCount = new AtomicLong(0);
+
+    private final AtomicLong droppedCount = new AtomicLong(0);
+
+    private final String name;
+
+    private final Consumer<AgentEvent> handler;
+
+    private volatile Thread dispatchThread;
+
+    public SSEEventDispatcher(String name, Consumer<AgentEvent> handler) {
+        this.name = name;
+        this.handler = handler;
+    }
+
+    public synchronized void start() {
+        if (dispatchThread != null && dispatchThread.isAlive()) {
+            return;
+        }
+
+        dispatchThread = new Thread(this::drain, "SSE-Dispatch-Thread-" + name);
+        dispatchThread.setDaemon(true);
+        dispatchThread.start();
+    }
+
+    public synchronized void stop() {
+        if (dispatchThread != null) {
+            dispatchThread.interrupt();
+            dispatchThread = null;
+        }
+        pendingEvents.clear();
+        synchronized (coalescableEvents) {
+            coalescableEvents.clear();
+        }
+    }
+
+    /**
+     * Enqueue an event for processing on the dispatch thread.
+     * <p>
+     * A streaming tick waits at most {@code OFFER_TIMEOUT_MILLIS} for room in a full queue and is dropped after
+     * that, the next tick or the terminal event of its response carries the state it had. Every other event waits
+     * until there is room, so a terminal tick, a decision or a failure is never lost.
+     *
+     * @param event the decoded event
+     */
+    public void dispatch(AgentEvent event) {
+        if (!event.isStreamingTick()) {
+            synchronized (coalescableEvents) {
+                coalescableEvents.clear();
+            }
+            try {
+                pendingEvents.putLast(new PendingEvent(event));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
+        String streamKey = event.getStreamKey();
+        synchronized (coalescableEvents) {
+            if (streamKey == null) {
+                // an undecoded tick may belong to any response, it is a barrier as well
+                coalescableEvents.clear();
+            } else {
+                PendingEvent pending = coalescableEvents.get(streamKey);
+                // the dispatch thread may have taken it already, in which case the tick is queued on its own
+                if (pending != null && pending.replace(event)) {
+                    coalescedCount.incrementAndGet();
+                    return;
+                }
+            }
+        }
+
+        // wait for room without holding the lock
+        PendingEvent pending = new PendingEvent(event);
+        try {
+            if (!pendingEvents.offerLast(pending, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                long dropped = droppedCount.incrementAndGet();
+                LOG.warn("SSE dispatch queue is full, drop streaming tick, dropped count: " + dropped + ".");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (streamKey != null) {
+            synchronized (coalescableEvents) {
+                coalescableEvents.put(streamKey, pending);
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return pendingEvents.size();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            AgentEvent event;
+            try {
+                event = pendingEvents.takeFirst().take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                handler.accept(event);
+            } catch (Throwable e) {
+                LOG.warn("Error occurred while dispatching SSE event: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static class PendingEvent {
+        private AgentEvent event;
+
+        private boolean taken;
+
+        PendingEvent(AgentEvent event) {
+            this.event = event;
+        }
+
+        synchronized boolean replace(AgentEvent newer) {
+            if (taken) {
+                return false;
+            }
+            event = newer;
+            return true;
+        }
+
+        synchronized AgentEvent take() {
+            taken = true;
+            return event;
+        }
+    }
+}
@@ -4,10 +4,9 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.zhongan.devpilot.session.ChatSessionManagerService;
 import com.zhongan.devpilot.session.model.ChatSession;
+import com.zhongan.devpilot.sse.entity.AgentEvent;
 import com.zhongan.devpilot.util.JsonUtils;
 
-import java.util.Map;
-
 import org.apache.commons.lang3.StringUtils;
 
 public class SessionEventProcessor {
@@ -16,9 +15,9 @@ public class SessionEventProcessor {
 
     public static final SessionEventProcessor INSTANCE = new SessionEventProcessor();
 
-    public void processSessionEvent(Project project, Map<String, String> eventData) {
+    public void processSessionEvent(Project project, AgentEvent event) {
         try {
-            String tag = eventData.get("tag");
+            String tag = event.getTag();
             if (StringUtils.isEmpty(tag)) {
                 LOG.warn("Session event missing tag information");
                 return;
@@ -28,7 +27,7 @@ public class SessionEventProcessor {
                     project.getService(ChatSessionManagerService.class).getSessionManager().setSessionUpdated(Boolean.TRUE);
                     break;
                 case "Request-Saved":
-                    ChatSession eventSession = JsonUtils.fromJson(eventData.get("message"), ChatSession.class);
+                    ChatSession eventSession = JsonUtils.fromJson(event.getMessage(), ChatSession.class);
                     project.getService(ChatSessionManagerService.class).getSessionManager().handleRequestMessageListSaved(eventSession);
                     break;
                 default:
@@ -0,0 +1,107 @@
+package com.zhongan.devpilot.sse.entity;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Envelope of an event pushed by the agent over SSE. The nested message is kept as raw json
+ * and only decoded by the processor that handles the event.
+ */
+public class AgentEvent {
+
+    public static final String CLIENT_CONNECTED = "ClientConnected";
+
+    public static final String DEEP_THINKING = "DeepThinking";
+
+    public static final String SESSION = "Session";
+
+    public static final String MCP_SERVERS = "McpServers";
+
+    public static final String PARTIAL_STREAMING_TAG = "partial-steaming";
+
+    public static final String PARTIAL_COMPLETED_TAG = "partial-completed";
+
+    private String event;
+
+    private String tag;
+
+    private String clientId;
+
+    private String message;
+
+    // sequence number of delta mode ticks, null when the agent sends full snapshots
+    private Long seq;
+
+    // message already decoded and reassembled on the reader thread, if any
+    private PartialMessage partialMessage;
+
+    public String getEvent() {
+        return event;
+    }
+
+    public void setEvent(String event) {
+        this.event = event;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public void setTag(String tag) {
+        this.tag = tag;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
+    public PartialMessage getPartialMessage() {
+        return partialMessage;
+    }
+
+    public void setPartialMessage(PartialMessage partialMessage) {
+        this.partialMessage = partialMessage;
+    }
+
+    public boolean isEvent(String eventType) {
+        return StringUtils.equalsIgnoreCase(eventType, event);
+    }
+
+    public boolean isStreamingTick() {
+        return isEvent(DEEP_THINKING) && StringUtils.equalsIgnoreCase(PARTIAL_STREAMING_TAG, tag);
+    }
+
+    /**
+     * The response a decoded partial message belongs to, null until the message is decoded.
+     */
+    public String getStreamKey() {
+        if (partialMessage == null) {
+            return null;
+        }
+        return StringUtils.defaultIfEmpty(partialMessage.getResponseId(), partialMessage.getSessionId());
+    }
+
+    @Override
+    public String toString() {
+        return "AgentEvent{event='" + event + "', tag='" + tag + "', clientId='" + clientId + "', seq=" + seq + ", message=" + message + "}";
+    }
+}
@@ -34,6 +34,13 @@ public class PartialMessage {
 
     private int statusCode;
 
+    // in delta mode thought and action only carry the fragment appended since the previous tick
+    private boolean delta;
+
+    private int thoughtLength;
+
+    private int actionLength;
+
     public String getClientId() {
         return clientId;
     }
@@ -145,4 +152,28 @@ public class PartialMessage {
     public void setStatusCode(int statusCode) {
         this.statusCode = statusCode;
     }
+
+    public boolean isDelta() {
+        return delta;
+    }
+
+    public void setDelta(boolean delta) {
+        this.delta = delta;
+    }
+
+    public int getThoughtLength() {
+        return thoughtLength;
+    }
+
+    public void setThoughtLength(int thoughtLength) {
+        this.thoughtLength = thoughtLength;
+    }
+
+    public int getActionLength() {
+        return actionLength;
+    }
+
+    public void setActionLength(int actionLength) {
+        this.actionLength = actionLength;
+    }
 }
@@ -1,78 +1,161 @@
 package com.zhongan.devpilot.util;
 
-import com.intellij.lang.Language;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
-import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Pair;
 import com.intellij.psi.PsiDocumentManager;
+import com.zhongan.devpilot.completions.prediction.CompletionSnapshot;
+import com.zhongan.devpilot.completions.sync.DocumentSyncManager;
 import com.zhongan.devpilot.integrations.llms.entity.DevPilotChatCompletionRequest;
 import com.zhongan.devpilot.integrations.llms.entity.DevPilotInstructCompletionRequest;
 import com.zhongan.devpilot.integrations.llms.entity.DevPilotMessage;
 
+import java.security.MessageDigest;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+
 import static com.zhongan.devpilot.constant.DefaultConst.REQUEST_ENCODING_ON;
 import static com.zhongan.devpilot.util.VirtualFileUtil.getRelativeFilePath;
 
 public class GatewayRequestUtils {
-    public static String completionRequestPureJson(DevPilotInstructCompletionRequest instructCompletionRequest) {
+    private static final int HASH_BUFFER_SIZE = 8192;
+
+    // content hash of a document and the modification stamp it was computed at
+    private static final Key<Pair<Long, String>> DOCUMENT_HASH_KEY = Key.create("DevPilot.documentHash");
+
+    /**
+     * Build the completion request sent to the local agent.
+     * <p>
+     * Only the prefix/suffix window computed by the completion facade is sent as document, together with the
+     * window start, the length and the content hash of the whole document, so that the agent can ask for more
+     * when its own copy is stale. Requests without a window still carry the full document.
+     * <p>
+     * When the document could be synced to the agent on the given port, no text is sent at all, only the position,
+     * the document version and the bounds of the window, so the agent cuts the same budgeted window from its copy.
+     */
+    public static String completionRequestPureJson(DevPilotInstructCompletionRequest instructCompletionRequest, int port) {
         int offset = instructCompletionRequest.getOffset();
-        Editor editor = instructCompletionRequest.getEditor();
-        final Document[] document = new Document[1];
-        final Language[] language = new Language[1];
-        final VirtualFile[] virtualFile = new VirtualFile[1];
-        final String[] relativePath = new String[1];
-
-        ApplicationManager.getApplication().runReadAction(() -> {
-            document[0] = editor.getDocument();
-            language[0] = PsiDocumentManager.getInstance(editor.getProject()).getPsiFile(document[0]).getLanguage();
-            virtualFile[0] = FileDocumentManager.getInstance().getFile(document[0]);
-            relativePath[0] = getRelativeFilePath(editor.getProject(), virtualFile[0]);
-        });
-
-        String text = document[0].getText();
+        CompletionSnapshot snapshot = instructCompletionRequest.getSnapshot();
+        Document document = snapshot != null ? snapshot.getDocument() : instructCompletionRequest.getEditor().getDocument();
+        CharSequence text = snapshot != null ? snapshot.getText() : document.getImmutableCharSequence();
+        String[] fileFacts = fileFacts(instructCompletionRequest, document);
 
         Map<String, Object> map = new HashMap<>();
-        map.put("document", text);
-        map.put("position", String.valueOf(offset));
-        map.put("language", language[0].getID());
-        map.put("filePath", relativePath[0]);
+        int windowStart = instructCompletionRequest.getWindowStart();
+        long version = instructCompletionRequest.getDocumentVersion();
+        if (windowStart >= 0 && DocumentSyncManager.INSTANCE.sync(port, document, fileFacts[1], version)) {
+            map.put("position", String.valueOf(offset));
+            map.put("documentVersion", version);
+            map.put("windowStart", windowStart);
+            map.put("windowEnd", offset + StringUtils.length(instructCompletionRequest.getSuffix()));
+        } else if (windowStart >= 0) {
+            String prompt = StringUtils.defaultString(instructCompletionRequest.getPrompt());
+            String suffix = StringUtils.defaultString(instructCompletionRequest.getSuffix());
+            map.put("document", prompt + suffix);
+            map.put("position", String.valueOf(prompt.length()));
+            map.put("windowStart", windowStart);
+            map.put("documentLength", instructCompletionRequest.getDocumentLength());
+            map.put("documentHash", instructCompletionRequest.getDocumentHash());
+        } else {
+            map.put("document", text.toString());
+            map.put("position", String.valueOf(offset));
+        }
+        map.put("language", fileFacts[0]);
+        map.put("filePath", fileFacts[1]);
         map.put("completionType", instructCompletionRequest.getCompletionType());
         map.put("additionalContext", instructCompletionRequest.getRelatedCodeInfos());
+        if (instructCompletionRequest.isStream()) {
+            map.put("stream", true);
+            map.put("n", instructCompletionRequest.getN());
+        }
 
         return JsonUtils.toJson(map);
     }
 
-    public static String completionRequestJson(DevPilotInstructCompletionRequest instructCompletionRequest) {
-        int offset = instructCompletionRequest.getOffset();
+    /**
+     * Language id and relative path of the completed file. Requests built from a snapshot already know them,
+     * otherwise they are resolved in a read action.
+     */
+    private static String[] fileFacts(DevPilotInstructCompletionRequest instructCompletionRequest, Document document) {
+        CompletionSnapshot snapshot = instructCompletionRequest.getSnapshot();
+        String languageId = snapshot == null ? null : snapshot.getLanguageId();
+        String relativePath = snapshot == null ? null : snapshot.getRelativePath();
+        if (languageId != null && relativePath != null) {
+            return new String[] {languageId, relativePath};
+        }
+
         Editor editor = instructCompletionRequest.getEditor();
-        final Document[] document = new Document[1];
-        final Language[] language = new Language[1];
-        final VirtualFile[] virtualFile = new VirtualFile[1];
-        final String[] relativePath = new String[1];
-
-        ApplicationManager.getApplication().runReadAction(() -> {
-            document[0] = editor.getDocument();
-            language[0] = PsiDocumentManager.getInstance(editor.getProject()).getPsiFile(document[0]).getLanguage();
-            virtualFile[0] = FileDocumentManager.getInstance().getFile(document[0]);
-            relativePath[0] = getRelativeFilePath(editor.getProject(), virtualFile[0]);
+        String[] resolved = ApplicationManager.getApplication().runReadAction((Computable<String[]>) () -> new String[] {
+            PsiDocumentManager.getInstance(editor.getProject()).getPsiFile(document).getLanguage().getID(),
+            getRelativeFilePath(editor.getProject(), FileDocumentManager.getInstance().getFile(document))
         });
+        return new String[] {StringUtils.defaultIfEmpty(languageId, resolved[0]), StringUtils.defaultIfEmpty(relativePath, resolved[1])};
+    }
+
+    /**
+     * Content hash of a document, only computed again when the document was modified since the last request.
+     *
+     * @param modificationStamp stamp of the document when the text was taken
+     * @param text              the document text at that stamp
+     */
+    public static String contentHash(Document document, long modificationStamp, CharSequence text) {
+        Pair<Long, String> cached = document.getUserData(DOCUMENT_HASH_KEY);
+        if (cached != null && cached.first == modificationStamp) {
+            return cached.second;
+        }
+
+        String hash = contentHash(text);
+        document.putUserData(DOCUMENT_HASH_KEY, Pair.create(modificationStamp, hash));
+        return hash;
+    }
+
+    /**
+     * Md5 of the UTF-16BE encoded text, computed without copying the text into a string.
+     */
+    public static String contentHash(CharSequence text) {
+        MessageDigest digest = DigestUtils.getMd5Digest();
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        int pos = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            buffer[pos++] = (byte) (c >> 8);
+            buffer[pos++] = (byte) c;
+            if (pos == buffer.length) {
+                digest.update(buffer);
+                pos = 0;
+            }
+        }
+        digest.update(buffer, 0, pos);
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    public static String completionRequestJson(DevPilotInstructCompletionRequest instructCompletionRequest) {
+        int offset = instructCompletionRequest.getOffset();
+        CompletionSnapshot snapshot = instructCompletionRequest.getSnapshot();
+        Document document = snapshot != null ? snapshot.getDocument() : instructCompletionRequest.getEditor().getDocument();
+        CharSequence text = snapshot != null ? snapshot.getText() : document.getImmutableCharSequence();
+        String[] fileFacts = fileFacts(instructCompletionRequest, document);
 
-        String text = document[0].getText();
+        String documentText = text.toString();
 
         if (isRequestEncoding()) {
             instructCompletionRequest.setEncoding("base64");
-            text = Base64Utils.base64Encoding(text);
+            documentText = Base64Utils.base64Encoding(documentText);
         }
 
         Map<String, String> map = new HashMap<>();
-        map.put("document", text);
+        map.put("document", documentText);
         map.put("position", String.valueOf(offset));
-        map.put("language", language[0].getID());
-        map.put("filePath", relativePath[0]);
+        map.put("language", fileFacts[0]);
+        map.put("filePath", fileFacts[1]);
         map.put("completionType", instructCompletionRequest.getCompletionType());
         map.put("encoding", instructCompletionRequest.getEncoding());
 
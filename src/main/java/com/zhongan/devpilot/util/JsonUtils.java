@@ -1,6 +1,8 @@
 package com.zhongan.devpilot.util;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.intellij.openapi.diagnostic.Logger;
@@ -50,6 +52,40 @@ public class JsonUtils {
         }
     }
 
+    public static JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            log.warn("Error occurred while parsing json tree.", e);
+            return null;
+        }
+    }
+
+    public static <T> T treeToValue(JsonNode node, Class<T> clazz) {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            return null;
+        }
+
+        try {
+            return objectMapper.treeToValue(node, clazz);
+        } catch (Exception e) {
+            log.warn("Error occurred while binding json tree.", e);
+            return null;
+        }
+    }
+
+    public static JsonParser createParser(String json) throws IOException {
+        return objectMapper.createParser(json);
+    }
+
+    public static JsonParser createParser(File file) throws IOException {
+        return objectMapper.createParser(file);
+    }
+
+    public static <T> T readValue(JsonParser parser, Class<T> clazz) throws IOException {
+        return objectMapper.readValue(parser, clazz);
+    }
+
     public static boolean toJson(File file, Object object) {
         try {
             objectMapper.writeValue(file, object);
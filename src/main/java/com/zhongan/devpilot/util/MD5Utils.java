@@ -1,17 +1,37 @@
 package com.zhongan.devpilot.util;
 
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
 
+import java.io.InputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 
 public class MD5Utils {
 
+    // md5 of a file with the VFS stamp, time stamp and length it was computed for
+    private static final Key<FileHash> FILE_HASH_KEY = Key.create("DEVPILOT_FILE_HASH");
+
+    /**
+     * Md5 of the file content, remembered on the file until the VFS reports a change, so that checking an unchanged
+     * file again does not read it. The content is streamed, never copied as a whole.
+     */
     public static String calculateMD5(VirtualFile virtualFile) {
-        try {
-            return calculateMD5(virtualFile.contentsToByteArray());
+        long modificationStamp = virtualFile.getModificationStamp();
+        long timeStamp = virtualFile.getTimeStamp();
+        long length = virtualFile.getLength();
+        FileHash cached = virtualFile.getUserData(FILE_HASH_KEY);
+        if (cached != null && cached.matches(modificationStamp, timeStamp, length)) {
+            return cached.hash;
+        }
+
+        try (InputStream inputStream = virtualFile.getInputStream()) {
+            String hash = DigestUtils.md5Hex(inputStream);
+            virtualFile.putUserData(FILE_HASH_KEY, new FileHash(modificationStamp, timeStamp, length, hash));
+            return hash;
         } catch (Exception e) {
             return StringUtils.EMPTY;
         }
@@ -32,4 +52,25 @@ public class MD5Utils {
         }
     }
 
+    private static class FileHash {
+        private final long modificationStamp;
+
+        private final long timeStamp;
+
+        private final long length;
+
+        private final String hash;
+
+        FileHash(long modificationStamp, long timeStamp, long length, String hash) {
+            this.modificationStamp = modificationStamp;
+            this.timeStamp = timeStamp;
+            this.length = length;
+            this.hash = hash;
+        }
+
+        boolean matches(long modificationStamp, long timeStamp, long length) {
+            return this.modificationStamp == modificationStamp && this.timeStamp == timeStamp && this.length == length;
+        }
+    }
+
 }
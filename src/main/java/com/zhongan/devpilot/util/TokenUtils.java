@@ -2,14 +2,19 @@ package com.zhongan.devpilot.util;
 
 import com.knuddels.jtokkit.Encodings;
 import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingResult;
+import com.knuddels.jtokkit.api.IntArrayList;
 import com.knuddels.jtokkit.api.ModelType;
 import com.zhongan.devpilot.constant.DefaultConst;
 import com.zhongan.devpilot.constant.PromptConst;
+import com.zhongan.devpilot.context.MessageTokenCounter;
 import com.zhongan.devpilot.integrations.llms.entity.DevPilotMessage;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.commons.lang3.StringUtils;
+
 public class TokenUtils {
 
     private static final Encoding GPT_3_5_TURBO_16K_ENC = Encodings.newDefaultEncodingRegistry()
@@ -18,7 +23,7 @@ public class TokenUtils {
     public static List<Integer> ComputeTokensFromMessagesUsingGPT35Enc(List<DevPilotMessage> messages) {
         List<Integer> tokensCount = new ArrayList<>(messages.size());
         for (DevPilotMessage message : messages) {
-            tokensCount.add(GPT_3_5_TURBO_16K_ENC.countTokensOrdinary(message.getContent()));
+            tokensCount.add(MessageTokenCounter.INSTANCE.count(message.getContent()));
         }
         return tokensCount;
     }
@@ -27,6 +32,74 @@ public class TokenUtils {
         return GPT_3_5_TURBO_16K_ENC.countTokensOrdinary(content);
     }
 
+    public static int countTokens(String content) {
+        return StringUtils.isEmpty(content) ? 0 : GPT_3_5_TURBO_16K_ENC.countTokensOrdinary(content);
+    }
+
+    /**
+     * Keep the beginning of the content within maxTokens, cut after the last complete line when possible.
+     * The result is always a prefix of the content.
+     */
+    public static String keepHeadTokens(String content, int maxTokens) {
+        if (StringUtils.isEmpty(content) || maxTokens <= 0) {
+            return "";
+        }
+
+        EncodingResult result = GPT_3_5_TURBO_16K_ENC.encodeOrdinary(content, maxTokens);
+        if (!result.isTruncated()) {
+            return content;
+        }
+
+        // the last token may end inside a character, which decodes to U+FFFD, cut before it
+        String decoded = GPT_3_5_TURBO_16K_ENC.decode(result.getTokens());
+        int length = 0;
+        int max = Math.min(decoded.length(), content.length());
+        while (length < max && decoded.charAt(length) == content.charAt(length)) {
+            length++;
+        }
+        if (length > 0 && Character.isHighSurrogate(content.charAt(length - 1))) {
+            length--;
+        }
+
+        String head = content.substring(0, length);
+        int lineEnd = head.lastIndexOf('\n');
+        return lineEnd > 0 ? head.substring(0, lineEnd + 1) : head;
+    }
+
+    /**
+     * Keep the end of the content within maxTokens, start at the first complete line when possible.
+     * The result is always a suffix of the content.
+     */
+    public static String keepTailTokens(String content, int maxTokens) {
+        if (StringUtils.isEmpty(content) || maxTokens <= 0) {
+            return "";
+        }
+
+        IntArrayList tokens = GPT_3_5_TURBO_16K_ENC.encodeOrdinary(content);
+        if (tokens.size() <= maxTokens) {
+            return content;
+        }
+
+        IntArrayList tailTokens = new IntArrayList(maxTokens);
+        for (int i = tokens.size() - maxTokens; i < tokens.size(); i++) {
+            tailTokens.add(tokens.get(i));
+        }
+        // the first token may start inside a character, which decodes to U+FFFD, start after it
+        String decoded = GPT_3_5_TURBO_16K_ENC.decode(tailTokens);
+        int length = 0;
+        int max = Math.min(decoded.length(), content.length());
+        while (length < max && decoded.charAt(decoded.length() - 1 - length) == content.charAt(content.length() - 1 - length)) {
+            length++;
+        }
+        if (length > 0 && Character.isLowSurrogate(content.charAt(content.length() - length))) {
+            length--;
+        }
+
+        String tail = content.substring(content.length() - length);
+        int lineStart = tail.indexOf('\n');
+        return lineStart >= 0 && lineStart < tail.length() - 1 ? tail.substring(lineStart + 1) : tail;
+    }
+
     /**
      * check length of input rather than max limit
      */
@@ -0,0 +1,65 @@
+package com.zhongan.devpilot.webview;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.cef.callback.CefCallback;
+import org.cef.misc.IntRef;
+import org.cef.misc.StringRef;
+import org.cef.network.CefResponse;
+
+/**
+ * Serves a {@link WebviewAsset} from memory with its exact length. A request whose If-None-Match matches the
+ * ETag gets an empty 304.
+ */
+public class CachedAssetConnection implements ResourceHandlerState {
+    private final WebviewAsset asset;
+
+    private final boolean notModified;
+
+    private final ByteBuffer reader;
+
+    public CachedAssetConnection(WebviewAsset asset, String ifNoneMatch) {
+        this.asset = asset;
+        this.notModified = StringUtils.equals(asset.getEtag(), ifNoneMatch);
+        this.reader = notModified ? ByteBuffer.allocate(0) : asset.newReader();
+    }
+
+    @Override
+    public void getResponseHeaders(CefResponse cefResponse, IntRef responseLength, StringRef redirectUrl) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("ETag", asset.getEtag());
+        headers.put("Cache-Control", asset.getCacheControl());
+        cefResponse.setHeaderMap(headers);
+        cefResponse.setMimeType(asset.getMimeType());
+
+        if (notModified) {
+            cefResponse.setStatus(304);
+            cefResponse.setStatusText("Not Modified");
+        } else {
+            cefResponse.setStatus(200);
+            cefResponse.setStatusText("OK");
+        }
+        responseLength.set(reader.remaining());
+    }
+
+    @Override
+    public boolean readResponse(byte[] dataOut, int designedBytesToRead, IntRef bytesRead, CefCallback callback) {
+        int length = Math.min(reader.remaining(), designedBytesToRead);
+        if (length <= 0) {
+            bytesRead.set(0);
+            return false;
+        }
+
+        reader.get(dataOut, 0, length);
+        bytesRead.set(length);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        reader.position(reader.limit());
+    }
+}
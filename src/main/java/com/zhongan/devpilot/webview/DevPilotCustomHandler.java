@@ -1,7 +1,7 @@
 package com.zhongan.devpilot.webview;
 
-import java.io.IOException;
-import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.cef.callback.CefCallback;
 import org.cef.handler.CefResourceHandler;
@@ -11,25 +11,27 @@ import org.cef.network.CefRequest;
 import org.cef.network.CefResponse;
 
 public class DevPilotCustomHandler implements CefResourceHandler {
+    private static final String URL_PREFIX = "http://devpilot/";
+
     private ResourceHandlerState state = ClosedConnection.getInstance();
 
     @Override
     public boolean processRequest(CefRequest request, CefCallback callback) {
         String processedUrl = request.getURL();
-        if (processedUrl.startsWith("http://devpilot/")) {
-            String pathToResource = processedUrl.replace("http://devpilot/", "webview/");
-            URL newUrl = getClass().getClassLoader().getResource(pathToResource);
-            try {
-                state = new OpenedConnection(newUrl.openConnection());
-                callback.Continue();
-                return true;
-            } catch (IOException e) {
-                e.printStackTrace();
-                return false;
-            }
-        } else {
+        if (!processedUrl.startsWith(URL_PREFIX)) {
             return false;
         }
+
+        WebviewAsset asset = WebviewAssetCache.INSTANCE.get(processedUrl.substring(URL_PREFIX.length()));
+        if (asset == null) {
+            return false;
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        request.getHeaderMap(headers);
+        state = new CachedAssetConnection(asset, headers.get("If-None-Match"));
+        callback.Continue();
+        return true;
     }
 
     @Override
@@ -0,0 +1,51 @@
+package com.zhongan.devpilot.webview;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A webview resource held in memory. The content buffer is shared and read-only, every response reads from
+ * its own view returned by {@link #newReader()}.
+ */
+public class WebviewAsset {
+    private final String path;
+
+    private final ByteBuffer content;
+
+    private final String mimeType;
+
+    private final String etag;
+
+    private final String cacheControl;
+
+    public WebviewAsset(String path, ByteBuffer content, String mimeType, String etag, String cacheControl) {
+        this.path = path;
+        this.content = content.asReadOnlyBuffer();
+        this.mimeType = mimeType;
+        this.etag = etag;
+        this.cacheControl = cacheControl;
+    }
+
+    public ByteBuffer newReader() {
+        return content.duplicate();
+    }
+
+    public int getLength() {
+        return content.limit();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getCacheControl() {
+        return cacheControl;
+    }
+}
@@ -0,0 +1,165 @@
+package com.zhongan.devpilot.webview;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Keeps the bundled webview resources in memory.
+ * <p>
+ * A resource is read from the plugin jar the first time it is requested and then served from a direct buffer
+ * for the rest of the IDE session, so reloading the tool window or opening it in another project does not
+ * touch the jar again. The bundle only changes with the plugin, which makes the content hash a stable ETag.
+ * Only files with a content hash in their name are cached as immutable, everything else, such as
+ * {@code /conversation-window.js} or {@code /assets/devpilot.svg}, is revalidated so a plugin update is picked up.
+ */
+public class WebviewAssetCache {
+
+    private static final Logger LOG = Logger.getInstance(WebviewAssetCache.class);
+
+    public static final WebviewAssetCache INSTANCE = new WebviewAssetCache(WebviewAssetCache.class.getClassLoader(), "webview/");
+
+    public static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+
+    // the url of an unhashed file stays the same when the plugin updates it, so it is revalidated against its ETag
+    private static final String REVALIDATE_CACHE_CONTROL = "no-cache";
+
+    // a file named after its content hash, as bundlers emit them, never changes under the same url
+    private static final String HASHED_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    // index-3f9c2a1b.js or chunk.BqZ1x3Yk.css, the hash holds at least one digit so that words are not taken for one
+    private static final Pattern HASHED_NAME = Pattern.compile("[-.](?=[A-Za-z_]*\\d)[A-Za-z0-9_]{8,}\\.[A-Za-z0-9]+$");
+
+    private static final Map<String, String> MIME_TYPES = Map.ofEntries(
+            Map.entry("html", "text/html"),
+            Map.entry("htm", "text/html"),
+            Map.entry("js", "text/javascript"),
+            Map.entry("mjs", "text/javascript"),
+            Map.entry("css", "text/css"),
+            Map.entry("json", "application/json"),
+            Map.entry("map", "application/json"),
+            Map.entry("svg", "image/svg+xml"),
+            Map.entry("png", "image/png"),
+            Map.entry("jpg", "image/jpeg"),
+            Map.entry("jpeg", "image/jpeg"),
+            Map.entry("gif", "image/gif"),
+            Map.entry("webp", "image/webp"),
+            Map.entry("ico", "image/x-icon"),
+            Map.entry("woff", "font/woff"),
+            Map.entry("woff2", "font/woff2"),
+            Map.entry("ttf", "font/ttf"),
+            Map.entry("wasm", "application/wasm"),
+            Map.entry("txt", "text/plain")
+    );
+
+    private final ClassLoader classLoader;
+
+    private final String root;
+
+    private final Map<String, WebviewAsset> assets = new ConcurrentHashMap<>();
+
+    public WebviewAssetCache(ClassLoader classLoader, String root) {
+        this.classLoader = classLoader;
+        this.root = root;
+    }
+
+    /**
+     * Get a resource by its path relative to the webview root, query string and fragment are ignored.
+     *
+     * @return the resource, or null when the bundle does not contain it
+     */
+    public WebviewAsset get(String path) {
+        String normalized = normalize(path);
+        if (normalized == null) {
+            return null;
+        }
+        return assets.computeIfAbsent(normalized, this::load);
+    }
+
+    public int size() {
+        return assets.size();
+    }
+
+    private WebviewAsset load(String path) {
+        long start = System.nanoTime();
+        try (InputStream inputStream = classLoader.getResourceAsStream(root + path)) {
+            if (inputStream == null) {
+                return null;
+            }
+
+            byte[] bytes = inputStream.readAllBytes();
+            ByteBuffer content = ByteBuffer.allocateDirect(bytes.length);
+            content.put(bytes).flip();
+
+            String mimeType = mimeType(path);
+            String cacheControl = cacheControl(path, mimeType);
+            WebviewAsset asset = new WebviewAsset(path, content, mimeType, etag(bytes), cacheControl);
+
+            LOG.info("Loaded webview asset " + path + ", " + bytes.length + " bytes in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms.");
+            return asset;
+        } catch (IOException e) {
+            LOG.warn("Error occurred while loading webview asset: " + path, e);
+            return null;
+        }
+    }
+
+    static String normalize(String path) {
+        if (path == null) {
+            return null;
+        }
+
+        String normalized = StringUtils.substringBefore(StringUtils.substringBefore(path, "?"), "#");
+        normalized = StringUtils.stripStart(normalized, "/");
+        if (normalized.isEmpty()) {
+            normalized = "index.html";
+        }
+        // the bundle is flat, never resolve outside of it
+        if (normalized.contains("..") || normalized.contains("\\")) {
+            return null;
+        }
+        return normalized;
+    }
+
+    static String mimeType(String path) {
+        String extension = StringUtils.substringAfterLast(path, ".").toLowerCase(Locale.ROOT);
+        String mimeType = MIME_TYPES.get(extension);
+        if (mimeType == null) {
+            mimeType = URLConnection.guessContentTypeFromName(path);
+        }
+        return mimeType == null ? DEFAULT_MIME_TYPE : mimeType;
+    }
+
+    static String cacheControl(String path, String mimeType) {
+        if ("text/html".equals(mimeType)) {
+            return REVALIDATE_CACHE_CONTROL;
+        }
+        return HASHED_NAME.matcher(StringUtils.substringAfterLast("/" + path, "/")).find()
+                ? HASHED_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL;
+    }
+
+    private static String etag(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder builder = new StringBuilder("\"");
+            // the first 16 bytes are plenty to tell two bundles apart
+            for (int i = 0; i < 16; i++) {
+                builder.append(String.format("%02x", digest[i]));
+            }
+            return builder.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            return "\"" + bytes.length + "\"";
+        }
+    }
+}
@@ -8,10 +8,10 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiElement;
 import com.zhongan.devpilot.DevPilotVersion;
+import com.zhongan.devpilot.embedding.RecallHitResolver;
 import com.zhongan.devpilot.embedding.entity.request.EmbeddingQueryResponse;
 import com.zhongan.devpilot.enums.EditorActionEnum;
 import com.zhongan.devpilot.gui.toolwindows.components.EditorInfo;
-import com.zhongan.devpilot.util.PsiElementUtils;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -103,9 +103,10 @@ public class CodeReferenceModel {
         }
 
         var result = new ArrayList<CodeReferenceModel>();
+        var resolver = new RecallHitResolver(project);
 
         for (var data : codeList) {
-            var code = PsiElementUtils.getCodeBlock(project, data.getFilePath(), data.getStartOffset(), data.getEndOffset());
+            var code = resolver.resolve(data);
             if (code == null) {
                 continue;
             }
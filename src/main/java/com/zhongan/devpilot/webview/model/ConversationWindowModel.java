@@ -0,0 +1,121 @@
+package com.zhongan.devpilot.webview.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A contiguous range of a conversation sent to the webview instead of the whole history.
+ * <p>
+ * {@code previousId} and {@code nextId} are the ids of the messages right before and after the range, the
+ * webview checks them against the messages it already holds before joining the range to them.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ConversationWindowModel {
+    private String sessionId;
+
+    private int offset;
+
+    private int total;
+
+    private String previousId;
+
+    private String nextId;
+
+    private List<MessageModel> messages;
+
+    /**
+     * The latest messages of a conversation.
+     *
+     * @param history all messages of the session
+     * @param pending message being produced that is not part of the history yet, may be null
+     * @param size    maximum number of messages in the range
+     */
+    public static ConversationWindowModel latest(String sessionId, List<MessageModel> history, MessageModel pending, int size) {
+        int total = history.size() + (pending == null ? 0 : 1);
+        int offset = Math.max(0, total - Math.max(1, size));
+
+        var window = new ConversationWindowModel();
+        window.setSessionId(sessionId);
+        window.setOffset(offset);
+        window.setTotal(total);
+        window.setPreviousId(offset > 0 ? history.get(offset - 1).getId() : null);
+
+        var messages = new ArrayList<>(history.subList(Math.min(offset, history.size()), history.size()));
+        if (pending != null) {
+            messages.add(pending);
+        }
+        window.setMessages(messages);
+        return window;
+    }
+
+    /**
+     * The messages right before a position of a conversation.
+     *
+     * @param history all messages of the session
+     * @param before  index of the first message the webview already holds
+     * @param size    maximum number of messages in the range
+     */
+    public static ConversationWindowModel before(String sessionId, List<MessageModel> history, int before, int size) {
+        int end = Math.max(0, Math.min(before, history.size()));
+        int offset = Math.max(0, end - Math.max(1, size));
+
+        var window = new ConversationWindowModel();
+        window.setSessionId(sessionId);
+        window.setOffset(offset);
+        window.setTotal(history.size());
+        window.setPreviousId(offset > 0 ? history.get(offset - 1).getId() : null);
+        window.setNextId(end < history.size() ? history.get(end).getId() : null);
+        window.setMessages(new ArrayList<>(history.subList(offset, end)));
+        return window;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public String getPreviousId() {
+        return previousId;
+    }
+
+    public void setPreviousId(String previousId) {
+        this.previousId = previousId;
+    }
+
+    public String getNextId() {
+        return nextId;
+    }
+
+    public void setNextId(String nextId) {
+        this.nextId = nextId;
+    }
+
+    public List<MessageModel> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<MessageModel> messages) {
+        this.messages = messages;
+    }
+}
@@ -0,0 +1,27 @@
+package com.zhongan.devpilot.webview.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.zhongan.devpilot.mcp.McpServer;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class McpServerChangedModel {
+    private String operatorType;
+
+    private McpServer server;
+
+    public String getOperatorType() {
+        return operatorType;
+    }
+
+    public void setOperatorType(String operatorType) {
+        this.operatorType = operatorType;
+    }
+
+    public McpServer getServer() {
+        return server;
+    }
+
+    public void setServer(McpServer server) {
+        this.server = server;
+    }
+}
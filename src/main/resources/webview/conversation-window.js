@@ -0,0 +1,85 @@
+// The plugin sends a conversation as windows of its latest messages, older messages are paged in here
+// when the message list is scrolled to the top, and the joined list is handed to the chat view.
+(function () {
+  var PAGE_SIZE = 20;
+  var LOAD_THRESHOLD = 200;
+  // the scrolling message list of the chat view
+  var SCROLLER_CLASS = 'message-stack';
+  var conversation = { sessionId: null, offset: 0, messages: [], loading: false, scroller: null };
+
+  function render() {
+    if (window.receiveFromIntelliJ) {
+      window.receiveFromIntelliJ({ command: 'RenderChatConversation', payload: conversation.messages.slice() });
+    }
+  }
+
+  function indexOfId(id) {
+    for (var i = 0; i < conversation.messages.length; i++) {
+      if (id && conversation.messages[i].id === id) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  window.receiveChatWindow = function (range) {
+    if (range.sessionId !== conversation.sessionId) {
+      conversation.loading = false;
+    }
+
+    // keep the older pages already loaded when they still end right before the new window
+    var anchor = range.offset > 0 && range.sessionId === conversation.sessionId ? indexOfId(range.previousId) : -1;
+    if (anchor >= 0 && conversation.offset + anchor === range.offset - 1) {
+      conversation.messages = conversation.messages.slice(0, anchor + 1).concat(range.messages);
+    } else {
+      conversation.offset = range.offset;
+      conversation.messages = range.messages;
+    }
+    conversation.sessionId = range.sessionId;
+    render();
+  };
+
+  window.receiveChatPage = function (page) {
+    conversation.loading = false;
+    var first = conversation.messages[0];
+    if (page.sessionId !== conversation.sessionId || page.offset + page.messages.length !== conversation.offset
+        || !first || first.id !== page.nextId) {
+      return;
+    }
+
+    var scroller = conversation.scroller;
+    var height = scroller ? scroller.scrollHeight : 0;
+    var top = scroller ? scroller.scrollTop : 0;
+    conversation.offset = page.offset;
+    conversation.messages = page.messages.concat(conversation.messages);
+    render();
+
+    // keep the message that was on screen in place once the older ones are laid out above it
+    if (scroller) {
+      requestAnimationFrame(function () {
+        requestAnimationFrame(function () {
+          scroller.scrollTop = top + scroller.scrollHeight - height;
+        });
+      });
+    }
+  };
+
+  // scroll events do not bubble, they are captured on the document and only the message list is looked at
+  document.addEventListener('scroll', function (event) {
+    var target = event.target;
+    if (!target.classList || !target.classList.contains(SCROLLER_CLASS)) {
+      return;
+    }
+    if (conversation.loading || conversation.offset <= 0 || !window.sendToIntelliJ
+        || target.scrollHeight <= target.clientHeight || target.scrollTop > LOAD_THRESHOLD) {
+      return;
+    }
+
+    conversation.loading = true;
+    conversation.scroller = target;
+    window.sendToIntelliJ(JSON.stringify({
+      command: 'LoadOlderMessages',
+      payload: { sessionId: conversation.sessionId, before: conversation.offset, size: PAGE_SIZE }
+    }));
+  }, true);
+})();
@@ -0,0 +1,126 @@
+package com.zhongan.devpilot.actions.editor.inlay;
+
+import com.intellij.codeInsight.hints.InlayHintsSink;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.zhongan.devpilot.settings.state.ChatShortcutSettingState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+public class ChatShortcutHintCollectorTest extends BasePlatformTestCase {
+
+    private static final List<String> JAVA_ELEMENT_TYPES = List.of("METHOD", "CLASS");
+
+    private static final String FIXTURE = "package demo;\n"
+            + "\n"
+            + "/**\n"
+            + " * Fixture.\n"
+            + " */\n"
+            + "class Fixture {\n"
+            + "    /**\n"
+            + "     * first\n"
+            + "     */\n"
+            + "    public int first(int value) {\n"
+            + "        return value;\n"
+            + "    }\n"
+            + "\n"
+            + "    @Override\n"
+            + "    public String toString() {\n"
+            + "        return \"fixture\";\n"
+            + "    }\n"
+            + "\n"
+            + "    class Inner {\n"
+            + "        void run() {\n"
+            + "        }\n"
+            + "    }\n"
+            + "}\n";
+
+    public void testCollectAddsOneHintPerClassAndMethod() {
+        PsiFile file = myFixture.configureByText("Demo.java", buildJavaFile(3, 5));
+        InlayHintsSink sink = Mockito.mock(InlayHintsSink.class);
+
+        runPass(file, sink);
+
+        // 3 classes and 15 methods
+        Mockito.verify(sink, Mockito.times(18)).addBlockElement(
+                Mockito.anyInt(), Mockito.anyBoolean(), Mockito.anyBoolean(), Mockito.anyInt(), Mockito.any());
+    }
+
+    public void testHintsOnFixtureFile() {
+        PsiFile file = myFixture.configureByText("Fixture.java", FIXTURE);
+
+        assertEquals(List.of(
+                "1000 class Fixture {",
+                "1000 public int first(int value) {",
+                "1000 @Override",
+                "1000 class Inner {",
+                "1000 void run() {"), collectHints(file, 1));
+
+        // the popup hint of a method sits at the start of its line, classes keep their inline hint
+        assertEquals(List.of(
+                "1000 class Fixture {",
+                "300 public int first(int value) {",
+                "300 @Override",
+                "1000 class Inner {",
+                "300 void run() {"), collectHints(file, 2));
+    }
+
+    /**
+     * Hints of a pass as their priority followed by the line they are anchored to.
+     */
+    private List<String> collectHints(PsiFile file, int displayIndex) {
+        var setting = ChatShortcutSettingState.getInstance();
+        Integer previousDisplayIndex = setting.getDisplayIndex();
+        InlayHintsSink sink = Mockito.mock(InlayHintsSink.class);
+        try {
+            setting.setDisplayIndex(displayIndex);
+            runPass(file, sink);
+        } finally {
+            setting.setDisplayIndex(previousDisplayIndex);
+        }
+
+        ArgumentCaptor<Integer> offsets = ArgumentCaptor.forClass(Integer.class);
+        ArgumentCaptor<Integer> priorities = ArgumentCaptor.forClass(Integer.class);
+        Mockito.verify(sink, Mockito.atLeastOnce()).addBlockElement(
+                offsets.capture(), Mockito.anyBoolean(), Mockito.anyBoolean(), priorities.capture(), Mockito.any());
+
+        var document = myFixture.getEditor().getDocument();
+        List<String> hints = new ArrayList<>();
+        for (int i = 0; i < offsets.getAllValues().size(); i++) {
+            int line = document.getLineNumber(offsets.getAllValues().get(i));
+            String text = document.getText(new TextRange(document.getLineStartOffset(line), document.getLineEndOffset(line)));
+            hints.add(priorities.getAllValues().get(i) + " " + text.trim());
+        }
+        return hints;
+    }
+
+    private void runPass(PsiFile file, InlayHintsSink sink) {
+        var collector = new ChatShortcutHintCollector(myFixture.getEditor(), JAVA_ELEMENT_TYPES);
+        PsiTreeUtil.processElements(file, element -> collector.collect(element, myFixture.getEditor(), sink));
+    }
+
+    static String buildJavaFile(int classes, int methods) {
+        StringBuilder builder = new StringBuilder("package demo;\n\n");
+        for (int i = 0; i < classes; i++) {
+            builder.append("class Demo").append(i).append(" {\n");
+            for (int j = 0; j < methods; j++) {
+                builder.append("    /**\n     * method ").append(j).append("\n     */\n")
+                        .append("    public int method").append(j).append("(int value) {\n")
+                        .append("        int result = value * ").append(j).append(";\n")
+                        .append("        for (int k = 0; k < value; k++) {\n")
+                        .append("            result += k;\n")
+                        .append("        }\n")
+                        .append("        return result;\n")
+                        .append("    }\n\n");
+            }
+            builder.append("}\n\n");
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,115 @@
+package com.zhongan.devpilot.actions.editor.inlay;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiMember;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ChatShortcutPresentationCacheTest extends BasePlatformTestCase {
+
+    private static final String STYLE = "Default/JetBrains Mono/13/0";
+
+    private final Map<String, Integer> indents = new HashMap<>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        myFixture.configureByText("Demo.java", buildJavaFile(3));
+        assertEquals(4, pass(STYLE).getComputed());
+    }
+
+    public void testUnchangedFileReusesEveryIndent() {
+        ChatShortcutPresentationCache cache = pass(STYLE);
+
+        assertEquals(0, cache.getComputed());
+        assertEquals(4, cache.getReused());
+    }
+
+    public void testEditedMethodIsComputedAgain() {
+        insert("value * 1;", "1 + ");
+
+        ChatShortcutPresentationCache cache = pass(STYLE);
+
+        // the edited method and the class around it
+        assertEquals(2, cache.getComputed());
+        assertEquals(2, cache.getReused());
+    }
+
+    public void testChangedIndentIsComputedAgain() {
+        assertEquals(Integer.valueOf(4), indents.get("method2"));
+        insert("    /**\n     * method 2", "    ");
+
+        ChatShortcutPresentationCache cache = pass(STYLE);
+
+        assertEquals(2, cache.getComputed());
+        assertEquals(Integer.valueOf(8), indents.get("method2"));
+    }
+
+    public void testChangedStyleComputesEverything() {
+        ChatShortcutPresentationCache cache = pass("Darcula/JetBrains Mono/16/0");
+
+        assertEquals(4, cache.getComputed());
+        assertEquals(0, cache.getReused());
+    }
+
+    public void testMethodInsertedAboveKeepsTheOthers() {
+        int blankLine = myFixture.getEditor().getDocument().getText().indexOf("\n\n    /**\n     * method 1") + 1;
+        insertAt(blankLine, "\n    public void added() {\n    }\n");
+
+        ChatShortcutPresentationCache cache = pass(STYLE);
+
+        // the new method and the class around it, the methods below it moved but did not change
+        assertEquals(2, cache.getComputed());
+        assertEquals(3, cache.getReused());
+        assertEquals(Integer.valueOf(4), indents.get("added"));
+    }
+
+    private ChatShortcutPresentationCache pass(String style) {
+        Document document = myFixture.getEditor().getDocument();
+        ChatShortcutPresentationCache cache = ChatShortcutPresentationCache.startPass(myFixture.getEditor(), style);
+        Collection<PsiMember> members = PsiTreeUtil.findChildrenOfAnyType(myFixture.getFile(), PsiClass.class, PsiMethod.class);
+        for (PsiMember member : members) {
+            indents.put(member.getName(), cache.indent(member, document, () -> leadingWhitespace(document, member)));
+        }
+        return cache;
+    }
+
+    private int leadingWhitespace(Document document, PsiMember member) {
+        int line = document.getLineNumber(member.getTextRange().getStartOffset());
+        String text = document.getText(new TextRange(document.getLineStartOffset(line), document.getLineEndOffset(line)));
+        return text.length() - text.stripLeading().length();
+    }
+
+    private void insert(String before, String text) {
+        insertAt(myFixture.getEditor().getDocument().getText().indexOf(before), text);
+    }
+
+    private void insertAt(int offset, String text) {
+        Document document = myFixture.getEditor().getDocument();
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> document.insertString(offset, text));
+        PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+    }
+
+    private String buildJavaFile(int methods) {
+        StringBuilder builder = new StringBuilder("package demo;\n\nclass Demo {\n");
+        for (int i = 0; i < methods; i++) {
+            if (i > 0) {
+                builder.append("\n");
+            }
+            builder.append("    /**\n     * method ").append(i).append("\n     */\n")
+                    .append("    public int method").append(i).append("(int value) {\n")
+                    .append("        return value * ").append(i).append(";\n")
+                    .append("    }\n");
+        }
+        return builder.append("}\n").toString();
+    }
+}
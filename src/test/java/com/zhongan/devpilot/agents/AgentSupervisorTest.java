@@ -0,0 +1,143 @@
+package com.zhongan.devpilot.agents;
+
+import com.zhongan.devpilot.util.ProcessUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+public class AgentSupervisorTest {
+
+    private final RecordingScheduler scheduler = new RecordingScheduler();
+
+    private final List<Process> processes = new ArrayList<>();
+
+    private boolean restartSucceeds;
+
+    private AgentSupervisor supervisor;
+
+    @Before
+    public void setUp() {
+        supervisor = new AgentSupervisor(scheduler, () -> restartSucceeds);
+    }
+
+    @After
+    public void tearDown() {
+        processes.forEach(Process::destroyForcibly);
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testBackoffDoublesUpToMaximum() {
+        supervisor.scheduleRestart("test");
+        for (int i = 0; i < 7; i++) {
+            scheduler.runNext();
+        }
+
+        assertEquals(List.of(1000L, 2000L, 4000L, 8000L, 16000L, 32000L, 60000L, 60000L), scheduler.delays);
+        assertEquals(7, supervisor.getRestartCount());
+    }
+
+    @Test
+    public void testPendingRestartIsNotScheduledTwice() {
+        assertEquals(1000, supervisor.scheduleRestart("crash"));
+        assertEquals(-1, supervisor.scheduleRestart("unreachable"));
+        assertEquals(1, scheduler.tasks.size());
+
+        restartSucceeds = true;
+        scheduler.runNext();
+        assertTrue(scheduler.tasks.isEmpty());
+        assertEquals(2000, supervisor.scheduleRestart("crash again"));
+    }
+
+    @Test
+    public void testStableUptimeResetsBackoff() {
+        supervisor.scheduleRestart("test");
+        scheduler.runNext();
+        scheduler.runNext();
+        assertEquals(List.of(1000L, 2000L, 4000L), scheduler.delays);
+
+        restartSucceeds = true;
+        scheduler.runNext();
+        supervisor.resetBackoffIfStable(1000);
+        assertEquals(8000, supervisor.scheduleRestart("short uptime"));
+
+        scheduler.runNext();
+        supervisor.resetBackoffIfStable(60000);
+        assertEquals(1000, supervisor.scheduleRestart("stable uptime"));
+    }
+
+    @Test
+    public void testPlannedExitIsNotACrash() throws Exception {
+        Process process = startProcess();
+        supervisor.attach(process, 1);
+
+        supervisor.destroy(process.pid());
+        process.onExit().get(5, TimeUnit.SECONDS);
+        Thread.sleep(200);
+
+        assertEquals(0, supervisor.getCrashCount());
+        assertTrue(scheduler.delays.isEmpty());
+    }
+
+    @Test
+    public void testUnexpectedExitIsRestarted() throws Exception {
+        Process process = startProcess();
+        supervisor.attach(process, 1);
+
+        process.destroy();
+        process.onExit().get(5, TimeUnit.SECONDS);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (supervisor.getCrashCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, supervisor.getCrashCount());
+        assertEquals(List.of(1000L), scheduler.delays);
+    }
+
+    private Process startProcess() throws Exception {
+        assumeFalse(ProcessUtils.isWindowsPlatform());
+        Process process = new ProcessBuilder("sleep", "30").start();
+        processes.add(process);
+        return process;
+    }
+
+    /**
+     * Records restarts instead of running them, a test runs them one by one.
+     */
+    private static class RecordingScheduler extends ScheduledThreadPoolExecutor {
+        private final List<Long> delays = new ArrayList<>();
+
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        RecordingScheduler() {
+            super(1);
+        }
+
+        @Override
+        public synchronized ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            delays.add(unit.toMillis(delay));
+            tasks.add(command);
+            return null;
+        }
+
+        void runNext() {
+            Runnable task;
+            synchronized (this) {
+                task = tasks.remove(0);
+            }
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.zhongan.devpilot.completions.prediction;
+
+import com.zhongan.devpilot.completions.requests.ResultEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompletionStreamTest {
+
+    private final List<ResultEntry[]> updates = new ArrayList<>();
+
+    private final CompletionStream stream = new CompletionStream(updates::add);
+
+    @Test
+    public void testInterleavedChunksAreAssembledPerCandidate() throws Exception {
+        stream.onCandidate(1, "id-1", "int b", false);
+        stream.onCandidate(0, "id-0", "int a", false);
+        stream.onCandidate(1, null, " = 2;", true);
+        stream.onCandidate(0, null, " = 1;", false);
+        stream.onCandidate(0, null, "", true);
+        stream.onComplete();
+
+        assertTrue(stream.await(0));
+        assertTrue(stream.hasCandidates());
+        assertEquals(5, updates.size());
+        assertEquals(List.of("int b"), texts(updates.get(0)));
+        assertEquals(List.of("int a", "int b"), texts(updates.get(1)));
+        assertEquals(List.of("int a", "int b = 2;"), texts(updates.get(2)));
+        assertEquals(List.of("int a = 1;", "int b = 2;"), texts(updates.get(4)));
+        assertEquals(List.of("id-0", "id-1"), Arrays.stream(updates.get(4)).map(entry -> entry.id).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testEarlierSnapshotsAreNotChanged() {
+        stream.onCandidate(0, "id-0", "foo", false);
+        stream.onCandidate(0, null, "bar", true);
+
+        assertEquals(List.of("foo"), texts(updates.get(0)));
+        assertEquals(List.of("foobar"), texts(updates.get(1)));
+    }
+
+    @Test
+    public void testFailureBeforeFirstChunkHasNoCandidates() throws Exception {
+        stream.onFailure("Instruct completion failed: 500");
+
+        assertTrue(stream.await(0));
+        assertFalse(stream.hasCandidates());
+        assertTrue(updates.isEmpty());
+    }
+
+    @Test
+    public void testFailureAfterChunkKeepsCandidates() throws Exception {
+        stream.onCandidate(0, "id-0", "return;", false);
+        stream.onFailure("stream reset");
+
+        assertTrue(stream.await(0));
+        assertTrue(stream.hasCandidates());
+    }
+
+    @Test
+    public void testEmptyAndOutOfRangeChunksAreNoCandidates() throws Exception {
+        stream.onCandidate(0, "id-0", "", true);
+        stream.onCandidate(-1, "id-x", "text", false);
+        stream.onCandidate(100, "id-y", "text", false);
+        stream.onComplete();
+
+        assertTrue(stream.await(0));
+        assertFalse(stream.hasCandidates());
+        assertEquals(1, updates.size());
+    }
+
+    private List<String> texts(ResultEntry[] entries) {
+        return Arrays.stream(entries).map(entry -> entry.newPrefix).collect(Collectors.toList());
+    }
+}
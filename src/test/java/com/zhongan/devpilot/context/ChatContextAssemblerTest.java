@@ -0,0 +1,63 @@
+package com.zhongan.devpilot.context;
+
+import com.zhongan.devpilot.integrations.llms.entity.DevPilotMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ChatContextAssemblerTest {
+
+    @Test
+    public void testSmallRequestIsKept() {
+        List<DevPilotMessage> messages = List.of(message("user", 10), message("assistant", 10), message("user", 10));
+        assertSame(messages, ChatContextAssembler.INSTANCE.fit(messages));
+    }
+
+    @Test
+    public void testHistoryIsCutOnTurnBoundaries() {
+        List<DevPilotMessage> messages = new ArrayList<>();
+        messages.add(message("user", 100));
+        messages.add(message("assistant", 3000));
+        messages.add(message("user", 100));
+        messages.add(message("assistant", 3000));
+        messages.add(message("assistant", 5000));
+        messages.add(message("user", 100));
+        messages.add(message("assistant", 5000));
+        messages.add(message("user", 100));
+
+        List<DevPilotMessage> fitted = ChatContextAssembler.INSTANCE.fit(messages);
+
+        // the middle turn does not fit as a whole, none of its replies is kept without the question
+        assertEquals(List.of(messages.get(5), messages.get(6), messages.get(7)), fitted);
+    }
+
+    @Test
+    public void testLeadingMemoryIsKeptWhenEverythingAfterFits() {
+        List<DevPilotMessage> messages = new ArrayList<>();
+        messages.add(message("system", 100));
+        messages.add(message("user", 100));
+        messages.add(message("assistant", 5000));
+        messages.add(message("user", 100));
+        messages.add(message("assistant", 6000));
+        messages.add(message("user", 100));
+
+        assertSame(messages, ChatContextAssembler.INSTANCE.fit(messages));
+
+        messages.set(2, message("assistant", 7000));
+        List<DevPilotMessage> fitted = ChatContextAssembler.INSTANCE.fit(messages);
+        assertEquals(messages.subList(3, 6), fitted);
+    }
+
+    private DevPilotMessage message(String role, int words) {
+        DevPilotMessage message = new DevPilotMessage();
+        message.setRole(role);
+        message.setContent(StringUtils.repeat(" word", words));
+        return message;
+    }
+}
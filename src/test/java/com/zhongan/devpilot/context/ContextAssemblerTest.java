@@ -0,0 +1,97 @@
+package com.zhongan.devpilot.context;
+
+import com.zhongan.devpilot.util.TokenUtils;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ContextAssemblerTest {
+
+    @Test
+    public void testEverythingFits() {
+        ContextBudget budget = new ContextAssembler(1000)
+                .text("prefix", "int a = 1;\n", 60, ContextAssembler.Trim.KEEP_TAIL)
+                .text("suffix", "}\n", 40, ContextAssembler.Trim.KEEP_HEAD)
+                .assemble();
+
+        assertFalse(budget.isTrimmed());
+        assertEquals("int a = 1;\n", budget.getText("prefix"));
+        assertEquals("}\n", budget.getText("suffix"));
+    }
+
+    @Test
+    public void testTrimKeepsLinesNearCursor() {
+        String prefix = lines("before", 200);
+        String suffix = lines("after", 200);
+
+        ContextBudget budget = new ContextAssembler(300)
+                .text("prefix", prefix, 70, ContextAssembler.Trim.KEEP_TAIL)
+                .text("suffix", suffix, 30, ContextAssembler.Trim.KEEP_HEAD)
+                .assemble();
+
+        assertTrue(budget.isTrimmed());
+        assertTrue(budget.getUsed() <= 300);
+        assertTrue(prefix.endsWith(budget.getText("prefix")));
+        assertTrue(budget.getText("prefix").startsWith("int before"));
+        assertTrue(suffix.startsWith(budget.getText("suffix")));
+        assertTrue(budget.getText("suffix").endsWith("\n"));
+    }
+
+    @Test
+    public void testUnusedShareFlowsToOtherSections() {
+        String prefix = lines("before", 200);
+
+        ContextBudget budget = new ContextAssembler(400)
+                .text("prefix", prefix, 50, ContextAssembler.Trim.KEEP_TAIL)
+                .text("suffix", "}\n", 50, ContextAssembler.Trim.KEEP_HEAD)
+                .assemble();
+
+        // the suffix needs almost nothing, the prefix gets the rest instead of half
+        assertTrue(budget.getBreakdown().get("prefix").getUsed() > 300);
+    }
+
+    @Test
+    public void testCandidatesRankedByScore() {
+        ContextAssembler.Candidate low = new ContextAssembler.Candidate("low", lines("low", 20), 0.1d, false);
+        ContextAssembler.Candidate high = new ContextAssembler.Candidate("high", lines("high", 20), 0.9d, false);
+        int one = TokenUtils.countTokens(high.getText());
+
+        ContextBudget budget = new ContextAssembler(one + 10)
+                .candidates("related", List.of(low, high), 100, false)
+                .assemble();
+
+        List<ContextAssembler.Candidate> kept = budget.getCandidates("related");
+        assertEquals(1, kept.size());
+        assertEquals("high", kept.get(0).getId());
+        assertEquals(1, budget.getBreakdown().get("related").getDropped());
+    }
+
+    @Test
+    public void testContiguousCandidatesStopAtFirstMiss() {
+        ContextAssembler.Candidate oldest = new ContextAssembler.Candidate("0", "short", 0, false);
+        ContextAssembler.Candidate big = new ContextAssembler.Candidate("1", lines("big", 100), 1, false);
+        ContextAssembler.Candidate newest = new ContextAssembler.Candidate("2", "recent", 2, false);
+
+        ContextBudget budget = new ContextAssembler(50)
+                .fixed("current", 10)
+                .candidates("history", List.of(oldest, big, newest), 100, true)
+                .assemble();
+
+        List<ContextAssembler.Candidate> kept = budget.getCandidates("history");
+        assertEquals(1, kept.size());
+        assertEquals("2", kept.get(0).getId());
+    }
+
+    private String lines(String name, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append("int ").append(name).append(i).append(" = ").append(i).append(";\n");
+        }
+        return builder.toString();
+    }
+}
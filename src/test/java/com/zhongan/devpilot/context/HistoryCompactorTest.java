@@ -0,0 +1,80 @@
+package com.zhongan.devpilot.context;
+
+import com.zhongan.devpilot.integrations.llms.entity.DevPilotMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HistoryCompactorTest {
+
+    @Test
+    public void testShortHistoryIsKept() {
+        List<DevPilotMessage> history = buildHistory(4);
+        assertSame(history, HistoryCompactor.INSTANCE.compact("short", history, 100));
+    }
+
+    @Test
+    public void testLongHistoryIsCompacted() {
+        List<DevPilotMessage> history = buildHistory(40);
+        List<DevPilotMessage> compacted = HistoryCompactor.INSTANCE.compact("long", history, 20000);
+
+        DevPilotMessage memory = compacted.get(0);
+        assertEquals("system", memory.getRole());
+        assertTrue(memory.getContent().contains("- user: question 0"));
+        assertFalse(memory.getContent().contains("System.out"));
+
+        // recent turns are kept verbatim and start with a question
+        assertEquals("user", compacted.get(1).getRole());
+        assertSame(history.get(history.size() - 1), compacted.get(compacted.size() - 1));
+        assertFalse(compacted.get(1).getPromptData().containsKey(ChatContextAssembler.RELATED_CONTEXT));
+
+        // the session itself is untouched
+        assertEquals(40, history.size());
+        assertTrue(history.get(history.size() - compacted.size() + 1).getPromptData().containsKey(ChatContextAssembler.RELATED_CONTEXT));
+    }
+
+    @Test
+    public void testMemoryIsBuiltIncrementally() {
+        List<DevPilotMessage> history = buildHistory(30);
+        HistoryCompactor.INSTANCE.compact("grow", history, 20000);
+
+        history.addAll(buildHistory(10).subList(0, 10));
+        for (int i = 30; i < history.size(); i++) {
+            history.get(i).setId("late-" + i);
+        }
+        String incremental = HistoryCompactor.INSTANCE.compact("grow", history, 20000).get(0).getContent();
+
+        HistoryCompactor.INSTANCE.forgetSession("grow");
+        String rebuilt = HistoryCompactor.INSTANCE.compact("grow", history, 20000).get(0).getContent();
+        assertEquals(rebuilt, incremental);
+    }
+
+    private List<DevPilotMessage> buildHistory(int size) {
+        List<DevPilotMessage> history = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            DevPilotMessage message = new DevPilotMessage();
+            message.setId("id-" + i);
+            if (i % 2 == 0) {
+                message.setRole("user");
+                message.setContent("question " + i);
+                Map<String, String> promptData = new HashMap<>();
+                promptData.put(ChatContextAssembler.RELATED_CONTEXT, "class Related" + i + " {}");
+                message.setPromptData(promptData);
+            } else {
+                message.setRole("assistant");
+                message.setContent("answer " + i + "\n```java\nSystem.out.println(" + i + ");\n```\ndone");
+            }
+            history.add(message);
+        }
+        return history;
+    }
+}
@@ -0,0 +1,83 @@
+package com.zhongan.devpilot.context;
+
+import com.zhongan.devpilot.integrations.llms.entity.DevPilotMessage;
+import com.zhongan.devpilot.util.TokenUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MessageTokenCounterTest {
+
+    private static final String ANSWER = "Here is the fix:\n\n```java\npublic class Demo {\n    void run() {\n"
+            + "        System.out.println(\"hello, world\");\n    }\n}\n```\n\nThe method now prints once.\n"
+            + "  - indented item\n\n\nTrailing text with unicode 你好 and numbers 12345.";
+
+    @Test
+    public void testStreamingCountMatchesFullCount() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            StreamingTokenCounter counter = new StreamingTokenCounter();
+            int pos = 0;
+            while (pos < ANSWER.length()) {
+                int end = Math.min(ANSWER.length(), pos + 1 + random.nextInt(8));
+                counter.append(ANSWER.substring(pos, end));
+                pos = end;
+            }
+            assertEquals(TokenUtils.countTokens(ANSWER), counter.getTokens());
+        }
+    }
+
+    @Test
+    public void testSessionTotalFollowsHistory() {
+        List<DevPilotMessage> history = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            history.add(message("m" + i, "message number " + i + " with some text"));
+            assertEquals(recount(history), MessageTokenCounter.INSTANCE.sessionTotal("session", history));
+        }
+
+        // the last message may still receive content
+        history.get(history.size() - 1).setContent("changed content of the last message");
+        assertEquals(recount(history), MessageTokenCounter.INSTANCE.sessionTotal("session", history));
+
+        // deleting messages starts over
+        history.remove(9);
+        history.remove(8);
+        assertEquals(recount(history), MessageTokenCounter.INSTANCE.sessionTotal("session", history));
+
+        history.clear();
+        assertEquals(0, MessageTokenCounter.INSTANCE.sessionTotal("session", history));
+    }
+
+    @Test
+    public void testCollidingContentsAreCountedSeparately() {
+        // "Aa" and "BB" share String.hashCode(), so do all their same-length combinations
+        String first = "AaAaAaAa";
+        String second = "BBBBBBBB";
+        assertEquals(first.hashCode(), second.hashCode());
+
+        MessageTokenCounter.INSTANCE.record(first, 1);
+        assertEquals(TokenUtils.countTokens(second), MessageTokenCounter.INSTANCE.count(second));
+        assertEquals(1, MessageTokenCounter.INSTANCE.count(first));
+    }
+
+    private int recount(List<DevPilotMessage> history) {
+        int total = 0;
+        for (DevPilotMessage message : history) {
+            total += TokenUtils.countTokens(message.getContent());
+        }
+        return total;
+    }
+
+    private DevPilotMessage message(String id, String content) {
+        DevPilotMessage message = new DevPilotMessage();
+        message.setId(id);
+        message.setRole("user");
+        message.setContent(content);
+        return message;
+    }
+}
@@ -0,0 +1,139 @@
+package com.zhongan.devpilot.gui.toolwindows.chat;
+
+import com.zhongan.devpilot.util.JsonUtils;
+import com.zhongan.devpilot.webview.model.HistoryActionModel;
+import com.zhongan.devpilot.webview.model.MessageModel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class JsCommandRegistryTest {
+
+    @Test
+    public void testDispatchBindsTypedPayload() {
+        AtomicReference<MessageModel> received = new AtomicReference<>();
+        JsCommandRegistry registry = new JsCommandRegistry()
+                .register("AppendToConversation", MessageModel.class, (command, payload) -> {
+                    received.set(payload);
+                    return true;
+                });
+
+        String result = registry.dispatch(buildQuery("AppendToConversation", buildMessage(2)));
+
+        assertEquals(JsCommandRegistry.SUCCESS, result);
+        assertNotNull(received.get());
+        assertEquals("message-1", received.get().getId());
+        assertEquals(2, received.get().getCodeRefs().size());
+    }
+
+    @Test
+    public void testDispatchWithoutPayload() {
+        AtomicInteger calls = new AtomicInteger();
+        JsCommandRegistry registry = new JsCommandRegistry().register("ClearChatHistory", calls::incrementAndGet);
+
+        assertEquals(JsCommandRegistry.SUCCESS, registry.dispatch("{\"command\":\"ClearChatHistory\"}"));
+        assertEquals(JsCommandRegistry.SUCCESS, registry.dispatch("{\"command\":\"ClearChatHistory\",\"payload\":{}}"));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testDispatchErrors() {
+        AtomicReference<HistoryActionModel> received = new AtomicReference<>();
+        JsCommandRegistry registry = new JsCommandRegistry()
+                .register("SwitchSession", HistoryActionModel.class, (command, payload) -> {
+                    received.set(payload);
+                    return payload.getSessionId() != null;
+                });
+
+        assertEquals(JsCommandRegistry.ERROR, registry.dispatch("{\"command\":"));
+        assertEquals(JsCommandRegistry.ERROR, registry.dispatch("[]"));
+        assertEquals(JsCommandRegistry.ERROR, registry.dispatch("{\"payload\":{}}"));
+        assertEquals(JsCommandRegistry.ERROR, registry.dispatch("{\"command\":\"SwitchSession\"}"));
+        assertEquals(JsCommandRegistry.ERROR, registry.dispatch("{\"command\":\"SwitchSession\",\"payload\":null}"));
+        assertNull(received.get());
+
+        assertEquals(JsCommandRegistry.ERROR, registry.dispatch("{\"command\":\"SwitchSession\",\"payload\":{}}"));
+        assertEquals(JsCommandRegistry.SUCCESS,
+                registry.dispatch("{\"command\":\"SwitchSession\",\"payload\":{\"sessionId\":\"session-1\"}}"));
+        assertEquals("session-1", received.get().getSessionId());
+    }
+
+    @Test
+    public void testUnknownCommandIsAcknowledged() {
+        AtomicInteger calls = new AtomicInteger();
+        JsCommandRegistry registry = new JsCommandRegistry()
+                .register("ClearChatHistory", calls::incrementAndGet)
+                .register("SwitchSession", HistoryActionModel.class, (command, payload) -> calls.incrementAndGet() > 0);
+
+        // the webview sends commands this side does not handle
+        assertEquals(JsCommandRegistry.SUCCESS, registry.dispatch("{\"command\":\"Unknown\",\"payload\":{}}"));
+        assertEquals(JsCommandRegistry.SUCCESS, registry.dispatch("{\"command\":\"Unknown\"}"));
+        assertFalse(registry.contains("Unknown"));
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    public void testBadPayloadIsRejected() {
+        AtomicInteger calls = new AtomicInteger();
+        JsCommandRegistry registry = new JsCommandRegistry()
+                .register("AppendToConversation", MessageModel.class, (command, payload) -> calls.incrementAndGet() > 0);
+
+        assertEquals(JsCommandRegistry.ERROR, registry.dispatch("{\"command\":\"AppendToConversation\",\"payload\":\"text\"}"));
+        assertEquals(JsCommandRegistry.ERROR, registry.dispatch("{\"command\":\"AppendToConversation\",\"payload\":[1,2]}"));
+        assertEquals(JsCommandRegistry.ERROR,
+                registry.dispatch("{\"command\":\"AppendToConversation\",\"payload\":{\"codeRefs\":\"Demo.java\"}}"));
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    public void testHandlerReceivesCommandAndModel() {
+        AtomicReference<String> receivedCommand = new AtomicReference<>();
+        AtomicReference<HistoryActionModel> received = new AtomicReference<>();
+        JsCommandRegistry registry = new JsCommandRegistry()
+                .register("SearchHistory", HistoryActionModel.class, (command, payload) -> {
+                    receivedCommand.set(command);
+                    received.set(payload);
+                    return true;
+                });
+
+        assertEquals(JsCommandRegistry.SUCCESS, registry.dispatch(buildQuery("SearchHistory", Map.of("query", "gradle", "extra", 1))));
+        assertEquals("SearchHistory", receivedCommand.get());
+        assertEquals("gradle", received.get().getQuery());
+        assertNull(received.get().getSessionId());
+    }
+
+    static String buildQuery(String command, Object payload) {
+        Map<String, Object> query = new HashMap<>();
+        query.put("command", command);
+        query.put("payload", payload);
+        return JsonUtils.toJson(query);
+    }
+
+    static Map<String, Object> buildMessage(int codeRefCount) {
+        List<Map<String, Object>> codeRefs = new ArrayList<>();
+        for (int i = 0; i < codeRefCount; i++) {
+            Map<String, Object> codeRef = new HashMap<>();
+            codeRef.put("fileName", "Demo" + i + ".java");
+            codeRef.put("sourceCode", "public class Demo" + i + " { void run() { System.out.println(\"" + i + "\"); } }");
+            codeRefs.add(codeRef);
+        }
+
+        Map<String, Object> message = new HashMap<>();
+        message.put("id", "message-1");
+        message.put("content", "explain this code");
+        message.put("role", "user");
+        message.put("codeRefs", codeRefs);
+        return message;
+    }
+}
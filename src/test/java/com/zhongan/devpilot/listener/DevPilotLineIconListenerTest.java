@@ -0,0 +1,120 @@
+package com.zhongan.devpilot.listener;
+
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.LogicalPosition;
+import com.intellij.openapi.editor.ex.MarkupModelEx;
+import com.intellij.openapi.editor.ex.RangeHighlighterEx;
+import com.intellij.openapi.editor.impl.event.MarkupModelListener;
+import com.intellij.openapi.editor.markup.RangeHighlighter;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.jetbrains.annotations.NotNull;
+
+public class DevPilotLineIconListenerTest extends BasePlatformTestCase {
+
+    private static final int LINES = 300;
+
+    private static final int MOVES = 1000;
+
+    private int added;
+
+    private int removed;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            builder.append("line ").append(i).append('\n');
+        }
+        myFixture.configureByText("Demo.txt", builder.toString());
+        EditorFactory.getInstance().getEventMulticaster()
+                .addCaretListener(new DevPilotLineIconListener(getProject()), getTestRootDisposable());
+        ((MarkupModelEx) myFixture.getEditor().getMarkupModel()).addMarkupModelListener(getTestRootDisposable(),
+                new MarkupModelListener() {
+                    @Override
+                    public void afterAdded(@NotNull RangeHighlighterEx highlighter) {
+                        added++;
+                    }
+
+                    @Override
+                    public void beforeRemoved(@NotNull RangeHighlighterEx highlighter) {
+                        removed++;
+                    }
+                });
+    }
+
+    public void testFastNavigationIsCoalesced() {
+        for (int i = 0; i < MOVES; i++) {
+            myFixture.getEditor().getCaretModel().moveToLogicalPosition(new LogicalPosition(i % LINES, 0));
+        }
+        DevPilotLineIconListener.flushPendingMove(myFixture.getEditor());
+
+        assertEquals(1, added);
+        assertEquals(0, removed);
+        assertEquals(List.of((MOVES - 1) % LINES), iconLines());
+    }
+
+    public void testMoveWithinLineKeepsHighlighter() {
+        moveTo(10, 0);
+        RangeHighlighter highlighter = iconHighlighters().get(0);
+
+        for (int column = 1; column < 6; column++) {
+            moveTo(10, column);
+        }
+
+        assertEquals(1, added);
+        assertEquals(0, removed);
+        assertSame(highlighter, iconHighlighters().get(0));
+    }
+
+    public void testMoveToAnotherLineReplacesHighlighter() {
+        moveTo(10, 0);
+        moveTo(20, 0);
+
+        assertEquals(2, added);
+        assertEquals(1, removed);
+        assertEquals(List.of(20), iconLines());
+    }
+
+    public void testRendererIsReused() {
+        var first = DevPilotLineIconListener.updateGutterIcon(myFixture.getEditor(), 3);
+        var second = DevPilotLineIconListener.updateGutterIcon(myFixture.getEditor(), 7);
+
+        assertSame(first, second);
+        assertEquals(List.of(7), iconLines());
+    }
+
+    public void testLoadingRendererStaysWithItsCompletion() {
+        var loading = DevPilotLineIconListener.updateGutterIcon(myFixture.getEditor(), 3);
+        loading.setLoading(true);
+
+        var next = DevPilotLineIconListener.updateGutterIcon(myFixture.getEditor(), 7);
+
+        assertNotSame(loading, next);
+        assertFalse(next.isLoading());
+        assertTrue(loading.isLoading());
+        assertSame(next, iconHighlighters().get(0).getGutterIconRenderer());
+    }
+
+    private void moveTo(int line, int column) {
+        myFixture.getEditor().getCaretModel().moveToLogicalPosition(new LogicalPosition(line, column));
+        DevPilotLineIconListener.flushPendingMove(myFixture.getEditor());
+    }
+
+    private List<Integer> iconLines() {
+        return iconHighlighters().stream()
+                .map(highlighter -> myFixture.getEditor().getDocument().getLineNumber(highlighter.getStartOffset()))
+                .collect(Collectors.toList());
+    }
+
+    private List<RangeHighlighter> iconHighlighters() {
+        return Arrays.stream(myFixture.getEditor().getMarkupModel().getAllHighlighters())
+                .filter(highlighter -> highlighter.getGutterIconRenderer() instanceof DevPilotLineIconListener.DevPilotGutterIconRenderer)
+                .collect(Collectors.toList());
+    }
+}
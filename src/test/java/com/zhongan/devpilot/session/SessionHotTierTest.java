@@ -0,0 +1,85 @@
+package com.zhongan.devpilot.session;
+
+import com.zhongan.devpilot.session.model.ChatSession;
+import com.zhongan.devpilot.webview.model.MessageModel;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SessionHotTierTest {
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        long sessionBytes = SessionHotTier.estimateBytes(buildSession("probe", 10));
+        SessionHotTier hotTier = new SessionHotTier(() -> sessionBytes * 3);
+
+        for (int i = 0; i < 3; i++) {
+            hotTier.put(buildSession("session-" + i, 10), null);
+        }
+        assertEquals(3, hotTier.size());
+
+        // touch the eldest so the next one goes first
+        assertNotNull(hotTier.get("session-0"));
+        hotTier.put(buildSession("session-3", 10), null);
+
+        assertEquals(3, hotTier.size());
+        assertNull(hotTier.get("session-1"));
+        assertNotNull(hotTier.get("session-0"));
+        assertTrue(hotTier.getUsedBytes() <= sessionBytes * 3);
+    }
+
+    @Test
+    public void testPinnedSessionStays() {
+        long sessionBytes = SessionHotTier.estimateBytes(buildSession("probe", 10));
+        SessionHotTier hotTier = new SessionHotTier(() -> sessionBytes);
+
+        hotTier.put(buildSession("current", 10), "current");
+        hotTier.put(buildSession("other", 10), "current");
+
+        assertNotNull(hotTier.get("current"));
+        assertNull(hotTier.get("other"));
+        assertEquals(sessionBytes, hotTier.getUsedBytes());
+
+        hotTier.remove("current");
+        assertEquals(0, hotTier.getUsedBytes());
+    }
+
+    @Test
+    public void testEstimateFollowsSessionChanges() {
+        SessionHotTier hotTier = new SessionHotTier(() -> Long.MAX_VALUE);
+        ChatSession session = buildSession("session", 3);
+        hotTier.put(session, null);
+        assertEquals(SessionHotTier.estimateBytes(session), hotTier.getUsedBytes());
+
+        // appended messages and a last message still streaming
+        session.getHistoryMessageList().addAll(buildSession("more", 2).getHistoryMessageList());
+        session.getHistoryMessageList().get(4).setContent(StringUtils.repeat('y', 500));
+        hotTier.put(session, null);
+        assertEquals(SessionHotTier.estimateBytes(session), hotTier.getUsedBytes());
+
+        // removed messages and a replaced list
+        session.getHistoryMessageList().remove(0);
+        hotTier.put(session, null);
+        assertEquals(SessionHotTier.estimateBytes(session), hotTier.getUsedBytes());
+
+        session.setHistoryMessageList(buildSession("replaced", 1).getHistoryMessageList());
+        hotTier.put(session, null);
+        assertEquals(SessionHotTier.estimateBytes(session), hotTier.getUsedBytes());
+    }
+
+    private ChatSession buildSession(String id, int messages) {
+        ChatSession session = new ChatSession();
+        session.setId(id);
+        for (int i = 0; i < messages; i++) {
+            MessageModel message = new MessageModel();
+            message.setContent(StringUtils.repeat('x', 100));
+            session.getHistoryMessageList().add(message);
+        }
+        return session;
+    }
+}
@@ -0,0 +1,204 @@
+package com.zhongan.devpilot.session;
+
+import com.zhongan.devpilot.integrations.llms.entity.DevPilotMessage;
+import com.zhongan.devpilot.session.model.ChatSession;
+import com.zhongan.devpilot.session.model.ChatSessionSummary;
+import com.zhongan.devpilot.webview.model.MessageModel;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SessionJournalTest {
+
+    @Test
+    public void testAppendOnlyWritesChanges() throws Exception {
+        File directory = Files.createTempDirectory("journals").toFile();
+        SessionJournal journal = new SessionJournal(directory);
+
+        ChatSession session = buildSession("session-1");
+        addRound(session, 0);
+        journal.append(session);
+        long snapshotLength = journalFile(directory, "session-1").length();
+
+        for (int i = 1; i < 10; i++) {
+            addRound(session, i);
+            journal.append(session);
+        }
+
+        List<String> lines = Files.readAllLines(journalFile(directory, "session-1").toPath(), StandardCharsets.UTF_8);
+        assertEquals(10, lines.size());
+        // a change only carries the last message and the new round, not the whole history
+        assertTrue(lines.get(9).length() < snapshotLength * 3);
+
+        ChatSession replayed = new SessionJournal(directory).load("session-1");
+        assertNotNull(replayed);
+        assertEquals(20, replayed.getHistoryMessageList().size());
+        assertEquals(20, replayed.getHistoryRequestMessageList().size());
+        assertEquals("answer 9", replayed.getHistoryMessageList().get(19).getContent());
+    }
+
+    @Test
+    public void testReplayRemovedAndChangedMessages() throws Exception {
+        File directory = Files.createTempDirectory("journals").toFile();
+        SessionJournal journal = new SessionJournal(directory);
+
+        ChatSession session = buildSession("session-1");
+        for (int i = 0; i < 3; i++) {
+            addRound(session, i);
+        }
+        journal.append(session);
+
+        session.getHistoryMessageList().remove(1);
+        session.getHistoryMessageList().get(session.getHistoryMessageList().size() - 1).setContent("answer 2 edited");
+        journal.append(session);
+
+        ChatSession replayed = new SessionJournal(directory).load("session-1");
+        assertNotNull(replayed);
+        assertEquals(5, replayed.getHistoryMessageList().size());
+        assertEquals("question 1", replayed.getHistoryMessageList().get(1).getContent());
+        assertEquals("answer 2 edited", replayed.getHistoryMessageList().get(4).getContent());
+    }
+
+    @Test
+    public void testTornRecordIsDropped() throws Exception {
+        File directory = Files.createTempDirectory("journals").toFile();
+        SessionJournal journal = new SessionJournal(directory);
+
+        ChatSession session = buildSession("session-1");
+        addRound(session, 0);
+        journal.append(session);
+        addRound(session, 1);
+        journal.append(session);
+
+        Files.writeString(journalFile(directory, "session-1").toPath(), "{\"type\":\"delta\",\"messa",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        ChatSession replayed = new SessionJournal(directory).load("session-1");
+        assertNotNull(replayed);
+        assertEquals(4, replayed.getHistoryMessageList().size());
+    }
+
+    @Test
+    public void testAppendAfterTornTailIsReplayed() throws Exception {
+        File directory = Files.createTempDirectory("journals").toFile();
+        SessionJournal journal = new SessionJournal(directory);
+
+        ChatSession session = buildSession("session-1");
+        addRound(session, 0);
+        journal.append(session);
+        Files.writeString(journalFile(directory, "session-1").toPath(), "{\"type\":\"delta\",\"messa",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        SessionJournal reopened = new SessionJournal(directory);
+        ChatSession replayed = reopened.load("session-1");
+        assertNotNull(replayed);
+        addRound(replayed, 1);
+        reopened.append(replayed);
+        addRound(replayed, 2);
+        reopened.append(replayed);
+
+        ChatSession reloaded = new SessionJournal(directory).load("session-1");
+        assertNotNull(reloaded);
+        assertEquals(6, reloaded.getHistoryMessageList().size());
+        assertEquals("answer 2", reloaded.getHistoryMessageList().get(5).getContent());
+    }
+
+    @Test
+    public void testCompactionAndHeader() throws Exception {
+        File directory = Files.createTempDirectory("journals").toFile();
+        SessionJournal journal = new SessionJournal(directory);
+
+        ChatSession session = buildSession("session-1");
+        for (int i = 0; i < 70; i++) {
+            addRound(session, i);
+            journal.append(session);
+        }
+
+        List<String> lines = Files.readAllLines(journalFile(directory, "session-1").toPath(), StandardCharsets.UTF_8);
+        assertTrue(lines.size() < 70);
+        assertEquals(140, journal.load("session-1").getHistoryMessageList().size());
+
+        ChatSessionSummary header = journal.readHeader(new File(directory, "session-1" + SessionJournal.HEADER_SUFFIX));
+        assertNotNull(header);
+        assertEquals("session-1", header.getId());
+        assertEquals(140, header.getMessageCount());
+        assertEquals("question 0", header.getTitle());
+
+        journal.delete("session-1");
+        assertFalse(journalFile(directory, "session-1").exists());
+        assertNull(journal.load("session-1"));
+    }
+
+    @Test
+    public void testFreezeAndThaw() throws Exception {
+        File directory = Files.createTempDirectory("journals").toFile();
+        SessionJournal journal = new SessionJournal(directory);
+
+        ChatSession session = buildSession("session-1");
+        for (int i = 0; i < 20; i++) {
+            addRound(session, i);
+            journal.append(session);
+        }
+        long plainSize = journal.diskSize("session-1");
+
+        assertTrue(journal.freeze("session-1"));
+        assertTrue(journal.isCold("session-1"));
+        assertFalse(journalFile(directory, "session-1").exists());
+        assertTrue(journal.diskSize("session-1") < plainSize);
+
+        ChatSession thawed = new SessionJournal(directory).load("session-1");
+        assertNotNull(thawed);
+        assertEquals(40, thawed.getHistoryMessageList().size());
+
+        addRound(thawed, 20);
+        journal.append(thawed);
+        assertFalse(journal.isCold("session-1"));
+        assertEquals(42, journal.load("session-1").getHistoryMessageList().size());
+    }
+
+    private File journalFile(File directory, String sessionId) {
+        return new File(directory, sessionId + SessionJournal.JOURNAL_SUFFIX);
+    }
+
+    private ChatSession buildSession(String id) {
+        ChatSession session = new ChatSession();
+        session.setId(id);
+        session.setCreateTime(1000);
+        session.setUpdateTime(1000);
+        return session;
+    }
+
+    private void addRound(ChatSession session, int round) {
+        session.getHistoryMessageList().add(buildMessage("q-" + round, "question " + round));
+        session.getHistoryMessageList().add(buildMessage("a-" + round, "answer " + round));
+
+        DevPilotMessage question = new DevPilotMessage();
+        question.setId("q-" + round);
+        question.setContent("question " + round);
+        session.getHistoryRequestMessageList().add(question);
+
+        DevPilotMessage answer = new DevPilotMessage();
+        answer.setId("a-" + round);
+        answer.setContent("answer " + round);
+        session.getHistoryRequestMessageList().add(answer);
+        session.setUpdateTime(session.getUpdateTime() + 1);
+    }
+
+    private MessageModel buildMessage(String id, String content) {
+        MessageModel message = new MessageModel();
+        message.setId(id);
+        message.setContent(content);
+        return message;
+    }
+}
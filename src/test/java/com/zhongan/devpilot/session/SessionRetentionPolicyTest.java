@@ -0,0 +1,58 @@
+package com.zhongan.devpilot.session;
+
+import com.zhongan.devpilot.session.model.ChatSessionSummary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SessionRetentionPolicyTest {
+
+    private static final long NOW = TimeUnit.DAYS.toMillis(1000);
+
+    @Test
+    public void testExpireByAge() {
+        SessionRetentionPolicy policy = new SessionRetentionPolicy(30, 0, 0);
+        List<ChatSessionSummary> summaries = List.of(summary("new", 1), summary("old", 40), summary("older", 400));
+
+        assertEquals(List.of("old", "older"), policy.selectExpired(summaries, id -> 1024, NOW, null));
+        assertEquals(List.of("older"), policy.selectExpired(summaries, id -> 1024, NOW, "old"));
+    }
+
+    @Test
+    public void testExpireBySize() {
+        SessionRetentionPolicy policy = new SessionRetentionPolicy(0, 1, 0);
+        List<ChatSessionSummary> summaries = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            summaries.add(summary("session-" + i, i));
+        }
+
+        // 10 sessions of 300KB in a 1MB storage, the 3 latest fit
+        List<String> expired = policy.selectExpired(summaries, id -> 300 * 1024, NOW, null);
+        assertEquals(7, expired.size());
+        assertTrue(expired.contains("session-9"));
+        assertTrue(expired.contains("session-3"));
+        assertTrue(!expired.contains("session-2"));
+    }
+
+    @Test
+    public void testSelectCold() {
+        SessionRetentionPolicy policy = new SessionRetentionPolicy(0, 0, 7);
+        List<ChatSessionSummary> summaries = List.of(summary("hot", 1), summary("cold", 8), summary("current", 9));
+
+        assertEquals(List.of("cold"), policy.selectCold(summaries, NOW, "current"));
+        assertTrue(new SessionRetentionPolicy(0, 0, 0).selectCold(summaries, NOW, null).isEmpty());
+    }
+
+    private ChatSessionSummary summary(String id, int ageDays) {
+        ChatSessionSummary summary = new ChatSessionSummary();
+        summary.setId(id);
+        summary.setUpdateTime(NOW - TimeUnit.DAYS.toMillis(ageDays));
+        return summary;
+    }
+}
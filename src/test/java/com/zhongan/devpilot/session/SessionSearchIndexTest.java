@@ -0,0 +1,197 @@
+package com.zhongan.devpilot.session;
+
+import com.zhongan.devpilot.session.model.ChatSearchHit;
+import com.zhongan.devpilot.session.model.ChatSession;
+import com.zhongan.devpilot.webview.model.AgentDecisionModel;
+import com.zhongan.devpilot.webview.model.CodeReferenceModel;
+import com.zhongan.devpilot.webview.model.MessageModel;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SessionSearchIndexTest {
+
+    @Test
+    public void testTokenize() {
+        assertEquals(List.of("hello", "world_2", "x1"), SessionSearchIndex.tokenize("Hello, World_2! a x1"));
+        assertEquals(List.of("代", "码", "代码", "补", "码补", "全", "补全", "java"), SessionSearchIndex.tokenize("代码补全Java"));
+    }
+
+    @Test
+    public void testSearchContentCodeAndThoughts() throws Exception {
+        SessionSearchIndex index = new SessionSearchIndex(tempIndexDirectory());
+
+        ChatSession session = buildSession("session-1", 1000);
+        MessageModel question = buildMessage("m-1", "How do I parse json with Jackson?", 1);
+        CodeReferenceModel codeRef = new CodeReferenceModel();
+        codeRef.setFileName("JsonUtils.java");
+        codeRef.setSourceCode("objectMapper.readValue(json, clazz)");
+        question.setCodeRefs(List.of(codeRef));
+        session.getHistoryMessageList().add(question);
+
+        MessageModel answer = buildMessage("m-2", "使用 ObjectMapper 解析", 2);
+        AgentDecisionModel decision = new AgentDecisionModel();
+        decision.setThought("look at the streaming parser first");
+        answer.getDecisions().add(decision);
+        session.getHistoryMessageList().add(answer);
+        index.update(session);
+
+        assertEquals("m-1", index.search("jackson JSON", 10).get(0).getMessageId());
+        assertEquals("m-1", index.search("readValue", 10).get(0).getMessageId());
+        assertEquals("m-2", index.search("解析", 10).get(0).getMessageId());
+        assertEquals("m-2", index.search("streaming parser", 10).get(0).getMessageId());
+        assertEquals(2, index.search("objectmapper", 10).size());
+        assertTrue(index.search("jackson parser", 10).isEmpty());
+        assertTrue(index.search("missing", 10).isEmpty());
+    }
+
+    @Test
+    public void testPrefixMatch() throws Exception {
+        SessionSearchIndex index = new SessionSearchIndex(tempIndexDirectory());
+        ChatSession session = buildSession("session-1", 1000);
+        session.getHistoryMessageList().add(buildMessage("m-1", "refactor the completion handler", 1));
+        index.update(session);
+
+        assertEquals("m-1", index.search("refac handl", 10).get(0).getMessageId());
+        assertEquals("m-1", index.search("completion", 10).get(0).getMessageId());
+        assertTrue(index.search("handlers", 10).isEmpty());
+    }
+
+    @Test
+    public void testRanking() throws Exception {
+        SessionSearchIndex index = new SessionSearchIndex(tempIndexDirectory());
+
+        ChatSession older = buildSession("session-1", 1000);
+        older.getHistoryMessageList().add(buildMessage("m-1", "the parser fails on comments", 1));
+        older.getHistoryMessageList().add(buildMessage("m-2", "the parser is slow", 2));
+        index.update(older);
+
+        ChatSession newer = buildSession("session-2", 2000);
+        newer.getHistoryMessageList().add(buildMessage("m-3", "parsers of every language", 3));
+        newer.getHistoryMessageList().add(buildMessage("m-4", "unrelated question", 4));
+        index.update(newer);
+
+        // whole words first, latest first among them, then the prefix matches
+        List<ChatSearchHit> hits = index.search("parser", 10);
+        assertEquals(List.of("m-2", "m-1", "m-3"), messageIds(hits));
+        assertEquals("session-2", hits.get(2).getSessionId());
+
+        assertEquals(List.of("m-2", "m-1"), messageIds(index.search("parser", 2)));
+        assertEquals(List.of("m-1"), messageIds(index.search("parser comments", 10)));
+    }
+
+    @Test
+    public void testIncrementalUpdateAndDeletion() throws Exception {
+        File directory = tempIndexDirectory();
+        SessionSearchIndex index = new SessionSearchIndex(directory);
+
+        ChatSession first = buildSession("session-1", 1000);
+        first.getHistoryMessageList().add(buildMessage("m-1", "gradle build fails", 1));
+        first.getHistoryMessageList().add(buildMessage("m-2", "check the gradle wrapper", 2));
+        index.update(first);
+
+        ChatSession second = buildSession("session-2", 2000);
+        second.getHistoryMessageList().add(buildMessage("m-3", "gradle sync is slow", 3));
+        index.update(second);
+        index.flush();
+        assertTrue(new File(directory, "session-2.idx").exists());
+
+        // edit one message, drop another
+        first.getHistoryMessageList().get(0).setContent("maven build fails");
+        first.getHistoryMessageList().remove(1);
+        first.setUpdateTime(3000);
+        index.update(first);
+        assertEquals(List.of("m-3"), messageIds(index.search("gradle", 10)));
+        assertEquals(List.of("m-1"), messageIds(index.search("maven", 10)));
+
+        index.remove("session-2");
+        assertTrue(index.search("gradle", 10).isEmpty());
+        assertFalse(index.isIndexed("session-2", 0));
+
+        index.flush();
+        assertFalse(new File(directory, "session-2.idx").exists());
+        assertTrue(new File(directory, "session-1.idx").exists());
+    }
+
+    @Test
+    public void testReloadFromDisk() throws Exception {
+        File directory = tempIndexDirectory();
+        SessionSearchIndex index = new SessionSearchIndex(directory);
+
+        ChatSession session = buildSession("session-1", 1000);
+        session.getHistoryMessageList().add(buildMessage("m-1", "maven build fails", 1));
+        session.getHistoryMessageList().add(buildMessage("m-2", "使用 ObjectMapper 解析", 2));
+        index.update(session);
+        ChatSession removed = buildSession("session-2", 2000);
+        removed.getHistoryMessageList().add(buildMessage("m-3", "maven site", 3));
+        index.update(removed);
+        index.remove("session-2");
+        index.flush();
+
+        SessionSearchIndex reloaded = new SessionSearchIndex(directory);
+        assertEquals(List.of("m-1"), messageIds(reloaded.search("mav build", 10)));
+        assertEquals(List.of("m-2"), messageIds(reloaded.search("解析", 10)));
+        assertTrue(reloaded.isIndexed("session-1", 1000));
+        assertFalse(reloaded.isIndexed("session-1", 1001));
+        assertFalse(reloaded.isIndexed("session-2", 0));
+
+        // unchanged messages keep their documents, the update only rewrites this segment
+        session.getHistoryMessageList().add(buildMessage("m-4", "maven wrapper", 4));
+        session.setUpdateTime(4000);
+        reloaded.update(session);
+        reloaded.flush();
+        assertEquals(List.of("m-4", "m-1"), messageIds(new SessionSearchIndex(directory).search("maven", 10)));
+    }
+
+    @Test
+    public void testNewerSegmentOfAnotherInstanceIsKept() throws Exception {
+        File directory = tempIndexDirectory();
+        SessionSearchIndex first = new SessionSearchIndex(directory);
+        SessionSearchIndex second = new SessionSearchIndex(directory);
+
+        ChatSession stale = buildSession("session-1", 1000);
+        stale.getHistoryMessageList().add(buildMessage("m-1", "stale answer", 1));
+        first.update(stale);
+
+        ChatSession fresh = buildSession("session-1", 2000);
+        fresh.getHistoryMessageList().add(buildMessage("m-1", "fresh answer", 1));
+        second.update(fresh);
+        second.flush();
+
+        first.flush();
+        assertEquals(List.of("m-1"), messageIds(first.search("fresh", 10)));
+        assertTrue(first.search("stale", 10).isEmpty());
+        assertEquals(List.of("m-1"), messageIds(new SessionSearchIndex(directory).search("fresh", 10)));
+    }
+
+    private List<String> messageIds(List<ChatSearchHit> hits) {
+        return hits.stream().map(ChatSearchHit::getMessageId).collect(Collectors.toList());
+    }
+
+    private File tempIndexDirectory() throws Exception {
+        return new File(Files.createTempDirectory("search").toFile(), "search");
+    }
+
+    private ChatSession buildSession(String id, long updateTime) {
+        ChatSession session = new ChatSession();
+        session.setId(id);
+        session.setUpdateTime(updateTime);
+        return session;
+    }
+
+    private MessageModel buildMessage(String id, String content, long time) {
+        MessageModel message = new MessageModel();
+        message.setId(id);
+        message.setContent(content);
+        message.setTime(time);
+        return message;
+    }
+}
@@ -0,0 +1,114 @@
+package com.zhongan.devpilot.session;
+
+import com.zhongan.devpilot.integrations.llms.entity.DevPilotMessage;
+import com.zhongan.devpilot.session.model.ChatSession;
+import com.zhongan.devpilot.session.model.ChatSessionSummary;
+import com.zhongan.devpilot.util.JsonUtils;
+import com.zhongan.devpilot.webview.model.MessageModel;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SessionSummaryIndexTest {
+
+    @Test
+    public void testReadSummaryFromFile() throws Exception {
+        File directory = Files.createTempDirectory("sessions").toFile();
+        File file = write(directory, buildSession("session-1", 1000, 4));
+
+        ChatSessionSummary summary = SessionSummaryIndex.readSummary(file);
+        assertNotNull(summary);
+        assertEquals("session-1", summary.getId());
+        assertEquals(1000, summary.getUpdateTime());
+        assertEquals(4, summary.getMessageCount());
+        assertEquals(4, summary.getRequestMessageCount());
+        assertEquals("message 0", summary.getTitle());
+        assertEquals("message 0".length() * 4, summary.getSize());
+        assertEquals("message 0", summary.getHistoryMessageList().get(0).get("content"));
+    }
+
+    @Test
+    public void testVisibleSummariesLatestFirst() throws Exception {
+        File directory = Files.createTempDirectory("sessions").toFile();
+        for (int i = 0; i < 5; i++) {
+            write(directory, buildSession("session-" + i, 1000 + i, 2));
+        }
+        write(directory, buildSession("empty", 2000, 0));
+
+        SessionSummaryIndex index = new SessionSummaryIndex(directory, new SessionJournal(new File(directory, "journals")));
+        index.refresh();
+
+        // every session with requests is listed, the empty one is not
+        List<ChatSessionSummary> summaries = index.visibleSummaries();
+        assertEquals(5, summaries.size());
+        assertEquals("session-4", summaries.get(0).getId());
+        assertEquals("session-3", summaries.get(1).getId());
+        assertEquals("session-0", summaries.get(4).getId());
+    }
+
+    @Test
+    public void testRefreshAfterChanges() throws Exception {
+        File directory = Files.createTempDirectory("sessions").toFile();
+        File file = write(directory, buildSession("session-1", 1000, 2));
+
+        SessionSummaryIndex index = new SessionSummaryIndex(directory, new SessionJournal(new File(directory, "journals")));
+        index.refresh();
+        assertEquals(file, index.getFile("session-1"));
+
+        ChatSession updated = buildSession("session-1", 3000, 6);
+        index.update(updated);
+        index.refresh();
+        assertEquals(6, index.latest().getMessageCount());
+
+        assertTrue(file.delete());
+        index.refresh();
+        assertNull(index.getFile("session-1"));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testJournalHeadersTakePrecedence() throws Exception {
+        File directory = Files.createTempDirectory("sessions").toFile();
+        write(directory, buildSession("session-1", 1000, 2));
+
+        SessionJournal journal = new SessionJournal(new File(directory, "journals"));
+        journal.append(buildSession("session-1", 2000, 3));
+
+        SessionSummaryIndex index = new SessionSummaryIndex(directory, journal);
+        index.refresh();
+        assertEquals(1, index.size());
+        assertEquals(3, index.latest().getMessageCount());
+        assertNull(index.getFile("session-1"));
+    }
+
+    private File write(File directory, ChatSession session) {
+        File file = new File(directory, session.getId() + ".json");
+        assertTrue(JsonUtils.toJson(file, session));
+        return file;
+    }
+
+    private ChatSession buildSession(String id, long updateTime, int messages) {
+        ChatSession session = new ChatSession();
+        session.setId(id);
+        session.setCreateTime(updateTime);
+        session.setUpdateTime(updateTime);
+        for (int i = 0; i < messages; i++) {
+            MessageModel message = new MessageModel();
+            message.setContent("message " + i);
+            session.getHistoryMessageList().add(message);
+
+            DevPilotMessage requestMessage = new DevPilotMessage();
+            requestMessage.setContent("message " + i);
+            session.getHistoryRequestMessageList().add(requestMessage);
+        }
+        return session;
+    }
+}
@@ -0,0 +1,175 @@
+package com.zhongan.devpilot.sse;
+
+import com.zhongan.devpilot.sse.entity.AgentEvent;
+import com.zhongan.devpilot.sse.entity.PartialMessage;
+import com.zhongan.devpilot.util.JsonUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AgentEventDecoderTest {
+
+    @Test
+    public void testDecodeStreamingTick() {
+        AgentEvent event = AgentEventDecoder.INSTANCE.decode(buildEvent("partial-steaming", 3));
+
+        assertNotNull(event);
+        assertEquals("DeepThinking", event.getEvent());
+        assertEquals("partial-steaming", event.getTag());
+        assertTrue(event.isStreamingTick());
+
+        PartialMessage partialMessage = AgentEventDecoder.INSTANCE.readPartialMessage(event, false);
+        assertNotNull(partialMessage);
+        assertEquals("session-1", partialMessage.getSessionId());
+        assertEquals("thinking about it", partialMessage.getThought());
+        assertEquals("Say", partialMessage.getActionType());
+        assertEquals("hello", partialMessage.getAction());
+        assertTrue(partialMessage.isThoughtCompleted());
+        assertFalse(partialMessage.isCompleted());
+        assertEquals(400, partialMessage.getStatusCode());
+        assertNull(partialMessage.getSession());
+    }
+
+    @Test
+    public void testDecodeEmbeddedSession() {
+        AgentEvent event = AgentEventDecoder.INSTANCE.decode(buildEvent("request-failed", 3));
+
+        assertNotNull(event);
+        assertFalse(event.isStreamingTick());
+
+        PartialMessage partialMessage = AgentEventDecoder.INSTANCE.readPartialMessage(event, true);
+        assertNotNull(partialMessage);
+        assertNotNull(partialMessage.getSession());
+        assertEquals("session-1", partialMessage.getSession().getId());
+        assertEquals(3, partialMessage.getSession().getHistoryMessageList().size());
+    }
+
+    @Test
+    public void testDecodeObjectAction() {
+        Map<String, Object> message = new HashMap<>();
+        message.put("sessionId", "session-1");
+        message.put("action", Map.of("path", "a.java"));
+        message.put("unknown", List.of(1, 2, 3));
+
+        AgentEvent event = new AgentEvent();
+        event.setMessage(JsonUtils.toJson(message));
+
+        PartialMessage partialMessage = AgentEventDecoder.INSTANCE.readPartialMessage(event, false);
+        assertNotNull(partialMessage);
+        assertEquals(Map.of("path", "a.java"), partialMessage.getAction());
+    }
+
+    @Test
+    public void testDecodeInvalidEvent() {
+        assertNull(AgentEventDecoder.INSTANCE.decode(""));
+        assertNull(AgentEventDecoder.INSTANCE.decode("[]"));
+        assertNull(AgentEventDecoder.INSTANCE.decode("{\"event\":"));
+    }
+
+    @Test
+    public void testDecodeEnvelopeFields() {
+        AgentEvent event = AgentEventDecoder.INSTANCE.decode(
+                "{\"event\":\"ClientConnected\",\"clientId\":42,\"seq\":7,\"tag\":null,\"extra\":{\"a\":[1,2]}}");
+
+        assertNotNull(event);
+        assertTrue(event.isEvent(AgentEvent.CLIENT_CONNECTED));
+        assertEquals("42", event.getClientId());
+        assertEquals(Long.valueOf(7), event.getSeq());
+        assertNull(event.getTag());
+        assertNull(event.getMessage());
+    }
+
+    @Test
+    public void testDecodeMissingFields() {
+        AgentEvent event = AgentEventDecoder.INSTANCE.decode("{\"event\":\"DeepThinking\"}");
+
+        assertNotNull(event);
+        assertNull(event.getTag());
+        assertNull(event.getSeq());
+        assertFalse(event.isStreamingTick());
+        assertNull(AgentEventDecoder.INSTANCE.readPartialMessage(event, false));
+
+        event.setMessage("{\"sessionId\":\"session-1\",\"thought\":null,\"completed\":null}");
+        PartialMessage partialMessage = AgentEventDecoder.INSTANCE.readPartialMessage(event, true);
+        assertNotNull(partialMessage);
+        assertEquals("session-1", partialMessage.getSessionId());
+        assertNull(partialMessage.getThought());
+        assertNull(partialMessage.getAction());
+        assertNull(partialMessage.getSession());
+        assertFalse(partialMessage.isCompleted());
+        assertFalse(partialMessage.isDelta());
+    }
+
+    @Test
+    public void testDecodeUnknownEventAndFieldTypes() {
+        AgentEvent event = AgentEventDecoder.INSTANCE.decode(
+                "{\"event\":\"Unknown\",\"tag\":{\"nested\":true},\"message\":{\"sessionId\":\"session-1\",\"thought\":[\"a\"]}}");
+
+        assertNotNull(event);
+        assertEquals("Unknown", event.getEvent());
+        assertFalse(event.isStreamingTick());
+        // an object tag is not text, it is skipped instead of failing the whole event
+        assertNull(event.getTag());
+
+        // a message embedded as an object is re-serialized and decoded as usual
+        PartialMessage partialMessage = AgentEventDecoder.INSTANCE.readPartialMessage(event, false);
+        assertNotNull(partialMessage);
+        assertEquals("session-1", partialMessage.getSessionId());
+        assertNull(partialMessage.getThought());
+    }
+
+    @Test
+    public void testDecodeDeltaFields() {
+        AgentEvent event = new AgentEvent();
+        event.setMessage("{\"responseId\":\"response-1\",\"delta\":true,\"thought\":\"b\",\"thoughtLength\":2,\"actionLength\":0}");
+
+        PartialMessage partialMessage = AgentEventDecoder.INSTANCE.readPartialMessage(event, false);
+        assertNotNull(partialMessage);
+        assertEquals("response-1", partialMessage.getResponseId());
+        assertTrue(partialMessage.isDelta());
+        assertEquals(2, partialMessage.getThoughtLength());
+        assertEquals(0, partialMessage.getActionLength());
+    }
+
+    static String buildEvent(String tag, int historySize) {
+        List<Map<String, Object>> history = new ArrayList<>();
+        for (int i = 0; i < historySize; i++) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("id", "message-" + i);
+            item.put("role", i % 2 == 0 ? "user" : "assistant");
+            item.put("content", "public class Demo" + i + " { void run() { System.out.println(\"" + i + "\"); } }");
+            history.add(item);
+        }
+
+        Map<String, Object> session = new HashMap<>();
+        session.put("id", "session-1");
+        session.put("historyMessageList", history);
+
+        Map<String, Object> message = new HashMap<>();
+        message.put("clientId", "client-1");
+        message.put("sessionId", "session-1");
+        message.put("thought", "thinking about it");
+        message.put("actionType", "Say");
+        message.put("action", "hello");
+        message.put("thoughtCompleted", true);
+        message.put("completed", false);
+        message.put("statusCode", 400);
+        message.put("session", session);
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("event", "DeepThinking");
+        event.put("tag", tag);
+        event.put("message", JsonUtils.toJson(message));
+        return JsonUtils.toJson(event);
+    }
+}
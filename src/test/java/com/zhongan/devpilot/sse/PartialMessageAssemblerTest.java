@@ -0,0 +1,177 @@
+package com.zhongan.devpilot.sse;
+
+import com.zhongan.devpilot.sse.entity.PartialMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class PartialMessageAssemblerTest {
+
+    @Test
+    public void testAssembleDeltas() {
+        PartialMessageAssembler assembler = new PartialMessageAssembler();
+
+        PartialMessage first = assembler.assemble(1, delta("Let me ", null, 7), false);
+        assertNotNull(first);
+        assertEquals("Let me ", first.getThought());
+        assertNull(first.getAction());
+
+        PartialMessage second = assembler.assemble(2, delta("think", "Hel", 12), false);
+        assertNotNull(second);
+        assertEquals("Let me think", second.getThought());
+        assertEquals("Hel", second.getAction());
+
+        PartialMessage third = assembler.assemble(3, delta(null, "lo", 12), true);
+        assertNotNull(third);
+        assertEquals("Let me think", third.getThought());
+        assertEquals("Hello", third.getAction());
+        assertEquals(PartialMessageAssembler.DELTA_MODE, assembler.getPartialMode("session-1"));
+    }
+
+    @Test
+    public void testObjectActionReplaced() {
+        PartialMessageAssembler assembler = new PartialMessageAssembler();
+        assembler.assemble(1, delta("a", "partial", 0), false);
+
+        PartialMessage message = delta("b", null, 0);
+        message.setAction(Map.of("path", "a.java"));
+        PartialMessage assembled = assembler.assemble(2, message, false);
+
+        assertNotNull(assembled);
+        assertEquals("ab", assembled.getThought());
+        assertEquals(Map.of("path", "a.java"), assembled.getAction());
+    }
+
+    @Test
+    public void testGapAsksForSnapshot() {
+        List<String> requested = new ArrayList<>();
+        PartialMessageAssembler assembler = new PartialMessageAssembler((sessionId, responseId) -> requested.add(responseId));
+        assertNotNull(assembler.assemble(1, delta("a", null, 1), false));
+
+        // seq 2 is lost
+        assertNull(assembler.assemble(3, delta("c", null, 3), false));
+        assertNull(assembler.assemble(4, delta("d", null, 4), false));
+        assertEquals(List.of("response-1"), requested);
+        assertEquals(PartialMessageAssembler.SNAPSHOT_MODE, assembler.getPartialMode("session-1"));
+
+        PartialMessage snapshot = snapshot("abcde");
+        assertEquals("abcde", assembler.assemble(5, snapshot, false).getThought());
+
+        PartialMessage resumed = assembler.assemble(6, delta("f", null, 6), false);
+        assertNotNull(resumed);
+        assertEquals("abcdef", resumed.getThought());
+
+        // the response needed a snapshot, the next request of the session stays in snapshot mode
+        assertNotNull(assembler.assemble(7, delta("g", null, 7), true));
+        assertEquals(PartialMessageAssembler.SNAPSHOT_MODE, assembler.getPartialMode("session-1"));
+
+        // and goes back to deltas once a response completes cleanly
+        assembler.snapshotCompleted("session-1");
+        assertEquals(PartialMessageAssembler.DELTA_MODE, assembler.getPartialMode("session-1"));
+    }
+
+    @Test
+    public void testGapThenTerminal() {
+        PartialMessageAssembler assembler = new PartialMessageAssembler();
+        assertNotNull(assembler.assemble(1, delta("ab", "Hel", 2), false));
+
+        // seq 2 is lost and the snapshot does not arrive before the response ends
+        assertNull(assembler.assemble(3, delta("d", "lo", 4), false));
+        PartialMessage terminal = assembler.assemble(4, delta("e", null, 5), true);
+
+        assertNotNull(terminal);
+        assertEquals("ab", terminal.getThought());
+        assertEquals("Hel", terminal.getAction());
+        assertFalse(terminal.isDelta());
+
+        // the broken assembly is gone, a new response with the same id starts over
+        PartialMessage next = assembler.assemble(1, delta("x", null, 1), false);
+        assertNotNull(next);
+        assertEquals("x", next.getThought());
+    }
+
+    @Test
+    public void testReconnectMidResponse() {
+        PartialMessageAssembler assembler = new PartialMessageAssembler();
+        assertNotNull(assembler.assemble(1, delta("a", null, 1), false));
+        assertNotNull(assembler.assemble(2, delta("b", null, 2), false));
+
+        // the stream reconnects without losing a tick, the response continues where it was
+        PartialMessage resumed = assembler.assemble(3, delta("c", null, 3), false);
+        assertNotNull(resumed);
+        assertEquals("abc", resumed.getThought());
+
+        // ticks 4 and 5 are lost while reconnecting again, the terminal still completes the message
+        PartialMessage terminal = assembler.assemble(6, delta("f", null, 6), true);
+        assertNotNull(terminal);
+        assertEquals("abc", terminal.getThought());
+    }
+
+    @Test
+    public void testResponseStartedWhileDisconnected() {
+        List<String> requested = new ArrayList<>();
+        PartialMessageAssembler assembler = new PartialMessageAssembler((sessionId, responseId) -> requested.add(sessionId));
+
+        assertNull(assembler.assemble(4, delta("d", null, 4), false));
+        assertEquals(List.of("session-1"), requested);
+
+        assertEquals("abcd", assembler.assemble(5, snapshot("abcd"), false).getThought());
+        assertEquals("abcde", assembler.assemble(6, delta("e", null, 5), true).getThought());
+    }
+
+    @Test
+    public void testCleanResponseLeavesDeltaMode() {
+        PartialMessageAssembler assembler = new PartialMessageAssembler();
+        assertNotNull(assembler.assemble(1, delta("a", null, 1), false));
+        assertNull(assembler.assemble(3, delta("c", null, 3), false));
+        assertNotNull(assembler.assemble(4, delta("d", null, 4), true));
+        assertEquals(PartialMessageAssembler.SNAPSHOT_MODE, assembler.getPartialMode("session-1"));
+
+        PartialMessage next = delta("a", null, 1);
+        next.setResponseId("response-2");
+        assertNotNull(assembler.assemble(1, next, true));
+        assertEquals(PartialMessageAssembler.DELTA_MODE, assembler.getPartialMode("session-1"));
+    }
+
+    @Test
+    public void testLengthMismatchDropped() {
+        PartialMessageAssembler assembler = new PartialMessageAssembler();
+        assertNotNull(assembler.assemble(1, delta("abc", null, 3), false));
+        assertNull(assembler.assemble(2, delta("d", null, 5), false));
+        assertNull(assembler.assemble(3, delta("e", null, 5), false));
+    }
+
+    @Test
+    public void testFirstDeltaMissing() {
+        PartialMessageAssembler assembler = new PartialMessageAssembler();
+        assertNull(assembler.assemble(2, delta("b", null, 0), false));
+        assertEquals(PartialMessageAssembler.SNAPSHOT_MODE, assembler.getPartialMode("session-1"));
+    }
+
+    private PartialMessage delta(String thought, String action, int thoughtLength) {
+        PartialMessage message = new PartialMessage();
+        message.setSessionId("session-1");
+        message.setResponseId("response-1");
+        message.setDelta(true);
+        message.setThought(thought);
+        message.setAction(action);
+        message.setThoughtLength(thoughtLength);
+        return message;
+    }
+
+    private PartialMessage snapshot(String thought) {
+        PartialMessage message = new PartialMessage();
+        message.setSessionId("session-1");
+        message.setResponseId("response-1");
+        message.setThought(thought);
+        return message;
+    }
+}
@@ -0,0 +1,153 @@
+package com.zhongan.devpilot.sse;
+
+import com.zhongan.devpilot.sse.entity.AgentEvent;
+import com.zhongan.devpilot.sse.entity.PartialMessage;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SSEEventDispatcherTest {
+
+    private final List<AgentEvent> handled = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch blocker = new CountDownLatch(1);
+
+    private CountDownLatch done;
+
+    private SSEEventDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        dispatcher = new SSEEventDispatcher("test", event -> {
+            if ("block".equals(event.getTag())) {
+                await(blocker);
+            }
+            handled.add(event);
+            done.countDown();
+        });
+        dispatcher.start();
+    }
+
+    @After
+    public void tearDown() {
+        dispatcher.stop();
+    }
+
+    @Test
+    public void testTicksAreCoalescedPerResponse() throws Exception {
+        done = new CountDownLatch(3);
+        dispatcher.dispatch(event("block", null, null));
+        dispatcher.dispatch(tick("response-a", "a1"));
+        dispatcher.dispatch(tick("response-b", "b1"));
+        dispatcher.dispatch(tick("response-a", "a2"));
+        dispatcher.dispatch(tick("response-b", "b2"));
+        dispatcher.dispatch(tick("response-a", "a3"));
+        blocker.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("block", "a3", "b2"), thoughts());
+        assertEquals(3, dispatcher.getCoalescedCount());
+    }
+
+    @Test
+    public void testTerminalAndDecisionEventsAreBarriers() throws Exception {
+        done = new CountDownLatch(6);
+        dispatcher.dispatch(event("block", null, null));
+        dispatcher.dispatch(tick("response-a", "a1"));
+        dispatcher.dispatch(event(AgentEvent.PARTIAL_COMPLETED_TAG, "response-b", "b-done"));
+        dispatcher.dispatch(tick("response-a", "a2"));
+        dispatcher.dispatch(event("mcp-decision", "response-a", "decision"));
+        dispatcher.dispatch(tick("response-a", "a3"));
+        blocker.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("block", "a1", "b-done", "a2", "decision", "a3"), thoughts());
+        assertEquals(0, dispatcher.getCoalescedCount());
+    }
+
+    @Test
+    public void testUndecodedTicksAreNotCoalesced() throws Exception {
+        done = new CountDownLatch(3);
+        dispatcher.dispatch(event("block", null, null));
+        AgentEvent first = event(AgentEvent.PARTIAL_STREAMING_TAG, null, null);
+        AgentEvent second = event(AgentEvent.PARTIAL_STREAMING_TAG, null, null);
+        dispatcher.dispatch(first);
+        dispatcher.dispatch(second);
+        blocker.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(first, second), handled.subList(1, 3));
+    }
+
+    @Test
+    public void testOnlyTicksAreDroppedWhenQueueIsFull() throws Exception {
+        int capacity = 256;
+        done = new CountDownLatch(capacity + 2);
+        dispatcher.dispatch(event("block", null, null));
+        // the blocked handler holds the first event, ticks of distinct responses fill the queue
+        for (int i = 0; i < capacity; i++) {
+            dispatcher.dispatch(tick("response-" + i, "t" + i));
+        }
+        dispatcher.dispatch(tick("response-overflow", "overflow"));
+        assertEquals(1, dispatcher.getDroppedCount());
+
+        Thread reader = new Thread(() -> dispatcher.dispatch(event(AgentEvent.PARTIAL_COMPLETED_TAG, "response-0", "done")));
+        reader.start();
+        reader.join(200);
+        assertTrue(reader.isAlive());
+
+        blocker.countDown();
+        reader.join(5000);
+        assertFalse(reader.isAlive());
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        List<String> thoughts = thoughts();
+        assertEquals(capacity + 2, thoughts.size());
+        assertEquals("t" + (capacity - 1), thoughts.get(capacity));
+        assertEquals("done", thoughts.get(capacity + 1));
+        assertFalse(thoughts.contains("overflow"));
+        assertEquals(1, dispatcher.getDroppedCount());
+    }
+
+    private List<String> thoughts() {
+        return handled.stream()
+                .map(event -> event.getPartialMessage() == null ? event.getTag() : event.getPartialMessage().getThought())
+                .collect(Collectors.toList());
+    }
+
+    private AgentEvent tick(String responseId, String thought) {
+        return event(AgentEvent.PARTIAL_STREAMING_TAG, responseId, thought);
+    }
+
+    private AgentEvent event(String tag, String responseId, String thought) {
+        AgentEvent event = new AgentEvent();
+        event.setEvent(AgentEvent.DEEP_THINKING);
+        event.setTag(tag);
+        if (responseId != null) {
+            PartialMessage message = new PartialMessage();
+            message.setSessionId("session-1");
+            message.setResponseId(responseId);
+            message.setThought(thought);
+            event.setPartialMessage(message);
+        }
+        return event;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.zhongan.devpilot.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenUtilsTest {
+
+    // multi-byte characters are encoded as several byte level tokens, so many cuts fall inside one. A single
+    // line, so the cut is not hidden by moving it to a line boundary
+    private static final String CONTENT = "String note = \"计算订单金额 🚀 总价 💰 张三😀李四 鿰鿱 𠀀𠀁\"; return total;";
+
+    @Test
+    public void testHeadIsAlwaysAPrefix() {
+        int tokens = TokenUtils.countTokens(CONTENT);
+        for (int maxTokens = 1; maxTokens <= tokens; maxTokens++) {
+            String head = TokenUtils.keepHeadTokens(CONTENT, maxTokens);
+            assertTrue("max tokens " + maxTokens + ": " + head, CONTENT.startsWith(head));
+            assertFalse(head.contains("�"));
+            assertTrue(TokenUtils.countTokens(head) <= maxTokens);
+        }
+    }
+
+    @Test
+    public void testTailIsAlwaysASuffix() {
+        int tokens = TokenUtils.countTokens(CONTENT);
+        for (int maxTokens = 1; maxTokens <= tokens; maxTokens++) {
+            String tail = TokenUtils.keepTailTokens(CONTENT, maxTokens);
+            assertTrue("max tokens " + maxTokens + ": " + tail, CONTENT.endsWith(tail));
+            assertFalse(tail.contains("�"));
+        }
+    }
+
+    @Test
+    public void testCutAtCompleteLines() {
+        String content = "line one\nline two\nline three\n";
+
+        assertEquals("line one\n", TokenUtils.keepHeadTokens(content, 4));
+        assertEquals("line three\n", TokenUtils.keepTailTokens(content, 4));
+        assertEquals(content, TokenUtils.keepHeadTokens(content, 100));
+        assertEquals("", TokenUtils.keepTailTokens(content, 0));
+    }
+}
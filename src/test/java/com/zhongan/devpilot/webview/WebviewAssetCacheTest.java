@@ -0,0 +1,128 @@
+package com.zhongan.devpilot.webview;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WebviewAssetCacheTest {
+
+    private WebviewAssetCache cache;
+
+    private byte[] page;
+
+    @Before
+    public void setUp() throws Exception {
+        File root = Files.createTempDirectory("assets").toFile();
+        File webview = new File(root, "webview");
+        assertTrue(webview.mkdirs());
+
+        // larger than a single read from the browser
+        StringBuilder builder = new StringBuilder("<html><body>");
+        for (int i = 0; i < 10_000; i++) {
+            builder.append("<p>第").append(i).append("段</p>");
+        }
+        page = builder.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+        Files.write(new File(webview, "index.html").toPath(), page);
+        Files.writeString(new File(webview, "main.css").toPath(), "body { color: red; }");
+        Files.writeString(new File(webview, "json-viewer.js").toPath(), "console.log(1);");
+
+        ClassLoader classLoader = new URLClassLoader(new URL[]{root.toURI().toURL()}, null);
+        cache = new WebviewAssetCache(classLoader, "webview/");
+    }
+
+    @Test
+    public void testServeExactContent() {
+        WebviewAsset asset = cache.get("index.html");
+
+        assertEquals(page.length, asset.getLength());
+        assertEquals("text/html", asset.getMimeType());
+        assertEquals("no-cache", asset.getCacheControl());
+        assertArrayEquals(page, readAll(asset.newReader(), 1024));
+        // every reader starts at the beginning
+        assertArrayEquals(page, readAll(asset.newReader(), 65536));
+    }
+
+    @Test
+    public void testLoadedOnce() {
+        WebviewAsset asset = cache.get("index.html");
+
+        assertSame(asset, cache.get("index.html?t=1"));
+        assertSame(asset, cache.get("/index.html#top"));
+        assertSame(asset, cache.get(""));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testOnlyHashedNamesAreImmutable() {
+        assertEquals("no-cache", WebviewAssetCache.cacheControl("conversation-window.js", "text/javascript"));
+        assertEquals("no-cache", WebviewAssetCache.cacheControl("assets/devpilot.svg", "image/svg+xml"));
+        assertEquals("no-cache", WebviewAssetCache.cacheControl("assets/json-viewer-component.js", "text/javascript"));
+        assertEquals("no-cache", WebviewAssetCache.cacheControl("index-3f9c2a1b.html", "text/html"));
+        assertTrue(WebviewAssetCache.cacheControl("assets/index-3f9c2a1b.js", "text/javascript").contains("immutable"));
+        assertTrue(WebviewAssetCache.cacheControl("chunk.BqZ1x3Yk.css", "text/css").contains("immutable"));
+    }
+
+    @Test
+    public void testMimeTypesAndCaching() {
+        WebviewAsset css = cache.get("main.css");
+        WebviewAsset js = cache.get("json-viewer.js");
+
+        // the old substring check served json-viewer.js as css
+        assertEquals("text/css", css.getMimeType());
+        assertEquals("text/javascript", js.getMimeType());
+        assertEquals("no-cache", js.getCacheControl());
+        assertEquals("image/svg+xml", WebviewAssetCache.mimeType("logo.SVG"));
+        assertEquals(WebviewAssetCache.DEFAULT_MIME_TYPE, WebviewAssetCache.mimeType("data.unknown"));
+    }
+
+    @Test
+    public void testEtag() {
+        WebviewAsset css = cache.get("main.css");
+        WebviewAsset js = cache.get("json-viewer.js");
+
+        assertTrue(css.getEtag().startsWith("\"") && css.getEtag().endsWith("\""));
+        assertNotEquals(css.getEtag(), js.getEtag());
+    }
+
+    @Test
+    public void testEtagIsStable() throws Exception {
+        String etag = cache.get("index.html").getEtag();
+        setUp();
+
+        assertEquals(etag, cache.get("index.html").getEtag());
+    }
+
+    @Test
+    public void testMissingAndOutsideBundle() {
+        assertNull(cache.get("missing.js"));
+        assertNull(cache.get("../secret.txt"));
+        assertNull(cache.get(null));
+        assertEquals(0, cache.size());
+    }
+
+    private byte[] readAll(ByteBuffer reader, int chunk) {
+        byte[] result = new byte[reader.remaining()];
+        int offset = 0;
+        byte[] buffer = new byte[chunk];
+        while (reader.hasRemaining()) {
+            int length = Math.min(chunk, reader.remaining());
+            reader.get(buffer, 0, length);
+            System.arraycopy(buffer, 0, result, offset, length);
+            offset += length;
+        }
+        return result;
+    }
+}
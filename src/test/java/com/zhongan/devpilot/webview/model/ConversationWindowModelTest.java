@@ -0,0 +1,163 @@
+package com.zhongan.devpilot.webview.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConversationWindowModelTest {
+
+    @Test
+    public void testLatestWindow() {
+        List<MessageModel> history = buildHistory(100);
+
+        ConversationWindowModel window = ConversationWindowModel.latest("session-1", history, null, 20);
+
+        assertEquals("session-1", window.getSessionId());
+        assertEquals(80, window.getOffset());
+        assertEquals(100, window.getTotal());
+        assertEquals("message-79", window.getPreviousId());
+        assertNull(window.getNextId());
+        assertEquals(20, window.getMessages().size());
+        assertEquals("message-80", window.getMessages().get(0).getId());
+    }
+
+    @Test
+    public void testLatestWindowWithPendingMessage() {
+        List<MessageModel> history = buildHistory(100);
+        MessageModel pending = buildMessage("streaming");
+
+        ConversationWindowModel window = ConversationWindowModel.latest("session-1", history, pending, 20);
+
+        assertEquals(81, window.getOffset());
+        assertEquals(101, window.getTotal());
+        assertEquals("message-80", window.getPreviousId());
+        assertEquals(20, window.getMessages().size());
+        assertSame(pending, window.getMessages().get(19));
+
+        ConversationWindowModel empty = ConversationWindowModel.latest("session-1", new ArrayList<>(), pending, 20);
+        assertEquals(0, empty.getOffset());
+        assertEquals(1, empty.getMessages().size());
+        assertNull(empty.getPreviousId());
+    }
+
+    @Test
+    public void testShortConversationIsSentWhole() {
+        ConversationWindowModel window = ConversationWindowModel.latest("session-1", buildHistory(5), null, 20);
+
+        assertEquals(0, window.getOffset());
+        assertEquals(5, window.getMessages().size());
+        assertNull(window.getPreviousId());
+    }
+
+    @Test
+    public void testOlderPages() {
+        List<MessageModel> history = buildHistory(50);
+
+        ConversationWindowModel page = ConversationWindowModel.before("session-1", history, 30, 20);
+        assertEquals(10, page.getOffset());
+        assertEquals(50, page.getTotal());
+        assertEquals("message-9", page.getPreviousId());
+        assertEquals("message-30", page.getNextId());
+        assertEquals(20, page.getMessages().size());
+        assertEquals("message-10", page.getMessages().get(0).getId());
+
+        ConversationWindowModel first = ConversationWindowModel.before("session-1", history, 10, 20);
+        assertEquals(0, first.getOffset());
+        assertEquals(10, first.getMessages().size());
+        assertNull(first.getPreviousId());
+
+        // positions past the end are clamped, a stale request gets what is there
+        ConversationWindowModel stale = ConversationWindowModel.before("session-1", history, 80, 20);
+        assertEquals(30, stale.getOffset());
+        assertNull(stale.getNextId());
+        assertTrue(ConversationWindowModel.before("session-1", history, -1, 20).getMessages().isEmpty());
+    }
+
+    @Test
+    public void testWindowBoundaries() {
+        ConversationWindowModel exact = ConversationWindowModel.latest("session-1", buildHistory(20), null, 20);
+        assertEquals(0, exact.getOffset());
+        assertEquals(20, exact.getMessages().size());
+        assertNull(exact.getPreviousId());
+
+        ConversationWindowModel oneMore = ConversationWindowModel.latest("session-1", buildHistory(21), null, 20);
+        assertEquals(1, oneMore.getOffset());
+        assertEquals("message-0", oneMore.getPreviousId());
+        assertEquals("message-1", oneMore.getMessages().get(0).getId());
+
+        // a window always holds at least one message
+        ConversationWindowModel single = ConversationWindowModel.latest("session-1", buildHistory(3), null, 0);
+        assertEquals(2, single.getOffset());
+        assertEquals(List.of("message-2"), ids(single.getMessages()));
+    }
+
+    @Test
+    public void testPagingFromLastToFirstPage() {
+        List<MessageModel> history = buildHistory(45);
+
+        ConversationWindowModel last = ConversationWindowModel.latest("session-1", history, null, 20);
+        assertEquals(25, last.getOffset());
+        assertNull(last.getNextId());
+
+        ConversationWindowModel middle = ConversationWindowModel.before("session-1", history, last.getOffset(), 20);
+        assertEquals(5, middle.getOffset());
+        assertEquals(last.getMessages().get(0).getId(), middle.getNextId());
+        assertEquals("message-4", middle.getPreviousId());
+
+        ConversationWindowModel first = ConversationWindowModel.before("session-1", history, middle.getOffset(), 20);
+        assertEquals(0, first.getOffset());
+        assertEquals(5, first.getMessages().size());
+        assertNull(first.getPreviousId());
+        assertEquals("message-5", first.getNextId());
+
+        // the pages join without gaps or overlaps
+        List<String> joined = new ArrayList<>(ids(first.getMessages()));
+        joined.addAll(ids(middle.getMessages()));
+        joined.addAll(ids(last.getMessages()));
+        assertEquals(ids(history), joined);
+
+        assertTrue(ConversationWindowModel.before("session-1", history, 0, 20).getMessages().isEmpty());
+    }
+
+    @Test
+    public void testEmptyConversation() {
+        ConversationWindowModel window = ConversationWindowModel.latest("session-1", new ArrayList<>(), null, 20);
+        assertEquals(0, window.getOffset());
+        assertEquals(0, window.getTotal());
+        assertTrue(window.getMessages().isEmpty());
+        assertNull(window.getPreviousId());
+        assertNull(window.getNextId());
+
+        ConversationWindowModel page = ConversationWindowModel.before("session-1", new ArrayList<>(), 10, 20);
+        assertEquals(0, page.getOffset());
+        assertTrue(page.getMessages().isEmpty());
+        assertNull(page.getPreviousId());
+        assertNull(page.getNextId());
+    }
+
+    private List<String> ids(List<MessageModel> messages) {
+        return messages.stream().map(MessageModel::getId).collect(Collectors.toList());
+    }
+
+    private List<MessageModel> buildHistory(int size) {
+        List<MessageModel> history = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            history.add(buildMessage("message-" + i));
+        }
+        return history;
+    }
+
+    private MessageModel buildMessage(String id) {
+        MessageModel message = new MessageModel();
+        message.setId(id);
+        message.setContent("```java\npublic class Demo { void run() { System.out.println(\"" + id + "\"); } }\n```");
+        return message;
+    }
+}